@@ -4,4 +4,60 @@ public class ClientConfig {
     public static final String SERVER_IP = "localhost";
     public static final int SERVER_PORT = 8443;
     public static final String INVALID_ACCESS_TOKEN_M_STRING = "Invalid access token";
+
+    // TLS policy: AES-GCM first (AES-NI/CLMUL accelerated), resumption via cache and TLS 1.3 tickets
+    public static final String[] TLS_PROTOCOLS = System.getProperty("client.tls.protocols", "TLSv1.3,TLSv1.2").split(",");
+    public static final String[] TLS_CIPHER_SUITES = System.getProperty("client.tls.cipherSuites",
+            "TLS_AES_128_GCM_SHA256,TLS_AES_256_GCM_SHA384,"
+            + "TLS_ECDHE_ECDSA_WITH_AES_128_GCM_SHA256,TLS_ECDHE_RSA_WITH_AES_128_GCM_SHA256,"
+            + "TLS_ECDHE_ECDSA_WITH_AES_256_GCM_SHA384,TLS_ECDHE_RSA_WITH_AES_256_GCM_SHA384,"
+            + "TLS_CHACHA20_POLY1305_SHA256,TLS_ECDHE_ECDSA_WITH_CHACHA20_POLY1305_SHA256,"
+            + "TLS_ECDHE_RSA_WITH_CHACHA20_POLY1305_SHA256").split(",");
+    public static final int TLS_SESSION_CACHE_SIZE = Integer.getInteger("client.tls.sessionCacheSize", 64);
+    public static final int TLS_SESSION_TIMEOUT_SECONDS = Integer.getInteger("client.tls.sessionTimeoutSeconds", 24 * 60 * 60);
+
+    // Login modes offered over ALPN, in preference order; the server picks one. "ecdh" sends both
+    // credentials in one AES-GCM message under an X25519 session key, "rsa" encrypts each field with RSA.
+    public static final String[] LOGIN_MODES = System.getProperty("client.login.modes", "ecdh,rsa").split(",");
+    public static final String LOGIN_PROTOCOL_ECDH = "isp-login-ecdh";
+    public static final String LOGIN_PROTOCOL_RSA = "isp-login-rsa";
+
+    // Framings offered with each login mode, in preference order. "binary" switches to length-prefixed
+    // frames once logged in and is offered as the login protocol name plus the suffix; "json" keeps JSON lines.
+    public static final String[] FRAMING_MODES = System.getProperty("client.framing.modes", "binary,json").split(",");
+    public static final String BINARY_FRAMING_SUFFIX = "/bin1";
+
+    // Binary framing is offered with per-message deflate first, as the binary protocol name plus the
+    // suffix; frames of at least thresholdBytes are then sent compressed when that makes them smaller
+    public static final boolean COMPRESSION_ENABLED = Boolean.parseBoolean(System.getProperty("client.compression.enabled", "true"));
+    public static final String COMPRESSION_SUFFIX = "+deflate";
+    public static final int COMPRESSION_THRESHOLD_BYTES = Integer.getInteger("client.compression.thresholdBytes", 1024);
+    public static final int COMPRESSION_LEVEL = Integer.getInteger("client.compression.level", 1);
+    // Deflaters and inflaters are shared by every connection, keeping up to poolSize idle ones
+    public static final int COMPRESSION_POOL_SIZE = Integer.getInteger("client.compression.poolSize",
+            2 * Runtime.getRuntime().availableProcessors());
+
+    // Headless load generator (org.example.load.LoadGenerator). sessions connect evenly over rampSeconds
+    // as users 1..users of emailPattern, then the profile holds them for durationSeconds: "ramp" stops
+    // once all are open, "steady" holds for 60 s by default, "soak" for an hour with reconnects
+    public static final String LOAD_HOST = System.getProperty("client.load.host", SERVER_IP);
+    public static final int LOAD_PORT = Integer.getInteger("client.load.port", SERVER_PORT);
+    public static final String LOAD_PROFILE = System.getProperty("client.load.profile", "steady");
+    public static final int LOAD_SESSIONS = Integer.getInteger("client.load.sessions", 100);
+    public static final int LOAD_RAMP_SECONDS = Integer.getInteger("client.load.rampSeconds", 30);
+    public static final Long LOAD_DURATION_SECONDS = Long.getLong("client.load.durationSeconds");
+    public static final int LOAD_USERS = Integer.getInteger("client.load.users", 100);
+    public static final String LOAD_EMAIL_PATTERN = System.getProperty("client.load.emailPattern", "load%d@example.com");
+    public static final String LOAD_PASSWORD = System.getProperty("client.load.password", "loadtest");
+    // Per session: chat messages per second, seconds between token refreshes and between reconnects
+    // with a new login (0 turns either off; reconnects default to 300 s in "soak" only), message size
+    public static final double LOAD_MESSAGES_PER_SECOND = Double.parseDouble(System.getProperty("client.load.messagesPerSecond", "1"));
+    public static final int LOAD_REFRESH_SECONDS = Integer.getInteger("client.load.refreshSeconds", 60);
+    public static final Integer LOAD_RECONNECT_SECONDS = Integer.getInteger("client.load.reconnectSeconds");
+    public static final int LOAD_MESSAGE_BYTES = Integer.getInteger("client.load.messageBytes", 64);
+    // Threads that connect and log in, and that send on behalf of every session
+    public static final int LOAD_CONNECT_THREADS = Integer.getInteger("client.load.connectThreads", 16);
+    public static final int LOAD_SENDER_THREADS = Integer.getInteger("client.load.senderThreads",
+            Runtime.getRuntime().availableProcessors());
+    public static final int LOAD_REPORT_SECONDS = Integer.getInteger("client.load.reportSeconds", 10);
 }
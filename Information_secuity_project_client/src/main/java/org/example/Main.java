@@ -1,14 +1,21 @@
 package org.example;
 import javax.net.ssl.*;
 import java.io.BufferedReader;
+import java.io.IOException;
 import java.io.InputStreamReader;
+import java.io.OutputStream;
 import java.io.PrintWriter;
 import java.security.PublicKey;
 import java.util.Base64;
 import javax.crypto.Cipher;
+import org.example.ssl.HandshakeStats;
 import org.example.ssl.SSLUtils;
 import org.example.auth.Authenticator;
+import org.example.common.protocol.BinaryFrame;
+import org.example.common.protocol.FrameReader;
 import org.example.model.AuthToken;
+import org.example.protocol.BinaryCodec;
+import org.example.protocol.ServerFrame;
 import org.json.JSONObject;
 import java.time.Instant;
 import java.time.Duration;
@@ -20,9 +27,11 @@ public class Main {
     public static void main(String[] args) {
         try {
             // Setup SSL context
-            SSLContext sslContext = SSLUtils.createTrustAllSSLContext();
+            SSLContext sslContext = SSLUtils.getSharedSSLContext();
             SSLSocketFactory socketFactory = sslContext.getSocketFactory();
             SSLSocket socket = (SSLSocket) socketFactory.createSocket(ClientConfig.SERVER_IP, ClientConfig.SERVER_PORT);
+            SSLUtils.configure(socket);
+            long handshakeStartedMillis = System.currentTimeMillis();
 
             socket.addHandshakeCompletedListener(event -> {
                 logger.info("\n=== [SSL HANDSHAKE COMPLETED - CLIENT SIDE] ===");
@@ -30,6 +39,7 @@ public class Main {
                 logger.info("Protocol      : " + event.getSession().getProtocol());
                 logger.info("Cipher Suite  : " + event.getCipherSuite());
                 logger.info("Session ID    : " + bytesToHex(event.getSession().getId()));
+                logger.info("Resumed       : " + HandshakeStats.isResumed(event.getSession(), handshakeStartedMillis));
                 try {
                     java.security.PublicKey serverPublicKey = org.example.ssl.SSLUtils.extractServerPublicKey((SSLSocket) event.getSocket());
                     logger.info("Server Public Key: " + serverPublicKey);
@@ -39,9 +49,13 @@ public class Main {
                 logger.info("===============================================\n");
             });
 
+            long handshakeStartedNanos = System.nanoTime();
             socket.startHandshake();
+            HandshakeStats.CLIENT.record(socket.getSession(), handshakeStartedMillis, System.nanoTime() - handshakeStartedNanos);
+            logger.info("Handshakes: " + HandshakeStats.CLIENT);
 
-            BufferedReader in = new BufferedReader(new InputStreamReader(socket.getInputStream()));
+            // Reads exactly up to the end of each login line, so frames sent right after the login reply are not lost
+            FrameReader in = new FrameReader(socket.getInputStream());
             PrintWriter out = new PrintWriter(socket.getOutputStream(), true);
             BufferedReader console = new BufferedReader(new InputStreamReader(System.in));
 
@@ -49,17 +63,30 @@ public class Main {
             java.security.PublicKey serverPublicKey = SSLUtils.extractServerPublicKey(socket);
 
             // Authentication flow
-            final AuthToken[] token = {Authenticator.authenticate(in, out, console, serverPublicKey)};
+            String loginProtocol = socket.getApplicationProtocol();
+            logger.info("Login mode    : " + (loginProtocol == null || loginProtocol.isEmpty() ? ClientConfig.LOGIN_PROTOCOL_RSA : loginProtocol));
+            boolean binaryFraming = loginProtocol != null && loginProtocol.contains(ClientConfig.BINARY_FRAMING_SUFFIX);
+            boolean compressed = binaryFraming && loginProtocol.endsWith(ClientConfig.COMPRESSION_SUFFIX);
+            final AuthToken[] token = {Authenticator.authenticate(in, out, console, serverPublicKey, loginProtocol)};
             if (token[0] == null) {
                 socket.close();
                 return;
             }
 
+            if (binaryFraming) {
+                // The welcome line is the last line of the login; frames follow it
+                logger.info(in.readLine());
+            }
+
             // Start reading messages from server
-            final BufferedReader finalIn = in;
+            final FrameReader finalIn = in;
             final PrintWriter finalOut = out;
             final Object tokenLock = new Object();
             Thread messageThread = new Thread(() -> {
+                if (binaryFraming) {
+                    receiveFrames(finalIn, socket, compressed);
+                    return;
+                }
                 try {
                     String msg;
                     while ((msg = finalIn.readLine()) != null) {
@@ -75,9 +102,15 @@ public class Main {
                                     logger.warn("Received message older than 1 hour. Closing connection.");
                                     try { socket.close(); } catch (Exception ignore) {}
                                     System.exit(0);
+                                } else if (msgObj.has("from") && !msgObj.has("room")) {
+                                    logger.info("[" + msgObj.optString("from") + " -> you] " + messageContent);
+                                } else if (msgObj.has("room")) {
+                                    logger.info("[" + msgObj.optString("room") + "] " + msgObj.optString("from") + ": " + messageContent);
                                 } else {
                                     logger.info(messageContent);
                                 }
+                            } else if (msgObj.has("status") && msgObj.has("to")) {
+                                logger.info("Message to " + msgObj.getString("to") + ": " + msgObj.getString("status"));
                             } else {
                                 // Not a standard message, print as is
                                 logger.info(msg);
@@ -94,13 +127,38 @@ public class Main {
             messageThread.start();
 
             // Sending messages
+            BinaryCodec codec = new BinaryCodec(compressed);
+            OutputStream frames = socket.getOutputStream();
             String input;
             while ((input = console.readLine()) != null) {
+                if (binaryFraming) {
+                    String accessToken;
+                    synchronized (tokenLock) {
+                        accessToken = token[0].getAccessToken();
+                    }
+                    frames.write(encodeFrame(codec, accessToken, input));
+                    frames.flush();
+                    continue;
+                }
                 JSONObject msgObj = new JSONObject();
                 synchronized (tokenLock) {
                     msgObj.put("accessToken", token[0].getAccessToken());
                 }
-                msgObj.put("message", input);
+                // Room commands: /join <room>, /leave <room>, /room <room> <message>; direct: /msg <user> <message>
+                String[] parts = input.split(" ", 3);
+                if (parts[0].equals("/join") && parts.length > 1) {
+                    msgObj.put("join", parts[1]);
+                } else if (parts[0].equals("/leave") && parts.length > 1) {
+                    msgObj.put("leave", parts[1]);
+                } else if (parts[0].equals("/msg") && parts.length > 2) {
+                    msgObj.put("to", parts[1]);
+                    msgObj.put("message", parts[2]);
+                } else if (parts[0].equals("/room") && parts.length > 2) {
+                    msgObj.put("room", parts[1]);
+                    msgObj.put("message", parts[2]);
+                } else {
+                    msgObj.put("message", input);
+                }
                 out.println(msgObj.toString());
             }
 
@@ -109,6 +167,61 @@ public class Main {
         }
     }
 
+    // The same commands as the JSON protocol: /join, /leave, /room and /msg, anything else a chat message
+    private static byte[] encodeFrame(BinaryCodec codec, String accessToken, String input) throws IOException {
+        String[] parts = input.split(" ", 3);
+        if (parts[0].equals("/join") && parts.length > 1) {
+            return codec.encodeJoin(accessToken, parts[1]);
+        } else if (parts[0].equals("/leave") && parts.length > 1) {
+            return codec.encodeLeave(accessToken, parts[1]);
+        } else if (parts[0].equals("/msg") && parts.length > 2) {
+            return codec.encodeDirectMessage(accessToken, parts[1], null, parts[2]);
+        } else if (parts[0].equals("/room") && parts.length > 2) {
+            return codec.encodeRoomMessage(accessToken, parts[1], parts[2]);
+        }
+        return codec.encodeMessage(accessToken, input);
+    }
+
+    private static void receiveFrames(FrameReader in, SSLSocket socket, boolean compressed) {
+        BinaryCodec codec = new BinaryCodec(compressed);
+        try {
+            byte[] bytes;
+            while ((bytes = in.readFrame()) != null) {
+                ServerFrame frame = codec.decode(bytes);
+                Duration age = Duration.between(Instant.ofEpochMilli(frame.getTimeMillis()), Instant.now());
+                if (age.toHours() >= 1) {
+                    logger.warn("Received message older than 1 hour. Closing connection.");
+                    try { socket.close(); } catch (Exception ignore) {}
+                    System.exit(0);
+                }
+                switch (frame.getType()) {
+                    case BinaryFrame.DIRECT:
+                        logger.info("[" + frame.getFrom() + " -> you] " + frame.getMessage());
+                        break;
+                    case BinaryFrame.ROOM:
+                        logger.info("[" + frame.getRoom() + "] " + frame.getFrom() + ": " + frame.getMessage());
+                        break;
+                    case BinaryFrame.STATUS:
+                        logger.info("Message to " + frame.getTo() + ": " + frame.getStatus());
+                        break;
+                    case BinaryFrame.PING:
+                        // Written whole, so it cannot interleave with a frame from the console thread
+                        socket.getOutputStream().write(codec.encodePong());
+                        socket.getOutputStream().flush();
+                        break;
+                    default:
+                        logger.info(frame.getMessage());
+                        break;
+                }
+            }
+        } catch (Exception e) {
+            logger.info("Disconnected from server.");
+        }
+        if (compressed) {
+            logger.info("Compression: " + BinaryCodec.COMPRESSOR.getStats());
+        }
+    }
+
     private static String bytesToHex(byte[] bytes) {
         StringBuilder sb = new StringBuilder();
         for (byte b : bytes) {
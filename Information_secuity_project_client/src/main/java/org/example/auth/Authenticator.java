@@ -3,35 +3,93 @@ package org.example.auth;
 import java.io.BufferedReader;
 import java.io.PrintWriter;
 import java.security.PublicKey;
+import org.example.ClientConfig;
+import org.example.common.protocol.FrameReader;
 import org.example.crypto.CryptoUtils;
 import org.example.model.AuthToken;
 import org.example.utils.DatabaseConnection;
 import org.json.JSONObject;
 
 public class Authenticator {
-    public static AuthToken authenticate(BufferedReader in, PrintWriter out, BufferedReader console, PublicKey serverPublicKey) throws Exception {
-        for (int i = 0; i < 2; i++) {
-            String prompt = in.readLine();
-            System.out.print(prompt + " ");
-            String userInput = console.readLine();
-            if (prompt.toLowerCase().contains("password") || prompt.toLowerCase().contains("email")) {
-                userInput = CryptoUtils.encryptWithPublicKey(userInput, serverPublicKey);
+    /**
+     * @param loginProtocol the ALPN protocol the server selected; null or empty means the RSA prompts.
+     *                      A framing suffix does not change the login, which is always line-based
+     */
+    public static AuthToken authenticate(FrameReader in, PrintWriter out, BufferedReader console, PublicKey serverPublicKey,
+                                         String loginProtocol) throws Exception {
+        if (loginProtocol != null && loginProtocol.startsWith(ClientConfig.LOGIN_PROTOCOL_ECDH)) {
+            // One signed key offer, then both credentials in a single sealed line
+            String offer = in.readLine();
+            if (offer == null || !offer.startsWith(CryptoUtils.KEX_PREFIX)) {
+                System.out.println(offer);
+                return null;
+            }
+            System.out.print("Enter email: ");
+            String email = console.readLine();
+            System.out.print("Enter password: ");
+            String password = console.readLine();
+            out.println(CryptoUtils.sealCredentials(offer, serverPublicKey, email, password));
+        } else {
+            for (int i = 0; i < 2; i++) {
+                String prompt = in.readLine();
+                System.out.print(prompt + " ");
+                String userInput = console.readLine();
+                if (prompt.toLowerCase().contains("password") || prompt.toLowerCase().contains("email")) {
+                    userInput = CryptoUtils.encryptWithPublicKey(userInput, serverPublicKey);
+                }
+                out.println(userInput);
             }
-            out.println(userInput);
         }
         String authResult = in.readLine();
         System.out.println(authResult);
-        if (authResult.trim().startsWith("{") && authResult.contains("accessToken")) {
-            JSONObject obj = new JSONObject(authResult);
-            String accessToken = obj.getString("accessToken");
-            String refreshToken = obj.getString("refreshToken");
-            AuthToken token = new AuthToken(accessToken, refreshToken);
+        AuthToken token = parseTokens(authResult);
+        if (token != null) {
             DatabaseConnection.saveAuthToken(token);
-            return token;
         }
-        if (authResult.toLowerCase().contains("failed")) {
-            return null;
+        return token;
+    }
+
+    /**
+     * The same exchange as {@link #authenticate} with the credentials given instead of typed, for
+     * clients without a console such as the load generator. Nothing is printed or stored, and the
+     * welcome line that follows a successful login is left for the caller to read.
+     *
+     * @return the tokens, or null if the server refused the login or closed the connection
+     */
+    public static AuthToken login(FrameReader in, PrintWriter out, PublicKey serverPublicKey, String loginProtocol,
+                                  String email, String password) throws Exception {
+        if (loginProtocol != null && loginProtocol.startsWith(ClientConfig.LOGIN_PROTOCOL_ECDH)) {
+            String offer = in.readLine();
+            if (offer == null || !offer.startsWith(CryptoUtils.KEX_PREFIX)) {
+                return null;
+            }
+            out.println(CryptoUtils.sealCredentials(offer, serverPublicKey, email, password));
+        } else {
+            for (int i = 0; i < 2; i++) {
+                String prompt = in.readLine();
+                if (prompt == null) {
+                    return null;
+                }
+                String field = prompt.toLowerCase();
+                if (field.contains("password")) {
+                    out.println(CryptoUtils.encryptWithPublicKey(password, serverPublicKey));
+                } else if (field.contains("email")) {
+                    out.println(CryptoUtils.encryptWithPublicKey(email, serverPublicKey));
+                } else {
+                    // Not a prompt, such as the reply to a login the server is too busy for
+                    return null;
+                }
+            }
+        }
+        return parseTokens(in.readLine());
+    }
+
+    // The JSON reply to a successful login, or null for anything else
+    private static AuthToken parseTokens(String authResult) {
+        if (authResult != null && authResult.trim().startsWith("{") && authResult.contains("accessToken")) {
+            JSONObject obj = new JSONObject(authResult);
+            return new AuthToken(obj.getString("accessToken"), obj.getString("refreshToken"));
         }
         return null;
     }
-} 
\ No newline at end of file
+}
@@ -1,14 +1,90 @@
 package org.example.crypto;
 
+import java.nio.charset.StandardCharsets;
+import java.security.GeneralSecurityException;
+import java.security.KeyFactory;
+import java.security.KeyPair;
+import java.security.KeyPairGenerator;
+import java.security.MessageDigest;
 import java.security.PublicKey;
+import java.security.SecureRandom;
+import java.security.Signature;
+import java.security.spec.X509EncodedKeySpec;
+import java.util.Arrays;
 import javax.crypto.Cipher;
+import javax.crypto.KeyAgreement;
+import javax.crypto.spec.GCMParameterSpec;
+import javax.crypto.spec.SecretKeySpec;
 import java.util.Base64;
+import org.json.JSONObject;
 
 public class CryptoUtils {
+    public static final String KEX_PREFIX = "KEX ";
+    private static final byte[] KEX_CONTEXT = "isp-login-ecdh-v1".getBytes(StandardCharsets.US_ASCII);
+    private static final int IV_LENGTH = 12;
+    private static final int TAG_BITS = 128;
+    private static final SecureRandom RANDOM = new SecureRandom();
+
     public static String encryptWithPublicKey(String data, PublicKey publicKey) throws Exception {
         Cipher cipher = Cipher.getInstance("RSA");
         cipher.init(Cipher.ENCRYPT_MODE, publicKey);
         byte[] encryptedBytes = cipher.doFinal(data.getBytes("UTF-8"));
         return Base64.getEncoder().encodeToString(encryptedBytes);
     }
-} 
\ No newline at end of file
+
+    /**
+     * Builds the credentials line for the ECDH login mode. The server's X25519 key from the
+     * {@code KEX} line must carry a valid signature by the certificate's RSA key. A fresh X25519
+     * key is agreed against it and email and password are sent in one AES-256-GCM message, keyed
+     * by SHA-256(context || shared secret || client key || server key).
+     *
+     * @param kexLine         the server's "KEX &lt;key&gt; &lt;signature&gt;" line
+     * @param serverPublicKey the RSA key from the server certificate
+     * @return "&lt;client key&gt; &lt;IV || ciphertext&gt;", Base64 fields
+     */
+    public static String sealCredentials(String kexLine, PublicKey serverPublicKey, String email, String password) throws GeneralSecurityException {
+        String[] parts = kexLine.substring(KEX_PREFIX.length()).trim().split(" ");
+        if (parts.length != 2) {
+            throw new GeneralSecurityException("Malformed key exchange offer");
+        }
+        byte[] serverKey = Base64.getDecoder().decode(parts[0]);
+        Signature signature = Signature.getInstance("SHA256withRSA");
+        signature.initVerify(serverPublicKey);
+        signature.update(KEX_CONTEXT);
+        signature.update(serverKey);
+        if (!signature.verify(Base64.getDecoder().decode(parts[1]))) {
+            throw new GeneralSecurityException("Key exchange offer is not signed by the server certificate");
+        }
+
+        KeyPair ephemeral = KeyPairGenerator.getInstance("X25519").generateKeyPair();
+        byte[] clientKey = ephemeral.getPublic().getEncoded();
+        KeyAgreement agreement = KeyAgreement.getInstance("X25519");
+        agreement.init(ephemeral.getPrivate());
+        agreement.doPhase(KeyFactory.getInstance("X25519").generatePublic(new X509EncodedKeySpec(serverKey)), true);
+        byte[] shared = agreement.generateSecret();
+
+        MessageDigest sha256 = MessageDigest.getInstance("SHA-256");
+        sha256.update(KEX_CONTEXT);
+        sha256.update(shared);
+        sha256.update(clientKey);
+        sha256.update(serverKey);
+        byte[] key = sha256.digest();
+        Arrays.fill(shared, (byte) 0);
+
+        byte[] plain = new JSONObject().put("email", email).put("password", password).toString().getBytes(StandardCharsets.UTF_8);
+        byte[] sealed = new byte[IV_LENGTH + plain.length + TAG_BITS / 8];
+        byte[] iv = new byte[IV_LENGTH];
+        RANDOM.nextBytes(iv);
+        System.arraycopy(iv, 0, sealed, 0, IV_LENGTH);
+        Cipher cipher = Cipher.getInstance("AES/GCM/NoPadding");
+        cipher.init(Cipher.ENCRYPT_MODE, new SecretKeySpec(key, "AES"), new GCMParameterSpec(TAG_BITS, iv));
+        Arrays.fill(key, (byte) 0);
+        cipher.updateAAD(clientKey);
+        cipher.updateAAD(serverKey);
+        cipher.doFinal(plain, 0, plain.length, sealed, IV_LENGTH);
+        Arrays.fill(plain, (byte) 0);
+
+        Base64.Encoder base64 = Base64.getEncoder();
+        return base64.encodeToString(clientKey) + " " + base64.encodeToString(sealed);
+    }
+}
@@ -0,0 +1,169 @@
+package org.example.load;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import javax.net.ssl.SSLSocketFactory;
+import org.example.ClientConfig;
+import org.example.ssl.HandshakeStats;
+import org.example.ssl.SSLUtils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Headless load generator: opens {@code client.load.sessions} TLS sessions against one server,
+ * logs each in as one of {@code client.load.users} accounts, and keeps them sending chat
+ * messages and refreshing their tokens at the configured rates. Connect, login, message and
+ * refresh round-trip percentiles are logged every {@code client.load.reportSeconds}, after the
+ * ramp, after the hold and for the whole run. The settings are in {@link ClientConfig}, and
+ * {@code loadtest/run-local.sh} runs it against a local server on an embedded database.
+ *
+ * <p>Exits with status 1 if any session failed to connect, failed to log in or was disconnected.
+ */
+public class LoadGenerator {
+    private static final Logger logger = LoggerFactory.getLogger(LoadGenerator.class);
+
+    private final LoadProfile profile;
+    private final int sessionCount;
+    private final long rampNanos;
+    private final long durationSeconds;
+    private final int reconnectSeconds;
+    private final LoadStats stats = new LoadStats();
+    private final AtomicReferenceArray<LoadSession> sessions;
+    private final ScheduledThreadPoolExecutor scheduler;
+    private final ExecutorService connectPool;
+    private SSLSocketFactory factory;
+
+    public LoadGenerator(LoadProfile profile, int sessionCount, int rampSeconds, long durationSeconds, int reconnectSeconds) {
+        this.profile = profile;
+        this.sessionCount = sessionCount;
+        this.rampNanos = TimeUnit.SECONDS.toNanos(rampSeconds);
+        this.durationSeconds = durationSeconds;
+        this.reconnectSeconds = reconnectSeconds;
+        this.sessions = new AtomicReferenceArray<>(sessionCount);
+        this.scheduler = new ScheduledThreadPoolExecutor(ClientConfig.LOAD_SENDER_THREADS, daemonThreads("load-sender-"));
+        this.scheduler.setRemoveOnCancelPolicy(true);
+        this.connectPool = Executors.newFixedThreadPool(ClientConfig.LOAD_CONNECT_THREADS, daemonThreads("load-connect-"));
+    }
+
+    public static void main(String[] args) throws Exception {
+        LoadProfile profile = LoadProfile.fromName(ClientConfig.LOAD_PROFILE);
+        long duration = ClientConfig.LOAD_DURATION_SECONDS != null
+                ? ClientConfig.LOAD_DURATION_SECONDS : profile.getDefaultDurationSeconds();
+        int reconnect = ClientConfig.LOAD_RECONNECT_SECONDS != null
+                ? ClientConfig.LOAD_RECONNECT_SECONDS : profile.getDefaultReconnectSeconds();
+        LoadGenerator generator = new LoadGenerator(profile, ClientConfig.LOAD_SESSIONS, ClientConfig.LOAD_RAMP_SECONDS,
+                duration, reconnect);
+        System.exit(generator.run() ? 0 : 1);
+    }
+
+    /** @return true if no session failed to connect or log in, or was disconnected */
+    public boolean run() throws Exception {
+        factory = SSLUtils.getSharedSSLContext().getSocketFactory();
+        logger.info("Load profile {} against {}:{}: {} sessions over {} s, then {} s; {} messages/s, refresh every {} s, "
+                        + "reconnect every {} s per session", profile, ClientConfig.LOAD_HOST, ClientConfig.LOAD_PORT, sessionCount,
+                TimeUnit.NANOSECONDS.toSeconds(rampNanos), profile == LoadProfile.RAMP ? 0 : durationSeconds,
+                ClientConfig.LOAD_MESSAGES_PER_SECOND, ClientConfig.LOAD_REFRESH_SECONDS, reconnectSeconds);
+        long started = System.nanoTime();
+        long[] intervalStarted = {started};
+        scheduler.scheduleAtFixedRate(() -> {
+            long now = System.nanoTime();
+            logger.info("Interval: {}", stats.nextInterval((now - intervalStarted[0]) / 1e9));
+            intervalStarted[0] = now;
+        }, ClientConfig.LOAD_REPORT_SECONDS, ClientConfig.LOAD_REPORT_SECONDS, TimeUnit.SECONDS);
+
+        CountDownLatch ramped = new CountDownLatch(sessionCount);
+        AtomicInteger opened = new AtomicInteger();
+        for (int i = 0; i < sessionCount; i++) {
+            int index = i;
+            long delay = sessionCount == 1 ? 0 : rampNanos * i / sessionCount;
+            scheduler.schedule(() -> connectPool.execute(() -> {
+                try {
+                    if (open(index)) {
+                        opened.incrementAndGet();
+                        schedule(index);
+                    }
+                } finally {
+                    ramped.countDown();
+                }
+            }), delay, TimeUnit.NANOSECONDS);
+        }
+        ramped.await();
+        long rampEnded = System.nanoTime();
+        logger.info("Ramp: opened {} of {} sessions in {} ms: {}", opened.get(), sessionCount,
+                TimeUnit.NANOSECONDS.toMillis(rampEnded - started), stats.nextPhase((rampEnded - started) / 1e9));
+
+        if (profile != LoadProfile.RAMP) {
+            TimeUnit.SECONDS.sleep(durationSeconds);
+            logger.info("Hold: {}", stats.nextPhase((System.nanoTime() - rampEnded) / 1e9));
+        }
+
+        scheduler.shutdownNow();
+        connectPool.shutdownNow();
+        logger.info("Total: {}", stats.total((System.nanoTime() - started) / 1e9));
+        logger.info("Handshakes: {}", HandshakeStats.CLIENT);
+        for (int i = 0; i < sessionCount; i++) {
+            LoadSession session = sessions.get(i);
+            if (session != null) {
+                session.close();
+            }
+        }
+        return stats.getFailures() == 0;
+    }
+
+    private boolean open(int index) {
+        String email = String.format(ClientConfig.LOAD_EMAIL_PATTERN, index % ClientConfig.LOAD_USERS + 1);
+        LoadSession session = new LoadSession(index, email, ClientConfig.LOAD_PASSWORD, ClientConfig.LOAD_MESSAGE_BYTES, stats);
+        if (!session.open(factory, ClientConfig.LOAD_HOST, ClientConfig.LOAD_PORT)) {
+            return false;
+        }
+        sessions.set(index, session);
+        return true;
+    }
+
+    // The tasks of one session slot; they act on whichever session currently holds the slot
+    private void schedule(int index) {
+        if (ClientConfig.LOAD_MESSAGES_PER_SECOND > 0) {
+            long period = (long) (TimeUnit.SECONDS.toNanos(1) / ClientConfig.LOAD_MESSAGES_PER_SECOND);
+            // Spread over the period so that sessions do not send in lockstep
+            scheduler.scheduleAtFixedRate(() -> {
+                LoadSession session = sessions.get(index);
+                if (session != null) {
+                    session.sendMessage();
+                }
+            }, ThreadLocalRandom.current().nextLong(period), period, TimeUnit.NANOSECONDS);
+        }
+        if (ClientConfig.LOAD_REFRESH_SECONDS > 0) {
+            scheduler.scheduleAtFixedRate(() -> {
+                LoadSession session = sessions.get(index);
+                if (session != null) {
+                    session.refresh();
+                }
+            }, ClientConfig.LOAD_REFRESH_SECONDS, ClientConfig.LOAD_REFRESH_SECONDS, TimeUnit.SECONDS);
+        }
+        if (reconnectSeconds > 0) {
+            scheduler.scheduleWithFixedDelay(() -> connectPool.execute(() -> {
+                LoadSession old = sessions.getAndSet(index, null);
+                if (old != null) {
+                    old.close();
+                }
+                open(index);
+            }), reconnectSeconds, reconnectSeconds, TimeUnit.SECONDS);
+        }
+    }
+
+    private static ThreadFactory daemonThreads(String prefix) {
+        AtomicInteger count = new AtomicInteger();
+        return runnable -> {
+            Thread thread = new Thread(runnable, prefix + count.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        };
+    }
+}
@@ -0,0 +1,34 @@
+package org.example.load;
+
+/**
+ * How a load run is shaped. Every profile first opens its sessions evenly over the ramp; they
+ * differ in how long the sessions are then held and whether they reconnect while held.
+ */
+public enum LoadProfile {
+    /** Stops once every session is open: connect and login latency as concurrency grows. */
+    RAMP(0, 0),
+    /** Holds the sessions for a minute: latency at a fixed load. */
+    STEADY(60, 0),
+    /** Holds them for an hour, each logging in again every five minutes: drift and leaks. */
+    SOAK(60 * 60, 5 * 60);
+
+    private final long defaultDurationSeconds;
+    private final int defaultReconnectSeconds;
+
+    LoadProfile(long defaultDurationSeconds, int defaultReconnectSeconds) {
+        this.defaultDurationSeconds = defaultDurationSeconds;
+        this.defaultReconnectSeconds = defaultReconnectSeconds;
+    }
+
+    public long getDefaultDurationSeconds() {
+        return defaultDurationSeconds;
+    }
+
+    public int getDefaultReconnectSeconds() {
+        return defaultReconnectSeconds;
+    }
+
+    public static LoadProfile fromName(String name) {
+        return valueOf(name.trim().toUpperCase());
+    }
+}
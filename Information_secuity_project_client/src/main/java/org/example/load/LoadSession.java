@@ -0,0 +1,231 @@
+package org.example.load;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.PrintWriter;
+import java.security.PublicKey;
+import javax.net.ssl.SSLSocket;
+import javax.net.ssl.SSLSocketFactory;
+import org.example.ClientConfig;
+import org.example.auth.Authenticator;
+import org.example.common.protocol.BinaryFrame;
+import org.example.common.protocol.FrameReader;
+import org.example.model.AuthToken;
+import org.example.protocol.BinaryCodec;
+import org.example.protocol.ServerFrame;
+import org.example.ssl.HandshakeStats;
+import org.example.ssl.SSLUtils;
+import org.json.JSONObject;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * One simulated user on its own TLS connection. It connects and logs in the way the console
+ * client does, through {@link SSLUtils} and {@link Authenticator#login}, in whichever login mode
+ * and framing ALPN settles on. After that it sends chat messages, which the server echoes, and
+ * renews its access token.
+ *
+ * <p>Every message starts with its send time, so the round trip is taken from the echo without
+ * any state per message. Sends come from the generator's threads, and replies are read on one
+ * thread per session, which also answers the server's heartbeat pings in binary framing.
+ */
+class LoadSession implements Runnable {
+    private static final Logger logger = LoggerFactory.getLogger(LoadSession.class);
+    private static final String MESSAGE_PREFIX = "load ";
+    // Reads during the login give up after this, so a stalled server cannot hang the ramp
+    private static final int LOGIN_TIMEOUT_MS = 30_000;
+
+    private final int index;
+    private final String email;
+    private final String password;
+    private final String padding;
+    private final LoadStats stats;
+    private final Object sendLock = new Object();
+
+    private SSLSocket socket;
+    private FrameReader in;
+    private PrintWriter out;
+    private OutputStream frames;
+    private BinaryCodec encoder;
+    private boolean binaryFraming;
+    private boolean compressed;
+    private volatile String accessToken;
+    private volatile String refreshToken;
+    private volatile long refreshSentNanos;
+    private volatile boolean closing;
+
+    LoadSession(int index, String email, String password, int messageBytes, LoadStats stats) {
+        this.index = index;
+        this.email = email;
+        this.password = password;
+        // The send time and a space take about 20 bytes of the message
+        this.padding = " " + "x".repeat(Math.max(0, messageBytes - MESSAGE_PREFIX.length() - 20));
+        this.stats = stats;
+    }
+
+    /**
+     * Connects, logs in and starts reading replies. Failures are counted in the stats.
+     *
+     * @return false if the connection or the login failed
+     */
+    boolean open(SSLSocketFactory factory, String host, int port) {
+        long started = System.nanoTime();
+        long startedMillis = System.currentTimeMillis();
+        try {
+            socket = (SSLSocket) factory.createSocket(host, port);
+            SSLUtils.configure(socket);
+            socket.startHandshake();
+            long elapsed = System.nanoTime() - started;
+            HandshakeStats.CLIENT.record(socket.getSession(), startedMillis, elapsed);
+            stats.connected(elapsed);
+        } catch (IOException e) {
+            logger.debug("Session {} could not connect: {}", index, e.getMessage());
+            stats.connectFailed();
+            closeQuietly();
+            return false;
+        }
+
+        started = System.nanoTime();
+        try {
+            socket.setSoTimeout(LOGIN_TIMEOUT_MS);
+            in = new FrameReader(socket.getInputStream());
+            out = new PrintWriter(socket.getOutputStream(), true);
+            frames = socket.getOutputStream();
+            PublicKey serverPublicKey = SSLUtils.extractServerPublicKey(socket);
+            String protocol = socket.getApplicationProtocol();
+            binaryFraming = protocol != null && protocol.contains(ClientConfig.BINARY_FRAMING_SUFFIX);
+            compressed = binaryFraming && protocol.endsWith(ClientConfig.COMPRESSION_SUFFIX);
+            AuthToken token = Authenticator.login(in, out, serverPublicKey, protocol, email, password);
+            // The welcome line ends the login in both framings
+            if (token == null || in.readLine() == null) {
+                logger.debug("Session {} was refused the login as {}", index, email);
+                stats.loginFailed();
+                closeQuietly();
+                return false;
+            }
+            stats.loggedIn(System.nanoTime() - started);
+            accessToken = token.getAccessToken();
+            refreshToken = token.getRefreshToken();
+            socket.setSoTimeout(0);
+        } catch (Exception e) {
+            logger.debug("Session {} failed to log in as {}: {}", index, email, e.getMessage());
+            stats.loginFailed();
+            closeQuietly();
+            return false;
+        }
+        encoder = new BinaryCodec(compressed);
+        Thread reader = new Thread(this, "load-session-" + index);
+        reader.setDaemon(true);
+        reader.start();
+        return true;
+    }
+
+    /** Sends one chat message; the server echoes it back. */
+    void sendMessage() {
+        try {
+            synchronized (sendLock) {
+                String message = MESSAGE_PREFIX + System.nanoTime() + padding;
+                if (binaryFraming) {
+                    frames.write(encoder.encodeMessage(accessToken, message));
+                    frames.flush();
+                } else {
+                    out.println(new JSONObject().put("accessToken", accessToken).put("message", message));
+                }
+            }
+            stats.messageSent();
+        } catch (IOException e) {
+            // The reader sees the connection close and counts it
+            logger.debug("Session {} could not send: {}", index, e.getMessage());
+        }
+    }
+
+    /** Asks for a new access token with the refresh token from the login. */
+    void refresh() {
+        try {
+            synchronized (sendLock) {
+                refreshSentNanos = System.nanoTime();
+                if (binaryFraming) {
+                    frames.write(encoder.encodeRefresh(refreshToken));
+                    frames.flush();
+                } else {
+                    out.println(new JSONObject().put("refreshToken", refreshToken));
+                }
+            }
+        } catch (IOException e) {
+            logger.debug("Session {} could not refresh: {}", index, e.getMessage());
+        }
+    }
+
+    /** Closes the connection; a session closed here is not counted as disconnected. */
+    void close() {
+        closing = true;
+        closeQuietly();
+    }
+
+    @Override
+    public void run() {
+        try {
+            if (binaryFraming) {
+                BinaryCodec decoder = new BinaryCodec(compressed);
+                byte[] bytes;
+                while ((bytes = in.readFrame()) != null) {
+                    ServerFrame frame = decoder.decode(bytes);
+                    if (frame.getType() == BinaryFrame.MESSAGE) {
+                        received(frame.getMessage(), frame.getAccessToken());
+                    } else if (frame.getType() == BinaryFrame.PING) {
+                        synchronized (sendLock) {
+                            frames.write(decoder.encodePong());
+                            frames.flush();
+                        }
+                    }
+                }
+            } else {
+                String line;
+                while ((line = in.readLine()) != null) {
+                    if (line.startsWith("{")) {
+                        JSONObject reply = new JSONObject(line);
+                        received(reply.optString("message", null), reply.optString("accessToken", null));
+                    }
+                }
+            }
+        } catch (Exception e) {
+            if (!closing) {
+                logger.debug("Session {} lost its connection: {}", index, e.getMessage());
+            }
+        } finally {
+            stats.closed(closing);
+            closeQuietly();
+        }
+    }
+
+    private void received(String message, String newAccessToken) {
+        long now = System.nanoTime();
+        if (newAccessToken != null) {
+            accessToken = newAccessToken;
+            long sent = refreshSentNanos;
+            if (sent != 0) {
+                stats.refreshed(now - sent);
+                refreshSentNanos = 0;
+            }
+            return;
+        }
+        if (message != null && message.startsWith(MESSAGE_PREFIX)) {
+            int end = message.indexOf(' ', MESSAGE_PREFIX.length());
+            try {
+                long sent = Long.parseLong(message.substring(MESSAGE_PREFIX.length(), end < 0 ? message.length() : end));
+                stats.messageReceived(now - sent);
+            } catch (NumberFormatException e) {
+                // Not one of ours
+            }
+        }
+    }
+
+    private void closeQuietly() {
+        try {
+            if (socket != null) {
+                socket.close();
+            }
+        } catch (IOException ignore) {
+        }
+    }
+}
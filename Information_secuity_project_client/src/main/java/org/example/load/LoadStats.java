@@ -0,0 +1,117 @@
+package org.example.load;
+
+import org.example.common.metrics.LatencyHistogram;
+
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * What a load run measured: TLS connect (TCP connect plus handshake), login from the first login
+ * line to the tokens, and the round trip of chat messages and token refreshes. Each is kept for
+ * the whole run, for the current phase and for the current report interval, so a soak shows
+ * drift per interval as well as its totals.
+ */
+public class LoadStats {
+    private final AtomicInteger active = new AtomicInteger();
+    private final Window total = new Window();
+    private volatile Window phase = new Window();
+    private volatile Window interval = new Window();
+
+    void connected(long nanos) {
+        total.connect.record(nanos);
+        phase.connect.record(nanos);
+        interval.connect.record(nanos);
+    }
+
+    void connectFailed() {
+        total.connectFailures.increment();
+        phase.connectFailures.increment();
+        interval.connectFailures.increment();
+    }
+
+    void loggedIn(long nanos) {
+        active.incrementAndGet();
+        total.login.record(nanos);
+        phase.login.record(nanos);
+        interval.login.record(nanos);
+    }
+
+    void loginFailed() {
+        total.loginFailures.increment();
+        phase.loginFailures.increment();
+        interval.loginFailures.increment();
+    }
+
+    void messageSent() {
+        total.sent.increment();
+        phase.sent.increment();
+        interval.sent.increment();
+    }
+
+    void messageReceived(long roundTripNanos) {
+        total.message.record(roundTripNanos);
+        phase.message.record(roundTripNanos);
+        interval.message.record(roundTripNanos);
+    }
+
+    void refreshed(long roundTripNanos) {
+        total.refresh.record(roundTripNanos);
+        phase.refresh.record(roundTripNanos);
+        interval.refresh.record(roundTripNanos);
+    }
+
+    /** @param expected false if the server or the network closed the session */
+    void closed(boolean expected) {
+        active.decrementAndGet();
+        if (!expected) {
+            total.disconnects.increment();
+            phase.disconnects.increment();
+            interval.disconnects.increment();
+        }
+    }
+
+    public int getActive() {
+        return active.get();
+    }
+
+    public long getFailures() {
+        return total.connectFailures.sum() + total.loginFailures.sum() + total.disconnects.sum();
+    }
+
+    /** The interval since the previous call, and starts the next one. */
+    public String nextInterval(double seconds) {
+        Window ended = interval;
+        interval = new Window();
+        return ended.report(active.get(), seconds);
+    }
+
+    /** The phase since the previous call, and starts the next one. */
+    public String nextPhase(double seconds) {
+        Window ended = phase;
+        phase = new Window();
+        return ended.report(active.get(), seconds);
+    }
+
+    public String total(double seconds) {
+        return total.report(active.get(), seconds);
+    }
+
+    private static final class Window {
+        private final LatencyHistogram connect = new LatencyHistogram();
+        private final LatencyHistogram login = new LatencyHistogram();
+        private final LatencyHistogram message = new LatencyHistogram();
+        private final LatencyHistogram refresh = new LatencyHistogram();
+        private final LongAdder connectFailures = new LongAdder();
+        private final LongAdder loginFailures = new LongAdder();
+        private final LongAdder sent = new LongAdder();
+        private final LongAdder disconnects = new LongAdder();
+
+        private String report(int active, double seconds) {
+            long received = message.getCount();
+            return String.format("sessions=%d connectFailures=%d loginFailures=%d disconnects=%d "
+                            + "messages sent=%d received=%d (%.1f/s)%n  connect [%s]%n  login   [%s]%n  message [%s]%n  refresh [%s]",
+                    active, connectFailures.sum(), loginFailures.sum(), disconnects.sum(),
+                    sent.sum(), received, seconds <= 0 ? 0 : received / seconds, connect, login, message, refresh);
+        }
+    }
+}
@@ -0,0 +1,96 @@
+package org.example.protocol;
+
+import org.example.ClientConfig;
+import org.example.common.protocol.BinaryFrame;
+import org.example.common.protocol.BinaryFrameWriter;
+import org.example.common.protocol.FrameCompressor;
+
+import java.io.IOException;
+
+/**
+ * Client side of the binary framing laid out in {@link BinaryFrame}, used after the login when the
+ * server picked a protocol ending in {@link org.example.ClientConfig#BINARY_FRAMING_SUFFIX}.
+ *
+ * <p>The access token is only sent when it differs from the last one sent; otherwise the token
+ * is left empty and the server uses the previous one. With compression negotiated, large frames
+ * are sent compressed by {@link #COMPRESSOR} and compressed server frames are inflated.
+ * One instance per connection, each side used by one thread at a time.
+ */
+public class BinaryCodec {
+    /** Compresses and inflates frames for every connection that negotiated compression. */
+    public static final FrameCompressor COMPRESSOR = new FrameCompressor(ClientConfig.COMPRESSION_LEVEL,
+            ClientConfig.COMPRESSION_THRESHOLD_BYTES, ClientConfig.COMPRESSION_POOL_SIZE);
+
+    private final BinaryFrameWriter writer = new BinaryFrameWriter();
+    private final BinaryFrame parsed = new BinaryFrame();
+    private final boolean compressed;
+    private String sentAccessToken;
+
+    public BinaryCodec() {
+        this(false);
+    }
+
+    /** @param compressed whether the connection negotiated compression */
+    public BinaryCodec(boolean compressed) {
+        this.compressed = compressed;
+    }
+
+    public byte[] encodeMessage(String accessToken, String message) throws IOException {
+        return finish(writer.encodeMessage(System.currentTimeMillis(), tokenToSend(accessToken), message), accessToken);
+    }
+
+    public byte[] encodeJoin(String accessToken, String room) throws IOException {
+        return finish(writer.encodeJoin(System.currentTimeMillis(), tokenToSend(accessToken), room), accessToken);
+    }
+
+    public byte[] encodeLeave(String accessToken, String room) throws IOException {
+        return finish(writer.encodeLeave(System.currentTimeMillis(), tokenToSend(accessToken), room), accessToken);
+    }
+
+    public byte[] encodeRoomMessage(String accessToken, String room, String message) throws IOException {
+        return finish(writer.encodeToRoom(System.currentTimeMillis(), tokenToSend(accessToken), room, message), accessToken);
+    }
+
+    /** @param id optional, echoed in the delivery status */
+    public byte[] encodeDirectMessage(String accessToken, String to, String id, String message) throws IOException {
+        return finish(writer.encodeToUser(System.currentTimeMillis(), tokenToSend(accessToken), to, id, message), accessToken);
+    }
+
+    public byte[] encodeRefresh(String refreshToken) throws IOException {
+        return finish(writer.encodeRefresh(System.currentTimeMillis(), refreshToken), sentAccessToken);
+    }
+
+    /** The answer to a {@link BinaryFrame#PING}; like a refresh, it leaves the last token sent as it is. */
+    public byte[] encodePong() throws IOException {
+        return finish(writer.encodePong(System.currentTimeMillis()), sentAccessToken);
+    }
+
+    /**
+     * Reads a server frame, passed without its length prefix.
+     *
+     * @throws IOException if the frame is truncated, or compressed and does not inflate
+     */
+    public ServerFrame decode(byte[] bytes) throws IOException {
+        if (FrameCompressor.isCompressed(bytes)) {
+            if (!compressed) {
+                throw new IOException("Compressed frame without negotiated compression");
+            }
+            bytes = COMPRESSOR.inflate(bytes);
+        }
+        BinaryFrame frame = parsed.readServerFrame(bytes);
+        String accessToken = frame.getToken().isEmpty() ? null : frame.getToken();
+        return new ServerFrame(frame.getType(), frame.getTimeMillis(), accessToken, frame.getRoom(), frame.getFrom(),
+                frame.getTo(), frame.getStatus(), frame.getId(), frame.getSessions(), frame.getBody());
+    }
+
+    // Empty when the server already has this token from an earlier frame
+    private String tokenToSend(String accessToken) {
+        return accessToken != null && accessToken.equals(sentAccessToken) ? null : accessToken;
+    }
+
+    private byte[] finish(byte[] frame, String accessToken) {
+        // Later frames may refer to the token once this one has been built
+        sentAccessToken = accessToken;
+        return compressed ? COMPRESSOR.compress(frame) : frame;
+    }
+}
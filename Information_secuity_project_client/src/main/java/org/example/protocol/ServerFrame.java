@@ -0,0 +1,43 @@
+package org.example.protocol;
+
+/**
+ * One frame from the server in binary framing. Fields a type does not carry are null.
+ */
+public class ServerFrame {
+    private final byte type;
+    private final long timeMillis;
+    private final String accessToken;
+    private final String room;
+    private final String from;
+    private final String to;
+    private final String status;
+    private final String id;
+    private final int sessions;
+    private final String message;
+
+    ServerFrame(byte type, long timeMillis, String accessToken, String room, String from, String to, String status,
+                String id, int sessions, String message) {
+        this.type = type;
+        this.timeMillis = timeMillis;
+        this.accessToken = accessToken;
+        this.room = room;
+        this.from = from;
+        this.to = to;
+        this.status = status;
+        this.id = id;
+        this.sessions = sessions;
+        this.message = message;
+    }
+
+    public byte getType() { return type; }
+    public long getTimeMillis() { return timeMillis; }
+    /** A renewed access token, on a message frame; null otherwise. */
+    public String getAccessToken() { return accessToken; }
+    public String getRoom() { return room; }
+    public String getFrom() { return from; }
+    public String getTo() { return to; }
+    public String getStatus() { return status; }
+    public String getId() { return id; }
+    public int getSessions() { return sessions; }
+    public String getMessage() { return message; }
+}
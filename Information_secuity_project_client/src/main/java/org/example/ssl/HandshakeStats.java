@@ -0,0 +1,42 @@
+package org.example.ssl;
+
+import java.util.concurrent.atomic.LongAdder;
+import javax.net.ssl.SSLSession;
+
+/**
+ * Counts full and resumed handshakes and their latency. A resumed session keeps the creation
+ * time of the session it was resumed from, for both TLS 1.2 session IDs and TLS 1.3 tickets.
+ */
+public class HandshakeStats {
+    public static final HandshakeStats CLIENT = new HandshakeStats();
+
+    private final LongAdder full = new LongAdder();
+    private final LongAdder resumed = new LongAdder();
+    private final LongAdder fullNanos = new LongAdder();
+    private final LongAdder resumedNanos = new LongAdder();
+
+    public boolean record(SSLSession session, long startedMillis, long elapsedNanos) {
+        boolean wasResumed = isResumed(session, startedMillis);
+        if (wasResumed) {
+            resumed.increment();
+            resumedNanos.add(elapsedNanos);
+        } else {
+            full.increment();
+            fullNanos.add(elapsedNanos);
+        }
+        return wasResumed;
+    }
+
+    public static boolean isResumed(SSLSession session, long startedMillis) {
+        return session.getCreationTime() < startedMillis;
+    }
+
+    @Override
+    public String toString() {
+        long f = full.sum();
+        long r = resumed.sum();
+        return String.format("full=%d (mean %.2fms) resumed=%d (mean %.2fms)",
+                f, f == 0 ? 0 : fullNanos.sum() / (double) f / 1_000_000,
+                r, r == 0 ? 0 : resumedNanos.sum() / (double) r / 1_000_000);
+    }
+}
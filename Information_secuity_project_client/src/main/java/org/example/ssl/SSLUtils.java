@@ -3,11 +3,17 @@ package org.example.ssl;
 import javax.net.ssl.*;
 import java.security.SecureRandom;
 import java.security.PublicKey;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import org.example.ClientConfig;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 public class SSLUtils {
     private static final Logger logger = LoggerFactory.getLogger(SSLUtils.class);
+    private static SSLContext sharedContext;
+
     public static SSLContext createTrustAllSSLContext() throws Exception {
         logger.info("Creating trust all SSL context");
         SSLContext sslContext = SSLContext.getInstance("TLS");
@@ -21,9 +27,85 @@ public class SSLUtils {
         return sslContext;
     }
 
+    /**
+     * Returns one context for the whole process. Sessions are cached per context, so reconnects
+     * through the same context can resume instead of paying for a full handshake.
+     */
+    public static synchronized SSLContext getSharedSSLContext() throws Exception {
+        if (sharedContext == null) {
+            if (System.getProperty("jdk.tls.client.enableSessionTicketExtension") == null) {
+                System.setProperty("jdk.tls.client.enableSessionTicketExtension", "true");
+            }
+            SSLContext sslContext = createTrustAllSSLContext();
+            SSLSessionContext sessions = sslContext.getClientSessionContext();
+            sessions.setSessionCacheSize(ClientConfig.TLS_SESSION_CACHE_SIZE);
+            sessions.setSessionTimeout(ClientConfig.TLS_SESSION_TIMEOUT_SECONDS);
+            sharedContext = sslContext;
+        }
+        return sharedContext;
+    }
+
+    /**
+     * Offers TLS 1.3/1.2 with AES-GCM suites first; the suites the provider lacks are skipped.
+     * The configured login modes are offered as ALPN protocols, each with every configured framing.
+     */
+    public static void configure(SSLSocket socket) {
+        SSLParameters parameters = socket.getSSLParameters();
+        parameters.setProtocols(retain(ClientConfig.TLS_PROTOCOLS, socket.getSupportedProtocols()));
+        parameters.setCipherSuites(retain(ClientConfig.TLS_CIPHER_SUITES, socket.getSupportedCipherSuites()));
+        parameters.setApplicationProtocols(loginProtocols());
+        socket.setSSLParameters(parameters);
+    }
+
+    private static String[] loginProtocols() {
+        List<String> protocols = new ArrayList<>();
+        for (String mode : ClientConfig.LOGIN_MODES) {
+            String protocol;
+            switch (mode.trim().toLowerCase()) {
+                case "ecdh":
+                    protocol = ClientConfig.LOGIN_PROTOCOL_ECDH;
+                    break;
+                case "rsa":
+                    protocol = ClientConfig.LOGIN_PROTOCOL_RSA;
+                    break;
+                default:
+                    logger.warn("Unknown login mode: " + mode);
+                    continue;
+            }
+            for (String framing : ClientConfig.FRAMING_MODES) {
+                switch (framing.trim().toLowerCase()) {
+                    case "binary":
+                        if (ClientConfig.COMPRESSION_ENABLED) {
+                            protocols.add(protocol + ClientConfig.BINARY_FRAMING_SUFFIX + ClientConfig.COMPRESSION_SUFFIX);
+                        }
+                        protocols.add(protocol + ClientConfig.BINARY_FRAMING_SUFFIX);
+                        break;
+                    case "json":
+                        protocols.add(protocol);
+                        break;
+                    default:
+                        logger.warn("Unknown framing: " + framing);
+                        break;
+                }
+            }
+        }
+        return protocols.toArray(new String[0]);
+    }
+
     public static PublicKey extractServerPublicKey(SSLSocket socket) throws Exception {
         SSLSession session = socket.getSession();
         java.security.cert.Certificate[] serverCerts = session.getPeerCertificates();
         return serverCerts[0].getPublicKey();
     }
-} 
\ No newline at end of file
+
+    private static String[] retain(String[] preferred, String[] supported) {
+        List<String> available = Arrays.asList(supported);
+        List<String> result = new ArrayList<>();
+        for (String name : preferred) {
+            if (available.contains(name)) {
+                result.add(name);
+            }
+        }
+        return result.toArray(new String[0]);
+    }
+}
@@ -0,0 +1,73 @@
+package org.example.benchmarks;
+
+import org.example.models.User;
+import org.example.server.client.ClientHandler;
+import org.example.server.client.ClientRegistry;
+import org.example.server.client.OutboundQueue;
+import org.example.server.protocol.Framing;
+import org.example.server.room.RoomRegistry;
+import org.example.utils.TokenUtil;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.OutputStream;
+import java.time.Instant;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * One logged-in JSON session: {@link ClientHandler#handleLine} for a timestamped line and for a
+ * line with an access token the session has already verified, each parsed and echoed back, and
+ * {@link ClientHandler#sendMessage} alone, which encodes a reply and queues it. The outbound queue
+ * writes to a discarding stream on the calling thread.
+ */
+@State(Scope.Thread)
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ClientHandlerBenchmark {
+    private static final String MESSAGE = "Hello from the benchmark, how are you today?";
+
+    private ClientHandler handler;
+    private String timestampedLine;
+    private String tokenLine;
+
+    @Setup
+    public void setup() {
+        ClientRegistry clients = new ClientRegistry();
+        OutboundQueue discard = new OutboundQueue(OutputStream.nullOutputStream(), Runnable::run, () -> { });
+        handler = ClientHandler.loggedIn("alice", () -> { }, discard, clients, new RoomRegistry(), Framing.JSON);
+        clients.register(handler);
+
+        // Refreshed per trial, so the line is never an hour old
+        timestampedLine = "{\"time_stamp\":\"" + Instant.now() + "\",\"message\":\"" + MESSAGE + "\"}";
+        String accessToken = TokenUtil.generateAccessToken(new User(1, "alice", "alice@example.com", ""));
+        tokenLine = "{\"accessToken\":\"" + accessToken + "\",\"message\":\"" + MESSAGE + "\"}";
+        // The first use verifies the token; the benchmark measures the cached check after it
+        handler.handleLine(tokenLine);
+    }
+
+    @Benchmark
+    public boolean handleTimestampedLine() {
+        return handler.handleLine(timestampedLine);
+    }
+
+    @Benchmark
+    public boolean handleTokenLine() {
+        return handler.handleLine(tokenLine);
+    }
+
+    @Benchmark
+    public void sendMessage() {
+        handler.sendMessage(MESSAGE);
+    }
+}
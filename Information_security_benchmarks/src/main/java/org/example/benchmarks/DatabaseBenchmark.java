@@ -0,0 +1,94 @@
+package org.example.benchmarks;
+
+import org.example.models.RefreshTokenRecord;
+import org.example.models.User;
+import org.example.utils.DatabaseConnection;
+import org.example.utils.SchemaBootstrap;
+import org.example.utils.TokenUtil;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The {@link DatabaseConnection} queries on the login and renewal paths, through its connection
+ * pool, against the in-process H2 database (MySQL mode) configured in this module's
+ * {@code application.properties}. Figures include the pool and JDBC overhead but no network, so
+ * they are a floor for the same queries against MySQL. {@code resolveRefreshTokenUncached} drops
+ * the token from the in-memory cache first, so every call runs the join.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class DatabaseBenchmark {
+    private static final String EMAIL = "alice@example.com";
+    private static final String PASSWORD_HASH = "0123456789abcdef0123456789abcdef0123456789abcdef0123456789abcdef";
+
+    private int userId;
+    private String refreshToken;
+
+    @Setup(Level.Trial)
+    public void setup() throws SQLException {
+        if (!SchemaBootstrap.run()) {
+            throw new IllegalStateException("Could not create the schema in the embedded database");
+        }
+        try (Connection connection = DatabaseConnection.getConnection();
+             PreparedStatement statement = connection.prepareStatement(
+                     "INSERT INTO users (name, email, password) VALUES (?, ?, ?) ON DUPLICATE KEY UPDATE password = VALUES(password)")) {
+            statement.setString(1, "alice");
+            statement.setString(2, EMAIL);
+            statement.setString(3, PASSWORD_HASH);
+            statement.executeUpdate();
+        }
+        userId = DatabaseConnection.getUserByEmail(EMAIL).getId();
+        refreshToken = TokenUtil.generateRefreshToken();
+        DatabaseConnection.saveRefreshToken(userId, refreshToken);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        DatabaseConnection.shutdown();
+    }
+
+    @Benchmark
+    public User userByEmail() {
+        return DatabaseConnection.getUserByEmail(EMAIL);
+    }
+
+    @Benchmark
+    public User userByEmailAndPassword() {
+        return DatabaseConnection.getUserByEmailAndPassword(EMAIL, PASSWORD_HASH);
+    }
+
+    @Benchmark
+    public RefreshTokenRecord resolveRefreshTokenUncached() {
+        DatabaseConnection.getRefreshTokenCache().invalidate(refreshToken);
+        return DatabaseConnection.resolveRefreshToken(refreshToken);
+    }
+
+    @Benchmark
+    public boolean refreshTokenValid() {
+        return DatabaseConnection.isRefreshTokenValid(userId, refreshToken);
+    }
+
+    @Benchmark
+    public void saveRefreshToken() {
+        DatabaseConnection.saveRefreshToken(userId, refreshToken);
+    }
+}
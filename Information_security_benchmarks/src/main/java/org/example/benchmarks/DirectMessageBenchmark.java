@@ -0,0 +1,61 @@
+package org.example.benchmarks;
+
+import org.example.models.User;
+import org.example.server.client.ClientHandler;
+import org.example.server.client.ClientRegistry;
+import org.example.server.client.OutboundQueue;
+import org.example.server.protocol.Framing;
+import org.example.server.room.RoomRegistry;
+import org.example.utils.TokenUtil;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.OutputStream;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * One direct message through {@link ClientHandler#handleLine}: decode, token check, registry
+ * lookup, forwarding frame for the recipient and delivery status for the sender. Writers run
+ * inline against a discarding stream, so the score is the server-side cost per message on one
+ * core, apart from TLS and the socket.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class DirectMessageBenchmark {
+    private ClientHandler sender;
+    private String line;
+
+    @Setup
+    public void setup() {
+        ClientRegistry clients = new ClientRegistry();
+        RoomRegistry rooms = new RoomRegistry();
+        sender = loggedIn("alice", clients, rooms);
+        loggedIn("bob", clients, rooms);
+        String accessToken = TokenUtil.generateAccessToken(new User(1, "alice", "alice@example.com", ""));
+        line = "{\"accessToken\":\"" + accessToken + "\",\"to\":\"bob\",\"id\":\"42\",\"message\":\"Are we still on for \\\"lunch\\\" today?\"}";
+    }
+
+    private static ClientHandler loggedIn(String name, ClientRegistry clients, RoomRegistry rooms) {
+        OutboundQueue discard = new OutboundQueue(OutputStream.nullOutputStream(), Runnable::run, () -> { });
+        ClientHandler handler = ClientHandler.loggedIn(name, () -> { }, discard, clients, rooms, Framing.JSON);
+        clients.register(handler);
+        return handler;
+    }
+
+    @Benchmark
+    public boolean directMessage() {
+        return sender.handleLine(line);
+    }
+}
@@ -0,0 +1,96 @@
+package org.example.benchmarks;
+
+import org.example.common.protocol.BinaryFrameWriter;
+import org.example.models.User;
+import org.example.server.client.ClientHandler;
+import org.example.server.client.ClientRegistry;
+import org.example.server.client.OutboundQueue;
+import org.example.server.protocol.BinaryCodec;
+import org.example.server.protocol.ClientMessage;
+import org.example.server.protocol.Framing;
+import org.example.server.protocol.MessageCodec;
+import org.example.server.room.RoomRegistry;
+import org.example.utils.TokenUtil;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.Arrays;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The same direct message in each framing: decoding alone, and the whole server path through
+ * {@link ClientHandler#handleLine} for JSON or {@link ClientHandler#handleFrame} for binary,
+ * which forwards it to another session and returns a delivery status. Reports throughput and the
+ * latency distribution per message. Binary frames refer to the access token sent in an earlier
+ * frame, as a client does once it has sent it.
+ */
+@State(Scope.Thread)
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class FramingBenchmark {
+    @Param({"JSON", "BINARY"})
+    private Framing framing;
+
+    private ClientHandler sender;
+    private MessageCodec jsonDecoder;
+    private BinaryCodec binaryDecoder;
+    private String directLine;
+    private byte[] directFrame;
+
+    @Setup
+    public void setup() throws IOException {
+        ClientRegistry clients = new ClientRegistry();
+        RoomRegistry rooms = new RoomRegistry();
+        sender = loggedIn("alice", clients, rooms, framing);
+        loggedIn("bob", clients, rooms, framing);
+        String accessToken = TokenUtil.generateAccessToken(new User(1, "alice", "alice@example.com", ""));
+        String message = "Are we still on for \"lunch\" today?";
+        directLine = "{\"accessToken\":\"" + accessToken + "\",\"to\":\"bob\",\"id\":\"42\",\"message\":\"Are we still on for \\\"lunch\\\" today?\"}";
+        jsonDecoder = new MessageCodec();
+        binaryDecoder = new BinaryCodec();
+        // The first frame carries the token; later ones refer to it
+        BinaryFrameWriter writer = new BinaryFrameWriter();
+        byte[] first = withoutLength(writer.encodeToUser(System.currentTimeMillis(), accessToken, "bob", "42", message));
+        if (framing == Framing.BINARY) {
+            sender.handleFrame(first);
+        }
+        binaryDecoder.decode(first);
+        directFrame = withoutLength(writer.encodeToUser(System.currentTimeMillis(), null, "bob", "42", message));
+    }
+
+    private static ClientHandler loggedIn(String name, ClientRegistry clients, RoomRegistry rooms, Framing framing) {
+        OutboundQueue discard = new OutboundQueue(OutputStream.nullOutputStream(), Runnable::run, () -> { });
+        ClientHandler handler = ClientHandler.loggedIn(name, () -> { }, discard, clients, rooms, framing);
+        clients.register(handler);
+        return handler;
+    }
+
+    // A client frame as the transport hands it over, without its length prefix
+    private static byte[] withoutLength(byte[] frame) {
+        return Arrays.copyOfRange(frame, 4, frame.length);
+    }
+
+    @Benchmark
+    public ClientMessage decode() throws IOException {
+        return framing == Framing.BINARY ? binaryDecoder.decode(directFrame) : jsonDecoder.decode(directLine);
+    }
+
+    @Benchmark
+    public boolean directMessage() {
+        return framing == Framing.BINARY ? sender.handleFrame(directFrame) : sender.handleLine(directLine);
+    }
+}
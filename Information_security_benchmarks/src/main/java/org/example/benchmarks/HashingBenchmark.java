@@ -0,0 +1,54 @@
+package org.example.benchmarks;
+
+import org.example.utils.SHA256Hasher;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * {@link SHA256Hasher#hashStringSHA256} on a password-sized and a token-sized input, against the
+ * digest alone with a reused {@link MessageDigest}. The difference is the digest lookup and the
+ * hex encoding in {@code bytesToHex}.
+ */
+@State(Scope.Thread)
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class HashingBenchmark {
+    @Param({"16", "256"})
+    private int length;
+
+    private String input;
+    private MessageDigest sha256;
+
+    @Setup
+    public void setup() throws NoSuchAlgorithmException {
+        input = "x".repeat(length);
+        sha256 = MessageDigest.getInstance("SHA-256");
+    }
+
+    @Benchmark
+    public String hashToHex() {
+        return SHA256Hasher.hashStringSHA256(input);
+    }
+
+    @Benchmark
+    public byte[] digestOnly() {
+        return sha256.digest(input.getBytes(StandardCharsets.UTF_8));
+    }
+}
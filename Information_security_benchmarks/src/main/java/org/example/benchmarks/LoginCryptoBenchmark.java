@@ -0,0 +1,107 @@
+package org.example.benchmarks;
+
+import org.example.server.auth.HybridLogin;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import javax.crypto.Cipher;
+import javax.crypto.KeyAgreement;
+import javax.crypto.spec.GCMParameterSpec;
+import javax.crypto.spec.SecretKeySpec;
+import java.nio.charset.StandardCharsets;
+import java.security.KeyFactory;
+import java.security.KeyPair;
+import java.security.KeyPairGenerator;
+import java.security.MessageDigest;
+import java.security.PrivateKey;
+import java.security.SecureRandom;
+import java.security.spec.X509EncodedKeySpec;
+import java.util.Base64;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Server-side credential crypto per login, on one core: the RSA mode decrypts email and password
+ * with the 2048-bit RSA key, the ECDH mode does one X25519 agreement and one AES-GCM decryption.
+ * Scores are logins per second. The keystore key is replaced by a generated key of the same size.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class LoginCryptoBenchmark {
+    private PrivateKey rsaKey;
+    private byte[] encryptedEmail;
+    private byte[] encryptedPassword;
+    private String credentialsLine;
+
+    @Setup
+    public void setup() throws Exception {
+        KeyPairGenerator rsa = KeyPairGenerator.getInstance("RSA");
+        rsa.initialize(2048);
+        KeyPair rsaPair = rsa.generateKeyPair();
+        rsaKey = rsaPair.getPrivate();
+        Cipher cipher = Cipher.getInstance("RSA");
+        cipher.init(Cipher.ENCRYPT_MODE, rsaPair.getPublic());
+        encryptedEmail = cipher.doFinal("alice@example.com".getBytes(StandardCharsets.UTF_8));
+        cipher.init(Cipher.ENCRYPT_MODE, rsaPair.getPublic());
+        encryptedPassword = cipher.doFinal("correct horse battery staple".getBytes(StandardCharsets.UTF_8));
+
+        HybridLogin.initialize(rsaKey);
+        credentialsLine = seal(HybridLogin.get().offer(), "{\"email\":\"alice@example.com\",\"password\":\"correct horse battery staple\"}");
+    }
+
+    @Benchmark
+    public int rsaLogin() throws Exception {
+        // What RsaDecryptor does for each field, without its logging
+        return decrypt(encryptedEmail).length + decrypt(encryptedPassword).length;
+    }
+
+    @Benchmark
+    public int ecdhLogin() throws Exception {
+        String[] credentials = HybridLogin.get().open(credentialsLine);
+        return credentials[0].length() + credentials[1].length();
+    }
+
+    private byte[] decrypt(byte[] encrypted) throws Exception {
+        Cipher cipher = Cipher.getInstance("RSA");
+        cipher.init(Cipher.DECRYPT_MODE, rsaKey);
+        return cipher.doFinal(encrypted);
+    }
+
+    // The client's side of the ECDH login, as in the client's CryptoUtils.sealCredentials
+    private static String seal(String offer, String json) throws Exception {
+        byte[] context = "isp-login-ecdh-v1".getBytes(StandardCharsets.US_ASCII);
+        byte[] serverKey = Base64.getDecoder().decode(offer.substring(HybridLogin.OFFER_PREFIX.length()).split(" ")[0]);
+        KeyPair ephemeral = KeyPairGenerator.getInstance("X25519").generateKeyPair();
+        byte[] clientKey = ephemeral.getPublic().getEncoded();
+        KeyAgreement agreement = KeyAgreement.getInstance("X25519");
+        agreement.init(ephemeral.getPrivate());
+        agreement.doPhase(KeyFactory.getInstance("X25519").generatePublic(new X509EncodedKeySpec(serverKey)), true);
+        MessageDigest sha256 = MessageDigest.getInstance("SHA-256");
+        sha256.update(context);
+        sha256.update(agreement.generateSecret());
+        sha256.update(clientKey);
+        sha256.update(serverKey);
+        byte[] iv = new byte[12];
+        new SecureRandom().nextBytes(iv);
+        Cipher cipher = Cipher.getInstance("AES/GCM/NoPadding");
+        cipher.init(Cipher.ENCRYPT_MODE, new SecretKeySpec(sha256.digest(), "AES"), new GCMParameterSpec(128, iv));
+        cipher.updateAAD(clientKey);
+        cipher.updateAAD(serverKey);
+        byte[] sealed = cipher.doFinal(json.getBytes(StandardCharsets.UTF_8));
+        byte[] ivAndSealed = new byte[iv.length + sealed.length];
+        System.arraycopy(iv, 0, ivAndSealed, 0, iv.length);
+        System.arraycopy(sealed, 0, ivAndSealed, iv.length, sealed.length);
+        return Base64.getEncoder().encodeToString(clientKey) + " " + Base64.getEncoder().encodeToString(ivAndSealed);
+    }
+}
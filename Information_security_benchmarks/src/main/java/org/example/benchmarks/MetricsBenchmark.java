@@ -0,0 +1,71 @@
+package org.example.benchmarks;
+
+import org.example.common.metrics.LatencyHistogram;
+import org.example.server.metrics.MetricsRegistry;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * What the hot paths pay for a measurement: timing a section and recording it into a shared
+ * {@link LatencyHistogram}, on one thread and with four threads recording into the same one.
+ * {@code clock} is the {@link System#nanoTime()} call alone, which every timed section pays
+ * once more and whose cost depends on the machine's clock source. Also the cost of rendering a
+ * scrape, which only the endpoint thread pays.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class MetricsBenchmark {
+    private LatencyHistogram histogram;
+    private MetricsRegistry registry;
+
+    @Setup
+    public void setup() {
+        histogram = new LatencyHistogram();
+        registry = new MetricsRegistry();
+        for (int i = 0; i < 20; i++) {
+            LatencyHistogram series = new LatencyHistogram();
+            for (int j = 0; j < 1000; j++) {
+                series.record(j * 1000L);
+            }
+            registry.histogram("bench_seconds", "Benchmark series.", "series=\"" + i + "\"", series);
+            registry.counter("bench_total", "Benchmark counter.", "series=\"" + i + "\"", series::getCount);
+        }
+    }
+
+    @Benchmark
+    public long clock() {
+        return System.nanoTime();
+    }
+
+    @Benchmark
+    public void recordSince() {
+        histogram.recordSince(System.nanoTime());
+    }
+
+    @Benchmark
+    @Threads(4)
+    public void recordSinceContended() {
+        histogram.recordSince(System.nanoTime());
+    }
+
+    @Benchmark
+    @OutputTimeUnit(TimeUnit.MICROSECONDS)
+    public String scrape() {
+        return registry.scrape();
+    }
+}
@@ -0,0 +1,69 @@
+package org.example.benchmarks;
+
+import org.example.server.client.ClientHandler;
+import org.example.server.client.ClientRegistry;
+import org.example.server.client.OutboundQueue;
+import org.example.server.protocol.BinaryCodec;
+import org.example.server.protocol.EncodedFrame;
+import org.example.server.protocol.MessageCodec;
+import org.example.server.room.RoomRegistry;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.PrintWriter;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * One post to a room: encode once per framing, then queue and write the shared frame for every member.
+ * Writers run inline against a discarding stream, so the score covers the whole delivery path
+ * except the socket. Run with {@code -prof gc}; allocation should not grow with room size.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class RoomFanOutBenchmark {
+    private static final String ROOM = "lobby";
+
+    @Param({"100", "10000"})
+    private int members;
+
+    private RoomRegistry rooms;
+    private MessageCodec codec;
+    private BinaryCodec binary;
+
+    @Setup
+    public void setup() {
+        rooms = new RoomRegistry();
+        ClientRegistry clients = new ClientRegistry();
+        codec = new MessageCodec();
+        binary = new BinaryCodec();
+        OutputStream discard = OutputStream.nullOutputStream();
+        for (int i = 0; i < members; i++) {
+            OutboundQueue outbound = new OutboundQueue(discard, Runnable::run, () -> { });
+            ClientHandler member = new ClientHandler(() -> { }, new PrintWriter(discard), outbound, null,
+                    clients, rooms);
+            rooms.join(ROOM, member);
+        }
+    }
+
+    @Benchmark
+    public int publish() throws IOException {
+        EncodedFrame frame = new EncodedFrame(codec.encodeRoomMessage("2024-05-01T10:15:30.123Z", ROOM, "alice", "Hello everyone in the lobby!"),
+                binary.encodeRoomMessage(1714558530123L, ROOM, "alice", "Hello everyone in the lobby!"));
+        return rooms.publish(ROOM, frame);
+    }
+}
@@ -0,0 +1,66 @@
+package org.example.benchmarks;
+
+import org.example.server.auth.RsaDecryptor;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.security.KeyPair;
+import java.security.KeyPairGenerator;
+import java.security.PublicKey;
+import java.util.Base64;
+import java.util.concurrent.TimeUnit;
+import javax.crypto.Cipher;
+
+/**
+ * Both ends of one field of the rsa login mode with a 2048-bit key: the client's
+ * {@code CryptoUtils.encryptWithPublicKey} and the server's {@link RsaDecryptor#decryptWithPrivateKey},
+ * including its logging calls. The server's end calls the code itself. The client's end is a copy,
+ * as in {@link LoginCryptoBenchmark}, because the client defines some of the same class names as
+ * the server and so is kept off this classpath.
+ */
+@State(Scope.Thread)
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class RsaBenchmark {
+    private static final String EMAIL = "alice@example.com";
+
+    private KeyPair keyPair;
+    private String encryptedEmail;
+
+    @Setup
+    public void setup() throws Exception {
+        KeyPairGenerator generator = KeyPairGenerator.getInstance("RSA");
+        generator.initialize(2048);
+        keyPair = generator.generateKeyPair();
+        encryptedEmail = encryptWithPublicKey(EMAIL, keyPair.getPublic());
+    }
+
+    @Benchmark
+    public String clientEncrypt() throws Exception {
+        return encryptWithPublicKey(EMAIL, keyPair.getPublic());
+    }
+
+    @Benchmark
+    public String serverDecrypt() throws Exception {
+        return RsaDecryptor.decryptWithPrivateKey(encryptedEmail, keyPair.getPrivate(), "email");
+    }
+
+    // As in the client's CryptoUtils.encryptWithPublicKey
+    private static String encryptWithPublicKey(String data, PublicKey publicKey) throws Exception {
+        Cipher cipher = Cipher.getInstance("RSA");
+        cipher.init(Cipher.ENCRYPT_MODE, publicKey);
+        byte[] encryptedBytes = cipher.doFinal(data.getBytes("UTF-8"));
+        return Base64.getEncoder().encodeToString(encryptedBytes);
+    }
+}
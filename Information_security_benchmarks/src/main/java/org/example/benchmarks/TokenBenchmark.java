@@ -0,0 +1,58 @@
+package org.example.benchmarks;
+
+import org.example.models.User;
+import org.example.utils.TokenUtil;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Issuing and fully verifying the HS256 access token: {@link TokenUtil#generateAccessToken} runs
+ * once per login and renewal, {@link TokenUtil#validateAccessToken} whenever a connection sees a
+ * token it has not verified yet. A token that fails its signature check is verified too, as the
+ * exception path of the same call.
+ */
+@State(Scope.Thread)
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class TokenBenchmark {
+    private User user;
+    private String token;
+    private String forged;
+
+    @Setup
+    public void setup() {
+        user = new User(1, "alice", "alice@example.com", "");
+        token = TokenUtil.generateAccessToken(user);
+        // Same header and claims, last signature character changed
+        char last = token.charAt(token.length() - 1);
+        forged = token.substring(0, token.length() - 1) + (last == 'A' ? 'B' : 'A');
+    }
+
+    @Benchmark
+    public String generate() {
+        return TokenUtil.generateAccessToken(user);
+    }
+
+    @Benchmark
+    public boolean validate() {
+        return TokenUtil.validateAccessToken(token);
+    }
+
+    @Benchmark
+    public boolean validateForged() {
+        return TokenUtil.validateAccessToken(forged);
+    }
+}
@@ -0,0 +1,129 @@
+package org.example.common.metrics;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Latency distribution with percentiles, safe to record from any thread without locking.
+ * Values fall into log-linear buckets (16 per power of two), so a reported percentile is
+ * within about 6% of the true value. The server's metrics and the load generator both use it, so
+ * figures from both ends of a load test compare directly.
+ */
+public class LatencyHistogram {
+    private static final int SUB_BUCKET_BITS = 4;
+    private static final int SUB_BUCKETS = 1 << SUB_BUCKET_BITS;
+    private static final int BUCKETS = (64 - SUB_BUCKET_BITS + 1) * SUB_BUCKETS;
+
+    private final AtomicLongArray buckets = new AtomicLongArray(BUCKETS);
+    private final LongAdder totalNanos = new LongAdder();
+    private final AtomicLong maxNanos = new AtomicLong();
+
+    public void record(long nanos) {
+        if (nanos < 0) {
+            nanos = 0;
+        }
+        // The count is the sum of the buckets, so a record touches one counter fewer
+        buckets.incrementAndGet(bucketOf(nanos));
+        totalNanos.add(nanos);
+        long max;
+        while (nanos > (max = maxNanos.get()) && !maxNanos.compareAndSet(max, nanos)) {
+            // retry until we either win or see a larger maximum
+        }
+    }
+
+    public void recordSince(long startNanos) {
+        record(System.nanoTime() - startNanos);
+    }
+
+    public long getCount() {
+        long total = 0;
+        for (int i = 0; i < BUCKETS; i++) {
+            total += buckets.get(i);
+        }
+        return total;
+    }
+
+    public long getTotalNanos() {
+        return totalNanos.sum();
+    }
+
+    public double getMaxMillis() {
+        return maxNanos.get() / 1_000_000.0;
+    }
+
+    /** @param percentile between 0 and 100 */
+    public double getPercentileMillis(double percentile) {
+        long total = getCount();
+        if (total == 0) {
+            return 0;
+        }
+        long rank = Math.max(1, (long) Math.ceil(total * percentile / 100));
+        long seen = 0;
+        for (int i = 0; i < BUCKETS; i++) {
+            seen += buckets.get(i);
+            if (seen >= rank) {
+                return Math.min(upperBoundOf(i), maxNanos.get()) / 1_000_000.0;
+            }
+        }
+        return getMaxMillis();
+    }
+
+    /**
+     * Several percentiles from one pass over the buckets, which is much cheaper than asking for
+     * each in turn when scraping.
+     *
+     * @param percentiles each between 0 and 100, in ascending order
+     */
+    public double[] getPercentilesMillis(double... percentiles) {
+        long[] counts = new long[BUCKETS];
+        long total = 0;
+        for (int i = 0; i < BUCKETS; i++) {
+            counts[i] = buckets.get(i);
+            total += counts[i];
+        }
+        double[] result = new double[percentiles.length];
+        if (total == 0) {
+            return result;
+        }
+        long max = maxNanos.get();
+        int next = 0;
+        long seen = 0;
+        for (int i = 0; i < BUCKETS && next < percentiles.length; i++) {
+            seen += counts[i];
+            while (next < percentiles.length && seen >= Math.max(1, (long) Math.ceil(total * percentiles[next] / 100))) {
+                result[next++] = Math.min(upperBoundOf(i), max) / 1_000_000.0;
+            }
+        }
+        while (next < percentiles.length) {
+            result[next++] = max / 1_000_000.0;
+        }
+        return result;
+    }
+
+    static int bucketOf(long value) {
+        if (value < SUB_BUCKETS) {
+            return (int) value;
+        }
+        int exponent = 63 - Long.numberOfLeadingZeros(value);
+        int sub = (int) (value >>> (exponent - SUB_BUCKET_BITS)) & (SUB_BUCKETS - 1);
+        return (exponent - SUB_BUCKET_BITS + 1) * SUB_BUCKETS + sub;
+    }
+
+    static long upperBoundOf(int bucket) {
+        if (bucket < SUB_BUCKETS) {
+            return bucket;
+        }
+        int exponent = bucket / SUB_BUCKETS + SUB_BUCKET_BITS - 1;
+        long sub = bucket % SUB_BUCKETS;
+        long lower = (SUB_BUCKETS + sub) << (exponent - SUB_BUCKET_BITS);
+        return lower + (1L << (exponent - SUB_BUCKET_BITS)) - 1;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("count=%d p50=%.3fms p90=%.3fms p99=%.3fms p99.9=%.3fms max=%.3fms",
+                getCount(), getPercentileMillis(50), getPercentileMillis(90), getPercentileMillis(99),
+                getPercentileMillis(99.9), getMaxMillis());
+    }
+}
@@ -0,0 +1,243 @@
+package org.example.common.protocol;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * The length-prefixed binary framing, version 1, that either side may pick with ALPN for the
+ * traffic after the login. Every frame is
+ *
+ * <pre>
+ *   int32  length      bytes that follow, at most {@link FrameReader#MAX_FRAME_LENGTH}
+ *   byte   type
+ *   int64  timestamp   epoch milliseconds
+ *   uint16 token length, then the token in UTF-8
+ *   ...    the fields of the type, each a uint16 length and UTF-8 bytes
+ *   ...    the body: UTF-8 up to the end of the frame
+ * </pre>
+ *
+ * All integers are big-endian. The token is the access token on client frames, and an empty token
+ * refers to the last one sent on the connection, so a client only sends it again after renewing
+ * it. On server frames it carries a new access token, or is empty. The fields by type:
+ *
+ * <pre>
+ *   type          client to server         server to client
+ *   MESSAGE  1    body message             body message
+ *   REFRESH  2    body refresh token       -
+ *   JOIN     3    body room                -
+ *   LEAVE    4    body room                -
+ *   ROOM     5    room; body message       room, from; body message
+ *   DIRECT   6    to, id; body message     from, id; body message
+ *   STATUS   7    -                        int32 sessions, to, status, id; no body
+ *   PING     8    -                        no body
+ *   PONG     9    no body                  -
+ * </pre>
+ *
+ * An empty id means none. On connections that negotiated compression, either side may send a
+ * frame compressed by a {@link FrameCompressor}, with {@link FrameCompressor#COMPRESSED} set in
+ * its type; it is inflated before it is read here.
+ *
+ * <p>{@link BinaryFrameWriter} builds frames and an instance of this class reads them, so the
+ * layout of each type is kept in one place for both sides. An instance holds the last frame read
+ * and is reused for the next, so it must be used by one thread at a time.
+ */
+public final class BinaryFrame {
+    public static final byte MESSAGE = 1;
+    public static final byte REFRESH = 2;
+    public static final byte JOIN = 3;
+    public static final byte LEAVE = 4;
+    public static final byte ROOM = 5;
+    public static final byte DIRECT = 6;
+    public static final byte STATUS = 7;
+    /** Sent by the server on a quiet connection; answered with a {@link #PONG} to keep it open. */
+    public static final byte PING = 8;
+    public static final byte PONG = 9;
+
+    /** The most UTF-8 bytes a token or field may hold. */
+    public static final int MAX_FIELD_LENGTH = 0xFFFF;
+
+    private byte type;
+    private long timeMillis;
+    private String token;
+    private String room;
+    private String from;
+    private String to;
+    private String status;
+    private String id;
+    private int sessions;
+    private String body;
+    // The frame being read, only while it is read
+    private byte[] frame;
+    private int position;
+
+    /**
+     * Reads a frame sent by a client, passed without its length prefix. A frame of a type that
+     * clients do not send reads as its header only, so newer clients can add types.
+     *
+     * @return this instance, holding the fields of the frame; the others are null
+     * @throws IOException if the frame is truncated or a length runs past its end
+     */
+    public BinaryFrame readClientFrame(byte[] frame) throws IOException {
+        begin(frame);
+        try {
+            switch (type) {
+                case MESSAGE:
+                case REFRESH:
+                case JOIN:
+                case LEAVE:
+                    body = readBody();
+                    break;
+                case ROOM:
+                    room = readField();
+                    body = readBody();
+                    break;
+                case DIRECT:
+                    to = readField();
+                    id = emptyToNull(readField());
+                    body = readBody();
+                    break;
+                default:
+                    break;
+            }
+            return this;
+        } finally {
+            this.frame = null;
+        }
+    }
+
+    /**
+     * Reads a frame sent by the server, passed without its length prefix. A frame of a type this
+     * side does not know reads as its header and body.
+     *
+     * @return this instance, holding the fields of the frame; the others are null
+     * @throws IOException if the frame is truncated or a length runs past its end
+     */
+    public BinaryFrame readServerFrame(byte[] frame) throws IOException {
+        begin(frame);
+        try {
+            switch (type) {
+                case ROOM:
+                    room = readField();
+                    from = readField();
+                    body = readBody();
+                    break;
+                case DIRECT:
+                    from = readField();
+                    id = emptyToNull(readField());
+                    body = readBody();
+                    break;
+                case STATUS:
+                    sessions = readInt();
+                    to = readField();
+                    status = readField();
+                    id = emptyToNull(readField());
+                    break;
+                case PING:
+                    break;
+                default:
+                    body = readBody();
+                    break;
+            }
+            return this;
+        } finally {
+            this.frame = null;
+        }
+    }
+
+    public byte getType() {
+        return type;
+    }
+
+    public long getTimeMillis() {
+        return timeMillis;
+    }
+
+    /** The token, empty if the frame carries none. */
+    public String getToken() {
+        return token;
+    }
+
+    public String getRoom() {
+        return room;
+    }
+
+    public String getFrom() {
+        return from;
+    }
+
+    public String getTo() {
+        return to;
+    }
+
+    public String getStatus() {
+        return status;
+    }
+
+    /** The id of a direct message or its status, or null if it has none. */
+    public String getId() {
+        return id;
+    }
+
+    public int getSessions() {
+        return sessions;
+    }
+
+    public String getBody() {
+        return body;
+    }
+
+    private void begin(byte[] frame) throws IOException {
+        this.frame = frame;
+        position = 0;
+        room = null;
+        from = null;
+        to = null;
+        status = null;
+        id = null;
+        sessions = 0;
+        body = null;
+        require(1 + 8);
+        type = frame[position++];
+        long value = 0;
+        for (int i = 0; i < 8; i++) {
+            value = (value << 8) | (frame[position++] & 0xFF);
+        }
+        timeMillis = value;
+        token = readField();
+    }
+
+    private int readInt() throws IOException {
+        require(4);
+        int value = 0;
+        for (int i = 0; i < 4; i++) {
+            value = (value << 8) | (frame[position++] & 0xFF);
+        }
+        return value;
+    }
+
+    private String readField() throws IOException {
+        require(2);
+        int length = ((frame[position] & 0xFF) << 8) | (frame[position + 1] & 0xFF);
+        position += 2;
+        require(length);
+        String value = new String(frame, position, length, StandardCharsets.UTF_8);
+        position += length;
+        return value;
+    }
+
+    private String readBody() {
+        String value = new String(frame, position, frame.length - position, StandardCharsets.UTF_8);
+        position = frame.length;
+        return value;
+    }
+
+    private void require(int bytes) throws IOException {
+        if (frame.length - position < bytes) {
+            throw new IOException("Truncated frame");
+        }
+    }
+
+    private static String emptyToNull(String value) {
+        return value.isEmpty() ? null : value;
+    }
+}
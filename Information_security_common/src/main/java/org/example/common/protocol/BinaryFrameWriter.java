@@ -0,0 +1,152 @@
+package org.example.common.protocol;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+/**
+ * Builds the frames of the binary framing laid out in {@link BinaryFrame}, length prefix
+ * included. A null token, field or id is sent empty. The scratch buffer is kept between frames
+ * and only the returned array is allocated per frame, so an instance must be used by one thread
+ * at a time; the returned arrays are not retained.
+ */
+public final class BinaryFrameWriter {
+    // Grown on first use, so a connection that never sends a binary frame holds no buffer
+    private byte[] frame = new byte[0];
+    private int length;
+
+    /** A {@link BinaryFrame#MESSAGE}, either way: the access token, or on a server frame a new one. */
+    public byte[] encodeMessage(long timeMillis, String token, String message) throws IOException {
+        begin(BinaryFrame.MESSAGE, timeMillis, token);
+        putBody(message);
+        return finish();
+    }
+
+    /** A {@link BinaryFrame#REFRESH}, which carries no access token. */
+    public byte[] encodeRefresh(long timeMillis, String refreshToken) throws IOException {
+        begin(BinaryFrame.REFRESH, timeMillis, null);
+        putBody(refreshToken);
+        return finish();
+    }
+
+    public byte[] encodeJoin(long timeMillis, String token, String room) throws IOException {
+        begin(BinaryFrame.JOIN, timeMillis, token);
+        putBody(room);
+        return finish();
+    }
+
+    public byte[] encodeLeave(long timeMillis, String token, String room) throws IOException {
+        begin(BinaryFrame.LEAVE, timeMillis, token);
+        putBody(room);
+        return finish();
+    }
+
+    /** A client's post to a {@link BinaryFrame#ROOM}. */
+    public byte[] encodeToRoom(long timeMillis, String token, String room, String message) throws IOException {
+        begin(BinaryFrame.ROOM, timeMillis, token);
+        putField(room);
+        putBody(message);
+        return finish();
+    }
+
+    /** A client's {@link BinaryFrame#DIRECT} message to another user. */
+    public byte[] encodeToUser(long timeMillis, String token, String to, String id, String message) throws IOException {
+        begin(BinaryFrame.DIRECT, timeMillis, token);
+        putField(to);
+        putField(id);
+        putBody(message);
+        return finish();
+    }
+
+    /** The answer to a {@link BinaryFrame#PING}, which carries no access token. */
+    public byte[] encodePong(long timeMillis) throws IOException {
+        begin(BinaryFrame.PONG, timeMillis, null);
+        return finish();
+    }
+
+    /** The {@link BinaryFrame#ROOM} frame delivered to every member of a room. */
+    public byte[] encodeRoomMessage(long timeMillis, String room, String from, String message) throws IOException {
+        begin(BinaryFrame.ROOM, timeMillis, null);
+        putField(room);
+        putField(from);
+        putBody(message);
+        return finish();
+    }
+
+    /** The {@link BinaryFrame#DIRECT} frame for the recipient of a direct message. */
+    public byte[] encodeDirectMessage(long timeMillis, String from, String id, String message) throws IOException {
+        begin(BinaryFrame.DIRECT, timeMillis, null);
+        putField(from);
+        putField(id);
+        putBody(message);
+        return finish();
+    }
+
+    /** The {@link BinaryFrame#STATUS} frame, the sender's receipt for a direct message. */
+    public byte[] encodeDeliveryStatus(long timeMillis, int sessions, String to, String status, String id) throws IOException {
+        begin(BinaryFrame.STATUS, timeMillis, null);
+        ensure(4);
+        putInt(sessions);
+        putField(to);
+        putField(status);
+        putField(id);
+        return finish();
+    }
+
+    public byte[] encodePing(long timeMillis) throws IOException {
+        begin(BinaryFrame.PING, timeMillis, null);
+        return finish();
+    }
+
+    private void begin(byte type, long timeMillis, String token) throws IOException {
+        length = 4;
+        ensure(1 + 8);
+        frame[length++] = type;
+        for (int shift = 56; shift >= 0; shift -= 8) {
+            frame[length++] = (byte) (timeMillis >>> shift);
+        }
+        putField(token);
+    }
+
+    private void putField(String value) throws IOException {
+        byte[] bytes = value == null ? new byte[0] : value.getBytes(StandardCharsets.UTF_8);
+        if (bytes.length > BinaryFrame.MAX_FIELD_LENGTH) {
+            throw new IOException("Field of " + bytes.length + " bytes does not fit a frame");
+        }
+        ensure(2 + bytes.length);
+        frame[length++] = (byte) (bytes.length >>> 8);
+        frame[length++] = (byte) bytes.length;
+        System.arraycopy(bytes, 0, frame, length, bytes.length);
+        length += bytes.length;
+    }
+
+    private void putBody(String value) throws IOException {
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        ensure(bytes.length);
+        System.arraycopy(bytes, 0, frame, length, bytes.length);
+        length += bytes.length;
+    }
+
+    private void putInt(int value) {
+        frame[length++] = (byte) (value >>> 24);
+        frame[length++] = (byte) (value >>> 16);
+        frame[length++] = (byte) (value >>> 8);
+        frame[length++] = (byte) value;
+    }
+
+    private byte[] finish() {
+        int bodyLength = length - 4;
+        length = 0;
+        putInt(bodyLength);
+        return Arrays.copyOf(frame, bodyLength + 4);
+    }
+
+    private void ensure(int more) throws IOException {
+        if (length + more - 4 > FrameReader.MAX_FRAME_LENGTH) {
+            throw new IOException("Frame exceeds " + FrameReader.MAX_FRAME_LENGTH + " bytes");
+        }
+        if (length + more > frame.length) {
+            frame = Arrays.copyOf(frame, Math.max(256, Integer.highestOneBit(length + more) << 1));
+        }
+    }
+}
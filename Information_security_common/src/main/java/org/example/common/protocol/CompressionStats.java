@@ -0,0 +1,54 @@
+package org.example.common.protocol;
+
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Counts for one {@link FrameCompressor}: frames deflated and the bytes that saved, frames left as
+ * they were because deflate did not make them smaller, frames inflated, and the CPU time spent in
+ * each direction.
+ */
+public class CompressionStats {
+    private final LongAdder deflated = new LongAdder();
+    private final LongAdder bytesBefore = new LongAdder();
+    private final LongAdder bytesAfter = new LongAdder();
+    private final LongAdder incompressible = new LongAdder();
+    private final LongAdder deflateNanos = new LongAdder();
+    private final LongAdder inflated = new LongAdder();
+    private final LongAdder bytesInflated = new LongAdder();
+    private final LongAdder inflateNanos = new LongAdder();
+
+    void deflated(int before, int after, long nanos) {
+        deflated.increment();
+        bytesBefore.add(before);
+        bytesAfter.add(after);
+        deflateNanos.add(nanos);
+    }
+
+    void incompressible(long nanos) {
+        incompressible.increment();
+        deflateNanos.add(nanos);
+    }
+
+    void inflated(int after, long nanos) {
+        inflated.increment();
+        bytesInflated.add(after);
+        inflateNanos.add(nanos);
+    }
+
+    public long getBytesSaved() {
+        return bytesBefore.sum() - bytesAfter.sum();
+    }
+
+    @Override
+    public String toString() {
+        long before = bytesBefore.sum();
+        long frames = deflated.sum() + incompressible.sum();
+        long inflatedFrames = inflated.sum();
+        return String.format("deflated=%d saved=%d bytes (%.1f%%) incompressible=%d deflateCpu=%.1fms (%.1fus/frame) "
+                        + "inflated=%d bytes=%d inflateCpu=%.1fms (%.1fus/frame)",
+                deflated.sum(), getBytesSaved(), before == 0 ? 0 : 100.0 * getBytesSaved() / before, incompressible.sum(),
+                deflateNanos.sum() / 1e6, frames == 0 ? 0 : deflateNanos.sum() / 1e3 / frames,
+                inflatedFrames, bytesInflated.sum(), inflateNanos.sum() / 1e6,
+                inflatedFrames == 0 ? 0 : inflateNanos.sum() / 1e3 / inflatedFrames);
+    }
+}
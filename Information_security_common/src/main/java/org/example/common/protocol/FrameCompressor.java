@@ -0,0 +1,165 @@
+package org.example.common.protocol;
+
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+
+/**
+ * Per-message deflate for binary frames on connections that negotiated it. A frame of at least
+ * {@code thresholdBytes} is compressed after its type byte and marked by setting
+ * {@link #COMPRESSED} in the type; the length prefix stays plain. Every message is compressed on
+ * its own, without context from earlier ones, so a frame compressed once can be fanned out to
+ * every peer that takes compressed frames.
+ *
+ * <p>zlib contexts are pooled and borrowed for one call, so idle connections hold no deflate
+ * memory and nothing but the resulting frame is allocated per message. Safe to use from any thread.
+ */
+public class FrameCompressor {
+    public static final int COMPRESSED = 0x80;
+
+    private final int level;
+    private final int thresholdBytes;
+    private final int poolSize;
+    private final CompressionStats stats = new CompressionStats();
+    private final Queue<Context> pool = new ConcurrentLinkedQueue<>();
+    private final AtomicInteger pooled = new AtomicInteger();
+
+    /**
+     * @param level          the zlib level, 0 to 9
+     * @param thresholdBytes the smallest frame body compressed
+     * @param poolSize       the most idle zlib contexts kept
+     */
+    public FrameCompressor(int level, int thresholdBytes, int poolSize) {
+        this.level = level;
+        this.thresholdBytes = thresholdBytes;
+        this.poolSize = poolSize;
+    }
+
+    /**
+     * Compresses an encoded frame, length prefix included.
+     *
+     * @return the compressed frame, or the same array if it is below the threshold or deflate would
+     * not make it smaller
+     */
+    public byte[] compress(byte[] frame) {
+        if (frame.length - 4 < thresholdBytes) {
+            return frame;
+        }
+        long started = System.nanoTime();
+        Context context = acquire();
+        try {
+            Deflater deflater = context.deflater;
+            deflater.reset();
+            deflater.setInput(frame, 5, frame.length - 5);
+            deflater.finish();
+            // Worth sending only if it ends up smaller, so the output never needs more room than the input
+            byte[] buffer = context.buffer(frame.length);
+            int length = 5;
+            while (!deflater.finished() && length < frame.length) {
+                length += deflater.deflate(buffer, length, frame.length - length);
+            }
+            if (!deflater.finished() || length >= frame.length) {
+                stats.incompressible(System.nanoTime() - started);
+                return frame;
+            }
+            byte[] compressed = Arrays.copyOf(buffer, length);
+            int bodyLength = length - 4;
+            compressed[0] = (byte) (bodyLength >>> 24);
+            compressed[1] = (byte) (bodyLength >>> 16);
+            compressed[2] = (byte) (bodyLength >>> 8);
+            compressed[3] = (byte) bodyLength;
+            compressed[4] = (byte) (frame[4] | COMPRESSED);
+            stats.deflated(frame.length, compressed.length, System.nanoTime() - started);
+            return compressed;
+        } finally {
+            release(context);
+        }
+    }
+
+    public static boolean isCompressed(byte[] frame) {
+        return frame.length > 0 && (frame[0] & COMPRESSED) != 0;
+    }
+
+    /**
+     * Restores a compressed frame received without its length prefix.
+     *
+     * @throws IOException if the data is corrupt or inflates to more than a frame may hold
+     */
+    public byte[] inflate(byte[] frame) throws IOException {
+        long started = System.nanoTime();
+        Context context = acquire();
+        try {
+            Inflater inflater = context.inflater;
+            inflater.reset();
+            inflater.setInput(frame, 1, frame.length - 1);
+            byte[] buffer = context.buffer(Math.min(FrameReader.MAX_FRAME_LENGTH, Math.max(1024, frame.length * 4)));
+            buffer[0] = (byte) (frame[0] & ~COMPRESSED);
+            int length = 1;
+            while (!inflater.finished()) {
+                if (length == buffer.length) {
+                    if (buffer.length >= FrameReader.MAX_FRAME_LENGTH) {
+                        throw new IOException("Compressed frame inflates beyond " + FrameReader.MAX_FRAME_LENGTH + " bytes");
+                    }
+                    buffer = context.buffer(Math.min(FrameReader.MAX_FRAME_LENGTH, buffer.length * 2));
+                }
+                int inflated = inflater.inflate(buffer, length, buffer.length - length);
+                if (inflated == 0 && (inflater.needsInput() || inflater.needsDictionary())) {
+                    throw new IOException("Truncated compressed frame");
+                }
+                length += inflated;
+            }
+            stats.inflated(length, System.nanoTime() - started);
+            return Arrays.copyOf(buffer, length);
+        } catch (DataFormatException e) {
+            throw new IOException("Corrupt compressed frame", e);
+        } finally {
+            release(context);
+        }
+    }
+
+    public CompressionStats getStats() {
+        return stats;
+    }
+
+    private Context acquire() {
+        Context context = pool.poll();
+        if (context == null) {
+            return new Context(level);
+        }
+        pooled.decrementAndGet();
+        return context;
+    }
+
+    private void release(Context context) {
+        if (pooled.incrementAndGet() <= poolSize) {
+            pool.add(context);
+        } else {
+            pooled.decrementAndGet();
+            context.deflater.end();
+            context.inflater.end();
+        }
+    }
+
+    private static final class Context {
+        private final Deflater deflater;
+        private final Inflater inflater = new Inflater(true);
+        private byte[] buffer = new byte[0];
+
+        private Context(int level) {
+            this.deflater = new Deflater(level, true);
+        }
+
+        // Grows the scratch buffer, keeping what it holds
+        private byte[] buffer(int size) {
+            if (buffer.length < size) {
+                buffer = Arrays.copyOf(buffer, size);
+            }
+            return buffer;
+        }
+    }
+}
@@ -0,0 +1,111 @@
+package org.example.common.protocol;
+
+import java.io.Closeable;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+/**
+ * Reads UTF-8 lines and then length-prefixed binary frames from one stream, on either end of a
+ * connection. A plain reader decodes ahead of the line it returns, which would swallow the first
+ * frames after the login lines; this one buffers bytes and only consumes what each call returns.
+ * Lines and frames are all it reads, so it is not a {@link java.io.Reader}.
+ */
+public final class FrameReader implements Closeable {
+    /** The most bytes a frame may hold after its length prefix. */
+    public static final int MAX_FRAME_LENGTH = 64 * 1024;
+
+    private static final int MAX_LINE_LENGTH = 64 * 1024;
+
+    private final InputStream in;
+    private byte[] buffer = new byte[8192];
+    private int position;
+    private int limit;
+
+    public FrameReader(InputStream in) {
+        this.in = in;
+    }
+
+    /** The next line without its terminator, or null at the end of the stream. */
+    public String readLine() throws IOException {
+        int scanned = position;
+        while (true) {
+            for (int i = scanned; i < limit; i++) {
+                if (buffer[i] == '\n') {
+                    int end = i > position && buffer[i - 1] == '\r' ? i - 1 : i;
+                    String line = new String(buffer, position, end - position, StandardCharsets.UTF_8);
+                    position = i + 1;
+                    return line;
+                }
+            }
+            if (limit - position > MAX_LINE_LENGTH) {
+                throw new IOException("Line exceeds " + MAX_LINE_LENGTH + " bytes");
+            }
+            scanned = limit - position;
+            if (!fill(limit - position + 1)) {
+                if (limit == position) {
+                    return null;
+                }
+                String line = new String(buffer, position, limit - position, StandardCharsets.UTF_8);
+                position = limit;
+                return line;
+            }
+            scanned += position;
+        }
+    }
+
+    /**
+     * The next frame without its length prefix, or null if the stream ends between frames.
+     *
+     * @throws IOException if the stream ends inside a frame or the frame is too large
+     */
+    public byte[] readFrame() throws IOException {
+        if (!fill(4)) {
+            if (limit == position) {
+                return null;
+            }
+            throw new EOFException("Stream ended inside a frame");
+        }
+        int length = ((buffer[position] & 0xFF) << 24) | ((buffer[position + 1] & 0xFF) << 16)
+                | ((buffer[position + 2] & 0xFF) << 8) | (buffer[position + 3] & 0xFF);
+        if (length < 0 || length > MAX_FRAME_LENGTH) {
+            throw new IOException("Frame of " + length + " bytes exceeds " + MAX_FRAME_LENGTH);
+        }
+        if (!fill(4 + length)) {
+            throw new EOFException("Stream ended inside a frame");
+        }
+        byte[] frame = Arrays.copyOfRange(buffer, position + 4, position + 4 + length);
+        position += 4 + length;
+        return frame;
+    }
+
+    @Override
+    public void close() throws IOException {
+        in.close();
+    }
+
+    // Buffers at least `bytes` unread bytes; false if the stream ends first
+    private boolean fill(int bytes) throws IOException {
+        if (limit - position >= bytes) {
+            return true;
+        }
+        if (position > 0) {
+            System.arraycopy(buffer, position, buffer, 0, limit - position);
+            limit -= position;
+            position = 0;
+        }
+        if (bytes > buffer.length) {
+            buffer = Arrays.copyOf(buffer, Math.max(bytes, buffer.length * 2));
+        }
+        while (limit < bytes) {
+            int read = in.read(buffer, limit, buffer.length - limit);
+            if (read < 0) {
+                return false;
+            }
+            limit += read;
+        }
+        return true;
+    }
+}
@@ -0,0 +1,167 @@
+package org.example.common.protocol;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.util.Arrays;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+class BinaryFrameTest {
+    private static final long TIME = 1_700_000_000_123L;
+
+    private final BinaryFrameWriter writer = new BinaryFrameWriter();
+    private final BinaryFrame reader = new BinaryFrame();
+
+    @Test
+    void clientFramesReadBackOnTheServer() throws IOException {
+        BinaryFrame frame = reader.readClientFrame(sent(writer.encodeMessage(TIME, "token-1", "hello\nthere")));
+        assertEquals(BinaryFrame.MESSAGE, frame.getType());
+        assertEquals(TIME, frame.getTimeMillis());
+        assertEquals("token-1", frame.getToken());
+        assertEquals("hello\nthere", frame.getBody());
+
+        frame = reader.readClientFrame(sent(writer.encodeJoin(TIME, "token-1", "general")));
+        assertEquals(BinaryFrame.JOIN, frame.getType());
+        assertEquals("general", frame.getBody());
+
+        frame = reader.readClientFrame(sent(writer.encodeLeave(TIME, "token-1", "general")));
+        assertEquals(BinaryFrame.LEAVE, frame.getType());
+        assertEquals("general", frame.getBody());
+
+        frame = reader.readClientFrame(sent(writer.encodeToRoom(TIME, "token-1", "general", "hi all")));
+        assertEquals(BinaryFrame.ROOM, frame.getType());
+        assertEquals("general", frame.getRoom());
+        assertEquals("hi all", frame.getBody());
+
+        frame = reader.readClientFrame(sent(writer.encodeToUser(TIME, "token-1", "bob", "42", "hi bob")));
+        assertEquals(BinaryFrame.DIRECT, frame.getType());
+        assertEquals("bob", frame.getTo());
+        assertEquals("42", frame.getId());
+        assertEquals("hi bob", frame.getBody());
+    }
+
+    @Test
+    void anEmptyTokenRefersToTheLastOneSent() throws IOException {
+        BinaryFrame frame = reader.readClientFrame(sent(writer.encodeToUser(TIME, null, "bob", "42", "again")));
+        assertEquals("", frame.getToken());
+        assertEquals("bob", frame.getTo());
+        assertEquals("again", frame.getBody());
+
+        frame = reader.readClientFrame(sent(writer.encodeRefresh(TIME, "refresh-1")));
+        assertEquals(BinaryFrame.REFRESH, frame.getType());
+        assertEquals("", frame.getToken());
+        assertEquals("refresh-1", frame.getBody());
+
+        frame = reader.readClientFrame(sent(writer.encodePong(TIME)));
+        assertEquals(BinaryFrame.PONG, frame.getType());
+        assertEquals("", frame.getToken());
+        assertNull(frame.getBody());
+    }
+
+    @Test
+    void anEmptyIdReadsAsNone() throws IOException {
+        assertNull(reader.readClientFrame(sent(writer.encodeToUser(TIME, "token-1", "bob", null, "hi"))).getId());
+        assertNull(reader.readServerFrame(sent(writer.encodeDirectMessage(TIME, "alice", "", "hi"))).getId());
+        assertNull(reader.readServerFrame(sent(writer.encodeDeliveryStatus(TIME, 0, "bob", "offline", null))).getId());
+    }
+
+    @Test
+    void serverFramesReadBackOnTheClient() throws IOException {
+        BinaryFrame frame = reader.readServerFrame(sent(writer.encodeRoomMessage(TIME, "general", "alice", "hi all")));
+        assertEquals(BinaryFrame.ROOM, frame.getType());
+        assertEquals("general", frame.getRoom());
+        assertEquals("alice", frame.getFrom());
+        assertEquals("hi all", frame.getBody());
+
+        frame = reader.readServerFrame(sent(writer.encodeDirectMessage(TIME, "alice", "42", "hi bob")));
+        assertEquals(BinaryFrame.DIRECT, frame.getType());
+        assertEquals("alice", frame.getFrom());
+        assertEquals("42", frame.getId());
+        assertEquals("hi bob", frame.getBody());
+
+        frame = reader.readServerFrame(sent(writer.encodeMessage(TIME, "renewed", "Token refreshed")));
+        assertEquals(BinaryFrame.MESSAGE, frame.getType());
+        assertEquals("renewed", frame.getToken());
+        assertEquals("Token refreshed", frame.getBody());
+
+        frame = reader.readServerFrame(sent(writer.encodeMessage(TIME, null, "Joined general")));
+        assertEquals("", frame.getToken());
+        assertEquals("Joined general", frame.getBody());
+
+        frame = reader.readServerFrame(sent(writer.encodePing(TIME)));
+        assertEquals(BinaryFrame.PING, frame.getType());
+        assertEquals(TIME, frame.getTimeMillis());
+        assertNull(frame.getBody());
+    }
+
+    @Test
+    void aDeliveryStatusReadsItsSessionCountBeforeItsFields() throws IOException {
+        // Large enough that every byte of the count is set
+        int sessions = 0x01020304;
+        BinaryFrame frame = reader.readServerFrame(sent(writer.encodeDeliveryStatus(TIME, sessions, "bob", "delivered", "42")));
+        assertEquals(BinaryFrame.STATUS, frame.getType());
+        assertEquals(sessions, frame.getSessions());
+        assertEquals("bob", frame.getTo());
+        assertEquals("delivered", frame.getStatus());
+        assertEquals("42", frame.getId());
+        assertNull(frame.getBody());
+    }
+
+    @Test
+    void aReusedReaderKeepsNothingFromTheLastFrame() throws IOException {
+        reader.readServerFrame(sent(writer.encodeDeliveryStatus(TIME, 3, "bob", "delivered", "42")));
+        BinaryFrame frame = reader.readServerFrame(sent(writer.encodeRoomMessage(TIME, "general", "alice", "hi")));
+        assertNull(frame.getTo());
+        assertNull(frame.getStatus());
+        assertNull(frame.getId());
+        assertEquals(0, frame.getSessions());
+    }
+
+    @Test
+    void theLengthPrefixCountsTheBytesThatFollow() throws IOException {
+        byte[] frame = writer.encodeToUser(TIME, "token-1", "bob", "42", "Are we still on for \"lunch\" today?");
+        int length = ((frame[0] & 0xFF) << 24) | ((frame[1] & 0xFF) << 16) | ((frame[2] & 0xFF) << 8) | (frame[3] & 0xFF);
+        assertEquals(frame.length - 4, length);
+    }
+
+    @Test
+    void aTruncatedFrameIsRejected() throws IOException {
+        byte[] frame = sent(writer.encodeDeliveryStatus(TIME, 1, "bob", "delivered", "42"));
+        assertThrows(IOException.class, () -> reader.readServerFrame(Arrays.copyOf(frame, frame.length - 1)));
+        assertThrows(IOException.class, () -> reader.readServerFrame(Arrays.copyOf(frame, 5)));
+        assertThrows(IOException.class, () -> reader.readClientFrame(new byte[0]));
+    }
+
+    @Test
+    void fieldsAndFramesLargerThanTheLayoutAllowsAreRejected() {
+        String field = "x".repeat(BinaryFrame.MAX_FIELD_LENGTH + 1);
+        assertThrows(IOException.class, () -> writer.encodeToUser(TIME, "token-1", field, null, "hi"));
+        String body = "x".repeat(FrameReader.MAX_FRAME_LENGTH);
+        assertThrows(IOException.class, () -> writer.encodeMessage(TIME, "token-1", body));
+    }
+
+    @Test
+    void aCompressedFrameReadsBackOnceInflated() throws IOException {
+        FrameCompressor compressor = new FrameCompressor(6, 64, 1);
+        String message = "again and again ".repeat(64);
+        byte[] frame = writer.encodeRoomMessage(TIME, "general", "alice", message);
+        byte[] compressed = compressor.compress(frame);
+        assertNotEquals(frame.length, compressed.length);
+
+        byte[] received = sent(compressed);
+        assertEquals(FrameCompressor.COMPRESSED, received[0] & FrameCompressor.COMPRESSED);
+        byte[] inflated = compressor.inflate(received);
+        assertArrayEquals(sent(frame), inflated);
+        assertEquals(message, reader.readServerFrame(inflated).getBody());
+    }
+
+    // The frame as the transport hands it over, without its length prefix
+    private static byte[] sent(byte[] frame) {
+        return Arrays.copyOfRange(frame, 4, frame.length);
+    }
+}
@@ -0,0 +1,24 @@
+package org.example.models;
+
+// A refresh token resolved to its owner and expiry in one lookup
+public class RefreshTokenRecord {
+    private final User user;
+    private final long expiresAtMillis;
+
+    public RefreshTokenRecord(User user, long expiresAtMillis) {
+        this.user = user;
+        this.expiresAtMillis = expiresAtMillis;
+    }
+
+    public User getUser() {
+        return user;
+    }
+
+    public long getExpiresAtMillis() {
+        return expiresAtMillis;
+    }
+
+    public boolean isExpired(long nowMillis) {
+        return nowMillis >= expiresAtMillis;
+    }
+}
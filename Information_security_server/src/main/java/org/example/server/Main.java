@@ -1,13 +1,30 @@
 package org.example.server;
 
+import org.example.server.audit.AuditLog;
+import org.example.server.auth.HybridLogin;
 import org.example.server.client.ClientHandler;
+import org.example.server.client.ClientRegistry;
+import org.example.server.client.SlowConsumerMonitor;
+import org.example.server.metrics.MetricsEndpoint;
+import org.example.server.metrics.MetricsRegistry;
+import org.example.server.nio.NioServer;
+import org.example.server.pipeline.ConnectionPipeline;
+import org.example.server.protocol.BinaryCodec;
+import org.example.server.protocol.EncodedFrame;
+import org.example.server.protocol.MessageCodec;
+import org.example.server.room.RoomRegistry;
+import org.example.server.tls.TlsSettings;
+import org.example.utils.DatabaseConnection;
+import org.example.utils.ExpiredTokenReaper;
+import org.example.utils.SchemaBootstrap;
 
 import javax.net.ssl.*;
 import java.io.FileInputStream;
+import java.io.IOException;
 import java.security.KeyStore;
 import java.security.PrivateKey;
-import java.util.HashMap;
-import java.util.Map;
+import java.time.Instant;
+import java.time.format.DateTimeFormatter;
 import java.util.Scanner;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -28,68 +45,47 @@ public class Main {
 
             // Load private key for decryption
             PrivateKey privateKey = (PrivateKey) keyStore.getKey(ServerConfig.KEY_ALIAS, ServerConfig.KEYSTORE_PASSWORD.toCharArray());
-
+            HybridLogin.initialize(privateKey);
+            // Refresh tokens still waiting to be written are flushed before the JVM exits
+            Runtime.getRuntime().addShutdownHook(new Thread(DatabaseConnection::shutdown, "database-shutdown"));
+            // and so are audit events still waiting in the ring
+            Runtime.getRuntime().addShutdownHook(new Thread(() -> AuditLog.SERVER.close(ServerConfig.AUDIT_CLOSE_TIMEOUT_MS), "audit-shutdown"));
+            SchemaBootstrap.run();
+            new ExpiredTokenReaper().start(ServerConfig.TOKEN_REAPER_INTERVAL_SECONDS);
+
+            TlsSettings.enableSessionTickets();
             SSLContext sslContext = SSLContext.getInstance("TLS");
             sslContext.init(kmf.getKeyManagers(), null, null);
+            TlsSettings.configure(sslContext);
 
-            SSLServerSocketFactory ssf = sslContext.getServerSocketFactory();
-            SSLServerSocket serverSocket = (SSLServerSocket) ssf.createServerSocket(ServerConfig.PORT);
+            ClientRegistry clients = new ClientRegistry();
+            RoomRegistry rooms = new RoomRegistry();
+            SlowConsumerMonitor slowConsumers = new SlowConsumerMonitor(clients);
+            slowConsumers.start(ServerConfig.OUTBOUND_LAG_CHECK_INTERVAL_MS);
+            ServerMetrics.register(MetricsRegistry.SERVER, clients, rooms, slowConsumers);
+            MetricsEndpoint.start(MetricsRegistry.SERVER, ServerConfig.METRICS_HOST, ServerConfig.METRICS_PORT);
 
-            logger.info("TLS Chat server started on port " + ServerConfig.PORT);
+            startConsole(clients, rooms);
 
-            Map<String, ClientHandler> clients = new HashMap<>();
+            if ("nio".equalsIgnoreCase(ServerConfig.SERVER_MODE)) {
+                new NioServer(sslContext, privateKey, clients, rooms, slowConsumers).run();
+                return;
+            }
 
-            new Thread(() -> {
-                //noinspection resource
-                Scanner scanner = new Scanner(System.in);
-                while (true) {
-                    logger.info("\nConnected clients: " + clients.keySet());
-                    logger.info("Enter client name to chat with: ");
-                    String targetClient = scanner.nextLine().trim();
-
-                    ClientHandler target = clients.get(targetClient);
-                    if (target == null) {
-                        logger.info("Client not found.");
-                        continue;
-                    }
+            SSLServerSocketFactory ssf = sslContext.getServerSocketFactory();
+            SSLServerSocket serverSocket = (SSLServerSocket) ssf.createServerSocket(ServerConfig.PORT, ServerConfig.ACCEPT_BACKLOG);
+            serverSocket.setSSLParameters(TlsSettings.parameters(sslContext));
 
-                    logger.info("Chatting with " + targetClient + " (type 'exit' to stop):");
-                    while (true) {
-                        logger.info("You: ");
-                        String msg = scanner.nextLine();
-                        if (msg.equalsIgnoreCase("exit")) break;
-                        target.sendMessage("Server: " + msg);
-                    }
-                }
-            }).start();
+            SessionExecutor sessions = new SessionExecutor("virtual".equalsIgnoreCase(ServerConfig.SERVER_MODE));
+            sessions.startStatsReporter(ServerConfig.STATS_INTERVAL_SECONDS);
+            ConnectionPipeline pipeline = new ConnectionPipeline(privateKey, clients, rooms, sessions, slowConsumers);
+            pipeline.startStatsReporter(ServerConfig.STATS_INTERVAL_SECONDS);
+
+            logger.info("TLS Chat server started on port " + ServerConfig.PORT + " (" + ServerConfig.SERVER_MODE + " mode)");
 
             while (true) {
                 SSLSocket clientSocket = (SSLSocket) serverSocket.accept();
-                clientSocket.addHandshakeCompletedListener(event -> {
-                    logger.info("\n=== [SSL HANDSHAKE COMPLETED - SERVER SIDE] ===");
-                    logger.info("Peer Host     : " + event.getSession().getPeerHost());
-                    logger.info("Protocol      : " + event.getSession().getProtocol());
-                    logger.info("Cipher Suite  : " + event.getCipherSuite());
-                    logger.info("Session ID    : " + bytesToHex(event.getSession().getId()));
-                    logger.info("==============================================\n");
-                });
-
-                clientSocket.startHandshake();
-
-                new Thread(() -> {
-                    try {
-                        ClientHandler handler = new ClientHandler(clientSocket, privateKey, clients);
-                        if (handler.authenticate()) {
-                            clients.put(handler.getName(), handler);
-                            logger.info(handler.getName() + " connected via TLS.");
-                            new Thread(handler).start();
-                        } else {
-                            logger.info("Authentication failed for client.");
-                        }
-                    } catch (Exception e) {
-                        logger.error("Error handling client connection.", e);
-                    }
-                }).start();
+                pipeline.accept(clientSocket);
             }
 
         } catch (Exception e) {
@@ -97,11 +93,57 @@ public class Main {
         }
     }
 
-    private static String bytesToHex(byte[] bytes) {
-        StringBuilder sb = new StringBuilder();
-        for (byte b : bytes) {
-            sb.append(String.format("%02X", b));
-        }
-        return sb.toString();
+    private static void startConsole(ClientRegistry clients, RoomRegistry rooms) {
+        new Thread(() -> {
+            //noinspection resource
+            Scanner scanner = new Scanner(System.in);
+            MessageCodec codec = new MessageCodec();
+            BinaryCodec binary = new BinaryCodec();
+            while (true) {
+                logger.info("\nConnected clients: " + clients.onlineUsers() + ", rooms: " + rooms.getRoomCount());
+                logger.info("Enter client name to chat with, #room to post to a room or * to broadcast: ");
+                String targetClient = scanner.nextLine().trim();
+
+                if (targetClient.equals("*") || targetClient.startsWith("#")) {
+                    String room = targetClient.startsWith("#") ? targetClient.substring(1) : null;
+                    logger.info("Posting to " + (room == null ? "all clients" : "room " + room) + " (type 'exit' to stop):");
+                    while (true) {
+                        logger.info("You: ");
+                        String msg = scanner.nextLine();
+                        if (msg.equalsIgnoreCase("exit")) break;
+                        try {
+                            // Encoded once per framing; every recipient is handed the same frame
+                            Instant now = Instant.now();
+                            String timeStamp = DateTimeFormatter.ISO_INSTANT.format(now);
+                            int delivered = room == null
+                                    ? rooms.broadcast(clients, new EncodedFrame(codec.encodeMessage(timeStamp, "Server: " + msg, null),
+                                            binary.encodeMessage(now.toEpochMilli(), "Server: " + msg, null)))
+                                    : rooms.publish(room, new EncodedFrame(codec.encodeRoomMessage(timeStamp, room, "Server", msg),
+                                            binary.encodeRoomMessage(now.toEpochMilli(), room, "Server", msg)));
+                            logger.info("Delivered to " + delivered + " clients.");
+                        } catch (IOException e) {
+                            logger.error("Could not encode message.", e);
+                        }
+                    }
+                    continue;
+                }
+
+                if (!clients.isOnline(targetClient)) {
+                    logger.info("Client not found.");
+                    continue;
+                }
+
+                logger.info("Chatting with " + targetClient + " (type 'exit' to stop):");
+                while (true) {
+                    logger.info("You: ");
+                    String msg = scanner.nextLine();
+                    if (msg.equalsIgnoreCase("exit")) break;
+                    // Every session of the user, as of now; they may have connected again since
+                    for (ClientHandler target : clients.sessionsOf(targetClient)) {
+                        target.sendMessage("Server: " + msg);
+                    }
+                }
+            }
+        }).start();
     }
 } 
\ No newline at end of file
@@ -6,4 +6,141 @@ public class ServerConfig {
     public static final String KEYSTORE_PASSWORD = "changeit";
     public static final String KEY_ALIAS = "chatserver";
     public static final String INVALID_ACCESS_TOKEN_M_STRING = "Invalid access token";
-} 
\ No newline at end of file
+
+    // Connection handling: "threads" (one platform thread per client), "virtual" (one virtual
+    // thread per client) or "nio" (SSLEngine event loops)
+    public static final String SERVER_MODE = System.getProperty("server.mode", "threads");
+    public static final int STATS_INTERVAL_SECONDS = Integer.getInteger("server.statsIntervalSeconds", 60);
+
+    // Counters and latency histograms are served in the Prometheus text format at
+    // http://host:port/metrics; port 0 turns the endpoint off
+    public static final String METRICS_HOST = System.getProperty("server.metrics.host", "127.0.0.1");
+    public static final int METRICS_PORT = Integer.getInteger("server.metrics.port", 9464);
+    public static final int EVENT_LOOP_THREADS = Integer.getInteger("server.eventLoopThreads", Runtime.getRuntime().availableProcessors());
+    public static final int WORKER_THREADS = Integer.getInteger("server.workerThreads", 2 * Runtime.getRuntime().availableProcessors());
+    public static final int ACCEPT_BACKLOG = Integer.getInteger("server.acceptBacklog", 1024);
+
+    // Connection pipeline for the blocking modes: accept -> handshake -> login
+    public static final int HANDSHAKE_THREADS = Integer.getInteger("server.handshakeThreads", 2 * Runtime.getRuntime().availableProcessors());
+    public static final int HANDSHAKE_QUEUE_DEPTH = Integer.getInteger("server.handshakeQueueDepth", 8192);
+    public static final long HANDSHAKE_TIMEOUT_MS = Long.getLong("server.handshakeTimeoutMs", 10_000);
+    public static final int AUTH_QUEUE_DEPTH = Integer.getInteger("server.authQueueDepth", 4096);
+
+    // Per-connection deadlines run on one hashed timing wheel of wheelSize buckets (rounded to a
+    // power of two) turning every tickMs. In every mode a client must finish its handshake within
+    // handshakeTimeoutMs of being accepted, and its login within authTimeoutMs after that. A
+    // session that sends no request for idleTimeoutMs is closed. A binary-framing session that sends
+    // nothing at all for heartbeatIntervalMs is pinged, and closed as dead after heartbeatTimeoutMs;
+    // JSON clients never answer pings, so they only have the idle timeout. tokenNoticeMs before its
+    // access token expires, a session is told to renew it. 0 turns a session deadline off
+    public static final long TIMER_TICK_MS = Long.getLong("server.timer.tickMs", 100);
+    public static final int TIMER_WHEEL_SIZE = Integer.getInteger("server.timer.wheelSize", 512);
+    public static final long SESSION_AUTH_TIMEOUT_MS = Long.getLong("server.session.authTimeoutMs", 30_000);
+    public static final long SESSION_IDLE_TIMEOUT_MS = Long.getLong("server.session.idleTimeoutMs", 30 * 60_000);
+    public static final long SESSION_HEARTBEAT_INTERVAL_MS = Long.getLong("server.session.heartbeatIntervalMs", 30_000);
+    public static final long SESSION_HEARTBEAT_TIMEOUT_MS = Long.getLong("server.session.heartbeatTimeoutMs", 90_000);
+    public static final long SESSION_TOKEN_NOTICE_MS = Long.getLong("server.session.tokenNoticeMs", 60_000);
+
+    // Credential checks (decrypt, password hash, user lookup, token mint) run on their own pool so
+    // a burst of logins cannot starve chat traffic; logins beyond the depth are turned away at once
+    public static final int LOGIN_THREADS = Integer.getInteger("server.login.threads", Runtime.getRuntime().availableProcessors());
+    public static final int LOGIN_QUEUE_DEPTH = Integer.getInteger("server.login.queueDepth", 64);
+
+    // scrypt cost for password hashes: N = 2^logCost, memory per hash = 128 * blockSize * N bytes
+    // (16 MB by default). Hashes with other parameters, and old SHA-256 hashes, are redone on login
+    public static final int KDF_LOG_COST = Integer.getInteger("server.kdf.logCost", 14);
+    public static final int KDF_BLOCK_SIZE = Integer.getInteger("server.kdf.blockSize", 8);
+    public static final int KDF_PARALLELISM = Integer.getInteger("server.kdf.parallelism", 1);
+
+    // Per-client outbound queue: frames beyond the depth are dropped; pending frames are
+    // coalesced into writes of up to one TLS record (16 KB) or the batch delay, whichever is first
+    public static final int OUTBOUND_QUEUE_DEPTH = Integer.getInteger("server.outbound.queueDepth", 1024);
+    public static final int OUTBOUND_BATCH_BYTES = Integer.getInteger("server.outbound.batchBytes", 16 * 1024);
+    public static final long OUTBOUND_BATCH_DELAY_MICROS = Long.getLong("server.outbound.batchDelayMicros", 1000);
+    public static final long OUTBOUND_CLOSE_TIMEOUT_MS = Long.getLong("server.outbound.closeTimeoutMs", 1000);
+
+    // Budgets for clients that read slower than they are sent to: a queue holds at most queueDepth
+    // frames and maxQueuedBytes bytes, and a queue that is not empty may not take the bytes queued
+    // for all clients past maxTotalBytes. A frame that does not fit is dropped ("drop-new"), makes
+    // room by dropping the oldest ("drop-oldest"), or disconnects the client ("disconnect"). Every
+    // lagCheckIntervalMs, clients whose oldest queued frame or blocked write is older than
+    // lagThresholdMs are reported as lagging, and those past stallTimeoutMs are disconnected
+    public static final long OUTBOUND_MAX_QUEUED_BYTES = Long.getLong("server.outbound.maxQueuedBytes", 1024 * 1024);
+    public static final long OUTBOUND_MAX_TOTAL_BYTES = Long.getLong("server.outbound.maxTotalBytes", 256L * 1024 * 1024);
+    public static final String OUTBOUND_OVERFLOW = System.getProperty("server.outbound.overflow", "drop-new");
+    public static final long OUTBOUND_LAG_CHECK_INTERVAL_MS = Long.getLong("server.outbound.lagCheckIntervalMs", 1000);
+    public static final long OUTBOUND_LAG_THRESHOLD_MS = Long.getLong("server.outbound.lagThresholdMs", 1000);
+    public static final long OUTBOUND_STALL_TIMEOUT_MS = Long.getLong("server.outbound.stallTimeoutMs", 30_000);
+
+    // Rooms: a post is encoded once and the same frame is queued for every member
+    public static final int MAX_ROOMS_PER_CLIENT = Integer.getInteger("server.maxRoomsPerClient", 32);
+
+    // TLS policy: AES-GCM first (AES-NI/CLMUL accelerated), resumption via cache and TLS 1.3 tickets
+    public static final String[] TLS_PROTOCOLS = System.getProperty("server.tls.protocols", "TLSv1.3,TLSv1.2").split(",");
+    public static final String[] TLS_CIPHER_SUITES = System.getProperty("server.tls.cipherSuites",
+            "TLS_AES_128_GCM_SHA256,TLS_AES_256_GCM_SHA384,"
+            + "TLS_ECDHE_ECDSA_WITH_AES_128_GCM_SHA256,TLS_ECDHE_RSA_WITH_AES_128_GCM_SHA256,"
+            + "TLS_ECDHE_ECDSA_WITH_AES_256_GCM_SHA384,TLS_ECDHE_RSA_WITH_AES_256_GCM_SHA384,"
+            + "TLS_CHACHA20_POLY1305_SHA256,TLS_ECDHE_ECDSA_WITH_CHACHA20_POLY1305_SHA256,"
+            + "TLS_ECDHE_RSA_WITH_CHACHA20_POLY1305_SHA256").split(",");
+    public static final int TLS_SESSION_CACHE_SIZE = Integer.getInteger("server.tls.sessionCacheSize", 50_000);
+    public static final int TLS_SESSION_TIMEOUT_SECONDS = Integer.getInteger("server.tls.sessionTimeoutSeconds", 24 * 60 * 60);
+    public static final boolean TLS_SESSION_TICKETS = Boolean.parseBoolean(System.getProperty("server.tls.sessionTickets", "true"));
+
+    // Logged-in sessions, keyed by user name and spread over this many maps (rounded to a power of two)
+    public static final int REGISTRY_SHARDS = Integer.getInteger("server.registry.shards", 64);
+
+    // Login modes offered over ALPN, in preference order: "ecdh" seals both credentials under one
+    // X25519 session key, "rsa" encrypts each field with the server's RSA key. Clients that offer
+    // no ALPN always get "rsa".
+    public static final String[] LOGIN_MODES = System.getProperty("server.login.modes", "ecdh,rsa").split(",");
+
+    // Framings offered over ALPN with each login mode, in preference order: "binary" switches to
+    // length-prefixed frames after the login, "json" keeps newline-delimited JSON. Clients that
+    // offer a login mode without a framing get "json".
+    public static final String[] FRAMING_MODES = System.getProperty("server.framing.modes", "binary,json").split(",");
+
+    // Binary framing is also offered with per-message deflate: frames of at least thresholdBytes are
+    // compressed at the given zlib level when that makes them smaller. Deflaters and inflaters are
+    // pooled, keeping up to poolSize idle ones
+    public static final boolean COMPRESSION_ENABLED = Boolean.parseBoolean(System.getProperty("server.compression.enabled", "true"));
+    public static final int COMPRESSION_THRESHOLD_BYTES = Integer.getInteger("server.compression.thresholdBytes", 1024);
+    public static final int COMPRESSION_LEVEL = Integer.getInteger("server.compression.level", 1);
+    public static final int COMPRESSION_POOL_SIZE = Integer.getInteger("server.compression.poolSize",
+            2 * Runtime.getRuntime().availableProcessors());
+
+    // A properties file with the db.* settings, read instead of the bundled application.properties,
+    // such as the embedded database of the load-test harness
+    public static final String DB_CONFIG = System.getProperty("server.db.config");
+
+    // New refresh tokens are upserted in JDBC batches of up to batchSize, at most flushIntervalMs
+    // after the first one is queued. With durableBeforeAck a login is only answered once its token
+    // is written; otherwise the token is served from memory until then
+    public static final int TOKEN_WRITER_BATCH_SIZE = Integer.getInteger("server.tokenWriter.batchSize", 256);
+    public static final long TOKEN_WRITER_FLUSH_INTERVAL_MS = Long.getLong("server.tokenWriter.flushIntervalMs", 20);
+    public static final int TOKEN_WRITER_QUEUE_DEPTH = Integer.getInteger("server.tokenWriter.queueDepth", 65_536);
+    public static final boolean TOKEN_WRITER_DURABLE_BEFORE_ACK = Boolean.getBoolean("server.tokenWriter.durableBeforeAck");
+    public static final long TOKEN_WRITER_CLOSE_TIMEOUT_MS = Long.getLong("server.tokenWriter.closeTimeoutMs", 10_000);
+
+    // Expired refresh tokens are deleted every intervalSeconds, chunkSize rows per transaction with
+    // pauseMs between chunks, at most maxRowsPerRun rows per run; an interval of 0 turns it off
+    public static final long TOKEN_REAPER_INTERVAL_SECONDS = Long.getLong("server.tokenReaper.intervalSeconds", 300);
+    public static final int TOKEN_REAPER_CHUNK_SIZE = Integer.getInteger("server.tokenReaper.chunkSize", 1000);
+    public static final long TOKEN_REAPER_PAUSE_MS = Long.getLong("server.tokenReaper.pauseMs", 100);
+    public static final long TOKEN_REAPER_MAX_ROWS_PER_RUN = Long.getLong("server.tokenReaper.maxRowsPerRun", 1_000_000);
+
+    // Resolved refresh tokens kept in memory; rotated tokens are invalidated on save
+    public static final long REFRESH_TOKEN_CACHE_TTL_MS = Long.getLong("server.refreshTokenCache.ttlMs", 60_000);
+    public static final int REFRESH_TOKEN_CACHE_MAX_ENTRIES = Integer.getInteger("server.refreshTokenCache.maxEntries", 100_000);
+
+    // Security audit events go through a ring of bufferSize slots (rounded to a power of two) to one
+    // writer thread, which writes up to batchSize at a time and sleeps idleParkMicros when there are
+    // none. When the ring is full, "drop" loses the new event and "block" waits for a free slot.
+    // chatEvents also records every chat message, without its text
+    public static final int AUDIT_BUFFER_SIZE = Integer.getInteger("server.audit.bufferSize", 65_536);
+    public static final String AUDIT_OVERFLOW = System.getProperty("server.audit.overflow", "drop");
+    public static final int AUDIT_BATCH_SIZE = Integer.getInteger("server.audit.batchSize", 256);
+    public static final long AUDIT_IDLE_PARK_MICROS = Long.getLong("server.audit.idleParkMicros", 1000);
+    public static final boolean AUDIT_CHAT_EVENTS = Boolean.getBoolean("server.audit.chatEvents");
+    public static final long AUDIT_CLOSE_TIMEOUT_MS = Long.getLong("server.audit.closeTimeoutMs", 5_000);
+} 
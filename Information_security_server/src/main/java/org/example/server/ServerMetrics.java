@@ -0,0 +1,103 @@
+package org.example.server;
+
+import org.example.server.audit.AuditLog;
+import org.example.server.auth.AuthStats;
+import org.example.server.client.ClientRegistry;
+import org.example.server.client.OutboundStats;
+import org.example.server.client.SlowConsumerMonitor;
+import org.example.server.client.TokenStats;
+import org.example.server.metrics.MetricsRegistry;
+import org.example.server.protocol.BinaryCodec;
+import org.example.server.room.FanOutStats;
+import org.example.server.room.RoomRegistry;
+import org.example.server.timer.TimeoutStats;
+import org.example.server.timer.TimingWheel;
+import org.example.server.tls.HandshakeStats;
+import org.example.utils.ConnectionPool;
+import org.example.utils.DatabaseConnection;
+import org.example.utils.QueryStats;
+
+/**
+ * Registers the server's stats objects under Prometheus names. Everything is read at scrape time,
+ * so registering costs nothing on the paths that record.
+ */
+public class ServerMetrics {
+    private ServerMetrics() {
+    }
+
+    public static void register(MetricsRegistry registry, ClientRegistry clients, RoomRegistry rooms, SlowConsumerMonitor slowConsumers) {
+        registry.histogram("isp_tls_handshake_seconds", "TLS handshake time.", "session=\"full\"", HandshakeStats.SERVER.getFull());
+        registry.histogram("isp_tls_handshake_seconds", "TLS handshake time.", "session=\"resumed\"", HandshakeStats.SERVER.getResumed());
+
+        AuthStats auth = AuthStats.SERVER;
+        registry.histogram("isp_login_seconds", "Login time from admission until the credential check completed.", auth.getTotal());
+        registry.histogram("isp_login_step_seconds", "Time spent in each step of a login.", "step=\"decrypt\"", auth.getDecrypt());
+        registry.histogram("isp_login_step_seconds", "Time spent in each step of a login.", "step=\"lookup\"", auth.getLookup());
+        registry.histogram("isp_login_step_seconds", "Time spent in each step of a login.", "step=\"hash\"", auth.getHash());
+        registry.histogram("isp_login_step_seconds", "Time spent in each step of a login.", "step=\"mint\"", auth.getMint());
+        registry.histogram("isp_login_step_seconds", "Time spent in each step of a login.", "step=\"store\"", auth.getStore());
+        registry.counter("isp_logins_total", "Completed and rejected logins.", "result=\"ok\"", auth::getSucceeded);
+        registry.counter("isp_logins_total", "Completed and rejected logins.", "result=\"failed\"", auth::getFailed);
+        registry.counter("isp_logins_total", "Completed and rejected logins.", "result=\"rejected\"", auth::getRejected);
+        registry.gauge("isp_logins_in_flight", "Logins admitted and not yet completed.", auth::getInFlight);
+
+        for (QueryStats.Query query : QueryStats.Query.values()) {
+            String labels = "query=\"" + query.name().toLowerCase() + "\"";
+            registry.histogram("isp_db_query_seconds", "Database query time, excluding the wait for a pooled connection.", labels,
+                    QueryStats.SERVER.getLatency(query));
+            registry.counter("isp_db_query_failures_total", "Database queries that failed.", labels, () -> QueryStats.SERVER.getFailed(query));
+        }
+        ConnectionPool pool = DatabaseConnection.getPool();
+        if (pool != null) {
+            registry.latency("isp_db_pool_acquire_seconds", "Wait for a pooled database connection.", null, pool.getAcquireWait());
+            registry.gauge("isp_db_pool_connections", "Pooled database connections.", "state=\"active\"", pool::getActive);
+            registry.gauge("isp_db_pool_connections", "Pooled database connections.", "state=\"idle\"", pool::getIdle);
+        }
+
+        TokenStats tokens = TokenStats.SERVER;
+        registry.histogram("isp_token_validation_seconds", "Access token checks on chat messages.", "path=\"cached\"", tokens.getCached());
+        registry.histogram("isp_token_validation_seconds", "Access token checks on chat messages.", "path=\"verified\"", tokens.getVerified());
+        registry.counter("isp_tokens_rejected_total", "Invalid or expired access tokens on chat messages.", tokens::getRejected);
+
+        OutboundStats outbound = OutboundStats.SERVER;
+        registry.histogram("isp_message_parse_to_write_seconds",
+                "Time from a client message starting to be parsed until a frame it caused was written.", outbound.getParseToWrite());
+        registry.gauge("isp_outbound_queue_depth", "Frames waiting in all outbound queues.", outbound::getPending);
+        registry.counter("isp_outbound_frames_total", "Frames queued for clients.", "result=\"queued\"", outbound::getQueued);
+        registry.counter("isp_outbound_frames_total", "Frames queued for clients.", "result=\"written\"", outbound::getFramesWritten);
+        registry.counter("isp_outbound_frames_total", "Frames queued for clients.", "result=\"dropped\"", outbound::getDropped);
+        registry.counter("isp_outbound_frames_total", "Frames queued for clients.", "result=\"evicted\"", outbound::getEvicted);
+        registry.gauge("isp_outbound_queued_bytes", "Bytes waiting in all outbound queues.", outbound::getPendingBytes);
+        registry.counter("isp_slow_consumer_disconnects_total", "Clients disconnected for falling behind.", outbound::getDisconnected);
+        registry.gauge("isp_lagging_sessions", "Sessions whose oldest queued frame or blocked write is past the lag threshold.",
+                slowConsumers::getLagging);
+        registry.durationGauge("isp_outbound_max_lag_seconds", "How far behind the furthest lagging session is.", slowConsumers::getMaxLagNanos);
+        registry.counter("isp_outbound_writes_total", "Socket writes, each carrying one or more frames.", outbound::getWrites);
+        registry.counter("isp_outbound_bytes_total", "Bytes written to clients.", outbound::getBytesWritten);
+        registry.counter("isp_compression_saved_bytes_total", "Bytes saved by compressing frames.", BinaryCodec.COMPRESSOR.getStats()::getBytesSaved);
+
+        registry.gauge("isp_sessions_active", "Logged-in sessions.", clients::getSessionCount);
+        registry.gauge("isp_users_active", "Users with at least one logged-in session.", clients::getUserCount);
+        registry.gauge("isp_rooms", "Open rooms.", rooms::getRoomCount);
+        registry.histogram("isp_room_fanout_seconds", "Time to queue one room post for every member.", FanOutStats.SERVER.getLatency());
+
+        AuditLog audit = AuditLog.SERVER;
+        registry.counter("isp_audit_events_total", "Security audit events.", "result=\"written\"", audit::getWritten);
+        registry.counter("isp_audit_events_total", "Security audit events.", "result=\"lost\"", audit::getLost);
+        registry.gauge("isp_audit_backlog", "Audit events recorded and not yet written.", audit::getBacklog);
+
+        for (TimeoutStats.Reason reason : TimeoutStats.Reason.values()) {
+            registry.counter("isp_connection_timeouts_total", "Connections closed by a deadline.",
+                    "reason=\"" + reason.name().toLowerCase() + "\"", () -> TimeoutStats.SERVER.getTimedOut(reason));
+        }
+        registry.counter("isp_heartbeat_pings_total", "Pings sent to sessions that had gone quiet.", TimeoutStats.SERVER::getPings);
+        registry.counter("isp_token_expiry_notices_total", "Sessions told that their access token is about to expire.",
+                TimeoutStats.SERVER::getTokenNotices);
+        TimingWheel wheel = TimingWheel.SERVER;
+        registry.counter("isp_timer_timeouts_total", "Timeouts on the timing wheel that ran or were cancelled.", "result=\"expired\"",
+                wheel::getExpired);
+        registry.counter("isp_timer_timeouts_total", "Timeouts on the timing wheel that ran or were cancelled.", "result=\"cancelled\"",
+                wheel::getCancelled);
+        registry.gauge("isp_timer_pending", "Timeouts on the timing wheel that have neither run nor been cancelled.", wheel::getPending);
+    }
+}
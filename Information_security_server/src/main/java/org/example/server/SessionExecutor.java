@@ -0,0 +1,111 @@
+package org.example.server;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryMXBean;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Runs each logged-in client session's message loop as its own task, on either platform threads
+ * or virtual threads, and keeps counts that let the two be compared. Logins in progress and each
+ * session's outbound writer run on the same kind of thread via {@link #logins()} and
+ * {@link #writers()}, and are not counted as sessions.
+ *
+ * <p>Virtual threads are multiplexed over the JDK's carrier pool, which can be sized with
+ * {@code -Djdk.virtualThreadScheduler.parallelism}. Use {@code -Djdk.tracePinnedThreads=short}
+ * to report any blocking call that still pins a carrier.
+ */
+public class SessionExecutor implements Executor {
+    private static final Logger logger = LoggerFactory.getLogger(SessionExecutor.class);
+    private static final String CARRIER_THREAD_CLASS = "jdk.internal.misc.CarrierThread";
+    private final ExecutorService delegate;
+    private final ExecutorService logins;
+    private final ExecutorService writers;
+    private final boolean virtual;
+    private final AtomicInteger liveSessions = new AtomicInteger();
+
+    public SessionExecutor(boolean virtual) {
+        ThreadFactory factory = virtual
+                ? Thread.ofVirtual().name("session-", 0).factory()
+                : Thread.ofPlatform().name("session-", 0).factory();
+        this.delegate = Executors.newThreadPerTaskExecutor(factory);
+        this.logins = Executors.newThreadPerTaskExecutor(virtual
+                ? Thread.ofVirtual().name("login-", 0).factory()
+                : Thread.ofPlatform().name("login-", 0).factory());
+        this.writers = Executors.newThreadPerTaskExecutor(virtual
+                ? Thread.ofVirtual().name("writer-", 0).factory()
+                : Thread.ofPlatform().name("writer-", 0).factory());
+        this.virtual = virtual;
+    }
+
+    @Override
+    public void execute(Runnable session) {
+        liveSessions.incrementAndGet();
+        delegate.execute(() -> {
+            try {
+                session.run();
+            } finally {
+                liveSessions.decrementAndGet();
+            }
+        });
+    }
+
+    /** Executor for logins, which block reading the client's credentials. */
+    public Executor logins() {
+        return logins;
+    }
+
+    /** Executor for outbound queue drains; a drain may block on a slow client's socket. */
+    public Executor writers() {
+        return writers;
+    }
+
+    public int getLiveSessions() {
+        return liveSessions.get();
+    }
+
+    public static int getCarrierThreads() {
+        int carriers = 0;
+        for (Thread thread : Thread.getAllStackTraces().keySet()) {
+            if (thread.getClass().getName().equals(CARRIER_THREAD_CLASS)) {
+                carriers++;
+            }
+        }
+        return carriers;
+    }
+
+    public void startStatsReporter(int intervalSeconds) {
+        if (intervalSeconds <= 0) {
+            return;
+        }
+        Executors.newSingleThreadScheduledExecutor(Thread.ofPlatform().daemon().name("session-stats").factory())
+                .scheduleAtFixedRate(this::logStats, intervalSeconds, intervalSeconds, TimeUnit.SECONDS);
+    }
+
+    public void logStats() {
+        int sessions = liveSessions.get();
+        MemoryMXBean memory = ManagementFactory.getMemoryMXBean();
+        long heapUsed = memory.getHeapMemoryUsage().getUsed();
+        long nonHeapUsed = memory.getNonHeapMemoryUsage().getUsed();
+        logger.info("Sessions: {} live on {} threads, {} carrier threads, {} platform threads total, heap {} KB ({} KB/session), non-heap {} KB",
+                sessions,
+                virtual ? "virtual" : "platform",
+                getCarrierThreads(),
+                ManagementFactory.getThreadMXBean().getThreadCount(),
+                heapUsed / 1024,
+                sessions == 0 ? 0 : heapUsed / 1024 / sessions,
+                nonHeapUsed / 1024);
+    }
+
+    public void shutdown() {
+        delegate.shutdown();
+        logins.shutdown();
+        writers.shutdown();
+    }
+}
@@ -0,0 +1,44 @@
+package org.example.server.audit;
+
+/**
+ * What an {@link AuditLog} event records. Events that point at a misbehaving or hostile peer are
+ * written at WARN, the rest at INFO.
+ */
+public enum AuditEventType {
+    HANDSHAKE_COMPLETED(false),
+    HANDSHAKE_FAILED(true),
+    /** Turned away before the login because a stage of the server was full. */
+    CONNECTION_REJECTED(true),
+    LOGIN_SUCCEEDED(false),
+    /** Wrong credentials, or credentials that could not be decrypted. */
+    LOGIN_FAILED(true),
+    /** Turned away because the login pool was full. */
+    LOGIN_REJECTED(true),
+    PASSWORD_UPGRADED(false),
+    SESSION_CLOSED(false),
+    TOKEN_REJECTED(true),
+    TOKEN_REFRESHED(false),
+    REFRESH_REJECTED(true),
+    MESSAGE_EXPIRED(true),
+    MALFORMED_FRAME(true),
+    /** Fell too far behind reading what the server sends, see {@code OutboundQueue}. */
+    SLOW_CONSUMER_DISCONNECTED(true),
+    /** Did not finish the login in time after the handshake. */
+    AUTH_TIMEOUT(true),
+    /** Sent no request for the idle timeout. */
+    IDLE_TIMEOUT(false),
+    /** Sent nothing, not even a pong, for the heartbeat timeout; most likely a dead peer. */
+    HEARTBEAT_TIMEOUT(true),
+    /** A chat message, direct message or room post; only recorded with {@code server.audit.chatEvents}. */
+    CHAT_MESSAGE(false);
+
+    private final boolean warning;
+
+    AuditEventType(boolean warning) {
+        this.warning = warning;
+    }
+
+    public boolean isWarning() {
+        return warning;
+    }
+}
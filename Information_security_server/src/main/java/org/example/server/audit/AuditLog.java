@@ -0,0 +1,218 @@
+package org.example.server.audit;
+
+import org.example.server.ServerConfig;
+
+import java.time.Instant;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Security audit events, written to the security log off the threads that record them. Recording
+ * claims a slot of a preallocated ring with one CAS and stores the event's type, time and two
+ * references; nothing is formatted and nothing is logged on the recording thread. A single writer
+ * thread drains up to {@code batchSize} events at a time, formats each as
+ *
+ * <pre>
+ *   TYPE at=2024-01-01T00:00:00.123Z subject=alice detail="..."
+ * </pre>
+ *
+ * and logs it to the {@code org.example.server.audit} logger, which {@code logback.xml} routes to
+ * the rolling security log. Subject and detail are turned into strings on the writer thread, so
+ * they must not change after being recorded. Line breaks, quotes and backslashes in them are
+ * escaped, so a peer cannot forge log lines.
+ *
+ * <p>When the ring is full, {@link Overflow#DROP} drops the new event and counts it as lost, and
+ * {@link Overflow#BLOCK} makes the recording thread wait for a free slot.
+ */
+public class AuditLog {
+    public static final AuditLog SERVER = new AuditLog(ServerConfig.AUDIT_BUFFER_SIZE, Overflow.fromName(ServerConfig.AUDIT_OVERFLOW),
+            ServerConfig.AUDIT_BATCH_SIZE, ServerConfig.AUDIT_IDLE_PARK_MICROS);
+
+    private static final Logger logger = LoggerFactory.getLogger(AuditLog.class);
+    private static final Logger audit = LoggerFactory.getLogger("org.example.server.audit");
+    // How long a recording thread waits before looking for a free slot again under BLOCK
+    private static final long BLOCKED_PARK_NANOS = TimeUnit.MICROSECONDS.toNanos(50);
+
+    public enum Overflow {
+        DROP, BLOCK;
+
+        public static Overflow fromName(String name) {
+            return valueOf(name.trim().toUpperCase());
+        }
+    }
+
+    private final Slot[] slots;
+    private final int mask;
+    // The sequence stored in each slot once its event is complete; -1 before the first one
+    private final AtomicLongArray published;
+    private final AtomicLong claimed = new AtomicLong();
+    private final AtomicLong consumed = new AtomicLong();
+    private final Overflow overflow;
+    private final int batchSize;
+    private final long idleParkNanos;
+    private final Thread writer;
+    private final StringBuilder line = new StringBuilder(256);
+    private volatile boolean closed;
+
+    private final LongAdder written = new LongAdder();
+    private final LongAdder lost = new LongAdder();
+
+    /** @param capacity rounded up to a power of two */
+    public AuditLog(int capacity, Overflow overflow, int batchSize, long idleParkMicros) {
+        int size = Integer.highestOneBit(Math.max(2, capacity) - 1) << 1;
+        this.slots = new Slot[size];
+        for (int i = 0; i < size; i++) {
+            slots[i] = new Slot();
+        }
+        this.mask = size - 1;
+        this.published = new AtomicLongArray(size);
+        for (int i = 0; i < size; i++) {
+            published.set(i, -1);
+        }
+        this.overflow = overflow;
+        this.batchSize = Math.max(1, batchSize);
+        this.idleParkNanos = TimeUnit.MICROSECONDS.toNanos(Math.max(1, idleParkMicros));
+        this.writer = Thread.ofPlatform().daemon().name("audit-writer").unstarted(this::run);
+        writer.start();
+    }
+
+    /**
+     * Records an event for the writer thread.
+     *
+     * @param subject who or what the event is about, such as a user name or a remote address; may be null
+     * @param detail  what happened; may be null
+     */
+    public void record(AuditEventType type, Object subject, Object detail) {
+        long sequence;
+        while (true) {
+            sequence = claimed.get();
+            if (sequence - consumed.get() >= slots.length) {
+                if (overflow == Overflow.DROP || closed) {
+                    lost.increment();
+                    return;
+                }
+                LockSupport.parkNanos(BLOCKED_PARK_NANOS);
+            } else if (claimed.compareAndSet(sequence, sequence + 1)) {
+                break;
+            }
+        }
+        int index = (int) sequence & mask;
+        Slot slot = slots[index];
+        slot.type = type;
+        slot.timeMillis = System.currentTimeMillis();
+        slot.subject = subject;
+        slot.detail = detail;
+        published.set(index, sequence);
+    }
+
+    public long getWritten() {
+        return written.sum();
+    }
+
+    public long getLost() {
+        return lost.sum();
+    }
+
+    /** Events recorded and not yet written. */
+    public long getBacklog() {
+        return Math.max(0, claimed.get() - consumed.get());
+    }
+
+    /**
+     * Waits up to {@code timeoutMillis} for the writer thread to write what is recorded. Events
+     * recorded after this are counted as lost once the ring is full.
+     */
+    public void close(long timeoutMillis) {
+        closed = true;
+        LockSupport.unpark(writer);
+        try {
+            writer.join(timeoutMillis);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        if (writer.isAlive()) {
+            logger.warn("Audit writer did not finish within {} ms, {} events unwritten", timeoutMillis, getBacklog());
+        }
+    }
+
+    private void run() {
+        long next = consumed.get();
+        while (true) {
+            int drained = 0;
+            while (drained < batchSize) {
+                int index = (int) next & mask;
+                if (published.get(index) != next) {
+                    break;
+                }
+                Slot slot = slots[index];
+                write(slot);
+                slot.subject = null;
+                slot.detail = null;
+                next++;
+                drained++;
+            }
+            if (drained > 0) {
+                consumed.set(next);
+                written.add(drained);
+            } else if (closed && claimed.get() == next) {
+                return;
+            } else {
+                LockSupport.parkNanos(idleParkNanos);
+            }
+        }
+    }
+
+    private void write(Slot slot) {
+        try {
+            line.setLength(0);
+            line.append(slot.type).append(" at=").append(Instant.ofEpochMilli(slot.timeMillis));
+            if (slot.subject != null) {
+                line.append(" subject=");
+                escape(String.valueOf(slot.subject));
+            }
+            if (slot.detail != null) {
+                line.append(" detail=\"");
+                escape(String.valueOf(slot.detail));
+                line.append('"');
+            }
+            if (slot.type.isWarning()) {
+                audit.warn(line.toString());
+            } else {
+                audit.info(line.toString());
+            }
+        } catch (RuntimeException e) {
+            // A subject whose toString throws must not stop the writer
+            logger.error("Could not write audit event {}", slot.type, e);
+        }
+    }
+
+    private void escape(String value) {
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            switch (c) {
+                case '\n' -> line.append("\\n");
+                case '\r' -> line.append("\\r");
+                case '"' -> line.append("\\\"");
+                case '\\' -> line.append("\\\\");
+                default -> line.append(c < ' ' ? ' ' : c);
+            }
+        }
+    }
+
+    @Override
+    public String toString() {
+        return "written=" + written.sum() + " lost=" + lost.sum() + " backlog=" + getBacklog();
+    }
+
+    private static final class Slot {
+        private AuditEventType type;
+        private long timeMillis;
+        private Object subject;
+        private Object detail;
+    }
+}
@@ -0,0 +1,9 @@
+package org.example.server.audit;
+
+/** The detail of a {@link AuditEventType#HANDSHAKE_COMPLETED} event, formatted by the audit writer. */
+public record HandshakeDetail(String protocol, String cipherSuite, boolean resumed) {
+    @Override
+    public String toString() {
+        return protocol + " " + cipherSuite + (resumed ? " resumed" : " full");
+    }
+}
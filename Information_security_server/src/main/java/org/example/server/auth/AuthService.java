@@ -1,51 +1,247 @@
 package org.example.server.auth;
 
+import org.example.common.protocol.FrameReader;
 import org.example.models.User;
+import org.example.server.ServerConfig;
+import org.example.server.audit.AuditEventType;
+import org.example.server.audit.AuditLog;
 import org.example.utils.DatabaseConnection;
-import org.example.utils.SHA256Hasher;
+import org.example.utils.PasswordHasher;
 import org.example.utils.TokenUtil;
 
-import java.io.BufferedReader;
 import java.io.IOException;
 import java.io.PrintWriter;
+import java.security.GeneralSecurityException;
 import java.security.PrivateKey;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+/**
+ * Logins. Once the credentials have been read, a login runs as a chain of asynchronous stages:
+ * decrypt on the login pool, user lookup on a database thread, password check and token mint back
+ * on the login pool, then the reply. The refresh token is queued for a batched write and served
+ * from memory until then, so the client gets its tokens as soon as the password is verified;
+ * with {@link ServerConfig#TOKEN_WRITER_DURABLE_BEFORE_ACK} the reply waits for the write.
+ * No stage holds the connection's thread.
+ */
 public class AuthService {
     private static final Logger logger = LoggerFactory.getLogger(AuthService.class);
-    public static User authenticate(BufferedReader in, PrintWriter out, PrivateKey privateKey) {
-        try {
-            out.println("Enter email:");
-            String encryptedEmail = in.readLine();
-            String email = RsaDecryptor.decryptWithPrivateKey(encryptedEmail, privateKey, "email");
+    public static final String EMAIL_PROMPT = "Enter email:";
+    public static final String PASSWORD_PROMPT = "Enter password:";
+    public static final String BUSY_MESSAGE = "Server busy. Please try again later.";
+    private static final String FAILED_MESSAGE = "Authentication failed. Connection will close.";
 
-            out.println("Enter password:");
-            String encryptedPassword = in.readLine();
-            String password = RsaDecryptor.decryptWithPrivateKey(encryptedPassword, privateKey, "password");
-            String hashedPassword = SHA256Hasher.hashStringSHA256(password);
+    // CPU stages: the password hash is expensive by design and must not take CPU from chat traffic
+    private static final ExecutorService LOGIN_POOL = Executors.newFixedThreadPool(ServerConfig.LOGIN_THREADS,
+            Thread.ofPlatform().daemon().name("login-", 0).factory());
+    // Blocking JDBC calls, including token writes that overflow the writer's queue; the connection
+    // pool bounds how many run at once
+    private static final ExecutorService DATABASE = Executors.newThreadPerTaskExecutor(
+            Thread.ofVirtual().name("login-db-", 0).factory());
+    // Verified when the email is unknown, so that a miss costs as much as a wrong password
+    private static final String UNKNOWN_USER_HASH = PasswordHasher.hash("unknown-user");
 
-            User user = DatabaseConnection.getUserByEmailAndPassword(email, hashedPassword);
-            if (user == null) {
-                out.println("Authentication failed. Connection will close.");
+    public static User authenticate(FrameReader in, PrintWriter out, PrivateKey privateKey, LoginMode mode) {
+        try {
+            if (mode == LoginMode.ECDH) {
+                out.println(HybridLogin.get().offer());
+                String credentials = in.readLine();
+                return credentials == null ? null : authenticateHybrid(credentials, out);
+            }
+            out.println(EMAIL_PROMPT);
+            String encryptedEmail = in.readLine();
+            if (encryptedEmail == null) {
                 return null;
             }
-            // Generate tokens
-            String accessToken = TokenUtil.generateAccessToken(user);
-            String refreshToken = TokenUtil.generateRefreshToken();
-            // Store refresh token in DB
-            DatabaseConnection.saveRefreshToken(user.getId(), refreshToken);
-            // Send tokens to client as JSON
-            String json = String.format("{\"accessToken\":\"%s\",\"refreshToken\":\"%s\"}", accessToken, refreshToken);
-            out.println(json);
-            out.println("Welcome " + user.getName() + "! You are authenticated.");
-            return user;
+
+            out.println(PASSWORD_PROMPT);
+            String encryptedPassword = in.readLine();
+            return encryptedPassword == null ? null : authenticate(encryptedEmail, encryptedPassword, out, privateKey);
         } catch (IOException e) {
-            logger.error("Error during authentication.", e);
-            return null;
-        } catch (Exception e) {
-            logger.error("Error during decryption.", e);
+            // The peer went away, or the login deadline closed the socket
+            logger.debug("Connection closed during authentication: {}", e.getMessage());
             return null;
         }
     }
-}
\ No newline at end of file
+
+    // Completes a login once both encrypted credentials have been read, so that
+    // non-blocking transports can collect the lines themselves.
+    public static User authenticate(String encryptedEmail, String encryptedPassword, PrintWriter out, PrivateKey privateKey) {
+        return authenticateAsync(encryptedEmail, encryptedPassword, out, privateKey).join();
+    }
+
+    // Completes an ECDH-mode login from the client's single credentials line.
+    public static User authenticateHybrid(String credentialsLine, PrintWriter out) {
+        return authenticateHybridAsync(credentialsLine, out).join();
+    }
+
+    /**
+     * Starts an RSA-mode login. The future completes with the user, or with null once the client
+     * has been told that the login failed or the server is busy; it never completes exceptionally.
+     */
+    public static CompletableFuture<User> authenticateAsync(String encryptedEmail, String encryptedPassword, PrintWriter out,
+                                                            PrivateKey privateKey) {
+        return login(out, () -> {
+            try {
+                return new Login(RsaDecryptor.decryptWithPrivateKey(encryptedEmail, privateKey, "email"),
+                        RsaDecryptor.decryptWithPrivateKey(encryptedPassword, privateKey, "password"));
+            } catch (Exception e) {
+                throw new LoginFailure(null, "Could not decrypt credentials: " + e.getMessage());
+            }
+        });
+    }
+
+    /** Starts an ECDH-mode login; completes like {@link #authenticateAsync}. */
+    public static CompletableFuture<User> authenticateHybridAsync(String credentialsLine, PrintWriter out) {
+        return login(out, () -> {
+            try {
+                String[] credentials = HybridLogin.get().open(credentialsLine);
+                return new Login(credentials[0], credentials[1]);
+            } catch (GeneralSecurityException e) {
+                throw new LoginFailure(null, "Could not open hybrid login credentials: " + e.getMessage());
+            }
+        });
+    }
+
+    private static CompletableFuture<User> login(PrintWriter out, Decryption decryption) {
+        if (!AuthStats.SERVER.tryAdmit(ServerConfig.LOGIN_QUEUE_DEPTH)) {
+            AuditLog.SERVER.record(AuditEventType.LOGIN_REJECTED, null, "login pool full");
+            out.println(BUSY_MESSAGE);
+            return CompletableFuture.completedFuture(null);
+        }
+        long started = System.nanoTime();
+        return CompletableFuture
+                .supplyAsync(() -> decrypt(decryption), LOGIN_POOL)
+                .thenApplyAsync(AuthService::lookup, DATABASE)
+                .thenApplyAsync(AuthService::verifyAndMint, LOGIN_POOL)
+                .thenCompose(AuthService::store)
+                .thenApply(login -> reply(login, out))
+                .handle((user, error) -> {
+                    AuthStats.SERVER.completed(started);
+                    if (error == null) {
+                        AuthStats.SERVER.succeeded();
+                        return user;
+                    }
+                    AuthStats.SERVER.failed();
+                    Throwable cause = error instanceof CompletionException && error.getCause() != null ? error.getCause() : error;
+                    if (cause instanceof LoginFailure) {
+                        AuditLog.SERVER.record(AuditEventType.LOGIN_FAILED, ((LoginFailure) cause).subject, cause.getMessage());
+                    } else {
+                        logger.error("Error during authentication.", cause);
+                    }
+                    out.println(FAILED_MESSAGE);
+                    return null;
+                });
+    }
+
+    private static Login decrypt(Decryption decryption) {
+        long started = System.nanoTime();
+        try {
+            return decryption.decrypt();
+        } finally {
+            AuthStats.SERVER.getDecrypt().recordSince(started);
+        }
+    }
+
+    private static Login lookup(Login login) {
+        long started = System.nanoTime();
+        login.user = DatabaseConnection.getUserByEmail(login.email);
+        AuthStats.SERVER.getLookup().recordSince(started);
+        return login;
+    }
+
+    private static Login verifyAndMint(Login login) {
+        long started = System.nanoTime();
+        boolean verified = PasswordHasher.verify(login.password, login.user != null ? login.user.getPassword() : UNKNOWN_USER_HASH);
+        AuthStats.SERVER.getHash().recordSince(started);
+        if (login.user == null || !verified) {
+            throw new LoginFailure(login.email, "wrong email or password");
+        }
+        started = System.nanoTime();
+        login.accessToken = TokenUtil.generateAccessToken(login.user);
+        login.refreshToken = TokenUtil.generateRefreshToken();
+        login.refreshTokenExpiresAt = System.currentTimeMillis() + DatabaseConnection.REFRESH_TOKEN_LIFETIME_MS;
+        AuthStats.SERVER.getMint().recordSince(started);
+        return login;
+    }
+
+    private static CompletableFuture<Login> store(Login login) {
+        long queued = System.nanoTime();
+        CompletableFuture<Void> durable = DatabaseConnection.saveRefreshTokenBehind(login.user, login.refreshToken,
+                login.refreshTokenExpiresAt, DATABASE);
+        durable.whenComplete((ignored, error) -> {
+            AuthStats.SERVER.getStore().recordSince(queued);
+            if (error != null) {
+                logger.error("Could not store refresh token for user {}", login.user.getId(), error);
+            }
+        });
+        if (ServerConfig.TOKEN_WRITER_DURABLE_BEFORE_ACK) {
+            // Back to the login pool: the reply must not run on the token writer's thread
+            return durable.thenApplyAsync(ignored -> login, LOGIN_POOL);
+        }
+        return CompletableFuture.completedFuture(login);
+    }
+
+    private static User reply(Login login, PrintWriter out) {
+        User user = login.user;
+        // Send tokens to client as JSON
+        String json = String.format("{\"accessToken\":\"%s\",\"refreshToken\":\"%s\"}", login.accessToken, login.refreshToken);
+        out.println(json);
+        out.println("Welcome " + user.getName() + "! You are authenticated.");
+        if (PasswordHasher.needsUpgrade(user.getPassword())) {
+            upgradeBehind(user, login.password);
+        }
+        return user;
+    }
+
+    // Replaces an unsalted SHA-256 hash, or one made with an old cost, now that we know the password
+    private static void upgradeBehind(User user, String password) {
+        CompletableFuture.supplyAsync(() -> PasswordHasher.hash(password), LOGIN_POOL)
+                .thenAcceptAsync(hash -> {
+                    DatabaseConnection.updatePasswordHash(user.getId(), hash);
+                    AuthStats.SERVER.upgraded();
+                    AuditLog.SERVER.record(AuditEventType.PASSWORD_UPGRADED, user.getName(), null);
+                }, DATABASE)
+                .exceptionally(e -> {
+                    logger.error("Could not upgrade password hash for user {}", user.getId(), e);
+                    return null;
+                });
+    }
+
+    @FunctionalInterface
+    private interface Decryption {
+        Login decrypt();
+    }
+
+    // State handed from stage to stage; each stage runs after the previous one has finished
+    private static final class Login {
+        final String email;
+        final String password;
+        User user;
+        String accessToken;
+        String refreshToken;
+        long refreshTokenExpiresAt;
+
+        Login(String email, String password) {
+            this.email = email;
+            this.password = password;
+        }
+    }
+
+    // An expected failure: logged briefly and answered with the failure message
+    private static final class LoginFailure extends RuntimeException {
+        private static final long serialVersionUID = 1L;
+
+        // The email the login was for, once it is known
+        private final String subject;
+
+        LoginFailure(String subject, String message) {
+            super(message, null, false, false);
+            this.subject = subject;
+        }
+    }
+}
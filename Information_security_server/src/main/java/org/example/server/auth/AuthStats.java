@@ -0,0 +1,103 @@
+package org.example.server.auth;
+
+import org.example.common.metrics.LatencyHistogram;
+
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Server-wide login counts, the end-to-end latency of a credential check and the latency of each
+ * step: decrypting the credentials, the user lookup, the password hash, minting the tokens and
+ * storing the refresh token, from queueing it until it is durable, which is only part of the total
+ * with durable-before-ack. Also admits logins:
+ * at most a configured number are in flight, the rest are counted as rejected.
+ */
+public class AuthStats {
+    public static final AuthStats SERVER = new AuthStats();
+
+    private final LongAdder succeeded = new LongAdder();
+    private final LongAdder failed = new LongAdder();
+    private final LongAdder rejected = new LongAdder();
+    private final LongAdder upgraded = new LongAdder();
+    private final AtomicInteger inFlight = new AtomicInteger();
+    private final LatencyHistogram total = new LatencyHistogram();
+    private final LatencyHistogram decrypt = new LatencyHistogram();
+    private final LatencyHistogram hash = new LatencyHistogram();
+    private final LatencyHistogram lookup = new LatencyHistogram();
+    private final LatencyHistogram mint = new LatencyHistogram();
+    private final LatencyHistogram store = new LatencyHistogram();
+
+    void succeeded() {
+        succeeded.increment();
+    }
+
+    void failed() {
+        failed.increment();
+    }
+
+    /** @return false, counting a rejection, if {@code limit} logins are already in flight */
+    boolean tryAdmit(int limit) {
+        if (inFlight.incrementAndGet() > limit) {
+            inFlight.decrementAndGet();
+            rejected.increment();
+            return false;
+        }
+        return true;
+    }
+
+    void completed(long startedNanos) {
+        inFlight.decrementAndGet();
+        total.recordSince(startedNanos);
+    }
+
+    void upgraded() {
+        upgraded.increment();
+    }
+
+    public LatencyHistogram getTotal() {
+        return total;
+    }
+
+    public LatencyHistogram getDecrypt() {
+        return decrypt;
+    }
+
+    public LatencyHistogram getHash() {
+        return hash;
+    }
+
+    public LatencyHistogram getLookup() {
+        return lookup;
+    }
+
+    public LatencyHistogram getMint() {
+        return mint;
+    }
+
+    public LatencyHistogram getStore() {
+        return store;
+    }
+
+    public long getSucceeded() {
+        return succeeded.sum();
+    }
+
+    public long getFailed() {
+        return failed.sum();
+    }
+
+    public long getRejected() {
+        return rejected.sum();
+    }
+
+    public int getInFlight() {
+        return inFlight.get();
+    }
+
+    @Override
+    public String toString() {
+        return "inFlight=" + inFlight.get() + " ok=" + succeeded.sum() + " failed=" + failed.sum()
+                + " rejected=" + rejected.sum() + " upgraded=" + upgraded.sum() + " total[" + total + "] decrypt[" + decrypt
+                + "] lookup[" + lookup + "] hash[" + hash + "] mint[" + mint + "] store[" + store + "]";
+    }
+}
@@ -0,0 +1,158 @@
+package org.example.server.auth;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+
+import javax.crypto.Cipher;
+import javax.crypto.KeyAgreement;
+import javax.crypto.spec.GCMParameterSpec;
+import javax.crypto.spec.SecretKeySpec;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.security.GeneralSecurityException;
+import java.security.KeyFactory;
+import java.security.KeyPair;
+import java.security.KeyPairGenerator;
+import java.security.MessageDigest;
+import java.security.PrivateKey;
+import java.security.PublicKey;
+import java.security.Signature;
+import java.security.spec.X509EncodedKeySpec;
+import java.util.Arrays;
+import java.util.Base64;
+
+/**
+ * Server side of the {@link LoginMode#ECDH} login. At startup the server creates an X25519 key
+ * pair and signs its public key once with the RSA key from the keystore. Each login then costs
+ * one X25519 agreement and one AES-GCM decryption instead of two RSA private-key decryptions.
+ *
+ * <p>Wire format, one line each way:
+ * <pre>
+ * server: KEX &lt;server public key&gt; &lt;SHA256withRSA signature of CONTEXT || server public key&gt;
+ * client: &lt;client public key&gt; &lt;12-byte IV || AES-GCM({"email":..,"password":..})&gt;
+ * </pre>
+ * Keys are X.509-encoded and every field is Base64. The AES-256 key is
+ * SHA-256(CONTEXT || shared secret || client public key || server public key), and both public
+ * keys are the GCM associated data, so a credentials line only opens for the key it was made for.
+ */
+public class HybridLogin {
+    public static final String OFFER_PREFIX = "KEX ";
+    private static final byte[] CONTEXT = "isp-login-ecdh-v1".getBytes(StandardCharsets.US_ASCII);
+    private static final int IV_LENGTH = 12;
+    private static final int TAG_BITS = 128;
+    private static final JsonFactory JSON = new JsonFactory();
+
+    private static volatile HybridLogin instance;
+
+    private final KeyPair keyPair;
+    private final byte[] publicKey;
+    private final String offer;
+
+    private HybridLogin(PrivateKey signingKey) throws GeneralSecurityException {
+        this.keyPair = KeyPairGenerator.getInstance("X25519").generateKeyPair();
+        this.publicKey = keyPair.getPublic().getEncoded();
+        Signature signature = Signature.getInstance("SHA256withRSA");
+        signature.initSign(signingKey);
+        signature.update(CONTEXT);
+        signature.update(publicKey);
+        Base64.Encoder base64 = Base64.getEncoder();
+        this.offer = OFFER_PREFIX + base64.encodeToString(publicKey) + " " + base64.encodeToString(signature.sign());
+    }
+
+    /** Creates the server key pair. Call once at startup, before any ECDH login is accepted. */
+    public static synchronized void initialize(PrivateKey signingKey) throws GeneralSecurityException {
+        if (instance == null) {
+            instance = new HybridLogin(signingKey);
+        }
+    }
+
+    public static HybridLogin get() {
+        HybridLogin current = instance;
+        if (current == null) {
+            throw new IllegalStateException("HybridLogin.initialize has not been called");
+        }
+        return current;
+    }
+
+    /** The line sent to a client in place of the first prompt. */
+    public String offer() {
+        return offer;
+    }
+
+    /**
+     * Derives the session key from a client's credentials line and decrypts it.
+     *
+     * @return email and password
+     * @throws GeneralSecurityException if the line is malformed or fails authentication
+     */
+    public String[] open(String line) throws GeneralSecurityException {
+        String[] parts = line == null ? new String[0] : line.trim().split(" ");
+        if (parts.length != 2) {
+            throw new GeneralSecurityException("Malformed credentials line");
+        }
+        byte[] clientKey;
+        byte[] sealed;
+        try {
+            clientKey = Base64.getDecoder().decode(parts[0]);
+            sealed = Base64.getDecoder().decode(parts[1]);
+        } catch (IllegalArgumentException e) {
+            throw new GeneralSecurityException("Malformed credentials line", e);
+        }
+        if (sealed.length <= IV_LENGTH) {
+            throw new GeneralSecurityException("Malformed credentials line");
+        }
+        PublicKey clientPublic = KeyFactory.getInstance("X25519").generatePublic(new X509EncodedKeySpec(clientKey));
+        KeyAgreement agreement = KeyAgreement.getInstance("X25519");
+        agreement.init(keyPair.getPrivate());
+        agreement.doPhase(clientPublic, true);
+        byte[] shared = agreement.generateSecret();
+
+        MessageDigest sha256 = MessageDigest.getInstance("SHA-256");
+        sha256.update(CONTEXT);
+        sha256.update(shared);
+        sha256.update(clientKey);
+        sha256.update(publicKey);
+        byte[] key = sha256.digest();
+        Arrays.fill(shared, (byte) 0);
+
+        Cipher cipher = Cipher.getInstance("AES/GCM/NoPadding");
+        cipher.init(Cipher.DECRYPT_MODE, new SecretKeySpec(key, "AES"), new GCMParameterSpec(TAG_BITS, sealed, 0, IV_LENGTH));
+        Arrays.fill(key, (byte) 0);
+        cipher.updateAAD(clientKey);
+        cipher.updateAAD(publicKey);
+        byte[] plain = cipher.doFinal(sealed, IV_LENGTH, sealed.length - IV_LENGTH);
+        try {
+            return parseCredentials(plain);
+        } finally {
+            Arrays.fill(plain, (byte) 0);
+        }
+    }
+
+    private static String[] parseCredentials(byte[] json) throws GeneralSecurityException {
+        String email = null;
+        String password = null;
+        try (JsonParser parser = JSON.createParser(json)) {
+            if (parser.nextToken() != JsonToken.START_OBJECT) {
+                throw new GeneralSecurityException("Credentials are not a JSON object");
+            }
+            while (parser.nextToken() == JsonToken.FIELD_NAME) {
+                String field = parser.currentName();
+                parser.nextToken();
+                if ("email".equals(field)) {
+                    email = parser.getValueAsString();
+                } else if ("password".equals(field)) {
+                    password = parser.getValueAsString();
+                } else {
+                    parser.skipChildren();
+                }
+            }
+        } catch (IOException e) {
+            throw new GeneralSecurityException("Credentials are not valid JSON", e);
+        }
+        if (email == null || password == null) {
+            throw new GeneralSecurityException("Credentials are incomplete");
+        }
+        return new String[] {email, password};
+    }
+}
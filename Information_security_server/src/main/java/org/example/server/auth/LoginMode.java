@@ -0,0 +1,61 @@
+package org.example.server.auth;
+
+import org.example.server.protocol.Framing;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * How a client sends its credentials, negotiated with TLS ALPN. Clients that offer no
+ * application protocol get {@link #RSA}, so older clients keep working unchanged.
+ */
+public enum LoginMode {
+    /** Email and password each encrypted with the server's RSA key, one prompt per field. */
+    RSA("isp-login-rsa"),
+    /** One X25519 agreement against a signed server key, then both fields in one AES-GCM message. */
+    ECDH("isp-login-ecdh");
+
+    private final String protocol;
+
+    LoginMode(String protocol) {
+        this.protocol = protocol;
+    }
+
+    /** The ALPN protocol name that selects this mode. */
+    public String protocol() {
+        return protocol;
+    }
+
+    /**
+     * Maps the negotiated ALPN protocol (null or empty if none) to a mode. The protocol may carry
+     * a {@link Framing} suffix.
+     */
+    public static LoginMode fromProtocol(String applicationProtocol) {
+        return applicationProtocol != null && applicationProtocol.startsWith(ECDH.protocol) ? ECDH : RSA;
+    }
+
+    /** Parses a configured name such as "ecdh". */
+    public static LoginMode fromName(String name) {
+        return valueOf(name.trim().toUpperCase());
+    }
+
+    /**
+     * The ALPN protocol names for the configured mode names, in the same order, each offered with
+     * every configured framing in turn. With {@code compression}, binary framing is offered with
+     * compressed frames first and then without.
+     */
+    public static String[] protocols(String[] names, String[] framings, boolean compression) {
+        List<String> protocols = new ArrayList<>();
+        for (String name : names) {
+            for (String framingName : framings) {
+                Framing framing = Framing.fromName(framingName);
+                String protocol = fromName(name).protocol + framing.suffix();
+                if (compression && framing == Framing.BINARY) {
+                    protocols.add(protocol + Framing.COMPRESSION_SUFFIX);
+                }
+                protocols.add(protocol);
+            }
+        }
+        return protocols.toArray(new String[0]);
+    }
+}
@@ -1,49 +1,166 @@
 package org.example.server.client;
+import org.example.common.protocol.FrameReader;
 import org.example.models.User;
-import com.fasterxml.jackson.databind.JsonNode;
-import com.fasterxml.jackson.databind.ObjectMapper;
+import org.example.server.ServerConfig;
+import org.example.server.audit.AuditEventType;
+import org.example.server.audit.AuditLog;
 import org.example.server.auth.AuthService;
+import org.example.server.auth.LoginMode;
+import org.example.server.protocol.BinaryCodec;
+import org.example.server.protocol.ClientMessage;
+import org.example.server.protocol.EncodedFrame;
+import org.example.server.protocol.Framing;
+import org.example.server.protocol.MessageCodec;
+import org.example.server.room.RoomRegistry;
+import org.example.server.timer.TimeoutStats;
+import org.example.server.timer.TimingWheel;
 import org.example.utils.TokenUtil;
+import org.example.utils.VerifiedAccessToken;
 
+import javax.net.ssl.SSLSocket;
 import java.io.*;
 import java.net.Socket;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
 import java.security.PrivateKey;
-import java.util.Map;
+import java.util.Set;
 import java.time.Instant;
 import java.time.format.DateTimeFormatter;
 import java.time.Duration;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReentrantLock;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 public class ClientHandler implements Runnable {
     private static final Logger logger = LoggerFactory.getLogger(ClientHandler.class);
-    private final Socket socket;
+    private static final String INVALID_TOKEN_MESSAGE = "Access token expired or invalid. Please renew your token using your refresh token.";
+    private static final String IDLE_TIMEOUT_MESSAGE = "Idle for too long. Connection will be closed.";
+    private static final long IDLE_TIMEOUT_NANOS = TimeUnit.MILLISECONDS.toNanos(ServerConfig.SESSION_IDLE_TIMEOUT_MS);
+    private static final long HEARTBEAT_INTERVAL_NANOS = TimeUnit.MILLISECONDS.toNanos(ServerConfig.SESSION_HEARTBEAT_INTERVAL_MS);
+    private static final long HEARTBEAT_TIMEOUT_NANOS = TimeUnit.MILLISECONDS.toNanos(ServerConfig.SESSION_HEARTBEAT_TIMEOUT_MS);
+    private final Closeable connection;
     private final PrivateKey privateKey;
-    private final Map<String, ClientHandler> clients;
+    private final ClientRegistry clients;
+    private final RoomRegistry rooms;
+    private final Set<String> joinedRooms = ConcurrentHashMap.newKeySet();
+    private volatile boolean closed;
     private String name;
     private PrintWriter out;
-    private BufferedReader in;
+    private FrameReader in;
+    // Last access token verified on this connection; lines are handled one at a time so no locking
+    private VerifiedAccessToken verifiedToken;
+    // When the line or frame being handled started to be parsed; replies to it are timed from here
+    private long receivedNanos;
+    private MessageDigest tokenDigest;
+    private final MessageCodec codec = new MessageCodec();
+    // Used for this client's own frames in binary framing, and for frames fanned out to binary clients
+    private final BinaryCodec binary;
+    private final Framing framing;
+    // Whether binary frames in either direction may be compressed, as negotiated for this connection
+    private final boolean compressed;
+    // Only binary-framing clients answer pings; JSON sessions are left to the idle timeout alone
+    private final boolean heartbeat;
+    // sendMessage is also called from the console thread, so frames are encoded under a lock
+    private final ReentrantLock encodeLock = new ReentrantLock();
+    // Replies after login; `out` is only used for the login prompts and dropped afterwards
+    private final OutboundQueue outbound;
+    // When anything, and when anything but a pong, last arrived, and when the last ping was sent.
+    // Receiving only stores the time; the liveness check on the timing wheel reads it and re-arms
+    // itself for the next deadline, so a busy session schedules nothing per message
+    private volatile long lastReadNanos;
+    private volatile long lastRequestNanos;
+    private volatile long pingSentNanos;
+    private volatile TimingWheel.Timeout livenessCheck;
+    private volatile TimingWheel.Timeout tokenNotice;
 
-    public ClientHandler(Socket socket, PrivateKey privateKey, Map<String, ClientHandler> clients) {
-        this.socket = socket;
+    public ClientHandler(Socket socket, PrivateKey privateKey, ClientRegistry clients, RoomRegistry rooms,
+                         Executor writers) throws IOException {
+        this(socket, new PrintWriter(socket.getOutputStream(), true),
+                new OutboundQueue(socket.getOutputStream(), writers, socket), privateKey, clients, rooms,
+                Framing.fromProtocol(applicationProtocol(socket)), Framing.isCompressed(applicationProtocol(socket)));
+        this.in = new FrameReader(socket.getInputStream());
+    }
+
+    // For transports that deliver lines themselves instead of through a blocking reader.
+    public ClientHandler(Closeable connection, PrintWriter out, OutboundQueue outbound, PrivateKey privateKey,
+                         ClientRegistry clients, RoomRegistry rooms) {
+        this(connection, out, outbound, privateKey, clients, rooms, Framing.JSON);
+    }
+
+    public ClientHandler(Closeable connection, PrintWriter out, OutboundQueue outbound, PrivateKey privateKey,
+                         ClientRegistry clients, RoomRegistry rooms, Framing framing) {
+        this(connection, out, outbound, privateKey, clients, rooms, framing, false);
+    }
+
+    /**
+     * @param framing    how traffic after the login is framed, as negotiated for this connection
+     * @param compressed whether binary frames may be compressed, as negotiated for this connection
+     */
+    public ClientHandler(Closeable connection, PrintWriter out, OutboundQueue outbound, PrivateKey privateKey,
+                         ClientRegistry clients, RoomRegistry rooms, Framing framing, boolean compressed) {
+        this.connection = connection;
+        this.out = out;
+        this.outbound = outbound;
         this.privateKey = privateKey;
         this.clients = clients;
+        this.rooms = rooms;
+        this.framing = framing;
+        this.compressed = compressed;
+        this.heartbeat = framing == Framing.BINARY;
+        this.binary = new BinaryCodec(compressed);
+    }
+
+    /**
+     * A handler for a session that is already logged in as {@code name}, for callers that drive a
+     * session without a login exchange, such as tests and benchmarks. Like a handler after a
+     * successful login, it has no login writer; it is not registered with {@code clients}.
+     */
+    public static ClientHandler loggedIn(String name, Closeable connection, OutboundQueue outbound,
+                                         ClientRegistry clients, RoomRegistry rooms, Framing framing) {
+        ClientHandler handler = new ClientHandler(connection, null, outbound, null, clients, rooms, framing);
+        handler.loggedInAs(name);
+        return handler;
+    }
+
+    private static String applicationProtocol(Socket socket) {
+        return socket instanceof SSLSocket ssl ? ssl.getApplicationProtocol() : null;
     }
 
     public String getName() {
         return name;
     }
 
+    OutboundQueue getOutbound() {
+        return outbound;
+    }
+
+    // The login mode was negotiated with ALPN during the handshake, which has completed by now
     public boolean authenticate() {
+        LoginMode mode = connection instanceof SSLSocket socket
+                ? LoginMode.fromProtocol(socket.getApplicationProtocol()) : LoginMode.RSA;
+        return completeAuthentication(AuthService.authenticate(in, out, privateKey, mode));
+    }
+
+    /** Starts a login from credentials read by the transport; completes with false if it failed. */
+    public CompletableFuture<Boolean> authenticateAsync(String encryptedEmail, String encryptedPassword) {
+        return AuthService.authenticateAsync(encryptedEmail, encryptedPassword, out, privateKey).thenApply(this::completeAuthentication);
+    }
+
+    public CompletableFuture<Boolean> authenticateHybridAsync(String credentialsLine) {
+        return AuthService.authenticateHybridAsync(credentialsLine, out).thenApply(this::completeAuthentication);
+    }
+
+    private boolean completeAuthentication(User user) {
         try {
-            in = new BufferedReader(new InputStreamReader(socket.getInputStream()));
-            out = new PrintWriter(socket.getOutputStream(), true);
-            User user = AuthService.authenticate(in, out, privateKey);
             if (user == null) {
-                socket.close();
+                connection.close();
                 return false;
             }
-            this.name = user.getName();
+            loggedInAs(user.getName());
             return true;
         } catch (IOException e) {
             logger.error("Error during authentication.", e);
@@ -51,99 +168,457 @@ public class ClientHandler implements Runnable {
         }
     }
 
+    private void loggedInAs(String name) {
+        this.name = name;
+        outbound.setOwner(name);
+        // Its buffers would otherwise stay with the connection for its whole life
+        this.out = null;
+    }
+
+    /**
+     * Arms the idle timeout, the heartbeat on binary-framing sessions and the token expiry notice
+     * on the shared {@link TimingWheel}; called once the session is registered.
+     */
+    public void startTimers() {
+        long now = System.nanoTime();
+        lastReadNanos = now;
+        lastRequestNanos = now;
+        armLivenessCheck(now);
+        // The token was minted moments ago by the login
+        scheduleTokenNotice(System.currentTimeMillis() + TokenUtil.ACCESS_TOKEN_VALIDITY);
+    }
+
     public void sendMessage(String msg) {
-        if (out != null) {
-            String json = String.format("{\"time_stamp\":\"%s\",\"message\":\"%s\"}",
-                DateTimeFormatter.ISO_INSTANT.format(Instant.now()), msg.replace("\"", "\\\""));
-            out.println(json);
-        }
+        writeFrame(msg, null, System.nanoTime());
+    }
+
+    // A reply to the line or frame being handled, on the thread handling it
+    private void reply(String msg) {
+        writeFrame(msg, null, receivedNanos);
+    }
+
+    /**
+     * Queues a frame that was encoded once for many recipients, in this client's framing and
+     * compressed if this connection negotiated it.
+     *
+     * @return false if it was dropped because this client's queue is full or closed
+     */
+    public boolean deliver(EncodedFrame frame) {
+        return outbound.offer(frame.forConnection(framing, compressed), frame.getOriginNanos());
     }
     public void sendRefreshToken(String msg, String refreshToken) {
-        if (out != null) {
-            // Generate new access token from refresh token
-            String newAccessToken = TokenUtil.generateNewAccessTokenFromRefreshToken(refreshToken);
-            if (newAccessToken != null) {
-                String json = String.format("{\"time_stamp\":\"%s\",\"message\":\"%s\",\"accessToken\":\"%s\"}",
-                    DateTimeFormatter.ISO_INSTANT.format(Instant.now()), 
-                    msg.replace("\"", "\\\""), 
-                    newAccessToken.replace("\"", "\\\""));
-                out.println(json);
-            } else {
-                String json = String.format("{\"time_stamp\":\"%s\",\"message\":\"%s\"}",
-                    DateTimeFormatter.ISO_INSTANT.format(Instant.now()), 
-                    "Failed to generate new access token. Please login again.".replace("\"", "\\\""));
-                out.println(json);
-            }
+        // Generate new access token from refresh token
+        sendAccessToken(msg, TokenUtil.generateNewAccessTokenFromRefreshToken(refreshToken), System.nanoTime());
+    }
+
+    private void sendAccessToken(String msg, String newAccessToken, long originNanos) {
+        if (newAccessToken != null) {
+            scheduleTokenNotice(System.currentTimeMillis() + TokenUtil.ACCESS_TOKEN_VALIDITY);
+            writeFrame(msg, newAccessToken, originNanos);
+        } else {
+            writeFrame("Failed to generate new access token. Please login again.", null, originNanos);
+        }
+    }
+
+    private void writeFrame(String msg, String accessToken, long originNanos) {
+        byte[] frame;
+        encodeLock.lock();
+        try {
+            frame = framing == Framing.BINARY
+                    ? binary.encodeMessage(System.currentTimeMillis(), msg, accessToken)
+                    : codec.encodeMessage(DateTimeFormatter.ISO_INSTANT.format(Instant.now()), msg, accessToken);
+        } catch (IOException e) {
+            logger.error("Error encoding message for client {}.", name, e);
+            return;
+        } finally {
+            encodeLock.unlock();
+        }
+        if (compressed) {
+            frame = BinaryCodec.COMPRESSOR.compress(frame);
+        }
+        if (!outbound.offer(frame, originNanos)) {
+            // Counted in OutboundStats; a client that stops reading would otherwise flood the log
+            logger.debug("Outbound queue of client {} over its budget, message dropped.", name);
         }
     }
 
     @Override
     public void run() {
         try {
-            String msg;
-            ObjectMapper mapper = new ObjectMapper();
-            while ((msg = in.readLine()) != null) {
-                // Try to parse as JSON with accessToken
-                try {
-                    JsonNode node = mapper.readTree(msg);
-                    // Check for time_stamp and message
-                    if (node.has("time_stamp") && node.has("message")) {
-                        String timeStampStr = node.get("time_stamp").asText();
-                        Instant msgTime = Instant.parse(timeStampStr);
-                        Instant now = Instant.now();
-                        if (Duration.between(msgTime, now).toHours() >= 1) {
-                            logger.warn("Received expired message from client {}. Dropping connection.", name);
-                            if (out != null) {
-                                sendMessage("Message too old. Connection will be closed.");
-                            }
-                            break; // Exit loop to close connection
-                        }
-                        // If not expired, process as normal
-                        String message = node.get("message").asText();
-                        logger.info("{}: {}", name, message);
-                        sendMessage(message);
-                        continue;
-                    }
-                    if (node.has("accessToken") && node.has("message")) {
-                        String accessToken = node.get("accessToken").asText();
-                        String message = node.get("message").asText();
-                        if (TokenUtil.validateAccessToken(accessToken)) {
-                            logger.info("{}: {}", name, message);
-                            sendMessage(message);
-                        } else {
-                            if (out != null) {
-                                sendMessage("Access token expired or invalid. Please renew your token using your refresh token.");
-                            }
-                        }
-                        continue;
+            if (framing == Framing.BINARY) {
+                byte[] frame;
+                while ((frame = in.readFrame()) != null) {
+                    if (!handleFrame(frame)) {
+                        break;
                     }
-                    if (node.has("refreshToken")) {
-                        String refreshToken = node.get("refreshToken").asText();
-                        if (TokenUtil.validateRefreshToken(refreshToken)) {
-                            logger.info("{}: Refresh token is valid", name);
-                            sendRefreshToken("Refresh token is valid. Renewing access token...", refreshToken);
-                        } else {
-                            logger.warn("{}: Refresh token is invalid", name);
-                            // sendRefreshToken("Refresh token is invalid. Please login again.", refreshToken);
-                        }
+                }
+            } else {
+                String msg;
+                while ((msg = in.readLine()) != null) {
+                    if (!handleLine(msg)) {
+                        break; // Exit loop to close connection
                     }
-                } catch (Exception e) {
-                    // Not a JSON message, fall through
                 }
-                // Fallback: print raw message and send in JSON format
-                Instant msgTime = Instant.now();
-                logger.info("{}: {}", name, msg);
-                sendMessage(msg);
             }
         } catch (IOException e) {
-            logger.info("Client {} disconnected.", name);
+            logger.debug("Client {} disconnected: {}", name, e.getMessage());
+        } finally {
+            outbound.awaitDrained(ServerConfig.OUTBOUND_CLOSE_TIMEOUT_MS);
+            close();
+        }
+    }
+
+    /**
+     * Processes one line received from the client.
+     *
+     * @return false if the connection should be closed
+     */
+    public boolean handleLine(String msg) {
+        receivedNanos = System.nanoTime();
+        lastReadNanos = receivedNanos;
+        // Try to parse as JSON with accessToken
+        try {
+            ClientMessage node = codec.decode(msg);
+            lastRequestNanos = receivedNanos;
+            // Check for time_stamp and message
+            if (node.hasTimeStamp() && node.hasMessage()) {
+                String timeStampStr = node.getTimeStamp();
+                Instant msgTime = Instant.parse(timeStampStr);
+                Instant now = Instant.now();
+                if (Duration.between(msgTime, now).toHours() >= 1) {
+                    AuditLog.SERVER.record(AuditEventType.MESSAGE_EXPIRED, name, timeStampStr);
+                    reply("Message too old. Connection will be closed.");
+                    return false;
+                }
+                // If not expired, process as normal
+                String message = node.getMessage();
+                logger.debug("{}: {}", name, message);
+                auditChat("echo");
+                reply(message);
+                return true;
+            }
+            if (node.hasAccessToken() && node.hasTo() && node.hasMessage()) {
+                if (isAccessTokenValid(node.getAccessToken())) {
+                    sendDirect(node);
+                } else {
+                    reply(INVALID_TOKEN_MESSAGE);
+                }
+                return true;
+            }
+            if (node.hasAccessToken() && (node.hasJoin() || node.hasLeave() || node.hasRoom())) {
+                if (isAccessTokenValid(node.getAccessToken())) {
+                    handleRoom(node);
+                } else {
+                    reply(INVALID_TOKEN_MESSAGE);
+                }
+                return true;
+            }
+            if (node.hasAccessToken() && node.hasMessage()) {
+                String accessToken = node.getAccessToken();
+                String message = node.getMessage();
+                if (isAccessTokenValid(accessToken)) {
+                    logger.debug("{}: {}", name, message);
+                    auditChat("echo");
+                    reply(message);
+                } else {
+                    reply(INVALID_TOKEN_MESSAGE);
+                }
+                return true;
+            }
+            if (node.hasRefreshToken()) {
+                renewAccessToken(node.getRefreshToken());
+            }
+        } catch (Exception e) {
+            // Not a JSON message, fall through
+        }
+        // Fallback: print raw message and send in JSON format
+        lastRequestNanos = receivedNanos;
+        logger.debug("{}: {}", name, msg);
+        reply(msg);
+        return true;
+    }
+
+    /**
+     * Processes one {@link BinaryCodec} frame received from the client. Unlike a line, every
+     * frame is checked for its age, and every frame but a refresh must carry a valid access token.
+     *
+     * @return false if the connection should be closed
+     */
+    public boolean handleFrame(byte[] frame) {
+        receivedNanos = System.nanoTime();
+        lastReadNanos = receivedNanos;
+        ClientMessage node;
+        try {
+            node = binary.decode(frame);
+        } catch (IOException e) {
+            AuditLog.SERVER.record(AuditEventType.MALFORMED_FRAME, name, e.getMessage());
+            return false;
+        }
+        if (node.isPong()) {
+            return true;
+        }
+        lastRequestNanos = receivedNanos;
+        if (Duration.between(Instant.ofEpochMilli(node.getSentAtMillis()), Instant.now()).toHours() >= 1) {
+            AuditLog.SERVER.record(AuditEventType.MESSAGE_EXPIRED, name, node.getSentAtMillis());
+            reply("Message too old. Connection will be closed.");
+            return false;
+        }
+        try {
+            if (node.hasRefreshToken()) {
+                renewAccessToken(node.getRefreshToken());
+            } else if (!node.hasAccessToken()) {
+                logger.debug("Ignoring frame of unknown type from client {}.", name);
+            } else if (!isAccessTokenValid(node.getAccessToken())) {
+                reply(INVALID_TOKEN_MESSAGE);
+            } else if (node.hasTo() && node.hasMessage()) {
+                sendDirect(node);
+            } else if (node.hasJoin() || node.hasLeave() || node.hasRoom()) {
+                handleRoom(node);
+            } else if (node.hasMessage()) {
+                logger.debug("{}: {}", name, node.getMessage());
+                auditChat("echo");
+                reply(node.getMessage());
+            }
+        } catch (Exception e) {
+            logger.error("Error handling frame from client {}.", name, e);
+        }
+        return true;
+    }
+
+    private void renewAccessToken(String refreshToken) {
+        // One resolve both validates the refresh token and mints the new access token
+        String newAccessToken = TokenUtil.generateNewAccessTokenFromRefreshToken(refreshToken);
+        if (newAccessToken != null) {
+            AuditLog.SERVER.record(AuditEventType.TOKEN_REFRESHED, name, null);
+            sendAccessToken("Refresh token is valid. Renewing access token...", newAccessToken, receivedNanos);
+        } else {
+            AuditLog.SERVER.record(AuditEventType.REFRESH_REJECTED, name, null);
+            // sendRefreshToken("Refresh token is invalid. Please login again.", refreshToken);
+        }
+    }
+
+    /**
+     * Forwards a message to every session of the named user and sends the sender a status:
+     * "delivered" once the message is queued for at least one session, "offline" if the user
+     * has none, or "dropped" if all of their queues were full.
+     */
+    private void sendDirect(ClientMessage node) throws IOException {
+        String to = node.getTo();
+        Instant now = Instant.now();
+        String timeStamp = DateTimeFormatter.ISO_INSTANT.format(now);
+        ClientHandler[] recipients = clients.sessionsOf(to);
+        int delivered = 0;
+        if (recipients.length > 0) {
+            EncodedFrame frame;
+            encodeLock.lock();
+            try {
+                frame = new EncodedFrame(codec.encodeDirectMessage(timeStamp, name, node),
+                        binary.encodeDirectMessage(now.toEpochMilli(), name, node), receivedNanos);
+            } finally {
+                encodeLock.unlock();
+            }
+            for (ClientHandler recipient : recipients) {
+                if (recipient.deliver(frame)) {
+                    delivered++;
+                }
+            }
+        }
+        String result = recipients.length == 0 ? "offline" : delivered > 0 ? "delivered" : "dropped";
+        byte[] status;
+        encodeLock.lock();
+        try {
+            status = framing == Framing.BINARY
+                    ? binary.encodeDeliveryStatus(now.toEpochMilli(), to, result, delivered, node.getId())
+                    : codec.encodeDeliveryStatus(timeStamp, to, result, delivered, node.getId());
         } finally {
+            encodeLock.unlock();
+        }
+        logger.debug("{} -> {} ({} of {} sessions)", name, to, delivered, recipients.length);
+        auditChat("direct to " + to);
+        outbound.offer(compressed ? BinaryCodec.COMPRESSOR.compress(status) : status, receivedNanos);
+    }
+
+    private void handleRoom(ClientMessage node) throws IOException {
+        if (node.hasJoin()) {
+            String room = node.getJoin();
+            if (joinedRooms.size() >= ServerConfig.MAX_ROOMS_PER_CLIENT && !joinedRooms.contains(room)) {
+                reply("You cannot join more than " + ServerConfig.MAX_ROOMS_PER_CLIENT + " rooms.");
+            } else if (rooms.join(room, this)) {
+                joinedRooms.add(room);
+                if (closed) {
+                    // close() has already left every room; don't leave this one behind
+                    rooms.leave(room, this);
+                }
+                reply("Joined room " + room + ".");
+            } else {
+                reply("Invalid room name.");
+            }
+        }
+        if (node.hasLeave()) {
+            String room = node.getLeave();
+            if (joinedRooms.remove(room)) {
+                rooms.leave(room, this);
+                reply("Left room " + room + ".");
+            }
+        }
+        if (node.hasRoom() && node.hasMessage()) {
+            String room = node.getRoom();
+            if (!joinedRooms.contains(room)) {
+                reply("You are not in room " + room + ".");
+                return;
+            }
+            Instant now = Instant.now();
+            EncodedFrame frame;
+            encodeLock.lock();
             try {
-                clients.remove(name);
-                socket.close();
-            } catch (IOException e) {
-                e.printStackTrace();
+                frame = new EncodedFrame(codec.encodeRoomMessage(DateTimeFormatter.ISO_INSTANT.format(now), room, name, node.getMessage()),
+                        binary.encodeRoomMessage(now.toEpochMilli(), room, name, node.getMessage()), receivedNanos);
+            } finally {
+                encodeLock.unlock();
             }
+            int delivered = rooms.publish(room, frame);
+            logger.debug("{} -> {} ({} members): {}", name, room, delivered, node.getMessage());
+            auditChat("room " + room);
+        }
+    }
+
+    private boolean isAccessTokenValid(String accessToken) throws NoSuchAlgorithmException {
+        long started = System.nanoTime();
+        if (tokenDigest == null) {
+            tokenDigest = MessageDigest.getInstance("SHA-256");
+        }
+        byte[] digest = TokenUtil.digest(tokenDigest, accessToken);
+        VerifiedAccessToken current = verifiedToken;
+        if (current != null && current.matches(digest)) {
+            TokenStats.SERVER.cached(started);
+            if (current.isExpired(System.currentTimeMillis())) {
+                TokenStats.SERVER.rejected();
+                AuditLog.SERVER.record(AuditEventType.TOKEN_REJECTED, name, "expired");
+                return false;
+            }
+            return true;
+        }
+        VerifiedAccessToken verified = TokenUtil.verifyAccessToken(accessToken, digest);
+        TokenStats.SERVER.verified(started);
+        if (verified == null) {
+            TokenStats.SERVER.rejected();
+            AuditLog.SERVER.record(AuditEventType.TOKEN_REJECTED, name, "invalid or expired");
+            return false;
+        }
+        verifiedToken = verified;
+        return true;
+    }
+
+    private void auditChat(String detail) {
+        if (ServerConfig.AUDIT_CHAT_EVENTS) {
+            AuditLog.SERVER.record(AuditEventType.CHAT_MESSAGE, name, detail);
+        }
+    }
+
+    private void armLivenessCheck(long now) {
+        long delay = Long.MAX_VALUE;
+        if (IDLE_TIMEOUT_NANOS > 0) {
+            delay = Math.min(delay, lastRequestNanos + IDLE_TIMEOUT_NANOS - now);
+        }
+        if (heartbeat && HEARTBEAT_TIMEOUT_NANOS > 0) {
+            delay = Math.min(delay, lastReadNanos + HEARTBEAT_TIMEOUT_NANOS - now);
+        }
+        if (heartbeat && HEARTBEAT_INTERVAL_NANOS > 0) {
+            delay = Math.min(delay, Math.max(lastReadNanos, pingSentNanos) + HEARTBEAT_INTERVAL_NANOS - now);
+        }
+        if (delay != Long.MAX_VALUE && !closed) {
+            livenessCheck = TimingWheel.SERVER.schedule(this::checkLiveness, delay, TimeUnit.NANOSECONDS);
+        }
+    }
+
+    // Runs on the timing wheel, so it only queues frames or closes without waiting
+    private void checkLiveness() {
+        if (closed) {
+            return;
+        }
+        long now = System.nanoTime();
+        if (IDLE_TIMEOUT_NANOS > 0 && now - lastRequestNanos >= IDLE_TIMEOUT_NANOS) {
+            TimeoutStats.SERVER.timedOut(TimeoutStats.Reason.IDLE);
+            AuditLog.SERVER.record(AuditEventType.IDLE_TIMEOUT, name,
+                    "no request for " + TimeUnit.NANOSECONDS.toMillis(now - lastRequestNanos) + " ms");
+            sendMessage(IDLE_TIMEOUT_MESSAGE);
+            outbound.closeWhenDrained();
+            return;
+        }
+        if (heartbeat && HEARTBEAT_TIMEOUT_NANOS > 0 && now - lastReadNanos >= HEARTBEAT_TIMEOUT_NANOS) {
+            TimeoutStats.SERVER.timedOut(TimeoutStats.Reason.HEARTBEAT);
+            AuditLog.SERVER.record(AuditEventType.HEARTBEAT_TIMEOUT, name,
+                    "nothing received for " + TimeUnit.NANOSECONDS.toMillis(now - lastReadNanos) + " ms");
+            // A peer that answers nothing most likely reads nothing either; don't wait on a write to it
+            outbound.abort();
+            return;
+        }
+        if (heartbeat && HEARTBEAT_INTERVAL_NANOS > 0 && now - Math.max(lastReadNanos, pingSentNanos) >= HEARTBEAT_INTERVAL_NANOS) {
+            sendPing();
+            pingSentNanos = now;
+        }
+        armLivenessCheck(now);
+    }
+
+    private void sendPing() {
+        byte[] frame;
+        encodeLock.lock();
+        try {
+            frame = binary.encodePing(System.currentTimeMillis());
+        } catch (IOException e) {
+            logger.error("Error encoding ping for client {}.", name, e);
+            return;
+        } finally {
+            encodeLock.unlock();
+        }
+        TimeoutStats.SERVER.pingSent();
+        outbound.offer(frame);
+    }
+
+    // Replaces the notice for the previous token, if it has not been sent yet
+    private void scheduleTokenNotice(long expiresAtMillis) {
+        if (ServerConfig.SESSION_TOKEN_NOTICE_MS <= 0 || closed) {
+            return;
+        }
+        TimingWheel.Timeout previous = tokenNotice;
+        if (previous != null) {
+            previous.cancel();
+        }
+        long delay = expiresAtMillis - ServerConfig.SESSION_TOKEN_NOTICE_MS - System.currentTimeMillis();
+        tokenNotice = TimingWheel.SERVER.schedule(() -> noticeTokenExpiry(expiresAtMillis), delay, TimeUnit.MILLISECONDS);
+    }
+
+    private void noticeTokenExpiry(long expiresAtMillis) {
+        if (closed) {
+            return;
+        }
+        long seconds = Math.max(0, TimeUnit.MILLISECONDS.toSeconds(expiresAtMillis - System.currentTimeMillis()));
+        TimeoutStats.SERVER.tokenNoticeSent();
+        sendMessage("Access token expires in " + seconds + " s. Please renew it using your refresh token.");
+    }
+
+    public void close() {
+        try {
+            if (!closed && name != null) {
+                AuditLog.SERVER.record(AuditEventType.SESSION_CLOSED, name, null);
+            }
+            closed = true;
+            cancel(livenessCheck);
+            cancel(tokenNotice);
+            clients.unregister(this);
+            for (String room : joinedRooms) {
+                rooms.leave(room, this);
+            }
+            outbound.close();
+            connection.close();
+        } catch (IOException e) {
+            e.printStackTrace();
+        }
+    }
+
+    private static void cancel(TimingWheel.Timeout timeout) {
+        if (timeout != null) {
+            timeout.cancel();
         }
     }
-} 
\ No newline at end of file
+}
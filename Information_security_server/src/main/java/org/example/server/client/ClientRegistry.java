@@ -0,0 +1,175 @@
+package org.example.server.client;
+
+import org.example.server.ServerConfig;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * The logged-in sessions, keyed by user name. A user may be connected more than once; each
+ * login adds a session and each close removes exactly that session, so a second login no
+ * longer replaces the first.
+ *
+ * <p>Users are spread over {@link ServerConfig#REGISTRY_SHARDS} concurrent maps so that resizing
+ * and bin contention stay local to one shard. A user's sessions are an immutable array replaced
+ * on every change, which makes lookups and presence checks lock-free and O(1). Iteration is
+ * weakly consistent: it sees every session that stays registered for its whole duration and
+ * never blocks logins or logouts.
+ */
+public class ClientRegistry implements Iterable<ClientHandler> {
+    private static final ClientHandler[] NONE = new ClientHandler[0];
+
+    private final ConcurrentHashMap<String, ClientHandler[]>[] shards;
+    private final int mask;
+    private final int shift;
+    private final AtomicInteger sessionCount = new AtomicInteger();
+    private final AtomicInteger userCount = new AtomicInteger();
+
+    public ClientRegistry() {
+        this(ServerConfig.REGISTRY_SHARDS);
+    }
+
+    @SuppressWarnings({"unchecked", "rawtypes"})
+    public ClientRegistry(int shardCount) {
+        int size = shardCount <= 1 ? 1 : Integer.highestOneBit(shardCount - 1) << 1;
+        this.shards = new ConcurrentHashMap[size];
+        for (int i = 0; i < size; i++) {
+            shards[i] = new ConcurrentHashMap<>();
+        }
+        this.mask = size - 1;
+        this.shift = 32 - Integer.numberOfTrailingZeros(size);
+    }
+
+    /** Adds a logged-in session under its user name. */
+    public void register(ClientHandler session) {
+        String user = session.getName();
+        shardFor(user).compute(user, (key, sessions) -> {
+            if (sessions == null) {
+                userCount.incrementAndGet();
+                sessionCount.incrementAndGet();
+                return new ClientHandler[] {session};
+            }
+            for (ClientHandler existing : sessions) {
+                if (existing == session) {
+                    return sessions;
+                }
+            }
+            ClientHandler[] added = Arrays.copyOf(sessions, sessions.length + 1);
+            added[sessions.length] = session;
+            sessionCount.incrementAndGet();
+            return added;
+        });
+    }
+
+    /** Removes this session only; the user stays online while any other session remains. */
+    public void unregister(ClientHandler session) {
+        String user = session.getName();
+        if (user == null) {
+            return;
+        }
+        shardFor(user).computeIfPresent(user, (key, sessions) -> {
+            int index = -1;
+            for (int i = 0; i < sessions.length; i++) {
+                if (sessions[i] == session) {
+                    index = i;
+                    break;
+                }
+            }
+            if (index < 0) {
+                return sessions;
+            }
+            sessionCount.decrementAndGet();
+            if (sessions.length == 1) {
+                userCount.decrementAndGet();
+                return null;
+            }
+            ClientHandler[] remaining = new ClientHandler[sessions.length - 1];
+            System.arraycopy(sessions, 0, remaining, 0, index);
+            System.arraycopy(sessions, index + 1, remaining, index, sessions.length - index - 1);
+            return remaining;
+        });
+    }
+
+    public boolean isOnline(String user) {
+        return user != null && shardFor(user).containsKey(user);
+    }
+
+    /** The user's current sessions; empty if offline. The array must not be modified. */
+    public ClientHandler[] sessionsOf(String user) {
+        if (user == null) {
+            return NONE;
+        }
+        ClientHandler[] sessions = shardFor(user).get(user);
+        return sessions != null ? sessions : NONE;
+    }
+
+    public int getSessionCount() {
+        return sessionCount.get();
+    }
+
+    public int getUserCount() {
+        return userCount.get();
+    }
+
+    /** A sorted copy of the online user names, for admin listing. */
+    public List<String> onlineUsers() {
+        List<String> users = new ArrayList<>(userCount.get());
+        for (ConcurrentHashMap<String, ClientHandler[]> shard : shards) {
+            users.addAll(shard.keySet());
+        }
+        Collections.sort(users);
+        return users;
+    }
+
+    /** Weakly consistent iteration over every session, without copying the registry. */
+    @Override
+    public Iterator<ClientHandler> iterator() {
+        return new Iterator<>() {
+            private int shard;
+            private Iterator<ClientHandler[]> users = shards[0].values().iterator();
+            private ClientHandler[] current = NONE;
+            private int index;
+
+            @Override
+            public boolean hasNext() {
+                while (index == current.length) {
+                    while (!users.hasNext()) {
+                        if (shard + 1 >= shards.length) {
+                            return false;
+                        }
+                        users = shards[++shard].values().iterator();
+                    }
+                    current = users.next();
+                    index = 0;
+                }
+                return true;
+            }
+
+            @Override
+            public ClientHandler next() {
+                if (!hasNext()) {
+                    throw new NoSuchElementException();
+                }
+                return current[index++];
+            }
+        };
+    }
+
+    private ConcurrentHashMap<String, ClientHandler[]> shardFor(String user) {
+        // Pick the shard from the high bits of a mixed hash: each map indexes its bins by the low
+        // bits, which would otherwise be the same for every key in a shard
+        int h = user.hashCode() * 0x9E3779B9;
+        return shards[(h >>> shift) & mask];
+    }
+
+    @Override
+    public String toString() {
+        return "users=" + userCount.get() + " sessions=" + sessionCount.get();
+    }
+}
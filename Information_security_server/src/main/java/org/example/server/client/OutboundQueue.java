@@ -0,0 +1,460 @@
+package org.example.server.client;
+
+import org.example.server.ServerConfig;
+import org.example.server.audit.AuditEventType;
+import org.example.server.audit.AuditLog;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.Socket;
+import java.util.Arrays;
+import java.util.concurrent.Executor;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.locks.ReentrantLock;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Bounded queue of encoded frames for one client, drained by a single writer. Frames that are
+ * pending when the writer runs are copied into one batch and written with a single call, so a
+ * burst becomes one TLS record and one syscall instead of one per message. A batch is written
+ * when the queue runs empty, when it reaches {@link ServerConfig#OUTBOUND_BATCH_BYTES}, or when
+ * it has been open for {@link ServerConfig#OUTBOUND_BATCH_DELAY_MICROS}.
+ *
+ * <p>Frames are kept in a ring that grows on demand up to the capacity, so offering a frame
+ * allocates nothing; a fan-out can hand one shared array to thousands of queues. Each frame keeps
+ * the {@link System#nanoTime()} of the client message that caused it, so that
+ * {@link OutboundStats} can report parse-to-write latency.
+ *
+ * <p>A queue holds at most {@code capacity} frames and {@code maxBytes} bytes, and no queue that
+ * already holds frames may push the bytes queued on the whole server past
+ * {@link ServerConfig#OUTBOUND_MAX_TOTAL_BYTES}. A frame that does not fit is handled by the
+ * {@link Overflow} policy. A frame fanned out to many queues counts once in each of them, so the
+ * server-wide total is an upper bound on the memory held. On a connection that buffers writes
+ * itself ({@link Buffered}) the queue stops draining while the connection has more than one batch
+ * unsent, so a client that stops reading fills its own queue instead of the connection's buffer.
+ * {@link #lagNanos} tells how far behind the client is, for {@link SlowConsumerMonitor}.
+ */
+public class OutboundQueue {
+    private static final Logger logger = LoggerFactory.getLogger(OutboundQueue.class);
+    private static final int INITIAL_RING_SIZE = 16;
+
+    /** What happens to a frame that does not fit a queue's budget. */
+    public enum Overflow {
+        /** The new frame is dropped. */
+        DROP_NEW,
+        /** The oldest queued frames are dropped until the new one fits. */
+        DROP_OLDEST,
+        /** The new frame is dropped and the client disconnected. */
+        DISCONNECT;
+
+        public static Overflow fromName(String name) {
+            return valueOf(name.trim().toUpperCase().replace('-', '_'));
+        }
+    }
+
+    /** A connection that buffers what is written to it instead of blocking. */
+    public interface Buffered {
+        /** Bytes written and not yet sent. */
+        long unsentBytes();
+
+        /** Runs {@code resume} once, when everything written so far has been sent, or at once if it has. */
+        void whenSent(Runnable resume);
+    }
+
+    private final OutputStream out;
+    private final Executor writer;
+    private final Closeable connection;
+    private final int capacity;
+    private final long maxBytes;
+    private final Overflow overflow;
+    private final ReentrantLock lock = new ReentrantLock();
+    private byte[][] ring = new byte[INITIAL_RING_SIZE][];
+    private long[] origins = new long[INITIAL_RING_SIZE];
+    private int head;
+    private volatile int size;
+    private volatile long queuedBytes;
+    private final AtomicBoolean scheduled = new AtomicBoolean();
+    private final int batchBytes;
+    // Only touched by the writer task, which never runs twice at once. Grown on the first burst,
+    // so idle clients don't hold a batch buffer.
+    private byte[] batch = new byte[0];
+    private long[] batchOrigins = new long[0];
+    // Origin of the frame last returned by poll(), also only touched by the writer task
+    private long polledOrigin;
+    private volatile boolean closed;
+    // When the drain started waiting for a Buffered connection to send its backlog, or 0
+    private volatile long pausedSinceNanos;
+    // When the write in progress started, or 0; only a blocking stream stays in a write for long
+    private volatile long writingSinceNanos;
+    // Set by closeWhenDrained(); the writer closes the connection once the queue is empty
+    private volatile boolean closeWhenDrained;
+    // Names the client in the audit log once it has logged in
+    private volatile String owner;
+
+    /**
+     * @param out        stream the batches are written to
+     * @param writer     runs the drain task; it may block on {@code out}
+     * @param connection closed if a write fails
+     */
+    public OutboundQueue(OutputStream out, Executor writer, Closeable connection) {
+        this(out, writer, connection, ServerConfig.OUTBOUND_QUEUE_DEPTH, ServerConfig.OUTBOUND_BATCH_BYTES);
+    }
+
+    public OutboundQueue(OutputStream out, Executor writer, Closeable connection, int capacity, int batchBytes) {
+        this(out, writer, connection, capacity, batchBytes, ServerConfig.OUTBOUND_MAX_QUEUED_BYTES,
+                Overflow.fromName(ServerConfig.OUTBOUND_OVERFLOW));
+    }
+
+    /**
+     * @param capacity most frames queued at once
+     * @param maxBytes most bytes queued at once
+     * @param overflow what happens to a frame that does not fit
+     */
+    public OutboundQueue(OutputStream out, Executor writer, Closeable connection, int capacity, int batchBytes, long maxBytes,
+                         Overflow overflow) {
+        this.out = out;
+        this.writer = writer;
+        this.connection = connection;
+        this.capacity = capacity;
+        this.batchBytes = batchBytes;
+        this.maxBytes = maxBytes;
+        this.overflow = overflow;
+    }
+
+    public void setOwner(String owner) {
+        this.owner = owner;
+    }
+
+    /**
+     * Queues a frame for writing. Safe to call from any thread; the array must not be modified afterwards.
+     *
+     * @return false if the frame did not fit or the queue is closed, and the frame was dropped
+     */
+    public boolean offer(byte[] frame) {
+        return offer(frame, System.nanoTime());
+    }
+
+    /**
+     * @param originNanos when the client message this frame answers or forwards started to be
+     *                    parsed; parse-to-write latency is measured from here
+     */
+    public boolean offer(byte[] frame, long originNanos) {
+        boolean disconnect = false;
+        lock.lock();
+        try {
+            if (closed) {
+                return false;
+            }
+            if (overflow == Overflow.DROP_OLDEST) {
+                while (!fits(frame.length)) {
+                    evictOldest();
+                }
+            }
+            if (!fits(frame.length)) {
+                OutboundStats.SERVER.dropped();
+                if (overflow != Overflow.DISCONNECT) {
+                    return false;
+                }
+                disconnect = true;
+            } else {
+                if (size == ring.length) {
+                    grow();
+                }
+                int tail = (head + size) % ring.length;
+                ring[tail] = frame;
+                origins[tail] = originNanos;
+                size++;
+                queuedBytes += frame.length;
+                OutboundStats.SERVER.queued(frame.length);
+            }
+        } finally {
+            lock.unlock();
+        }
+        if (disconnect) {
+            disconnect("over its outbound budget");
+            return false;
+        }
+        schedule();
+        return true;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public long getQueuedBytes() {
+        return queuedBytes;
+    }
+
+    /**
+     * How far behind the client is: the age of the oldest frame still queued, or how long the
+     * write in progress has been blocked or the drain has waited for the connection, whichever is
+     * longest. The last two also catch a stuck client whose old frames are being dropped.
+     */
+    public long lagNanos(long nowNanos) {
+        long writingSince = writingSinceNanos;
+        long pausedSince = pausedSinceNanos;
+        long lag = writingSince == 0 ? 0 : nowNanos - writingSince;
+        if (pausedSince != 0) {
+            lag = Math.max(lag, nowNanos - pausedSince);
+        }
+        lock.lock();
+        try {
+            if (size > 0) {
+                lag = Math.max(lag, nowNanos - origins[head]);
+            }
+        } finally {
+            lock.unlock();
+        }
+        return lag;
+    }
+
+    /**
+     * Discards what is queued and closes the connection, which also ends a write that is blocked
+     * on it. The owner of the connection sees it close and cleans up as usual.
+     */
+    public void disconnect(String reason) {
+        if (abort()) {
+            OutboundStats.SERVER.disconnected();
+            AuditLog.SERVER.record(AuditEventType.SLOW_CONSUMER_DISCONNECTED, owner, reason);
+        }
+    }
+
+    /**
+     * Like {@link #disconnect}, without counting the client as a slow consumer.
+     *
+     * @return false if the queue was already closed
+     */
+    public boolean abort() {
+        lock.lock();
+        try {
+            if (closed) {
+                return false;
+            }
+            close();
+        } finally {
+            lock.unlock();
+        }
+        try {
+            if (connection instanceof Socket socket) {
+                // Otherwise closing a TLS socket waits for the blocked write to send its close_notify
+                socket.setSoLinger(true, 0);
+            }
+            connection.close();
+        } catch (IOException ignored) {
+            // already closing
+        }
+        return true;
+    }
+
+    /**
+     * Closes the connection from the writer once the frames queued so far have been written, so a
+     * last notice reaches the client without the caller waiting for it. Frames offered afterwards
+     * may or may not be written.
+     */
+    public void closeWhenDrained() {
+        closeWhenDrained = true;
+        schedule();
+    }
+
+    /**
+     * Waits up to {@code timeoutMillis} for the frames queued so far to be written, so that a
+     * last reply is not lost when the connection is closed right after it.
+     *
+     * @return true if nothing is left to write
+     */
+    public boolean awaitDrained(long timeoutMillis) {
+        long deadline = System.nanoTime() + timeoutMillis * 1_000_000L;
+        try {
+            while (!closed && (scheduled.get() || size > 0)) {
+                if (System.nanoTime() - deadline >= 0) {
+                    return false;
+                }
+                Thread.sleep(1);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return false;
+        }
+        return true;
+    }
+
+    /** Discards pending frames and rejects new ones. The underlying connection is closed by its owner. */
+    public void close() {
+        lock.lock();
+        try {
+            closed = true;
+            Arrays.fill(ring, null);
+            OutboundStats.SERVER.removed(size, queuedBytes);
+            size = 0;
+            queuedBytes = 0;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    // Called with the lock held. An empty queue always takes one frame, so a client that keeps up
+    // is never held back by others that do not
+    private boolean fits(int bytes) {
+        return size == 0 || (size < capacity && queuedBytes + bytes <= maxBytes
+                && OutboundStats.SERVER.getPendingBytes() + bytes <= ServerConfig.OUTBOUND_MAX_TOTAL_BYTES);
+    }
+
+    // Called with the lock held
+    private void evictOldest() {
+        int bytes = ring[head].length;
+        ring[head] = null;
+        head = (head + 1) % ring.length;
+        size--;
+        queuedBytes -= bytes;
+        OutboundStats.SERVER.removed(1, bytes);
+        OutboundStats.SERVER.evicted();
+    }
+
+    private void schedule() {
+        if (pausedSinceNanos == 0 && scheduled.compareAndSet(false, true)) {
+            writer.execute(this::drain);
+        }
+    }
+
+    private void resume() {
+        pausedSinceNanos = 0;
+        schedule();
+    }
+
+    private void drain() {
+        try {
+            long maxDelayNanos = ServerConfig.OUTBOUND_BATCH_DELAY_MICROS * 1000L;
+            int length = 0;
+            int framesInBatch = 0;
+            long batchStarted = 0;
+            byte[] frame;
+            while (!closed && !pauseForBacklog() && (frame = poll()) != null) {
+                if (length == 0 && size == 0) {
+                    // Nothing to coalesce with; write the frame as it is.
+                    writeFrame(frame, polledOrigin);
+                    continue;
+                }
+                if (length > 0 && length + frame.length > batchBytes) {
+                    writeBatch(length, framesInBatch);
+                    length = 0;
+                    framesInBatch = 0;
+                }
+                if (frame.length >= batchBytes) {
+                    // Too big to coalesce; it goes out on its own.
+                    writeFrame(frame, polledOrigin);
+                    continue;
+                }
+                if (length == 0) {
+                    batchStarted = System.nanoTime();
+                }
+                if (length + frame.length > batch.length) {
+                    batch = Arrays.copyOf(batch, Math.min(batchBytes, Math.max(1024, Integer.highestOneBit(length + frame.length) << 1)));
+                }
+                if (framesInBatch == batchOrigins.length) {
+                    batchOrigins = Arrays.copyOf(batchOrigins, Math.max(16, framesInBatch * 2));
+                }
+                System.arraycopy(frame, 0, batch, length, frame.length);
+                batchOrigins[framesInBatch] = polledOrigin;
+                length += frame.length;
+                framesInBatch++;
+                if (size == 0 || System.nanoTime() - batchStarted >= maxDelayNanos) {
+                    writeBatch(length, framesInBatch);
+                    length = 0;
+                    framesInBatch = 0;
+                }
+            }
+            if (length > 0 && !closed) {
+                writeBatch(length, framesInBatch);
+            }
+        } catch (IOException e) {
+            logger.debug("Write failed, closing connection: {}", e.getMessage());
+            close();
+            try {
+                connection.close();
+            } catch (IOException ignored) {
+                // already closing
+            }
+        } finally {
+            scheduled.set(false);
+            if (!closed && size > 0) {
+                schedule();
+            } else if (closeWhenDrained && !closed && pausedSinceNanos == 0) {
+                close();
+                try {
+                    connection.close();
+                } catch (IOException ignored) {
+                    // already closing
+                }
+            }
+        }
+    }
+
+    // A Buffered connection takes a batch at a time; the drain stops while it has more than that unsent
+    private boolean pauseForBacklog() {
+        if (!(connection instanceof Buffered buffered) || buffered.unsentBytes() <= batchBytes) {
+            return false;
+        }
+        pausedSinceNanos = System.nanoTime();
+        buffered.whenSent(this::resume);
+        return true;
+    }
+
+    private byte[] poll() {
+        lock.lock();
+        try {
+            if (size == 0) {
+                return null;
+            }
+            byte[] frame = ring[head];
+            ring[head] = null;
+            polledOrigin = origins[head];
+            head = (head + 1) % ring.length;
+            size--;
+            queuedBytes -= frame.length;
+            OutboundStats.SERVER.removed(1, frame.length);
+            return frame;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    // Called with the lock held
+    private void grow() {
+        byte[][] larger = new byte[Math.min(capacity, ring.length * 2)][];
+        long[] largerOrigins = new long[larger.length];
+        for (int i = 0; i < size; i++) {
+            larger[i] = ring[(head + i) % ring.length];
+            largerOrigins[i] = origins[(head + i) % ring.length];
+        }
+        ring = larger;
+        origins = largerOrigins;
+        head = 0;
+    }
+
+    private void writeFrame(byte[] frame, long originNanos) throws IOException {
+        write(frame, frame.length, 1);
+        OutboundStats.SERVER.writtenSince(originNanos, System.nanoTime());
+    }
+
+    private void writeBatch(int length, int frameCount) throws IOException {
+        write(batch, length, frameCount);
+        long now = System.nanoTime();
+        for (int i = 0; i < frameCount; i++) {
+            OutboundStats.SERVER.writtenSince(batchOrigins[i], now);
+        }
+    }
+
+    private void write(byte[] bytes, int length, int frameCount) throws IOException {
+        writingSinceNanos = System.nanoTime();
+        try {
+            out.write(bytes, 0, length);
+            out.flush();
+        } finally {
+            writingSinceNanos = 0;
+        }
+        OutboundStats.SERVER.written(frameCount, length);
+    }
+}
@@ -0,0 +1,116 @@
+package org.example.server.client;
+
+import org.example.common.metrics.LatencyHistogram;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Server-wide counts for the {@link OutboundQueue}s: frames queued, batched writes, frames
+ * dropped because a client's queue was over its budget and queued frames evicted to make room,
+ * and clients disconnected for falling behind. Frames per write shows how well bursts coalesce.
+ * Also the frames and bytes waiting in all queues together, and the time from a client message
+ * starting to be parsed until each frame it caused was written to a socket.
+ */
+public class OutboundStats {
+    public static final OutboundStats SERVER = new OutboundStats();
+
+    private final LongAdder queued = new LongAdder();
+    private final LongAdder dropped = new LongAdder();
+    private final LongAdder writes = new LongAdder();
+    private final LongAdder framesWritten = new LongAdder();
+    private final LongAdder bytesWritten = new LongAdder();
+    private final LongAdder evicted = new LongAdder();
+    private final LongAdder disconnected = new LongAdder();
+    private final LongAdder pending = new LongAdder();
+    // Read on every offer for the server-wide cap, so kept exact
+    private final AtomicLong pendingBytes = new AtomicLong();
+    private final LatencyHistogram parseToWrite = new LatencyHistogram();
+
+    void queued(int bytes) {
+        queued.increment();
+        pending.increment();
+        pendingBytes.addAndGet(bytes);
+    }
+
+    // Frames that left a queue, written or discarded
+    void removed(int frames, long bytes) {
+        pending.add(-frames);
+        pendingBytes.addAndGet(-bytes);
+    }
+
+    void writtenSince(long originNanos, long writtenNanos) {
+        parseToWrite.record(writtenNanos - originNanos);
+    }
+
+    void dropped() {
+        dropped.increment();
+    }
+
+    void evicted() {
+        evicted.increment();
+    }
+
+    void disconnected() {
+        disconnected.increment();
+    }
+
+    void written(int frames, int bytes) {
+        writes.increment();
+        framesWritten.add(frames);
+        bytesWritten.add(bytes);
+    }
+
+    public long getWrites() {
+        return writes.sum();
+    }
+
+    public long getQueued() {
+        return queued.sum();
+    }
+
+    public long getDropped() {
+        return dropped.sum();
+    }
+
+    public long getBytesWritten() {
+        return bytesWritten.sum();
+    }
+
+    public long getEvicted() {
+        return evicted.sum();
+    }
+
+    public long getDisconnected() {
+        return disconnected.sum();
+    }
+
+    public long getPending() {
+        return pending.sum();
+    }
+
+    public long getPendingBytes() {
+        return pendingBytes.get();
+    }
+
+    public LatencyHistogram getParseToWrite() {
+        return parseToWrite;
+    }
+
+    public long getFramesWritten() {
+        return framesWritten.sum();
+    }
+
+    public double getFramesPerWrite() {
+        long count = writes.sum();
+        return count == 0 ? 0 : framesWritten.sum() / (double) count;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("queued=%d written=%d writes=%d frames/write=%.2f bytes=%d dropped=%d evicted=%d disconnected=%d "
+                        + "pending=%d pendingBytes=%d parseToWrite[%s]",
+                queued.sum(), framesWritten.sum(), writes.sum(), getFramesPerWrite(), bytesWritten.sum(), dropped.sum(),
+                evicted.sum(), disconnected.sum(), pending.sum(), pendingBytes.get(), parseToWrite);
+    }
+}
@@ -0,0 +1,100 @@
+package org.example.server.client;
+
+import org.example.server.ServerConfig;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Looks at every session's {@link OutboundQueue} at a fixed interval. Sessions whose oldest queued
+ * frame, or whose blocked write, is older than {@code lagThresholdMs} count as lagging, and the
+ * furthest behind are listed in {@link #toString()}. Sessions past {@code stallTimeoutMs} are
+ * disconnected, which also frees a writer thread blocked on a client that stopped reading. The
+ * figures are those of the last check, so reading them costs nothing.
+ */
+public class SlowConsumerMonitor {
+    private static final Logger logger = LoggerFactory.getLogger(SlowConsumerMonitor.class);
+    // Sessions listed by toString()
+    private static final int LISTED = 5;
+
+    private final ClientRegistry clients;
+    private final long lagThresholdNanos;
+    private final long stallTimeoutNanos;
+    private volatile int lagging;
+    private volatile long maxLagNanos;
+    private volatile List<Laggard> furthestBehind = List.of();
+
+    public SlowConsumerMonitor(ClientRegistry clients) {
+        this(clients, ServerConfig.OUTBOUND_LAG_THRESHOLD_MS, ServerConfig.OUTBOUND_STALL_TIMEOUT_MS);
+    }
+
+    /** @param stallTimeoutMillis 0 never disconnects */
+    public SlowConsumerMonitor(ClientRegistry clients, long lagThresholdMillis, long stallTimeoutMillis) {
+        this.clients = clients;
+        this.lagThresholdNanos = TimeUnit.MILLISECONDS.toNanos(lagThresholdMillis);
+        this.stallTimeoutNanos = TimeUnit.MILLISECONDS.toNanos(stallTimeoutMillis);
+    }
+
+    public void start(long intervalMillis) {
+        if (intervalMillis <= 0) {
+            return;
+        }
+        Executors.newSingleThreadScheduledExecutor(Thread.ofPlatform().daemon().name("slow-consumer-monitor").factory())
+                .scheduleWithFixedDelay(this::check, intervalMillis, intervalMillis, TimeUnit.MILLISECONDS);
+    }
+
+    public void check() {
+        try {
+            long now = System.nanoTime();
+            int count = 0;
+            long max = 0;
+            List<Laggard> behind = new ArrayList<>();
+            for (ClientHandler session : clients) {
+                OutboundQueue outbound = session.getOutbound();
+                long lag = outbound.lagNanos(now);
+                if (lag < lagThresholdNanos) {
+                    continue;
+                }
+                count++;
+                max = Math.max(max, lag);
+                behind.add(new Laggard(session.getName(), lag, outbound.size(), outbound.getQueuedBytes()));
+                if (stallTimeoutNanos > 0 && lag >= stallTimeoutNanos) {
+                    outbound.disconnect("stalled for " + TimeUnit.NANOSECONDS.toMillis(lag) + " ms");
+                }
+            }
+            behind.sort(Comparator.comparingLong(Laggard::lagNanos).reversed());
+            furthestBehind = List.copyOf(behind.subList(0, Math.min(LISTED, behind.size())));
+            lagging = count;
+            maxLagNanos = max;
+        } catch (RuntimeException e) {
+            logger.error("Slow consumer check failed.", e);
+        }
+    }
+
+    /** Sessions that were lagging at the last check. */
+    public int getLagging() {
+        return lagging;
+    }
+
+    public long getMaxLagNanos() {
+        return maxLagNanos;
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder text = new StringBuilder("lagging=").append(lagging);
+        for (Laggard laggard : furthestBehind) {
+            text.append(String.format(" %s(%d ms, %d frames, %d bytes)", laggard.name(),
+                    TimeUnit.NANOSECONDS.toMillis(laggard.lagNanos()), laggard.frames(), laggard.bytes()));
+        }
+        return text.toString();
+    }
+
+    private record Laggard(String name, long lagNanos, int frames, long bytes) {
+    }
+}
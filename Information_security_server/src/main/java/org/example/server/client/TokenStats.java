@@ -0,0 +1,47 @@
+package org.example.server.client;
+
+import org.example.common.metrics.LatencyHistogram;
+
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Access token checks on chat messages: how long those answered from the connection's last
+ * verified token take against those that verify the JWT signature, and how many tokens were
+ * rejected, whether invalid or expired.
+ */
+public class TokenStats {
+    public static final TokenStats SERVER = new TokenStats();
+
+    private final LatencyHistogram cached = new LatencyHistogram();
+    private final LatencyHistogram verified = new LatencyHistogram();
+    private final LongAdder rejected = new LongAdder();
+
+    void cached(long startedNanos) {
+        cached.recordSince(startedNanos);
+    }
+
+    void verified(long startedNanos) {
+        verified.recordSince(startedNanos);
+    }
+
+    void rejected() {
+        rejected.increment();
+    }
+
+    public LatencyHistogram getCached() {
+        return cached;
+    }
+
+    public LatencyHistogram getVerified() {
+        return verified;
+    }
+
+    public long getRejected() {
+        return rejected.sum();
+    }
+
+    @Override
+    public String toString() {
+        return "cached[" + cached + "] verified[" + verified + "] rejected=" + rejected.sum();
+    }
+}
@@ -0,0 +1,62 @@
+package org.example.server.metrics;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.Executors;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Serves {@link MetricsRegistry#scrape()} over plain HTTP at {@code /metrics}, for a Prometheus
+ * server or {@code curl}. It binds to the loopback address by default and runs on one daemon
+ * thread, so a scrape never competes with the chat threads for more than one core.
+ */
+public class MetricsEndpoint {
+    private static final Logger logger = LoggerFactory.getLogger(MetricsEndpoint.class);
+    private static final String CONTENT_TYPE = "text/plain; version=0.0.4; charset=utf-8";
+
+    private MetricsEndpoint() {
+    }
+
+    /** @return the running server, or null if {@code port} is 0 or it could not bind */
+    public static HttpServer start(MetricsRegistry registry, String host, int port) {
+        if (port <= 0) {
+            return null;
+        }
+        try {
+            HttpServer server = HttpServer.create(new InetSocketAddress(host, port), 0);
+            server.createContext("/metrics", exchange -> respond(exchange, registry));
+            server.setExecutor(Executors.newSingleThreadExecutor(Thread.ofPlatform().daemon().name("metrics-endpoint").factory()));
+            server.start();
+            logger.info("Metrics available at http://{}:{}/metrics", host, server.getAddress().getPort());
+            return server;
+        } catch (IOException e) {
+            logger.warn("Metrics endpoint could not bind to {}:{}: {}", host, port, e.getMessage());
+            return null;
+        }
+    }
+
+    private static void respond(HttpExchange exchange, MetricsRegistry registry) throws IOException {
+        try (exchange) {
+            if (!"GET".equals(exchange.getRequestMethod()) && !"HEAD".equals(exchange.getRequestMethod())) {
+                exchange.sendResponseHeaders(405, -1);
+                return;
+            }
+            byte[] body = registry.scrape().getBytes(StandardCharsets.UTF_8);
+            exchange.getResponseHeaders().set("Content-Type", CONTENT_TYPE);
+            if ("HEAD".equals(exchange.getRequestMethod())) {
+                exchange.sendResponseHeaders(200, -1);
+                return;
+            }
+            exchange.sendResponseHeaders(200, body.length);
+            try (OutputStream out = exchange.getResponseBody()) {
+                out.write(body);
+            }
+        }
+    }
+}
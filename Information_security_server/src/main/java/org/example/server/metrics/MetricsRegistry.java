@@ -0,0 +1,156 @@
+package org.example.server.metrics;
+
+import org.example.common.metrics.LatencyHistogram;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.function.LongSupplier;
+
+/**
+ * Names the server's counters, gauges and latency histograms for scraping, and renders them in
+ * the Prometheus text format. The registry only holds references: values are recorded straight
+ * into the {@link LatencyHistogram}s and stats objects that own them, without locking, and are
+ * read only when scraped. Register once at startup; metrics registered twice under the same name
+ * and labels are both rendered.
+ */
+public class MetricsRegistry {
+    public static final MetricsRegistry SERVER = new MetricsRegistry();
+
+    private static final double[] PERCENTILES = {50, 90, 99, 99.9};
+    private static final String[] QUANTILES = {"0.5", "0.9", "0.99", "0.999"};
+
+    private final Map<String, Family> families = new LinkedHashMap<>();
+
+    /** A value that only grows, such as a count of events. */
+    public void counter(String name, String help, LongSupplier value) {
+        counter(name, help, null, value);
+    }
+
+    /** @param labels rendered as is, e.g. {@code result="ok"}; null for none */
+    public void counter(String name, String help, String labels, LongSupplier value) {
+        add(name, help, "counter", labels, value);
+    }
+
+    /** A value that goes up and down, such as a queue depth. */
+    public void gauge(String name, String help, LongSupplier value) {
+        gauge(name, help, null, value);
+    }
+
+    public void gauge(String name, String help, String labels, LongSupplier value) {
+        add(name, help, "gauge", labels, value);
+    }
+
+    /** A duration that goes up and down, given in nanoseconds and rendered in seconds. */
+    public void durationGauge(String name, String help, LongSupplier nanos) {
+        add(name, help, "gauge", null, new Nanos(nanos));
+    }
+
+    /** A latency distribution, rendered in seconds as a summary with p50, p90, p99 and p99.9. */
+    public void histogram(String name, String help, LatencyHistogram histogram) {
+        histogram(name, help, null, histogram);
+    }
+
+    public void histogram(String name, String help, String labels, LatencyHistogram histogram) {
+        add(name, help, "summary", labels, histogram);
+    }
+
+    /** A latency with only a count and a total, rendered as a summary without quantiles. */
+    public void latency(String name, String help, String labels, LatencyStats stats) {
+        add(name, help, "summary", labels, stats);
+    }
+
+    private synchronized void add(String name, String help, String type, String labels, Object source) {
+        Family family = families.computeIfAbsent(name, key -> new Family(help, type));
+        if (!family.type.equals(type)) {
+            throw new IllegalArgumentException("Metric " + name + " is already registered as a " + family.type);
+        }
+        family.series.add(new Series(labels, source));
+    }
+
+    /** Every registered metric in the Prometheus text exposition format, version 0.0.4. */
+    public String scrape() {
+        StringBuilder text = new StringBuilder(4096);
+        for (Map.Entry<String, Family> entry : snapshot().entrySet()) {
+            String name = entry.getKey();
+            Family family = entry.getValue();
+            text.append("# HELP ").append(name).append(' ').append(family.help).append('\n');
+            text.append("# TYPE ").append(name).append(' ').append(family.type).append('\n');
+            for (Series series : family.series) {
+                if (series.source instanceof LatencyHistogram histogram) {
+                    double[] millis = histogram.getPercentilesMillis(PERCENTILES);
+                    for (int i = 0; i < PERCENTILES.length; i++) {
+                        sample(text, name, series.labels, "quantile=\"" + QUANTILES[i] + "\"", seconds(millis[i] / 1000));
+                    }
+                    sample(text, name + "_sum", series.labels, null, seconds(histogram.getTotalNanos() / 1e9));
+                    sample(text, name + "_count", series.labels, null, Long.toString(histogram.getCount()));
+                } else if (series.source instanceof LatencyStats stats) {
+                    sample(text, name + "_sum", series.labels, null, seconds(stats.getTotalNanos() / 1e9));
+                    sample(text, name + "_count", series.labels, null, Long.toString(stats.getCount()));
+                } else if (series.source instanceof Nanos nanos) {
+                    sample(text, name, series.labels, null, seconds(nanos.value().getAsLong() / 1e9));
+                } else {
+                    sample(text, name, series.labels, null, Long.toString(((LongSupplier) series.source).getAsLong()));
+                }
+            }
+        }
+        return text.toString();
+    }
+
+    // Families and their series are copied so that scraping never blocks registration for long
+    private synchronized Map<String, Family> snapshot() {
+        Map<String, Family> copy = new LinkedHashMap<>();
+        for (Map.Entry<String, Family> entry : families.entrySet()) {
+            Family family = new Family(entry.getValue().help, entry.getValue().type);
+            family.series.addAll(entry.getValue().series);
+            copy.put(entry.getKey(), family);
+        }
+        return copy;
+    }
+
+    private static void sample(StringBuilder text, String name, String labels, String extraLabel, String value) {
+        text.append(name);
+        if (labels != null || extraLabel != null) {
+            text.append('{');
+            if (labels != null) {
+                text.append(labels);
+            }
+            if (extraLabel != null) {
+                text.append(labels != null ? "," : "").append(extraLabel);
+            }
+            text.append('}');
+        }
+        text.append(' ').append(value).append('\n');
+    }
+
+    private static String seconds(double value) {
+        return String.format(Locale.ROOT, "%.9f", value);
+    }
+
+    private static final class Family {
+        private final String help;
+        private final String type;
+        private final List<Series> series = new ArrayList<>();
+
+        private Family(String help, String type) {
+            this.help = help;
+            this.type = type;
+        }
+    }
+
+    private record Nanos(LongSupplier value) {
+    }
+
+    private static final class Series {
+        private final String labels;
+        // A LatencyHistogram, a LatencyStats, Nanos or a LongSupplier
+        private final Object source;
+
+        private Series(String labels, Object source) {
+            this.labels = labels;
+            this.source = source;
+        }
+    }
+}
@@ -0,0 +1,212 @@
+package org.example.server.nio;
+
+import org.example.server.ServerConfig;
+import org.example.server.audit.AuditEventType;
+import org.example.server.audit.AuditLog;
+import org.example.server.auth.AuthService;
+import org.example.server.auth.HybridLogin;
+import org.example.server.auth.LoginMode;
+import org.example.server.client.ClientHandler;
+import org.example.server.client.ClientRegistry;
+import org.example.server.client.OutboundQueue;
+import org.example.server.protocol.Framing;
+import org.example.server.room.RoomRegistry;
+import org.example.server.timer.TimeoutStats;
+import org.example.server.timer.TimingWheel;
+
+import java.io.OutputStreamWriter;
+import java.io.PrintWriter;
+import java.nio.charset.StandardCharsets;
+import java.security.PrivateKey;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicReference;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Runs the login prompts and the {@link ClientHandler} protocol for one {@link TlsConnection}.
+ * Lines and frames are processed in arrival order on the worker executor so that database and
+ * crypto work never runs on an event-loop thread. A connection that has not logged in
+ * {@link ServerConfig#SESSION_AUTH_TIMEOUT_MS} after its handshake is closed.
+ */
+public class ClientSession implements ConnectionListener {
+    private static final Logger logger = LoggerFactory.getLogger(ClientSession.class);
+
+    private enum State { AWAITING_EMAIL, AWAITING_PASSWORD, AWAITING_CREDENTIALS, AUTHENTICATING, ACTIVE, CLOSED }
+
+    private final PrivateKey privateKey;
+    private final ClientRegistry clients;
+    private final RoomRegistry rooms;
+    private final Executor workers;
+    // Lines, or frames (byte[]) once binary framing has started
+    private final Queue<Object> inbox = new ConcurrentLinkedQueue<>();
+    private final AtomicBoolean scheduled = new AtomicBoolean();
+    private final AtomicReference<State> state = new AtomicReference<>(State.AWAITING_EMAIL);
+    private TlsConnection connection;
+    private ClientHandler handler;
+    private PrintWriter out;
+    private Framing framing;
+    private String encryptedEmail;
+    private volatile TimingWheel.Timeout authDeadline;
+
+    public ClientSession(PrivateKey privateKey, ClientRegistry clients, RoomRegistry rooms, Executor workers) {
+        this.privateKey = privateKey;
+        this.clients = clients;
+        this.rooms = rooms;
+        this.workers = workers;
+    }
+
+    @Override
+    public void onHandshakeComplete(TlsConnection connection) {
+        this.connection = connection;
+        this.out = new PrintWriter(new OutputStreamWriter(connection.outputStream(), StandardCharsets.UTF_8), true);
+        // The event loop is the queue's single writer; batches are handed to the connection without blocking.
+        OutboundQueue outbound = new OutboundQueue(connection.outputStream(), connection.loop()::execute, connection);
+        String protocol = connection.engine().getApplicationProtocol();
+        this.framing = Framing.fromProtocol(protocol);
+        this.handler = new ClientHandler(connection, out, outbound, privateKey, clients, rooms, framing,
+                Framing.isCompressed(protocol));
+        if (ServerConfig.SESSION_AUTH_TIMEOUT_MS > 0) {
+            authDeadline = TimingWheel.SERVER.schedule(this::authTimedOut, ServerConfig.SESSION_AUTH_TIMEOUT_MS, TimeUnit.MILLISECONDS);
+        }
+        if (LoginMode.fromProtocol(protocol) == LoginMode.ECDH) {
+            state.set(State.AWAITING_CREDENTIALS);
+            out.println(HybridLogin.get().offer());
+        } else {
+            out.println(AuthService.EMAIL_PROMPT);
+        }
+    }
+
+    @Override
+    public void onLine(TlsConnection connection, String line) {
+        inbox.add(line);
+        schedule();
+    }
+
+    @Override
+    public void onFrame(TlsConnection connection, byte[] frame) {
+        inbox.add(frame);
+        schedule();
+    }
+
+    @Override
+    public void onClose(TlsConnection connection) {
+        cancelAuthDeadline();
+        if (state.getAndSet(State.CLOSED) == State.ACTIVE) {
+            logger.debug("Client {} disconnected.", handler.getName());
+            handler.close();
+        }
+    }
+
+    private void schedule() {
+        if (scheduled.compareAndSet(false, true)) {
+            workers.execute(this::drain);
+        }
+    }
+
+    private void drain() {
+        try {
+            Object received;
+            while (isReading() && (received = inbox.poll()) != null) {
+                handle(received);
+            }
+        } catch (Exception e) {
+            logger.error("Error handling client connection.", e);
+            connection.close();
+        } finally {
+            scheduled.set(false);
+            if (isReading() && !inbox.isEmpty()) {
+                schedule();
+            }
+        }
+    }
+
+    // Lines that arrive while a login is in flight wait until it has finished
+    private boolean isReading() {
+        State current = state.get();
+        return current != State.CLOSED && current != State.AUTHENTICATING;
+    }
+
+    private void handle(Object received) {
+        if (received instanceof byte[] frame) {
+            // Frames are only read once the login is under way
+            if (state.get() == State.ACTIVE && !handler.handleFrame(frame)) {
+                connection.close();
+            }
+            return;
+        }
+        String line = (String) received;
+        switch (state.get()) {
+            case AWAITING_EMAIL:
+                encryptedEmail = line;
+                state.compareAndSet(State.AWAITING_EMAIL, State.AWAITING_PASSWORD);
+                out.println(AuthService.PASSWORD_PROMPT);
+                break;
+            case AWAITING_PASSWORD:
+                if (state.compareAndSet(State.AWAITING_PASSWORD, State.AUTHENTICATING)) {
+                    startFraming();
+                    handler.authenticateAsync(encryptedEmail, line).thenAccept(this::loggedIn);
+                }
+                encryptedEmail = null;
+                break;
+            case AWAITING_CREDENTIALS:
+                if (state.compareAndSet(State.AWAITING_CREDENTIALS, State.AUTHENTICATING)) {
+                    startFraming();
+                    handler.authenticateHybridAsync(line).thenAccept(this::loggedIn);
+                }
+                break;
+            case ACTIVE:
+                if (!handler.handleLine(line)) {
+                    connection.close();
+                }
+                break;
+            default:
+                break;
+        }
+    }
+
+    // The client sends frames once it has the login reply, so the switch has to happen before the reply is sent
+    private void startFraming() {
+        if (framing == Framing.BINARY) {
+            connection.readFrames();
+        }
+    }
+
+    // Runs on the timing wheel; the close itself happens on the event loop
+    private void authTimedOut() {
+        TimeoutStats.SERVER.timedOut(TimeoutStats.Reason.AUTH);
+        AuditLog.SERVER.record(AuditEventType.AUTH_TIMEOUT, connection.remoteAddress(),
+                "no login within " + ServerConfig.SESSION_AUTH_TIMEOUT_MS + " ms");
+        connection.close();
+    }
+
+    private void cancelAuthDeadline() {
+        TimingWheel.Timeout deadline = authDeadline;
+        if (deadline != null) {
+            deadline.cancel();
+        }
+    }
+
+    // Runs when the login completes, usually on a login pool thread
+    private void loggedIn(boolean authenticated) {
+        cancelAuthDeadline();
+        if (!authenticated) {
+            state.set(State.CLOSED);
+            return;
+        }
+        clients.register(handler);
+        if (!state.compareAndSet(State.AUTHENTICATING, State.ACTIVE)) {
+            // The connection closed while the login was in flight.
+            handler.close();
+            return;
+        }
+        AuditLog.SERVER.record(AuditEventType.LOGIN_SUCCEEDED, handler.getName(), connection.remoteAddress());
+        handler.startTimers();
+        out = null;
+        schedule();
+    }
+}
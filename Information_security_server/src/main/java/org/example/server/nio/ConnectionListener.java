@@ -0,0 +1,16 @@
+package org.example.server.nio;
+
+/**
+ * Callbacks raised by a {@link TlsConnection} on its event-loop thread.
+ * Implementations must not block; hand slow work off to another executor.
+ */
+public interface ConnectionListener {
+    void onHandshakeComplete(TlsConnection connection);
+
+    void onLine(TlsConnection connection, String line);
+
+    /** A frame without its length prefix, once {@link TlsConnection#readFrames} has been called. */
+    void onFrame(TlsConnection connection, byte[] frame);
+
+    void onClose(TlsConnection connection);
+}
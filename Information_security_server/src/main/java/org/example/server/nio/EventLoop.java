@@ -0,0 +1,102 @@
+package org.example.server.nio;
+
+import java.io.IOException;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.util.Iterator;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * A single selector thread that owns a set of {@link TlsConnection}s. All reads, writes and
+ * SSLEngine calls for a connection happen on its loop; other threads talk to it through {@link #execute}.
+ */
+public class EventLoop implements Runnable {
+    private static final Logger logger = LoggerFactory.getLogger(EventLoop.class);
+    private final Selector selector;
+    private final Queue<Runnable> tasks = new ConcurrentLinkedQueue<>();
+    private final String name;
+    // Created by start(), so that the loop is not handed to a thread while it is being constructed
+    private volatile Thread thread;
+    private volatile boolean running = true;
+
+    public EventLoop(String name) throws IOException {
+        this.selector = Selector.open();
+        this.name = name;
+    }
+
+    public void start() {
+        thread = new Thread(this, name);
+        thread.start();
+    }
+
+    public Selector selector() {
+        return selector;
+    }
+
+    public boolean inEventLoop() {
+        return Thread.currentThread() == thread;
+    }
+
+    public void execute(Runnable task) {
+        if (inEventLoop()) {
+            task.run();
+            return;
+        }
+        tasks.add(task);
+        selector.wakeup();
+    }
+
+    public void shutdown() {
+        running = false;
+        selector.wakeup();
+    }
+
+    @Override
+    public void run() {
+        while (running) {
+            try {
+                selector.select();
+                runTasks();
+                Iterator<SelectionKey> keys = selector.selectedKeys().iterator();
+                while (keys.hasNext()) {
+                    SelectionKey key = keys.next();
+                    keys.remove();
+                    TlsConnection connection = (TlsConnection) key.attachment();
+                    if (!key.isValid()) {
+                        continue;
+                    }
+                    if (key.isWritable()) {
+                        connection.onWritable();
+                    }
+                    if (key.isValid() && key.isReadable()) {
+                        connection.onReadable();
+                    }
+                }
+            } catch (Exception e) {
+                logger.error("Unexpected error in event loop {}.", name, e);
+            }
+        }
+        for (SelectionKey key : selector.keys()) {
+            ((TlsConnection) key.attachment()).close();
+        }
+        try {
+            selector.close();
+        } catch (IOException e) {
+            logger.warn("Error closing selector.", e);
+        }
+    }
+
+    private void runTasks() {
+        Runnable task;
+        while ((task = tasks.poll()) != null) {
+            try {
+                task.run();
+            } catch (Exception e) {
+                logger.error("Event loop task failed.", e);
+            }
+        }
+    }
+}
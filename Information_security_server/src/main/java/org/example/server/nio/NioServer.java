@@ -0,0 +1,101 @@
+package org.example.server.nio;
+
+import org.example.server.ServerConfig;
+import org.example.server.audit.AuditLog;
+import org.example.server.auth.AuthStats;
+import org.example.server.client.ClientHandler;
+import org.example.server.client.ClientRegistry;
+import org.example.server.client.SlowConsumerMonitor;
+import org.example.server.client.OutboundStats;
+import org.example.server.protocol.BinaryCodec;
+import org.example.server.room.RoomRegistry;
+import org.example.server.timer.TimeoutStats;
+import org.example.server.timer.TimingWheel;
+import org.example.server.tls.HandshakeStats;
+import org.example.server.tls.TlsSettings;
+import org.example.utils.DatabaseConnection;
+
+import javax.net.ssl.SSLContext;
+import javax.net.ssl.SSLEngine;
+import javax.net.ssl.SSLParameters;
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.StandardSocketOptions;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.security.PrivateKey;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Selector-based TLS server: connections are spread across a small set of {@link EventLoop}s
+ * instead of holding a thread each, and only lines that need work are handed to the worker pool.
+ */
+public class NioServer {
+    private static final Logger logger = LoggerFactory.getLogger(NioServer.class);
+    private final SSLContext sslContext;
+    private final PrivateKey privateKey;
+    private final ClientRegistry clients;
+    private final RoomRegistry rooms;
+    private final SlowConsumerMonitor slowConsumers;
+    private final EventLoop[] loops;
+    private final ExecutorService workers;
+    private final SSLParameters sslParameters;
+
+    public NioServer(SSLContext sslContext, PrivateKey privateKey, ClientRegistry clients, RoomRegistry rooms,
+                     SlowConsumerMonitor slowConsumers) throws IOException {
+        this.sslContext = sslContext;
+        this.privateKey = privateKey;
+        this.clients = clients;
+        this.rooms = rooms;
+        this.slowConsumers = slowConsumers;
+        this.loops = new EventLoop[ServerConfig.EVENT_LOOP_THREADS];
+        for (int i = 0; i < loops.length; i++) {
+            loops[i] = new EventLoop("event-loop-" + i);
+        }
+        this.workers = Executors.newFixedThreadPool(ServerConfig.WORKER_THREADS);
+        this.sslParameters = TlsSettings.parameters(sslContext);
+    }
+
+    public void run() throws IOException {
+        for (EventLoop loop : loops) {
+            loop.start();
+        }
+        if (ServerConfig.STATS_INTERVAL_SECONDS > 0) {
+            Executors.newSingleThreadScheduledExecutor(Thread.ofPlatform().daemon().name("nio-stats").factory())
+                    .scheduleAtFixedRate(() -> logger.info("TLS {} | Logins {} | Token writer {} | Clients {} | Outbound {} | Slow consumers {} | Compression {} | Rooms {} | Audit {} | Timeouts {} {}",
+                            HandshakeStats.SERVER, AuthStats.SERVER, DatabaseConnection.getRefreshTokenWriter(), clients,
+                            OutboundStats.SERVER, slowConsumers, BinaryCodec.COMPRESSOR.getStats(), rooms, AuditLog.SERVER,
+                            TimeoutStats.SERVER, TimingWheel.SERVER),
+                            ServerConfig.STATS_INTERVAL_SECONDS, ServerConfig.STATS_INTERVAL_SECONDS, TimeUnit.SECONDS);
+        }
+        try (ServerSocketChannel serverChannel = ServerSocketChannel.open()) {
+            serverChannel.bind(new InetSocketAddress(ServerConfig.PORT), ServerConfig.ACCEPT_BACKLOG);
+            logger.info("TLS Chat server started on port {} with {} event loops", ServerConfig.PORT, loops.length);
+
+            int next = 0;
+            while (true) {
+                SocketChannel channel = serverChannel.accept();
+                channel.configureBlocking(false);
+                channel.setOption(StandardSocketOptions.TCP_NODELAY, true);
+
+                SSLEngine engine = sslContext.createSSLEngine();
+                engine.setUseClientMode(false);
+                engine.setSSLParameters(sslParameters);
+
+                EventLoop loop = loops[next];
+                next = (next + 1) % loops.length;
+                TlsConnection connection = new TlsConnection(loop, channel, engine, new ClientSession(privateKey, clients, rooms, workers));
+                loop.execute(connection::register);
+            }
+        } finally {
+            for (EventLoop loop : loops) {
+                loop.shutdown();
+            }
+            workers.shutdown();
+        }
+    }
+}
@@ -0,0 +1,457 @@
+package org.example.server.nio;
+
+import javax.net.ssl.SSLEngine;
+import javax.net.ssl.SSLEngineResult;
+import javax.net.ssl.SSLEngineResult.HandshakeStatus;
+import javax.net.ssl.SSLSession;
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.SocketChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+import org.example.server.ServerConfig;
+import org.example.server.audit.AuditEventType;
+import org.example.server.audit.AuditLog;
+import org.example.server.audit.HandshakeDetail;
+import org.example.server.client.OutboundQueue;
+import org.example.server.protocol.BinaryCodec;
+import org.example.server.timer.TimeoutStats;
+import org.example.server.timer.TimingWheel;
+import org.example.server.tls.HandshakeStats;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * A non-blocking TLS connection driven by an {@link EventLoop}. Inbound application data is split
+ * into newline-terminated lines, or into length-prefixed frames after {@link #readFrames}, and
+ * passed to the {@link ConnectionListener}; outbound data may be queued from any thread with
+ * {@link #send(byte[])}. Data queued and not yet encrypted is counted, so that an
+ * {@link OutboundQueue} can hold back while a client is not reading. A handshake that has not
+ * finished {@link ServerConfig#HANDSHAKE_TIMEOUT_MS} after registering closes the connection.
+ */
+public class TlsConnection implements Closeable, OutboundQueue.Buffered {
+    private static final Logger logger = LoggerFactory.getLogger(TlsConnection.class);
+    private static final ByteBuffer EMPTY = ByteBuffer.allocate(0);
+    private static final int MAX_LINE_LENGTH = 64 * 1024;
+
+    private final EventLoop loop;
+    private final SocketChannel channel;
+    private final SSLEngine engine;
+    private final ConnectionListener listener;
+    private final Queue<ByteBuffer> outbound = new ConcurrentLinkedQueue<>();
+    private final AtomicBoolean flushScheduled = new AtomicBoolean();
+    private final AtomicLong unsentBytes = new AtomicLong();
+    private final AtomicReference<Runnable> whenSent = new AtomicReference<>();
+    private final ByteArrayOutputStream lineBuffer = new ByteArrayOutputStream();
+    private volatile boolean frames;
+    // The frame being read: its length prefix so far, then its bytes once the length is known
+    private int framePrefixBytes;
+    private int frameLength;
+    private byte[] frame;
+    private int frameFilled;
+    private SelectionKey key;
+    private ByteBuffer netIn;
+    private ByteBuffer appIn;
+    private ByteBuffer netOut;
+    private boolean handshakeDone;
+    private long handshakeStartedMillis;
+    private long handshakeStartedNanos;
+    private TimingWheel.Timeout handshakeDeadline;
+    private volatile boolean closed;
+
+    public TlsConnection(EventLoop loop, SocketChannel channel, SSLEngine engine, ConnectionListener listener) {
+        this.loop = loop;
+        this.channel = channel;
+        this.engine = engine;
+        this.listener = listener;
+        SSLSession session = engine.getSession();
+        this.netIn = ByteBuffer.allocate(session.getPacketBufferSize());
+        this.appIn = ByteBuffer.allocate(session.getApplicationBufferSize());
+        this.netOut = ByteBuffer.allocate(session.getPacketBufferSize());
+    }
+
+    public EventLoop loop() {
+        return loop;
+    }
+
+    public SSLEngine engine() {
+        return engine;
+    }
+
+    public String remoteAddress() {
+        try {
+            return String.valueOf(channel.getRemoteAddress());
+        } catch (IOException e) {
+            return "unknown";
+        }
+    }
+
+    /** Registers the channel with the loop's selector and starts the handshake. Must run on the loop. */
+    void register() {
+        try {
+            key = channel.register(loop.selector(), SelectionKey.OP_READ, this);
+            handshakeStartedMillis = System.currentTimeMillis();
+            handshakeStartedNanos = System.nanoTime();
+            handshakeDeadline = TimingWheel.SERVER.schedule(() -> loop.execute(this::handshakeTimedOut),
+                    ServerConfig.HANDSHAKE_TIMEOUT_MS, TimeUnit.MILLISECONDS);
+            engine.beginHandshake();
+            process();
+        } catch (IOException e) {
+            logger.warn("Failed to register connection from {}.", remoteAddress(), e);
+            close();
+        }
+    }
+
+    void onReadable() {
+        try {
+            if (channel.read(netIn) < 0) {
+                close();
+                return;
+            }
+            process();
+        } catch (IOException e) {
+            logger.debug("Read failed for {}: {}", remoteAddress(), e.getMessage());
+            close();
+        }
+    }
+
+    void onWritable() {
+        try {
+            if (!flushNetOut()) {
+                return;
+            }
+            key.interestOps(SelectionKey.OP_READ);
+            process();
+        } catch (IOException e) {
+            logger.debug("Write failed for {}: {}", remoteAddress(), e.getMessage());
+            close();
+        }
+    }
+
+    /** Queues application data for encryption. Safe to call from any thread. */
+    public void send(byte[] data) {
+        if (closed) {
+            return;
+        }
+        unsentBytes.addAndGet(data.length);
+        outbound.add(ByteBuffer.wrap(data));
+        if (flushScheduled.compareAndSet(false, true)) {
+            loop.execute(() -> {
+                flushScheduled.set(false);
+                if (closed || !handshakeDone) {
+                    return;
+                }
+                try {
+                    flushPending();
+                } catch (IOException e) {
+                    logger.debug("Write failed for {}: {}", remoteAddress(), e.getMessage());
+                    close();
+                }
+            });
+        }
+    }
+
+    @Override
+    public long unsentBytes() {
+        return unsentBytes.get();
+    }
+
+    @Override
+    public void whenSent(Runnable resume) {
+        whenSent.set(resume);
+        if (unsentBytes.get() == 0) {
+            runWhenSent();
+        }
+    }
+
+    private void runWhenSent() {
+        Runnable resume = whenSent.getAndSet(null);
+        if (resume != null) {
+            resume.run();
+        }
+    }
+
+    /**
+     * Splits everything read from now on into {@link BinaryCodec} frames instead of lines. Safe to
+     * call from any thread, before the peer is told to start sending frames.
+     */
+    public void readFrames() {
+        frames = true;
+    }
+
+    /** An output stream that hands everything written since the last flush to {@link #send(byte[])}. */
+    public OutputStream outputStream() {
+        return new OutputStream() {
+            private final ByteArrayOutputStream pending = new ByteArrayOutputStream();
+
+            @Override
+            public synchronized void write(int b) {
+                pending.write(b);
+            }
+
+            @Override
+            public synchronized void write(byte[] b, int off, int len) {
+                pending.write(b, off, len);
+            }
+
+            @Override
+            public synchronized void flush() {
+                if (pending.size() > 0) {
+                    send(pending.toByteArray());
+                    pending.reset();
+                }
+            }
+
+            @Override
+            public void close() {
+                flush();
+                TlsConnection.this.close();
+            }
+        };
+    }
+
+    @Override
+    public void close() {
+        if (!loop.inEventLoop()) {
+            loop.execute(this::close);
+            return;
+        }
+        if (closed) {
+            return;
+        }
+        closed = true;
+        if (handshakeDeadline != null) {
+            handshakeDeadline.cancel();
+        }
+        try {
+            if (handshakeDone) {
+                // Best effort: send replies queued just before the close
+                flushPending();
+            }
+            engine.closeOutbound();
+            engine.wrap(EMPTY, netOut);
+            netOut.flip();
+            channel.write(netOut);
+        } catch (IOException e) {
+            // Best effort close_notify; the peer may already be gone.
+        }
+        try {
+            if (key != null) {
+                key.cancel();
+            }
+            channel.close();
+        } catch (IOException e) {
+            logger.debug("Error closing channel for {}.", remoteAddress(), e);
+        }
+        listener.onClose(this);
+    }
+
+    private void process() throws IOException {
+        while (!closed && step()) {
+            // keep driving the engine until it needs more network input or output space
+        }
+        if (!closed && handshakeDone) {
+            flushPending();
+        }
+    }
+
+    private boolean step() throws IOException {
+        switch (engine.getHandshakeStatus()) {
+            case NEED_TASK:
+                Runnable task;
+                while ((task = engine.getDelegatedTask()) != null) {
+                    task.run();
+                }
+                return true;
+            case NEED_WRAP:
+                return wrap(EMPTY);
+            default:
+                return unwrap();
+        }
+    }
+
+    private boolean unwrap() throws IOException {
+        netIn.flip();
+        SSLEngineResult result;
+        try {
+            result = engine.unwrap(netIn, appIn);
+        } finally {
+            netIn.compact();
+        }
+        switch (result.getStatus()) {
+            case BUFFER_UNDERFLOW:
+                int packetSize = engine.getSession().getPacketBufferSize();
+                if (netIn.capacity() < packetSize) {
+                    netIn = enlarge(netIn, packetSize);
+                }
+                return false;
+            case BUFFER_OVERFLOW:
+                drainAppIn();
+                int appSize = engine.getSession().getApplicationBufferSize();
+                if (appIn.capacity() < appSize) {
+                    appIn = enlarge(appIn, appSize);
+                }
+                return true;
+            case CLOSED:
+                close();
+                return false;
+            default:
+                drainAppIn();
+                handshakeProgress(result);
+                HandshakeStatus status = result.getHandshakeStatus();
+                return result.bytesConsumed() > 0 || result.bytesProduced() > 0
+                        || status == HandshakeStatus.NEED_TASK || status == HandshakeStatus.NEED_WRAP;
+        }
+    }
+
+    private boolean wrap(ByteBuffer src) throws IOException {
+        SSLEngineResult result = engine.wrap(src, netOut);
+        switch (result.getStatus()) {
+            case BUFFER_OVERFLOW:
+                if (netOut.position() == 0) {
+                    netOut = enlarge(netOut, engine.getSession().getPacketBufferSize());
+                    return true;
+                }
+                return flushNetOut();
+            case CLOSED:
+                flushNetOut();
+                close();
+                return false;
+            default:
+                handshakeProgress(result);
+                return flushNetOut();
+        }
+    }
+
+    private void flushPending() throws IOException {
+        ByteBuffer buffer;
+        while ((buffer = outbound.peek()) != null) {
+            boolean progressed = wrap(buffer);
+            if (!buffer.hasRemaining()) {
+                outbound.poll();
+                unsentBytes.addAndGet(-buffer.capacity());
+            }
+            if (!progressed) {
+                return;
+            }
+        }
+        if (flushNetOut()) {
+            key.interestOps(SelectionKey.OP_READ);
+        }
+        runWhenSent();
+    }
+
+    /** Writes buffered TLS records; returns false and waits for OP_WRITE if the socket is full. */
+    private boolean flushNetOut() throws IOException {
+        if (netOut.position() > 0) {
+            netOut.flip();
+            channel.write(netOut);
+            netOut.compact();
+        }
+        if (netOut.position() > 0) {
+            key.interestOps(key.interestOps() | SelectionKey.OP_WRITE);
+            return false;
+        }
+        return true;
+    }
+
+    private void drainAppIn() {
+        appIn.flip();
+        while (appIn.hasRemaining() && !closed) {
+            if (frames) {
+                if (!drainFrame()) {
+                    return;
+                }
+                continue;
+            }
+            byte b = appIn.get();
+            if (b == '\n') {
+                int length = lineBuffer.size();
+                byte[] bytes = lineBuffer.toByteArray();
+                if (length > 0 && bytes[length - 1] == '\r') {
+                    length--;
+                }
+                lineBuffer.reset();
+                listener.onLine(this, new String(bytes, 0, length, StandardCharsets.UTF_8));
+            } else if (lineBuffer.size() < MAX_LINE_LENGTH) {
+                lineBuffer.write(b);
+            } else {
+                logger.warn("Line from {} exceeds {} bytes. Closing connection.", remoteAddress(), MAX_LINE_LENGTH);
+                appIn.clear();
+                close();
+                return;
+            }
+        }
+        appIn.clear();
+    }
+
+    // Reads what appIn holds of the current frame; false if the frame is too large and the connection was closed
+    private boolean drainFrame() {
+        if (frame == null) {
+            while (framePrefixBytes < 4 && appIn.hasRemaining()) {
+                frameLength = (frameLength << 8) | (appIn.get() & 0xFF);
+                framePrefixBytes++;
+            }
+            if (framePrefixBytes < 4) {
+                return true;
+            }
+            if (frameLength < 0 || frameLength > BinaryCodec.MAX_FRAME_LENGTH) {
+                logger.warn("Frame from {} exceeds {} bytes. Closing connection.", remoteAddress(), BinaryCodec.MAX_FRAME_LENGTH);
+                appIn.clear();
+                close();
+                return false;
+            }
+            frame = new byte[frameLength];
+            frameFilled = 0;
+        }
+        int length = Math.min(appIn.remaining(), frame.length - frameFilled);
+        appIn.get(frame, frameFilled, length);
+        frameFilled += length;
+        if (frameFilled == frame.length) {
+            byte[] complete = frame;
+            frame = null;
+            framePrefixBytes = 0;
+            frameLength = 0;
+            listener.onFrame(this, complete);
+        }
+        return true;
+    }
+
+    private void handshakeProgress(SSLEngineResult result) {
+        if (result.getHandshakeStatus() != HandshakeStatus.FINISHED || handshakeDone) {
+            return;
+        }
+        handshakeDone = true;
+        handshakeDeadline.cancel();
+        SSLSession session = engine.getSession();
+        boolean resumed = HandshakeStats.SERVER.record(session, handshakeStartedMillis, handshakeStartedNanos);
+        AuditLog.SERVER.record(AuditEventType.HANDSHAKE_COMPLETED, remoteAddress(),
+                new HandshakeDetail(session.getProtocol(), session.getCipherSuite(), resumed));
+        listener.onHandshakeComplete(this);
+    }
+
+    private void handshakeTimedOut() {
+        if (!handshakeDone && !closed) {
+            TimeoutStats.SERVER.timedOut(TimeoutStats.Reason.HANDSHAKE);
+            AuditLog.SERVER.record(AuditEventType.HANDSHAKE_FAILED, remoteAddress(),
+                    "not finished within " + ServerConfig.HANDSHAKE_TIMEOUT_MS + " ms");
+            close();
+        }
+    }
+
+    private static ByteBuffer enlarge(ByteBuffer buffer, int capacity) {
+        ByteBuffer larger = ByteBuffer.allocate(Math.max(capacity, buffer.capacity() * 2));
+        buffer.flip();
+        larger.put(buffer);
+        return larger;
+    }
+}
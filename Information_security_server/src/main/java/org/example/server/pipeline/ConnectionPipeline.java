@@ -0,0 +1,187 @@
+package org.example.server.pipeline;
+
+import org.example.server.ServerConfig;
+import org.example.server.SessionExecutor;
+import org.example.server.audit.AuditEventType;
+import org.example.server.audit.AuditLog;
+import org.example.server.audit.HandshakeDetail;
+import org.example.server.auth.AuthService;
+import org.example.server.auth.AuthStats;
+import org.example.server.client.ClientHandler;
+import org.example.server.client.ClientRegistry;
+import org.example.server.client.OutboundStats;
+import org.example.server.client.SlowConsumerMonitor;
+import org.example.server.protocol.BinaryCodec;
+import org.example.server.room.RoomRegistry;
+import org.example.server.timer.TimeoutStats;
+import org.example.server.timer.TimingWheel;
+import org.example.server.tls.HandshakeStats;
+import org.example.utils.DatabaseConnection;
+
+import javax.net.ssl.SSLSession;
+import javax.net.ssl.SSLSocket;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.net.Socket;
+import java.security.PrivateKey;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Staged connection setup for the blocking server modes: accept, then TLS handshake on a
+ * bounded worker pool with a per-handshake deadline, then login on the session executor's login
+ * threads with a deadline of its own. The accept loop only hands sockets over, so a slow peer cannot hold up the
+ * connections behind it. Both deadlines are timeouts on the shared {@link TimingWheel} that close
+ * the socket, which also ends a handshake or a read blocked on it.
+ */
+public class ConnectionPipeline {
+    private static final Logger logger = LoggerFactory.getLogger(ConnectionPipeline.class);
+    private final PrivateKey privateKey;
+    private final ClientRegistry clients;
+    private final RoomRegistry rooms;
+    private final SlowConsumerMonitor slowConsumers;
+    private final SessionExecutor sessions;
+    private final Stage handshakeStage;
+    private final Stage authStage;
+    private final ScheduledExecutorService statsReporter;
+
+    public ConnectionPipeline(PrivateKey privateKey, ClientRegistry clients, RoomRegistry rooms, SessionExecutor sessions,
+                              SlowConsumerMonitor slowConsumers) {
+        this.privateKey = privateKey;
+        this.clients = clients;
+        this.rooms = rooms;
+        this.sessions = sessions;
+        this.slowConsumers = slowConsumers;
+        this.handshakeStage = new Stage("handshake",
+                Executors.newFixedThreadPool(ServerConfig.HANDSHAKE_THREADS, Thread.ofPlatform().name("handshake-", 0).factory()),
+                ServerConfig.HANDSHAKE_QUEUE_DEPTH);
+        this.authStage = new Stage("auth", sessions.logins(), ServerConfig.AUTH_QUEUE_DEPTH);
+        this.statsReporter = Executors.newSingleThreadScheduledExecutor(Thread.ofPlatform().daemon().name("pipeline-stats").factory());
+    }
+
+    public void accept(SSLSocket socket) {
+        long accepted = System.nanoTime();
+        if (!handshakeStage.submit(() -> handshake(socket, accepted))) {
+            AuditLog.SERVER.record(AuditEventType.CONNECTION_REJECTED, socket.getRemoteSocketAddress(), "handshake stage full");
+            closeQuietly(socket);
+        }
+    }
+
+    private void handshake(SSLSocket socket, long accepted) {
+        long timeoutMillis = ServerConfig.HANDSHAKE_TIMEOUT_MS;
+        long remaining = timeoutMillis - TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - accepted);
+        if (remaining <= 0) {
+            // The peer has most likely given up already; don't spend a handshake on it.
+            AuditLog.SERVER.record(AuditEventType.CONNECTION_REJECTED, socket.getRemoteSocketAddress(), "waited for a handshake worker");
+            closeQuietly(socket);
+            return;
+        }
+        TimingWheel.Timeout deadline = TimingWheel.SERVER.schedule(() -> timedOut(socket, TimeoutStats.Reason.HANDSHAKE),
+                remaining, TimeUnit.MILLISECONDS);
+        long startedMillis = System.currentTimeMillis();
+        long startedNanos = System.nanoTime();
+        try {
+            socket.startHandshake();
+            SSLSession session = socket.getSession();
+            boolean resumed = HandshakeStats.SERVER.record(session, startedMillis, startedNanos);
+            AuditLog.SERVER.record(AuditEventType.HANDSHAKE_COMPLETED, socket.getRemoteSocketAddress(),
+                    new HandshakeDetail(session.getProtocol(), session.getCipherSuite(), resumed));
+        } catch (IOException e) {
+            AuditLog.SERVER.record(AuditEventType.HANDSHAKE_FAILED, socket.getRemoteSocketAddress(),
+                    deadline.isExpired() ? "not finished within " + timeoutMillis + " ms" : e.getMessage());
+            closeQuietly(socket);
+            return;
+        } finally {
+            deadline.cancel();
+        }
+        if (socket.isClosed()) {
+            return;
+        }
+        // Runs from here so that the wait for a login thread counts too
+        TimingWheel.Timeout authDeadline = ServerConfig.SESSION_AUTH_TIMEOUT_MS > 0
+                ? TimingWheel.SERVER.schedule(() -> timedOut(socket, TimeoutStats.Reason.AUTH), ServerConfig.SESSION_AUTH_TIMEOUT_MS,
+                TimeUnit.MILLISECONDS)
+                : null;
+        if (!authStage.submit(() -> authenticate(socket, authDeadline))) {
+            if (authDeadline != null) {
+                authDeadline.cancel();
+            }
+            AuditLog.SERVER.record(AuditEventType.CONNECTION_REJECTED, socket.getRemoteSocketAddress(), "auth stage full");
+            try {
+                new PrintWriter(socket.getOutputStream(), true).println(AuthService.BUSY_MESSAGE);
+            } catch (IOException e) {
+                // The connection is being rejected anyway.
+            }
+            closeQuietly(socket);
+        }
+    }
+
+    private void authenticate(SSLSocket socket, TimingWheel.Timeout deadline) {
+        if (socket.isClosed()) {
+            // The deadline passed while it waited for a login thread
+            return;
+        }
+        try {
+            ClientHandler handler = new ClientHandler(socket, privateKey, clients, rooms, sessions.writers());
+            boolean authenticated = handler.authenticate();
+            if (deadline != null && !deadline.cancel()) {
+                // Closed by the deadline, possibly after the login went through
+                if (authenticated) {
+                    handler.close();
+                }
+                return;
+            }
+            if (authenticated) {
+                clients.register(handler);
+                AuditLog.SERVER.record(AuditEventType.LOGIN_SUCCEEDED, handler.getName(), socket.getRemoteSocketAddress());
+                handler.startTimers();
+                sessions.execute(handler);
+            }
+        } catch (Exception e) {
+            logger.error("Error handling client connection.", e);
+            closeQuietly(socket);
+        }
+    }
+
+    public void startStatsReporter(int intervalSeconds) {
+        if (intervalSeconds <= 0) {
+            return;
+        }
+        statsReporter.scheduleAtFixedRate(this::logStats, intervalSeconds, intervalSeconds, TimeUnit.SECONDS);
+    }
+
+    public void logStats() {
+        logger.info("Pipeline {} | {} | Logins {} | Token writer {} | TLS {} | Clients {} | Outbound {} | Slow consumers {} | Compression {} "
+                        + "| Rooms {} | Audit {} | Timeouts {} {}",
+                handshakeStage, authStage, AuthStats.SERVER, DatabaseConnection.getRefreshTokenWriter(), HandshakeStats.SERVER,
+                clients, OutboundStats.SERVER, slowConsumers, BinaryCodec.COMPRESSOR.getStats(), rooms, AuditLog.SERVER, TimeoutStats.SERVER,
+                TimingWheel.SERVER);
+    }
+
+    // Runs on the timing wheel
+    private static void timedOut(SSLSocket socket, TimeoutStats.Reason reason) {
+        TimeoutStats.SERVER.timedOut(reason);
+        if (reason == TimeoutStats.Reason.AUTH) {
+            AuditLog.SERVER.record(AuditEventType.AUTH_TIMEOUT, socket.getRemoteSocketAddress(),
+                    "no login within " + ServerConfig.SESSION_AUTH_TIMEOUT_MS + " ms");
+        }
+        try {
+            // Otherwise the close waits for a write blocked on a peer that does not read, holding up the wheel
+            socket.setSoLinger(true, 0);
+        } catch (IOException e) {
+            // already closed
+        }
+        closeQuietly(socket);
+    }
+
+    private static void closeQuietly(Socket socket) {
+        try {
+            socket.close();
+        } catch (IOException e) {
+            // already closed
+        }
+    }
+}
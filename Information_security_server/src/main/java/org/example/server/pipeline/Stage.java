@@ -0,0 +1,83 @@
+package org.example.server.pipeline;
+
+import org.example.server.metrics.LatencyStats;
+
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * One step of the connection pipeline. A stage admits at most {@code maxInFlight} tasks
+ * (queued plus running) and rejects the rest immediately instead of letting work pile up.
+ */
+public class Stage {
+    private final String name;
+    private final Executor executor;
+    private final int maxInFlight;
+    private final AtomicInteger inFlight = new AtomicInteger();
+    private final LongAdder rejected = new LongAdder();
+    private final LatencyStats queueWait = new LatencyStats();
+    private final LatencyStats service = new LatencyStats();
+
+    public Stage(String name, Executor executor, int maxInFlight) {
+        this.name = name;
+        this.executor = executor;
+        this.maxInFlight = maxInFlight;
+    }
+
+    /**
+     * @return false if the stage is full and the task was not accepted
+     */
+    public boolean submit(Runnable task) {
+        if (inFlight.incrementAndGet() > maxInFlight) {
+            inFlight.decrementAndGet();
+            rejected.increment();
+            return false;
+        }
+        long enqueued = System.nanoTime();
+        try {
+            executor.execute(() -> {
+                long started = System.nanoTime();
+                queueWait.record(started - enqueued);
+                try {
+                    task.run();
+                } finally {
+                    service.recordSince(started);
+                    inFlight.decrementAndGet();
+                }
+            });
+            return true;
+        } catch (RejectedExecutionException e) {
+            inFlight.decrementAndGet();
+            rejected.increment();
+            return false;
+        }
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public int getInFlight() {
+        return inFlight.get();
+    }
+
+    public long getRejected() {
+        return rejected.sum();
+    }
+
+    public LatencyStats getQueueWait() {
+        return queueWait;
+    }
+
+    public LatencyStats getService() {
+        return service;
+    }
+
+    @Override
+    public String toString() {
+        return name + ": inFlight=" + getInFlight() + "/" + maxInFlight + " rejected=" + getRejected()
+                + " wait[" + queueWait + "] service[" + service + "]";
+    }
+}
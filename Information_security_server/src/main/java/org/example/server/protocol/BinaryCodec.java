@@ -0,0 +1,125 @@
+package org.example.server.protocol;
+
+import org.example.common.protocol.BinaryFrame;
+import org.example.common.protocol.BinaryFrameWriter;
+import org.example.common.protocol.FrameCompressor;
+import org.example.common.protocol.FrameReader;
+import org.example.server.ServerConfig;
+
+import java.io.IOException;
+
+/**
+ * Server side of the binary framing laid out in {@link BinaryFrame}. Client frames are read into
+ * the same fields {@link MessageCodec#decode} fills, and an empty token on a client frame is
+ * resolved to the last one that client sent. The server pings a connection it has heard nothing
+ * from for a while, and any frame the client sends back keeps it open; a PONG does so without
+ * doing anything else. On connections that negotiated compression, either side may send a frame
+ * compressed by {@link #COMPRESSOR}. Like {@link MessageCodec}, one instance per connection, and
+ * each side must be used by one thread at a time; frames are passed to {@link #decode} without
+ * the length.
+ */
+public class BinaryCodec {
+    public static final int MAX_FRAME_LENGTH = FrameReader.MAX_FRAME_LENGTH;
+
+    /** Compresses and inflates frames for every connection; compresses nothing when compression is off. */
+    public static final FrameCompressor COMPRESSOR = new FrameCompressor(ServerConfig.COMPRESSION_LEVEL,
+            ServerConfig.COMPRESSION_ENABLED ? ServerConfig.COMPRESSION_THRESHOLD_BYTES : Integer.MAX_VALUE,
+            ServerConfig.COMPRESSION_POOL_SIZE);
+
+    private final ClientMessage decoded = new ClientMessage();
+    private final BinaryFrame parsed = new BinaryFrame();
+    private final BinaryFrameWriter writer = new BinaryFrameWriter();
+    private final boolean compressed;
+    // The token that an empty token on a client frame refers to
+    private String accessToken = "";
+
+    public BinaryCodec() {
+        this(false);
+    }
+
+    /** @param compressed whether the connection negotiated compression, so client frames may arrive compressed */
+    public BinaryCodec(boolean compressed) {
+        this.compressed = compressed;
+    }
+
+    /**
+     * Reads a client frame into the same fields {@link MessageCodec#decode} fills, plus the send
+     * time. Frames of an unknown type decode to no fields, so newer clients can add types.
+     *
+     * @throws IOException if the frame is truncated, a length runs past its end, or it is compressed
+     *                     without compression having been negotiated or does not inflate
+     */
+    public ClientMessage decode(byte[] frame) throws IOException {
+        if (FrameCompressor.isCompressed(frame)) {
+            if (!compressed) {
+                throw new IOException("Compressed frame without negotiated compression");
+            }
+            frame = COMPRESSOR.inflate(frame);
+        }
+        decoded.reset();
+        BinaryFrame read = parsed.readClientFrame(frame);
+        byte type = read.getType();
+        decoded.sentAtMillis = read.getTimeMillis();
+        if (type == BinaryFrame.REFRESH) {
+            decoded.refreshToken = read.getBody();
+            return decoded;
+        }
+        if (type == BinaryFrame.PONG) {
+            decoded.pong = true;
+            return decoded;
+        }
+        if (type < BinaryFrame.MESSAGE || type > BinaryFrame.DIRECT) {
+            return decoded;
+        }
+        if (!read.getToken().isEmpty()) {
+            accessToken = read.getToken();
+        }
+        decoded.accessToken = accessToken;
+        switch (type) {
+            case BinaryFrame.JOIN:
+                decoded.join = read.getBody();
+                break;
+            case BinaryFrame.LEAVE:
+                decoded.leave = read.getBody();
+                break;
+            case BinaryFrame.ROOM:
+                decoded.room = read.getRoom();
+                decoded.message = read.getBody();
+                break;
+            case BinaryFrame.DIRECT:
+                decoded.to = read.getTo();
+                decoded.id = read.getId();
+                decoded.message = read.getBody();
+                break;
+            default:
+                decoded.message = read.getBody();
+                break;
+        }
+        return decoded;
+    }
+
+    /** Encodes a {@link BinaryFrame#MESSAGE} frame, with a new access token if one is given. */
+    public byte[] encodeMessage(long timeMillis, String message, String accessToken) throws IOException {
+        return writer.encodeMessage(timeMillis, accessToken, message);
+    }
+
+    /** Encodes the {@link BinaryFrame#ROOM} frame delivered to every member of a room. */
+    public byte[] encodeRoomMessage(long timeMillis, String room, String from, String message) throws IOException {
+        return writer.encodeRoomMessage(timeMillis, room, from, message);
+    }
+
+    /** Encodes the {@link BinaryFrame#DIRECT} frame for the recipient of a direct message. */
+    public byte[] encodeDirectMessage(long timeMillis, String from, ClientMessage source) throws IOException {
+        return writer.encodeDirectMessage(timeMillis, from, source.id, source.message);
+    }
+
+    /** Encodes the {@link BinaryFrame#STATUS} frame, the sender's receipt for a direct message. */
+    public byte[] encodeDeliveryStatus(long timeMillis, String to, String status, int sessions, String id) throws IOException {
+        return writer.encodeDeliveryStatus(timeMillis, sessions, to, status, id);
+    }
+
+    /** Encodes a {@link BinaryFrame#PING}, which the client answers with a {@link BinaryFrame#PONG}. */
+    public byte[] encodePing(long timeMillis) throws IOException {
+        return writer.encodePing(timeMillis);
+    }
+}
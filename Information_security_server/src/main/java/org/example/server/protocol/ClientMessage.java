@@ -0,0 +1,123 @@
+package org.example.server.protocol;
+
+/**
+ * The fields of one client line or frame that the server acts on. A {@link MessageCodec} or
+ * {@link BinaryCodec} reuses a single instance per connection, so values are only valid until
+ * the next decode.
+ */
+public class ClientMessage {
+    String timeStamp;
+    String message;
+    String accessToken;
+    String refreshToken;
+    String room;
+    String join;
+    String leave;
+    String to;
+    String id;
+    // An answer to a heartbeat ping
+    boolean pong;
+    // Send time of a binary frame; JSON lines carry time_stamp instead
+    long sentAtMillis = -1;
+    // The decoded line and the span of the message's JSON string literal in it, quotes included,
+    // so a direct message can be forwarded without unescaping and escaping it again
+    String line;
+    int messageStart = -1;
+    int messageEnd = -1;
+
+    void reset() {
+        timeStamp = null;
+        message = null;
+        accessToken = null;
+        refreshToken = null;
+        room = null;
+        join = null;
+        leave = null;
+        to = null;
+        id = null;
+        pong = false;
+        sentAtMillis = -1;
+        line = null;
+        messageStart = -1;
+        messageEnd = -1;
+    }
+
+    public boolean hasTimeStamp() {
+        return timeStamp != null;
+    }
+
+    public boolean hasMessage() {
+        return message != null;
+    }
+
+    public boolean hasAccessToken() {
+        return accessToken != null;
+    }
+
+    public boolean hasRefreshToken() {
+        return refreshToken != null;
+    }
+
+    public boolean hasRoom() {
+        return room != null;
+    }
+
+    public boolean hasJoin() {
+        return join != null;
+    }
+
+    public boolean hasLeave() {
+        return leave != null;
+    }
+
+    public boolean hasTo() {
+        return to != null;
+    }
+
+    /** An answer to a heartbeat ping, which carries nothing else. */
+    public boolean isPong() {
+        return pong;
+    }
+
+    public String getTimeStamp() {
+        return timeStamp;
+    }
+
+    public String getMessage() {
+        return message;
+    }
+
+    public String getAccessToken() {
+        return accessToken;
+    }
+
+    public String getRefreshToken() {
+        return refreshToken;
+    }
+
+    public String getRoom() {
+        return room;
+    }
+
+    public String getJoin() {
+        return join;
+    }
+
+    public String getLeave() {
+        return leave;
+    }
+
+    public String getTo() {
+        return to;
+    }
+
+    /** When a binary frame was sent, in epoch milliseconds; -1 for JSON lines. */
+    public long getSentAtMillis() {
+        return sentAtMillis;
+    }
+
+    /** Optional client-chosen id, echoed in the delivery status of a direct message. */
+    public String getId() {
+        return id;
+    }
+}
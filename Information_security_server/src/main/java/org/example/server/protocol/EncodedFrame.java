@@ -0,0 +1,47 @@
+package org.example.server.protocol;
+
+/**
+ * One outgoing message encoded for each framing. A fan-out encodes once per framing and hands
+ * every recipient the array for its own connection, so mixed rooms still allocate nothing per
+ * recipient. The binary frame is compressed once, when the first recipient that negotiated
+ * compression asks for it. None of the arrays may be modified.
+ */
+public class EncodedFrame {
+    private final byte[] json;
+    private final byte[] binary;
+    // Racing recipients may both compress it; they get equal arrays either way
+    private volatile byte[] compressedBinary;
+    private final long originNanos;
+
+    public EncodedFrame(byte[] json, byte[] binary) {
+        this(json, binary, System.nanoTime());
+    }
+
+    /** @param originNanos when the client message this frame forwards started to be parsed */
+    public EncodedFrame(byte[] json, byte[] binary, long originNanos) {
+        this.json = json;
+        this.binary = binary;
+        this.originNanos = originNanos;
+    }
+
+    public long getOriginNanos() {
+        return originNanos;
+    }
+
+    public byte[] forFraming(Framing framing) {
+        return framing == Framing.BINARY ? binary : json;
+    }
+
+    /** The frame for a connection with this framing, compressed if it negotiated compression. */
+    public byte[] forConnection(Framing framing, boolean compressed) {
+        if (framing != Framing.BINARY || !compressed) {
+            return forFraming(framing);
+        }
+        byte[] frame = compressedBinary;
+        if (frame == null) {
+            frame = BinaryCodec.COMPRESSOR.compress(binary);
+            compressedBinary = frame;
+        }
+        return frame;
+    }
+}
@@ -0,0 +1,44 @@
+package org.example.server.protocol;
+
+/**
+ * How chat traffic is framed once a client has logged in, negotiated with TLS ALPN together
+ * with the login mode: a login protocol name on its own means {@link #JSON}, the same name with
+ * the {@code /bin1} suffix means {@link #BINARY}, and {@code /bin1+deflate} means binary frames
+ * that may be compressed with {@link BinaryCodec#COMPRESSOR}. The login exchange itself is always
+ * line-based.
+ */
+public enum Framing {
+    /** Newline-delimited JSON, read with {@link MessageCodec}. */
+    JSON(""),
+    /** Length-prefixed frames, version 1 of the layout in {@link BinaryCodec}. */
+    BINARY("/bin1");
+
+    /** Appended after the {@link #BINARY} suffix to offer compressed frames. */
+    public static final String COMPRESSION_SUFFIX = "+deflate";
+
+    private final String suffix;
+
+    Framing(String suffix) {
+        this.suffix = suffix;
+    }
+
+    /** Appended to a login protocol name to offer this framing. */
+    public String suffix() {
+        return suffix;
+    }
+
+    /** Maps the negotiated ALPN protocol (null or empty if none) to a framing. */
+    public static Framing fromProtocol(String applicationProtocol) {
+        return applicationProtocol != null && applicationProtocol.contains(BINARY.suffix) ? BINARY : JSON;
+    }
+
+    /** Whether the negotiated ALPN protocol lets frames be compressed in both directions. */
+    public static boolean isCompressed(String applicationProtocol) {
+        return fromProtocol(applicationProtocol) == BINARY && applicationProtocol.endsWith(COMPRESSION_SUFFIX);
+    }
+
+    /** Parses a configured name such as "binary". */
+    public static Framing fromName(String name) {
+        return valueOf(name.trim().toUpperCase());
+    }
+}
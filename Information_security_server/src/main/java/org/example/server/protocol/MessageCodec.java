@@ -0,0 +1,195 @@
+package org.example.server.protocol;
+
+import com.fasterxml.jackson.core.JsonEncoding;
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+
+/**
+ * Streaming codec for the newline-delimited JSON chat protocol. Decoding pulls the known fields
+ * out of a line in one pass without building a tree; encoding writes UTF-8 frames into a
+ * reusable buffer. One instance per connection: decoding and encoding may run on different
+ * threads, but each side must be used by one thread at a time.
+ *
+ * <p>Parsers and generators are created per call so that their internal buffers come from
+ * Jackson's buffer recycler instead of being held by every idle connection.
+ */
+public class MessageCodec {
+    private static final JsonFactory FACTORY = new JsonFactory();
+
+    private final ClientMessage decoded = new ClientMessage();
+    private final ByteArrayOutputStream frame = new ByteArrayOutputStream(256);
+
+    /**
+     * Reads {@code time_stamp}, {@code message}, {@code accessToken}, {@code refreshToken}, the
+     * room fields {@code room}, {@code join} and {@code leave}, and the direct-message fields
+     * {@code to} and {@code id}, from a JSON object. Fields that are absent stay null; lines that
+     * are not a JSON object decode to no fields.
+     *
+     * @throws IOException if the line is not valid JSON
+     */
+    public ClientMessage decode(String line) throws IOException {
+        decoded.reset();
+        decoded.line = line;
+        try (JsonParser parser = FACTORY.createParser(line)) {
+            if (parser.nextToken() != JsonToken.START_OBJECT) {
+                return decoded;
+            }
+            while (parser.nextToken() == JsonToken.FIELD_NAME) {
+                String field = parser.currentName();
+                JsonToken value = parser.nextToken();
+                switch (field) {
+                    case "time_stamp":
+                        decoded.timeStamp = text(parser, value);
+                        break;
+                    case "message":
+                        int start = (int) parser.currentTokenLocation().getCharOffset();
+                        decoded.message = text(parser, value);
+                        if (value == JsonToken.VALUE_STRING) {
+                            decoded.messageStart = start;
+                            decoded.messageEnd = (int) parser.currentLocation().getCharOffset();
+                        }
+                        break;
+                    case "accessToken":
+                        decoded.accessToken = text(parser, value);
+                        break;
+                    case "refreshToken":
+                        decoded.refreshToken = text(parser, value);
+                        break;
+                    case "room":
+                        decoded.room = text(parser, value);
+                        break;
+                    case "join":
+                        decoded.join = text(parser, value);
+                        break;
+                    case "leave":
+                        decoded.leave = text(parser, value);
+                        break;
+                    case "to":
+                        decoded.to = text(parser, value);
+                        break;
+                    case "id":
+                        decoded.id = text(parser, value);
+                        break;
+                    default:
+                        parser.skipChildren();
+                        break;
+                }
+            }
+        }
+        return decoded;
+    }
+
+    /**
+     * Encodes {@code {"time_stamp":..,"message":..[,"accessToken":..]}} and a newline as UTF-8.
+     * Strings are escaped per RFC 8259, including backslashes and control characters. The returned
+     * array is not retained, so it can be queued or shared between connections.
+     */
+    public byte[] encodeMessage(String timeStamp, String message, String accessToken) throws IOException {
+        try {
+            try (JsonGenerator generator = FACTORY.createGenerator(frame, JsonEncoding.UTF8)) {
+                generator.writeStartObject();
+                generator.writeStringField("time_stamp", timeStamp);
+                generator.writeStringField("message", message);
+                if (accessToken != null) {
+                    generator.writeStringField("accessToken", accessToken);
+                }
+                generator.writeEndObject();
+            }
+            frame.write('\n');
+            return frame.toByteArray();
+        } finally {
+            frame.reset();
+        }
+    }
+
+    /**
+     * Encodes {@code {"time_stamp":..,"room":..,"from":..,"message":..}} and a newline as UTF-8,
+     * the frame delivered to every member of a room.
+     */
+    public byte[] encodeRoomMessage(String timeStamp, String room, String from, String message) throws IOException {
+        try {
+            try (JsonGenerator generator = FACTORY.createGenerator(frame, JsonEncoding.UTF8)) {
+                generator.writeStartObject();
+                generator.writeStringField("time_stamp", timeStamp);
+                generator.writeStringField("room", room);
+                generator.writeStringField("from", from);
+                generator.writeStringField("message", message);
+                generator.writeEndObject();
+            }
+            frame.write('\n');
+            return frame.toByteArray();
+        } finally {
+            frame.reset();
+        }
+    }
+
+    /**
+     * Encodes {@code {"time_stamp":..,"from":..[,"id":..],"message":..}} and a newline as UTF-8
+     * for the recipient of a direct message. The message is copied from the sender's line as the
+     * JSON literal it arrived as, so it is neither unescaped nor escaped again.
+     */
+    public byte[] encodeDirectMessage(String timeStamp, String from, ClientMessage source) throws IOException {
+        try {
+            try (JsonGenerator generator = FACTORY.createGenerator(frame, JsonEncoding.UTF8)) {
+                generator.writeStartObject();
+                generator.writeStringField("time_stamp", timeStamp);
+                generator.writeStringField("from", from);
+                if (source.id != null) {
+                    generator.writeStringField("id", source.id);
+                }
+                generator.writeFieldName("message");
+                if (source.messageStart >= 0) {
+                    generator.writeRawValue(source.line, source.messageStart, source.messageEnd - source.messageStart);
+                } else {
+                    generator.writeString(source.message);
+                }
+                generator.writeEndObject();
+            }
+            frame.write('\n');
+            return frame.toByteArray();
+        } finally {
+            frame.reset();
+        }
+    }
+
+    /**
+     * Encodes {@code {"time_stamp":..,"to":..,"status":..,"sessions":..[,"id":..]}} and a newline
+     * as UTF-8, the sender's receipt for a direct message.
+     */
+    public byte[] encodeDeliveryStatus(String timeStamp, String to, String status, int sessions, String id) throws IOException {
+        try {
+            try (JsonGenerator generator = FACTORY.createGenerator(frame, JsonEncoding.UTF8)) {
+                generator.writeStartObject();
+                generator.writeStringField("time_stamp", timeStamp);
+                generator.writeStringField("to", to);
+                generator.writeStringField("status", status);
+                generator.writeNumberField("sessions", sessions);
+                if (id != null) {
+                    generator.writeStringField("id", id);
+                }
+                generator.writeEndObject();
+            }
+            frame.write('\n');
+            return frame.toByteArray();
+        } finally {
+            frame.reset();
+        }
+    }
+
+    // Matches JsonNode.asText(): containers read as "", JSON null as "null"
+    private static String text(JsonParser parser, JsonToken value) throws IOException {
+        if (value == JsonToken.START_OBJECT || value == JsonToken.START_ARRAY) {
+            parser.skipChildren();
+            return "";
+        }
+        if (value == JsonToken.VALUE_NULL) {
+            return "null";
+        }
+        return parser.getText();
+    }
+}
@@ -0,0 +1,41 @@
+package org.example.server.room;
+
+import org.example.common.metrics.LatencyHistogram;
+
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Posts, recipients and the time to hand one post to every recipient's outbound queue.
+ */
+public class FanOutStats {
+    public static final FanOutStats SERVER = new FanOutStats();
+
+    private final LongAdder posts = new LongAdder();
+    private final LongAdder recipients = new LongAdder();
+    private final LongAdder dropped = new LongAdder();
+    private final LatencyHistogram latency = new LatencyHistogram();
+
+    void record(int delivered, int failed, long startedNanos) {
+        latency.recordSince(startedNanos);
+        posts.increment();
+        recipients.add(delivered);
+        dropped.add(failed);
+    }
+
+    public LatencyHistogram getLatency() {
+        return latency;
+    }
+
+    public long getPosts() {
+        return posts.sum();
+    }
+
+    public long getRecipients() {
+        return recipients.sum();
+    }
+
+    @Override
+    public String toString() {
+        return String.format("posts=%d recipients=%d dropped=%d fanout[%s]", posts.sum(), recipients.sum(), dropped.sum(), latency);
+    }
+}
@@ -0,0 +1,35 @@
+package org.example.server.room;
+
+import org.example.server.client.ClientHandler;
+
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * A named set of clients. Membership changes go through {@link RoomRegistry} so that empty
+ * rooms can be removed atomically; iteration is weakly consistent and never blocks a join.
+ */
+public class Room {
+    private final String name;
+    private final Set<ClientHandler> members = ConcurrentHashMap.newKeySet();
+
+    Room(String name) {
+        this.name = name;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public int size() {
+        return members.size();
+    }
+
+    public boolean contains(ClientHandler member) {
+        return members.contains(member);
+    }
+
+    Set<ClientHandler> members() {
+        return members;
+    }
+}
@@ -0,0 +1,94 @@
+package org.example.server.room;
+
+import org.example.server.client.ClientHandler;
+import org.example.server.protocol.EncodedFrame;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * Named rooms and their members, kept next to the connected-clients map. A post is encoded
+ * once per framing by the caller and the same frame is offered to every member's outbound queue,
+ * so delivering to a room of any size allocates nothing per recipient.
+ */
+public class RoomRegistry {
+    public static final int MAX_ROOM_NAME_LENGTH = 64;
+
+    private final ConcurrentMap<String, Room> rooms = new ConcurrentHashMap<>();
+
+    public static boolean isValidName(String name) {
+        return name != null && !name.isBlank() && name.length() <= MAX_ROOM_NAME_LENGTH;
+    }
+
+    /** @return false if the room name is not valid */
+    public boolean join(String name, ClientHandler member) {
+        if (!isValidName(name)) {
+            return false;
+        }
+        rooms.compute(name, (key, room) -> {
+            Room joined = room != null ? room : new Room(key);
+            joined.members().add(member);
+            return joined;
+        });
+        return true;
+    }
+
+    /** Removes the member and drops the room once it is empty. */
+    public void leave(String name, ClientHandler member) {
+        rooms.computeIfPresent(name, (key, room) -> {
+            room.members().remove(member);
+            return room.members().isEmpty() ? null : room;
+        });
+    }
+
+    public boolean isMember(String name, ClientHandler member) {
+        Room room = rooms.get(name);
+        return room != null && room.contains(member);
+    }
+
+    public Room get(String name) {
+        return rooms.get(name);
+    }
+
+    public int getRoomCount() {
+        return rooms.size();
+    }
+
+    /**
+     * Offers an encoded frame to every member of a room.
+     *
+     * @return the number of members it was queued for
+     */
+    public int publish(String name, EncodedFrame frame) {
+        Room room = rooms.get(name);
+        if (room == null) {
+            return 0;
+        }
+        return deliver(room.members(), frame);
+    }
+
+    /** Offers an encoded frame to every client in {@code recipients}. */
+    public int broadcast(Iterable<ClientHandler> recipients, EncodedFrame frame) {
+        return deliver(recipients, frame);
+    }
+
+    private static int deliver(Iterable<ClientHandler> recipients, EncodedFrame frame) {
+        long started = System.nanoTime();
+        int delivered = 0;
+        int failed = 0;
+        for (ClientHandler member : recipients) {
+            if (member.deliver(frame)) {
+                delivered++;
+            } else {
+                failed++;
+            }
+        }
+        FanOutStats.SERVER.record(delivered, failed, started);
+        return delivered;
+    }
+
+    @Override
+    public String toString() {
+        return "rooms=" + rooms.size() + " " + FanOutStats.SERVER;
+    }
+}
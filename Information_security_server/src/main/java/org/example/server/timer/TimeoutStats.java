@@ -0,0 +1,69 @@
+package org.example.server.timer;
+
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Connections closed by a deadline on the {@link TimingWheel}, by which one, and the heartbeat
+ * pings and token expiry notices sent to sessions.
+ */
+public class TimeoutStats {
+    public static final TimeoutStats SERVER = new TimeoutStats();
+
+    /** The deadlines that close a connection. */
+    public enum Reason {
+        /** The TLS handshake did not finish in time. */
+        HANDSHAKE,
+        /** The login did not finish in time after the handshake. */
+        AUTH,
+        /** The client sent no request, pongs aside, for the idle timeout. */
+        IDLE,
+        /** Nothing at all arrived from the client, pongs included, for the heartbeat timeout. */
+        HEARTBEAT
+    }
+
+    private final LongAdder[] timedOut = new LongAdder[Reason.values().length];
+    private final LongAdder pings = new LongAdder();
+    private final LongAdder tokenNotices = new LongAdder();
+
+    public TimeoutStats() {
+        for (int i = 0; i < timedOut.length; i++) {
+            timedOut[i] = new LongAdder();
+        }
+    }
+
+    public void timedOut(Reason reason) {
+        timedOut[reason.ordinal()].increment();
+    }
+
+    public void pingSent() {
+        pings.increment();
+    }
+
+    public void tokenNoticeSent() {
+        tokenNotices.increment();
+    }
+
+    public long getTimedOut(Reason reason) {
+        return timedOut[reason.ordinal()].sum();
+    }
+
+    public long getPings() {
+        return pings.sum();
+    }
+
+    public long getTokenNotices() {
+        return tokenNotices.sum();
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder text = new StringBuilder("timedOut[");
+        for (Reason reason : Reason.values()) {
+            if (reason.ordinal() > 0) {
+                text.append(' ');
+            }
+            text.append(reason.name().toLowerCase()).append('=').append(timedOut[reason.ordinal()].sum());
+        }
+        return text.append("] pings=").append(pings.sum()).append(" tokenNotices=").append(tokenNotices.sum()).toString();
+    }
+}
@@ -0,0 +1,246 @@
+package org.example.server.timer;
+
+import org.example.server.ServerConfig;
+
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicIntegerFieldUpdater;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Hashed timing wheel for the per-connection deadlines: handshakes, logins, idle sessions,
+ * heartbeats and token expiry notices. Time is cut into ticks of {@code tickMillis}, and a
+ * timeout lives in the bucket of the tick it falls due in, modulo the number of buckets, with a
+ * count of the turns of the wheel still to wait. Scheduling hands the timeout to the ticker
+ * through a queue and cancelling marks it and queues it for removal, so both are O(1) whatever
+ * the number of timeouts pending, and neither takes a lock.
+ *
+ * <p>One daemon thread serves every connection. On each tick it places new timeouts, unlinks
+ * cancelled ones and runs those in the current bucket that are due, so a timeout runs up to one
+ * tick late and never early. Tasks run on that thread and must not block; a task that throws is
+ * logged and does not stop the wheel.
+ */
+public class TimingWheel {
+    public static final TimingWheel SERVER = new TimingWheel("timing-wheel", ServerConfig.TIMER_TICK_MS, ServerConfig.TIMER_WHEEL_SIZE);
+
+    private static final Logger logger = LoggerFactory.getLogger(TimingWheel.class);
+    // New timeouts placed per tick, so a burst of schedules cannot stall expiry
+    private static final int MAX_ADDED_PER_TICK = 100_000;
+
+    private final long tickNanos;
+    private final Bucket[] buckets;
+    private final int mask;
+    private final Queue<Timeout> added = new ConcurrentLinkedQueue<>();
+    private final Queue<Timeout> cancelled = new ConcurrentLinkedQueue<>();
+    private final long startNanos;
+    private final Thread ticker;
+    // Only touched by the ticker thread
+    private long tick;
+    private volatile boolean stopped;
+
+    private final LongAdder scheduledCount = new LongAdder();
+    private final LongAdder expiredCount = new LongAdder();
+    private final LongAdder cancelledCount = new LongAdder();
+
+    /** @param wheelSize buckets, rounded up to a power of two */
+    public TimingWheel(String name, long tickMillis, int wheelSize) {
+        this.tickNanos = TimeUnit.MILLISECONDS.toNanos(Math.max(1, tickMillis));
+        int size = Integer.highestOneBit(Math.max(2, wheelSize) - 1) << 1;
+        this.buckets = new Bucket[size];
+        for (int i = 0; i < size; i++) {
+            buckets[i] = new Bucket();
+        }
+        this.mask = size - 1;
+        this.startNanos = System.nanoTime();
+        this.ticker = Thread.ofPlatform().daemon().name(name).unstarted(this::run);
+        ticker.start();
+    }
+
+    /**
+     * Runs {@code task} on the wheel's thread once {@code delay} has passed, unless the returned
+     * timeout is cancelled first. Safe to call from any thread, including from a task.
+     */
+    public Timeout schedule(Runnable task, long delay, TimeUnit unit) {
+        Timeout timeout = new Timeout(task, System.nanoTime() + Math.max(0, unit.toNanos(delay)));
+        scheduledCount.increment();
+        added.add(timeout);
+        return timeout;
+    }
+
+    public long getScheduled() {
+        return scheduledCount.sum();
+    }
+
+    public long getExpired() {
+        return expiredCount.sum();
+    }
+
+    public long getCancelled() {
+        return cancelledCount.sum();
+    }
+
+    /** Timeouts scheduled that have neither run nor been cancelled. */
+    public long getPending() {
+        return Math.max(0, scheduledCount.sum() - expiredCount.sum() - cancelledCount.sum());
+    }
+
+    /** Stops the ticker; timeouts still pending never run. */
+    public void stop() {
+        stopped = true;
+        LockSupport.unpark(ticker);
+    }
+
+    private void run() {
+        while (!stopped) {
+            long deadline = startNanos + (tick + 1) * tickNanos;
+            long wait;
+            while ((wait = deadline - System.nanoTime()) > 0 && !stopped) {
+                LockSupport.parkNanos(wait);
+            }
+            try {
+                removeCancelled();
+                placeAdded();
+                buckets[(int) (tick & mask)].expire(deadline);
+            } catch (RuntimeException e) {
+                logger.error("Timing wheel tick failed.", e);
+            }
+            tick++;
+        }
+    }
+
+    private void placeAdded() {
+        for (int i = 0; i < MAX_ADDED_PER_TICK; i++) {
+            Timeout timeout = added.poll();
+            if (timeout == null) {
+                return;
+            }
+            if (timeout.state != Timeout.PENDING) {
+                continue;
+            }
+            long dueTick = (timeout.deadlineNanos - startNanos) / tickNanos;
+            timeout.rounds = Math.max(0, (dueTick - tick) / buckets.length);
+            // One already due goes in the current bucket and runs on this tick
+            buckets[(int) (Math.max(dueTick, tick) & mask)].add(timeout);
+        }
+    }
+
+    private void removeCancelled() {
+        Timeout timeout;
+        while ((timeout = cancelled.poll()) != null) {
+            if (timeout.bucket != null) {
+                timeout.bucket.remove(timeout);
+            }
+        }
+    }
+
+    @Override
+    public String toString() {
+        return "pending=" + getPending() + " expired=" + expiredCount.sum() + " cancelled=" + cancelledCount.sum();
+    }
+
+    /** A task scheduled on a {@link TimingWheel}. */
+    public final class Timeout {
+        private static final int PENDING = 0;
+        private static final int CANCELLED = 1;
+        private static final int EXPIRED = 2;
+        private static final AtomicIntegerFieldUpdater<Timeout> STATE = AtomicIntegerFieldUpdater.newUpdater(Timeout.class, "state");
+
+        private final Runnable task;
+        private final long deadlineNanos;
+        private volatile int state;
+        // The fields below are only touched by the ticker thread
+        private long rounds;
+        private Bucket bucket;
+        private Timeout previous;
+        private Timeout next;
+
+        private Timeout(Runnable task, long deadlineNanos) {
+            this.task = task;
+            this.deadlineNanos = deadlineNanos;
+        }
+
+        /**
+         * Keeps the task from running.
+         *
+         * @return false if it has already run or been cancelled
+         */
+        public boolean cancel() {
+            if (!STATE.compareAndSet(this, PENDING, CANCELLED)) {
+                return false;
+            }
+            cancelledCount.increment();
+            cancelled.add(this);
+            return true;
+        }
+
+        public boolean isExpired() {
+            return state == EXPIRED;
+        }
+
+        private void expire() {
+            if (!STATE.compareAndSet(this, PENDING, EXPIRED)) {
+                return;
+            }
+            expiredCount.increment();
+            try {
+                task.run();
+            } catch (RuntimeException e) {
+                logger.error("Timeout task failed.", e);
+            }
+        }
+    }
+
+    // Doubly linked so that a cancelled timeout is unlinked without a search
+    private static final class Bucket {
+        private Timeout head;
+        private Timeout tail;
+
+        private void add(Timeout timeout) {
+            timeout.bucket = this;
+            if (head == null) {
+                head = tail = timeout;
+            } else {
+                tail.next = timeout;
+                timeout.previous = tail;
+                tail = timeout;
+            }
+        }
+
+        private void expire(long deadlineNanos) {
+            Timeout timeout = head;
+            while (timeout != null) {
+                Timeout next = timeout.next;
+                if (timeout.rounds <= 0 && timeout.deadlineNanos - deadlineNanos <= 0) {
+                    remove(timeout);
+                    timeout.expire();
+                } else if (timeout.rounds > 0) {
+                    timeout.rounds--;
+                }
+                timeout = next;
+            }
+        }
+
+        private void remove(Timeout timeout) {
+            if (timeout.bucket != this) {
+                return;
+            }
+            if (timeout.previous != null) {
+                timeout.previous.next = timeout.next;
+            } else {
+                head = timeout.next;
+            }
+            if (timeout.next != null) {
+                timeout.next.previous = timeout.previous;
+            } else {
+                tail = timeout.previous;
+            }
+            timeout.previous = null;
+            timeout.next = null;
+            timeout.bucket = null;
+        }
+    }
+}
@@ -0,0 +1,50 @@
+package org.example.server.tls;
+
+import org.example.common.metrics.LatencyHistogram;
+
+import javax.net.ssl.SSLSession;
+
+/**
+ * Full versus resumed handshake counts and latency distributions. A resumed session keeps the
+ * creation time of the session it was resumed from, for both TLS 1.2 session IDs and TLS 1.3
+ * tickets.
+ */
+public class HandshakeStats {
+    public static final HandshakeStats SERVER = new HandshakeStats();
+
+    private final LatencyHistogram full = new LatencyHistogram();
+    private final LatencyHistogram resumed = new LatencyHistogram();
+
+    /**
+     * @param startedMillis wall-clock time at which the handshake began
+     * @param startedNanos  {@link System#nanoTime()} at which the handshake began
+     * @return true if the session was resumed
+     */
+    public boolean record(SSLSession session, long startedMillis, long startedNanos) {
+        boolean wasResumed = isResumed(session, startedMillis);
+        (wasResumed ? resumed : full).recordSince(startedNanos);
+        return wasResumed;
+    }
+
+    public static boolean isResumed(SSLSession session, long startedMillis) {
+        return session.getCreationTime() < startedMillis;
+    }
+
+    public LatencyHistogram getFull() {
+        return full;
+    }
+
+    public LatencyHistogram getResumed() {
+        return resumed;
+    }
+
+    public double getResumptionRatio() {
+        long total = full.getCount() + resumed.getCount();
+        return total == 0 ? 0 : resumed.getCount() / (double) total;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("full[%s] resumed[%s] resumption=%.1f%%", full, resumed, getResumptionRatio() * 100);
+    }
+}
@@ -0,0 +1,68 @@
+package org.example.server.tls;
+
+import org.example.server.ServerConfig;
+import org.example.server.auth.LoginMode;
+
+import javax.net.ssl.SSLContext;
+import javax.net.ssl.SSLParameters;
+import javax.net.ssl.SSLSessionContext;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Protocol, cipher-suite and session-cache policy shared by every server transport.
+ */
+public class TlsSettings {
+    private static final Logger logger = LoggerFactory.getLogger(TlsSettings.class);
+
+    /**
+     * Must run before the first SSLContext is created: SunJSSE reads the ticket switch once.
+     */
+    public static void enableSessionTickets() {
+        if (System.getProperty("jdk.tls.server.enableSessionTicketExtension") == null) {
+            System.setProperty("jdk.tls.server.enableSessionTicketExtension", String.valueOf(ServerConfig.TLS_SESSION_TICKETS));
+        }
+    }
+
+    public static void configure(SSLContext sslContext) {
+        SSLSessionContext sessions = sslContext.getServerSessionContext();
+        sessions.setSessionCacheSize(ServerConfig.TLS_SESSION_CACHE_SIZE);
+        sessions.setSessionTimeout(ServerConfig.TLS_SESSION_TIMEOUT_SECONDS);
+        SSLParameters parameters = parameters(sslContext);
+        logger.info("TLS session cache: size={}, timeout={}s, tickets={}; protocols={}, cipher suites={}",
+                ServerConfig.TLS_SESSION_CACHE_SIZE, ServerConfig.TLS_SESSION_TIMEOUT_SECONDS,
+                System.getProperty("jdk.tls.server.enableSessionTicketExtension"),
+                Arrays.toString(parameters.getProtocols()), Arrays.toString(parameters.getCipherSuites()));
+        logger.info("Login modes and framings (ALPN): {}", Arrays.toString(parameters.getApplicationProtocols()));
+    }
+
+    /**
+     * The configured protocols and cipher suites, in preference order, limited to what the
+     * provider supports. The server's order wins so AES-GCM is picked whenever the client offers it.
+     * The enabled login modes and framings are offered as ALPN protocols, also in server order.
+     */
+    public static SSLParameters parameters(SSLContext sslContext) {
+        SSLParameters supported = sslContext.getSupportedSSLParameters();
+        SSLParameters parameters = sslContext.getDefaultSSLParameters();
+        parameters.setProtocols(retain(ServerConfig.TLS_PROTOCOLS, supported.getProtocols()));
+        parameters.setCipherSuites(retain(ServerConfig.TLS_CIPHER_SUITES, supported.getCipherSuites()));
+        parameters.setUseCipherSuitesOrder(true);
+        parameters.setApplicationProtocols(LoginMode.protocols(ServerConfig.LOGIN_MODES, ServerConfig.FRAMING_MODES,
+                ServerConfig.COMPRESSION_ENABLED));
+        return parameters;
+    }
+
+    private static String[] retain(String[] preferred, String[] supported) {
+        List<String> available = Arrays.asList(supported);
+        List<String> result = new ArrayList<>();
+        for (String name : preferred) {
+            if (available.contains(name)) {
+                result.add(name);
+            }
+        }
+        return result.toArray(new String[0]);
+    }
+}
@@ -0,0 +1,453 @@
+package org.example.utils;
+
+import org.example.server.metrics.LatencyStats;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Properties;
+import java.util.Set;
+import java.util.concurrent.BlockingDeque;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingDeque;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * A small bounded JDBC connection pool. Borrowed connections are proxies: {@code close()} hands the
+ * physical connection back to the pool and {@code prepareStatement(sql)} is served from a per-connection
+ * statement cache, so callers keep using plain JDBC and the usual close-in-finally pattern.
+ *
+ * <p>Settings are read from {@code application.properties}:
+ * {@code db.pool.minSize}, {@code db.pool.maxSize}, {@code db.pool.acquireTimeoutMs},
+ * {@code db.pool.validationIntervalMs}, {@code db.pool.idleTimeoutMs},
+ * {@code db.pool.leakDetectionThresholdMs}, {@code db.pool.leakDetectionStackTraces},
+ * {@code db.pool.statementCacheSize} and {@code db.pool.statsIntervalSeconds}.
+ *
+ * <p>A possible leak is reported with the name of the thread that borrowed the connection. The
+ * stack trace of the borrow is only captured with {@code db.pool.leakDetectionStackTraces=true},
+ * since taking one on every borrow is costly.
+ */
+public class ConnectionPool {
+    private static final Logger logger = LoggerFactory.getLogger(ConnectionPool.class);
+
+    private final String url;
+    private final String username;
+    private final String password;
+    private final int minSize;
+    private final int maxSize;
+    private final long acquireTimeoutMs;
+    private final long validationIntervalMs;
+    private final long idleTimeoutMs;
+    private final long leakThresholdMs;
+    private final boolean leakStackTraces;
+    private final int statementCacheSize;
+    private final long statsIntervalSeconds;
+
+    private final BlockingDeque<PooledConnection> idle = new LinkedBlockingDeque<>();
+    private final Set<PooledConnection> borrowed = ConcurrentHashMap.newKeySet();
+    private final Semaphore permits;
+    private final AtomicInteger total = new AtomicInteger();
+    private final ScheduledExecutorService housekeeper;
+    private volatile boolean closed;
+
+    private final LatencyStats acquireWait = new LatencyStats();
+    private final LongAdder acquireTimeouts = new LongAdder();
+    private final LongAdder created = new LongAdder();
+    private final LongAdder destroyed = new LongAdder();
+    private final LongAdder validationFailures = new LongAdder();
+    private final LongAdder leaks = new LongAdder();
+    private final LongAdder statementHits = new LongAdder();
+    private final LongAdder statementMisses = new LongAdder();
+
+    public ConnectionPool(String url, String username, String password, Properties properties) {
+        this.url = url;
+        this.username = username;
+        this.password = password;
+        this.minSize = Integer.parseInt(properties.getProperty("db.pool.minSize", "2"));
+        this.maxSize = Integer.parseInt(properties.getProperty("db.pool.maxSize", "20"));
+        this.acquireTimeoutMs = Long.parseLong(properties.getProperty("db.pool.acquireTimeoutMs", "5000"));
+        this.validationIntervalMs = Long.parseLong(properties.getProperty("db.pool.validationIntervalMs", "30000"));
+        this.idleTimeoutMs = Long.parseLong(properties.getProperty("db.pool.idleTimeoutMs", "600000"));
+        this.leakThresholdMs = Long.parseLong(properties.getProperty("db.pool.leakDetectionThresholdMs", "30000"));
+        this.leakStackTraces = Boolean.parseBoolean(properties.getProperty("db.pool.leakDetectionStackTraces", "false"));
+        this.statementCacheSize = Integer.parseInt(properties.getProperty("db.pool.statementCacheSize", "32"));
+        this.statsIntervalSeconds = Long.parseLong(properties.getProperty("db.pool.statsIntervalSeconds", "60"));
+        this.permits = new Semaphore(maxSize, true);
+        this.housekeeper = Executors.newSingleThreadScheduledExecutor(Thread.ofPlatform().daemon().name("db-pool-housekeeper").factory());
+    }
+
+    /**
+     * Opens the minimum number of connections and starts the housekeeping and stats tasks. Called
+     * once the pool is constructed, so that those tasks never see it half built.
+     */
+    public void start() {
+        housekeeper.scheduleWithFixedDelay(this::housekeep, 5, 5, TimeUnit.SECONDS);
+        if (statsIntervalSeconds > 0) {
+            housekeeper.scheduleAtFixedRate(() -> logger.info("Connection pool {}", this), statsIntervalSeconds, statsIntervalSeconds, TimeUnit.SECONDS);
+        }
+        fillToMinimum();
+    }
+
+    /**
+     * Borrows a connection, waiting up to the acquire timeout for one to become free.
+     * Closing the returned connection gives it back to the pool.
+     */
+    public Connection borrow() throws SQLException {
+        if (closed) {
+            throw new SQLException("Connection pool is closed");
+        }
+        long start = System.nanoTime();
+        try {
+            if (!permits.tryAcquire(acquireTimeoutMs, TimeUnit.MILLISECONDS)) {
+                acquireTimeouts.increment();
+                throw new SQLException("Timed out after " + acquireTimeoutMs + " ms waiting for a database connection (" + this + ")");
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new SQLException("Interrupted while waiting for a database connection", e);
+        }
+        try {
+            PooledConnection pooled = takeIdle();
+            if (pooled == null) {
+                pooled = open();
+            }
+            acquireWait.recordSince(start);
+            pooled.borrowedAt = System.currentTimeMillis();
+            pooled.borrowedBy = leakThresholdMs > 0 ? Thread.currentThread().getName() : null;
+            pooled.borrowSite = leakThresholdMs > 0 && leakStackTraces ? new Exception("Connection borrowed here") : null;
+            pooled.leakReported = false;
+            borrowed.add(pooled);
+            return pooled.newHandle();
+        } catch (SQLException | RuntimeException e) {
+            permits.release();
+            throw e;
+        }
+    }
+
+    private PooledConnection takeIdle() {
+        PooledConnection pooled;
+        while ((pooled = idle.pollFirst()) != null) {
+            if (System.currentTimeMillis() - pooled.lastUsed < validationIntervalMs || isValid(pooled)) {
+                return pooled;
+            }
+            validationFailures.increment();
+            destroy(pooled);
+        }
+        return null;
+    }
+
+    private void release(PooledConnection pooled) {
+        borrowed.remove(pooled);
+        try {
+            if (!pooled.broken && !closed) {
+                if (!pooled.physical.getAutoCommit()) {
+                    pooled.physical.rollback();
+                    pooled.physical.setAutoCommit(true);
+                }
+                pooled.lastUsed = System.currentTimeMillis();
+                idle.offerFirst(pooled);
+            } else {
+                destroy(pooled);
+            }
+        } catch (SQLException e) {
+            destroy(pooled);
+        } finally {
+            permits.release();
+        }
+    }
+
+    private PooledConnection open() throws SQLException {
+        Connection physical = DriverManager.getConnection(url, username, password);
+        total.incrementAndGet();
+        created.increment();
+        return new PooledConnection(physical);
+    }
+
+    private boolean isValid(PooledConnection pooled) {
+        try {
+            return pooled.physical.isValid(2);
+        } catch (SQLException e) {
+            return false;
+        }
+    }
+
+    private void destroy(PooledConnection pooled) {
+        total.decrementAndGet();
+        destroyed.increment();
+        pooled.closeStatements();
+        try {
+            pooled.physical.close();
+        } catch (SQLException e) {
+            logger.debug("Error closing pooled connection: {}", e.getMessage());
+        }
+    }
+
+    private void fillToMinimum() {
+        while (!closed && total.get() < minSize && permits.tryAcquire()) {
+            try {
+                PooledConnection pooled = open();
+                pooled.lastUsed = System.currentTimeMillis();
+                idle.offerLast(pooled);
+            } catch (SQLException e) {
+                logger.warn("Could not open pooled database connection: {}", e.getMessage());
+                return;
+            } finally {
+                permits.release();
+            }
+        }
+    }
+
+    private void housekeep() {
+        try {
+            long now = System.currentTimeMillis();
+            if (leakThresholdMs > 0) {
+                for (PooledConnection pooled : borrowed) {
+                    if (!pooled.leakReported && now - pooled.borrowedAt > leakThresholdMs) {
+                        pooled.leakReported = true;
+                        leaks.increment();
+                        logger.warn("Possible connection leak: connection held for {} ms by thread {}", now - pooled.borrowedAt, pooled.borrowedBy,
+                                pooled.borrowSite);
+                    }
+                }
+            }
+            // Retire connections that have been idle too long, oldest first, but keep the minimum.
+            Iterator<PooledConnection> oldest = idle.descendingIterator();
+            while (oldest.hasNext() && total.get() > minSize) {
+                PooledConnection pooled = oldest.next();
+                if (now - pooled.lastUsed > idleTimeoutMs && idle.remove(pooled)) {
+                    destroy(pooled);
+                }
+            }
+            fillToMinimum();
+        } catch (Exception e) {
+            logger.error("Connection pool housekeeping failed.", e);
+        }
+    }
+
+    public void close() {
+        closed = true;
+        housekeeper.shutdownNow();
+        PooledConnection pooled;
+        while ((pooled = idle.pollFirst()) != null) {
+            destroy(pooled);
+        }
+    }
+
+    public int getTotal() {
+        return total.get();
+    }
+
+    public int getIdle() {
+        return idle.size();
+    }
+
+    public int getActive() {
+        return borrowed.size();
+    }
+
+    public int getPending() {
+        return permits.getQueueLength();
+    }
+
+    public LatencyStats getAcquireWait() {
+        return acquireWait;
+    }
+
+    public long getAcquireTimeouts() {
+        return acquireTimeouts.sum();
+    }
+
+    @Override
+    public String toString() {
+        return "total=" + getTotal() + "/" + maxSize + " active=" + getActive() + " idle=" + getIdle() + " pending=" + getPending()
+                + " acquire[" + acquireWait + "] timeouts=" + getAcquireTimeouts()
+                + " created=" + created.sum() + " destroyed=" + destroyed.sum()
+                + " validationFailures=" + validationFailures.sum() + " leaks=" + leaks.sum()
+                + " stmtCache hits=" + statementHits.sum() + " misses=" + statementMisses.sum();
+    }
+
+    private static boolean isConnectionError(Throwable t) {
+        return t instanceof SQLException
+                && ((SQLException) t).getSQLState() != null
+                && ((SQLException) t).getSQLState().startsWith("08");
+    }
+
+    private final class PooledConnection {
+        private final Connection physical;
+        private final Map<String, PreparedStatement> statements;
+        private volatile long lastUsed;
+        private volatile long borrowedAt;
+        private volatile String borrowedBy;
+        private volatile Exception borrowSite;
+        private volatile boolean leakReported;
+        private volatile boolean broken;
+
+        private PooledConnection(Connection physical) {
+            this.physical = physical;
+            this.statements = new LinkedHashMap<>(16, 0.75f, true) {
+                @Override
+                protected boolean removeEldestEntry(Map.Entry<String, PreparedStatement> eldest) {
+                    if (size() <= statementCacheSize) {
+                        return false;
+                    }
+                    closeQuietly(eldest.getValue());
+                    return true;
+                }
+            };
+        }
+
+        private Connection newHandle() {
+            return (Connection) Proxy.newProxyInstance(Connection.class.getClassLoader(),
+                    new Class<?>[]{Connection.class}, new ConnectionHandle(this));
+        }
+
+        private PreparedStatement prepare(String sql) throws SQLException {
+            PreparedStatement statement = statementCacheSize > 0 ? statements.get(sql) : null;
+            if (statement != null && !statement.isClosed()) {
+                statementHits.increment();
+                statement.clearParameters();
+            } else {
+                statementMisses.increment();
+                statement = physical.prepareStatement(sql);
+                if (statementCacheSize > 0) {
+                    statements.put(sql, statement);
+                }
+            }
+            return statement;
+        }
+
+        private void closeStatements() {
+            for (PreparedStatement statement : statements.values()) {
+                closeQuietly(statement);
+            }
+            statements.clear();
+        }
+
+        private void closeQuietly(PreparedStatement statement) {
+            try {
+                statement.close();
+            } catch (SQLException e) {
+                // being discarded anyway
+            }
+        }
+    }
+
+    /** The borrower's view of a pooled connection; valid until {@code close()} is called on it. */
+    private final class ConnectionHandle implements InvocationHandler {
+        private final PooledConnection pooled;
+        private boolean released;
+
+        private ConnectionHandle(PooledConnection pooled) {
+            this.pooled = pooled;
+        }
+
+        @Override
+        public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+            String name = method.getName();
+            switch (name) {
+                case "close":
+                    if (!released) {
+                        released = true;
+                        release(pooled);
+                    }
+                    return null;
+                case "isClosed":
+                    return released || pooled.physical.isClosed();
+                case "equals":
+                    return proxy == args[0];
+                case "hashCode":
+                    return System.identityHashCode(proxy);
+                case "toString":
+                    return "Pooled" + pooled.physical;
+                default:
+                    break;
+            }
+            if (released) {
+                throw new SQLException("Connection has been returned to the pool");
+            }
+            try {
+                if (name.equals("prepareStatement") && args.length == 1) {
+                    PreparedStatement statement = pooled.prepare((String) args[0]);
+                    return Proxy.newProxyInstance(PreparedStatement.class.getClassLoader(),
+                            new Class<?>[]{PreparedStatement.class}, new StatementHandle(pooled, statement, (Connection) proxy));
+                }
+                return method.invoke(pooled.physical, args);
+            } catch (InvocationTargetException e) {
+                throw markIfBroken(pooled, e.getCause());
+            } catch (SQLException e) {
+                throw markIfBroken(pooled, e);
+            }
+        }
+    }
+
+    /** A cached statement lent out for one use; closing it keeps the physical statement open. */
+    private final class StatementHandle implements InvocationHandler {
+        private final PooledConnection pooled;
+        private final PreparedStatement statement;
+        private final Connection connection;
+        private boolean released;
+
+        private StatementHandle(PooledConnection pooled, PreparedStatement statement, Connection connection) {
+            this.pooled = pooled;
+            this.statement = statement;
+            this.connection = connection;
+        }
+
+        @Override
+        public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+            switch (method.getName()) {
+                case "close":
+                    if (!released) {
+                        released = true;
+                        if (statementCacheSize > 0) {
+                            statement.clearParameters();
+                            statement.clearBatch();
+                        } else {
+                            statement.close();
+                        }
+                    }
+                    return null;
+                case "isClosed":
+                    return released || statement.isClosed();
+                case "getConnection":
+                    return connection;
+                case "equals":
+                    return proxy == args[0];
+                case "hashCode":
+                    return System.identityHashCode(proxy);
+                default:
+                    break;
+            }
+            if (released) {
+                throw new SQLException("Statement is closed");
+            }
+            try {
+                return method.invoke(statement, args);
+            } catch (InvocationTargetException e) {
+                throw markIfBroken(pooled, e.getCause());
+            }
+        }
+    }
+
+    private static Throwable markIfBroken(PooledConnection pooled, Throwable t) {
+        if (isConnectionError(t)) {
+            pooled.broken = true;
+        }
+        return t;
+    }
+}
@@ -1,24 +1,40 @@
 package org.example.utils;
 
+import org.example.models.RefreshTokenRecord;
 import org.example.models.User;
+import org.example.server.ServerConfig;
+import org.example.utils.QueryStats.Query;
 
+import java.io.FileInputStream;
 import java.io.InputStream;
 import java.sql.*;
 import java.util.Properties;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
 
 public class DatabaseConnection {
     private static String JDBC_URL;
     private static String USERNAME;
     private static String PASSWORD;
-    private static boolean propertiesLoaded = false;
+    private static volatile boolean propertiesLoaded = false;
+    private static ConnectionPool pool;
+    // Written once under the class lock; read without it on every refresh-token lookup
+    private static volatile RefreshTokenWriter refreshTokenWriter;
+    public static final long REFRESH_TOKEN_LIFETIME_MS = 7L * 24 * 60 * 60 * 1000;
+    private static final RefreshTokenCache refreshTokenCache =
+            new RefreshTokenCache(ServerConfig.REFRESH_TOKEN_CACHE_TTL_MS, ServerConfig.REFRESH_TOKEN_CACHE_MAX_ENTRIES);
 
     public DatabaseConnection() {
 
     }
 
-    private static void loadDatabaseProperties() {
+    private static synchronized void loadDatabaseProperties() {
+        if (propertiesLoaded) {
+            return;
+        }
         Properties properties = new Properties();
-        try (InputStream input = DatabaseConnection.class.getClassLoader().getResourceAsStream("application.properties")) {
+        try (InputStream input = ServerConfig.DB_CONFIG != null ? new FileInputStream(ServerConfig.DB_CONFIG)
+                : DatabaseConnection.class.getClassLoader().getResourceAsStream("application.properties")) {
             if (input == null) {
                 System.err.println("Sorry, unable to find database.properties. Please ensure it's in src/main/resources.");
                 return;
@@ -28,33 +44,37 @@ public class DatabaseConnection {
             JDBC_URL = properties.getProperty("db.url");
             USERNAME = properties.getProperty("db.username");
             PASSWORD = properties.getProperty("db.password");
-            propertiesLoaded = true;
-
-            try (Connection connection = DriverManager.getConnection(JDBC_URL, USERNAME, PASSWORD)) {
-                System.out.println("Connection to MySQL database established successfully!");
-            } catch (SQLException e) {
-                System.err.println("Database error: " + e.getMessage());
-                e.printStackTrace();
+            if (JDBC_URL != null && USERNAME != null && PASSWORD != null) {
+                pool = new ConnectionPool(JDBC_URL, USERNAME, PASSWORD, properties);
+                pool.start();
+                System.out.println("Connection pool to database started: " + pool);
             }
+            propertiesLoaded = true;
         } catch (Exception e) {
             System.err.println("Error loading database properties: " + e.getMessage());
             e.printStackTrace();
         }
     }
 
-
-    public static Connection getConnection() {
+    public static ConnectionPool getPool() {
         if (!propertiesLoaded) {
             loadDatabaseProperties();
         }
-        if (JDBC_URL == null || USERNAME == null || PASSWORD == null) {
+        return pool;
+    }
+
+    /**
+     * Borrows a connection from the pool. Closing it (for example through {@link #closeResources})
+     * returns it to the pool rather than closing the socket.
+     */
+    public static Connection getConnection() {
+        ConnectionPool connectionPool = getPool();
+        if (connectionPool == null) {
             System.err.println("Cannot establish connection: Database properties are not loaded.");
             return null;
         }
         try {
-            Connection connection = DriverManager.getConnection(JDBC_URL, USERNAME, PASSWORD);
-            System.out.println("Connection to database established successfully!");
-            return connection;
+            return connectionPool.borrow();
         } catch (SQLException e) {
             System.err.println("Failed to establish database connection: " + e.getMessage());
             e.printStackTrace();
@@ -62,6 +82,17 @@ public class DatabaseConnection {
         }
     }
 
+    /** Flushes refresh tokens that are still waiting to be written, then closes the pool. */
+    public static void shutdown() {
+        RefreshTokenWriter writer = refreshTokenWriter;
+        if (writer != null) {
+            writer.close(ServerConfig.TOKEN_WRITER_CLOSE_TIMEOUT_MS);
+        }
+        if (pool != null) {
+            pool.close();
+        }
+    }
+
     public static void closeResources(Connection connection, Statement statement, ResultSet resultSet) {
         try {
             if (resultSet != null) resultSet.close();
@@ -73,11 +104,19 @@ public class DatabaseConnection {
         }
     }
 
+    // Queries that never got a connection are not timed
+    private static void recordQuery(Query query, long startedNanos) {
+        if (startedNanos != 0) {
+            QueryStats.SERVER.record(query, startedNanos);
+        }
+    }
+
     public static void createUsersTable(Connection connection) {
         String createTableSQL = "CREATE TABLE IF NOT EXISTS users (" +
                 "id INT AUTO_INCREMENT PRIMARY KEY," +
                 "name VARCHAR(255) NOT NULL," +
-                "email VARCHAR(255) UNIQUE NOT NULL" +
+                "email VARCHAR(255) UNIQUE NOT NULL," +
+                "password VARCHAR(255) NOT NULL" +
                 ");";
         try (Statement statement = connection.createStatement()) {
             statement.execute(createTableSQL);
@@ -93,10 +132,12 @@ public class DatabaseConnection {
         Connection connection = null;
         PreparedStatement statement = null;
         ResultSet resultSet = null;
+        long started = 0;
 
         try {
             connection = getConnection();
             if (connection == null) return null;
+            started = System.nanoTime();
 
             statement = connection.prepareStatement(sql);
             statement.setString(1, email);
@@ -110,24 +151,89 @@ public class DatabaseConnection {
             }
 
         } catch (SQLException e) {
+            QueryStats.SERVER.failed(Query.USER_BY_EMAIL_AND_PASSWORD);
+            e.printStackTrace();
+        } finally {
+            recordQuery(Query.USER_BY_EMAIL_AND_PASSWORD, started);
+            closeResources(connection, statement, resultSet);
+        }
+        return null;
+    }
+
+    /**
+     * Looks up a user by email, with the stored password hash in {@link User#getPassword()}, so
+     * that a salted hash can be checked by the caller. Returns null if there is no such user.
+     */
+    public static User getUserByEmail(String email) {
+        String sql = "SELECT id, name, email, password FROM users WHERE email = ?";
+        Connection connection = null;
+        PreparedStatement statement = null;
+        ResultSet resultSet = null;
+        long started = 0;
+
+        try {
+            connection = getConnection();
+            if (connection == null) return null;
+            started = System.nanoTime();
+
+            statement = connection.prepareStatement(sql);
+            statement.setString(1, email);
+            resultSet = statement.executeQuery();
+
+            if (resultSet.next()) {
+                return new User(resultSet.getInt("id"), resultSet.getString("name"),
+                        resultSet.getString("email"), resultSet.getString("password"));
+            }
+
+        } catch (SQLException e) {
+            QueryStats.SERVER.failed(Query.USER_BY_EMAIL);
             e.printStackTrace();
         } finally {
+            recordQuery(Query.USER_BY_EMAIL, started);
             closeResources(connection, statement, resultSet);
         }
         return null;
     }
 
+    public static void updatePasswordHash(int userId, String passwordHash) {
+        String sql = "UPDATE users SET password = ? WHERE id = ?";
+        Connection connection = null;
+        PreparedStatement statement = null;
+        long started = 0;
+        try {
+            connection = getConnection();
+            if (connection == null) return;
+            started = System.nanoTime();
+            statement = connection.prepareStatement(sql);
+            statement.setString(1, passwordHash);
+            statement.setInt(2, userId);
+            statement.executeUpdate();
+        } catch (SQLException e) {
+            QueryStats.SERVER.failed(Query.UPDATE_PASSWORD_HASH);
+            e.printStackTrace();
+        } finally {
+            recordQuery(Query.UPDATE_PASSWORD_HASH, started);
+            closeResources(connection, statement, null);
+        }
+    }
+
     public static User getUserByRefreshToken(String refreshToken) {
+        RefreshTokenRecord pending = pendingRefreshToken(refreshToken);
+        if (pending != null) {
+            return pending.getUser();
+        }
         String sql = "SELECT u.id, u.name, u.email, u.password FROM users u " +
                     "JOIN refresh_tokens rt ON u.id = rt.user_id " +
                     "WHERE rt.token = ? AND rt.expires_at > NOW()";
         Connection connection = null;
         PreparedStatement statement = null;
         ResultSet resultSet = null;
+        long started = 0;
 
         try {
             connection = getConnection();
             if (connection == null) return null;
+            started = System.nanoTime();
 
             statement = connection.prepareStatement(sql);
             statement.setString(1, refreshToken);
@@ -142,42 +248,141 @@ public class DatabaseConnection {
             }
 
         } catch (SQLException e) {
+            QueryStats.SERVER.failed(Query.USER_BY_REFRESH_TOKEN);
             e.printStackTrace();
         } finally {
+            recordQuery(Query.USER_BY_REFRESH_TOKEN, started);
             closeResources(connection, statement, resultSet);
         }
         return null;
     }
 
+    /**
+     * Looks up the owner and expiry of a refresh token in a single query, served from the
+     * in-memory cache when possible. Returns null if the token is unknown or expired.
+     */
+    public static RefreshTokenRecord resolveRefreshToken(String refreshToken) {
+        RefreshTokenRecord pending = pendingRefreshToken(refreshToken);
+        if (pending != null) {
+            return pending;
+        }
+        RefreshTokenRecord cached = refreshTokenCache.get(refreshToken);
+        if (cached != null) {
+            return cached;
+        }
+        String sql = "SELECT u.id, u.name, u.email, u.password, rt.expires_at FROM users u " +
+                    "JOIN refresh_tokens rt ON u.id = rt.user_id " +
+                    "WHERE rt.token = ? AND rt.expires_at > NOW()";
+        Connection connection = null;
+        PreparedStatement statement = null;
+        ResultSet resultSet = null;
+        long started = 0;
+
+        try {
+            connection = getConnection();
+            if (connection == null) return null;
+            started = System.nanoTime();
+
+            statement = connection.prepareStatement(sql);
+            statement.setString(1, refreshToken);
+            resultSet = statement.executeQuery();
+
+            if (resultSet.next()) {
+                User user = new User(resultSet.getInt("id"), resultSet.getString("name"),
+                        resultSet.getString("email"), resultSet.getString("password"));
+                RefreshTokenRecord record = new RefreshTokenRecord(user, resultSet.getTimestamp("expires_at").getTime());
+                refreshTokenCache.put(refreshToken, record);
+                return record;
+            }
+
+        } catch (SQLException e) {
+            QueryStats.SERVER.failed(Query.RESOLVE_REFRESH_TOKEN);
+            e.printStackTrace();
+        } finally {
+            recordQuery(Query.RESOLVE_REFRESH_TOKEN, started);
+            closeResources(connection, statement, resultSet);
+        }
+        return null;
+    }
+
+    public static RefreshTokenCache getRefreshTokenCache() {
+        return refreshTokenCache;
+    }
+
+    public static RefreshTokenWriter getRefreshTokenWriter() {
+        RefreshTokenWriter writer = refreshTokenWriter;
+        if (writer != null) {
+            return writer;
+        }
+        synchronized (DatabaseConnection.class) {
+            if (refreshTokenWriter == null) {
+                refreshTokenWriter = new RefreshTokenWriter(DatabaseConnection::getConnection,
+                        ServerConfig.TOKEN_WRITER_BATCH_SIZE, ServerConfig.TOKEN_WRITER_FLUSH_INTERVAL_MS,
+                        ServerConfig.TOKEN_WRITER_QUEUE_DEPTH);
+            }
+            return refreshTokenWriter;
+        }
+    }
+
+    /**
+     * Queues a new refresh token for a batched write. Lookups see it at once.
+     *
+     * @param overflow writes the token if the writer's queue is full
+     * @return completes once the token is in the database
+     */
+    public static CompletableFuture<Void> saveRefreshTokenBehind(User user, String token, long expiresAtMillis, Executor overflow) {
+        return getRefreshTokenWriter().enqueue(user, token, expiresAtMillis, overflow);
+    }
+
+    // Tokens queued for writing but not yet in the database
+    private static RefreshTokenRecord pendingRefreshToken(String token) {
+        RefreshTokenWriter writer = refreshTokenWriter;
+        return writer != null ? writer.resolvePending(token) : null;
+    }
+
     public static void saveRefreshToken(int userId, String token) {
         // Set expiration to 7 days from now
-        java.sql.Timestamp expiresAt = new java.sql.Timestamp(System.currentTimeMillis() + 7L * 24 * 60 * 60 * 1000);
+        saveRefreshToken(userId, token, System.currentTimeMillis() + REFRESH_TOKEN_LIFETIME_MS);
+    }
+
+    public static void saveRefreshToken(int userId, String token, long expiresAtMillis) {
+        java.sql.Timestamp expiresAt = new java.sql.Timestamp(expiresAtMillis);
         String sql = "INSERT INTO refresh_tokens (user_id, token, expires_at) VALUES (?, ?, ?) ON DUPLICATE KEY UPDATE token = VALUES(token), expires_at = VALUES(expires_at)";
         Connection connection = null;
         PreparedStatement statement = null;
+        long started = 0;
         try {
             connection = getConnection();
             if (connection == null) return;
+            started = System.nanoTime();
             statement = connection.prepareStatement(sql);
             statement.setInt(1, userId);
             statement.setString(2, token);
             statement.setTimestamp(3, expiresAt);
             statement.executeUpdate();
         } catch (SQLException e) {
+            QueryStats.SERVER.failed(Query.SAVE_REFRESH_TOKEN);
             e.printStackTrace();
         } finally {
+            recordQuery(Query.SAVE_REFRESH_TOKEN, started);
             closeResources(connection, statement, null);
         }
     }
 
     public static boolean isRefreshTokenValid(int userId, String token) {
+        RefreshTokenRecord pending = pendingRefreshToken(token);
+        if (pending != null && pending.getUser().getId() == userId) {
+            return true;
+        }
         String sql = "SELECT expires_at FROM refresh_tokens WHERE user_id = ? AND token = ?";
         Connection connection = null;
         PreparedStatement statement = null;
         ResultSet resultSet = null;
+        long started = 0;
         try {
             connection = getConnection();
             if (connection == null) return false;
+            started = System.nanoTime();
             statement = connection.prepareStatement(sql);
             statement.setInt(1, userId);
             statement.setString(2, token);
@@ -188,9 +393,11 @@ public class DatabaseConnection {
             }
             return false;
         } catch (SQLException e) {
+            QueryStats.SERVER.failed(Query.REFRESH_TOKEN_VALID);
             e.printStackTrace();
             return false;
         } finally {
+            recordQuery(Query.REFRESH_TOKEN_VALID, started);
             closeResources(connection, statement, resultSet);
         }
     }
@@ -0,0 +1,174 @@
+package org.example.utils;
+
+import org.example.server.ServerConfig;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Deletes expired refresh tokens in the background. Each run deletes in chunks of
+ * {@link ServerConfig#TOKEN_REAPER_CHUNK_SIZE} rows, found through the {@code expires_at} index,
+ * each chunk its own short transaction, and pauses {@link ServerConfig#TOKEN_REAPER_PAUSE_MS}
+ * between chunks, so row locks are held briefly and logins are never queued behind a long delete.
+ * A run stops when nothing expired is left or after {@link ServerConfig#TOKEN_REAPER_MAX_ROWS_PER_RUN}
+ * rows. Rows purged and the table's size are logged after every run.
+ */
+public class ExpiredTokenReaper {
+    private static final Logger logger = LoggerFactory.getLogger(ExpiredTokenReaper.class);
+    private static final String DELETE_SQL = "DELETE FROM refresh_tokens WHERE expires_at < ? LIMIT ?";
+    private static final String TABLE_STATS_SQL = "SELECT TABLE_ROWS, DATA_LENGTH + INDEX_LENGTH FROM information_schema.TABLES "
+            + "WHERE TABLE_SCHEMA = DATABASE() AND TABLE_NAME = 'refresh_tokens'";
+    private static final String COUNT_SQL = "SELECT COUNT(*) FROM refresh_tokens";
+
+    private final int chunkSize;
+    private final long pauseMillis;
+    private final long maxRowsPerRun;
+    private final LongAdder purged = new LongAdder();
+    private final LongAdder runs = new LongAdder();
+    private final AtomicLong lastRunPurged = new AtomicLong();
+    private final AtomicLong lastRunMillis = new AtomicLong();
+    private final AtomicLong tableRows = new AtomicLong(-1);
+    private final AtomicLong tableBytes = new AtomicLong(-1);
+    private ScheduledExecutorService scheduler;
+
+    public ExpiredTokenReaper() {
+        this(ServerConfig.TOKEN_REAPER_CHUNK_SIZE, ServerConfig.TOKEN_REAPER_PAUSE_MS, ServerConfig.TOKEN_REAPER_MAX_ROWS_PER_RUN);
+    }
+
+    public ExpiredTokenReaper(int chunkSize, long pauseMillis, long maxRowsPerRun) {
+        this.chunkSize = chunkSize;
+        this.pauseMillis = pauseMillis;
+        this.maxRowsPerRun = maxRowsPerRun;
+    }
+
+    /** Runs the reaper every {@code intervalSeconds}, starting after one interval. */
+    public synchronized void start(long intervalSeconds) {
+        if (scheduler != null || intervalSeconds <= 0) {
+            return;
+        }
+        scheduler = Executors.newSingleThreadScheduledExecutor(Thread.ofPlatform().daemon().name("token-reaper").factory());
+        scheduler.scheduleWithFixedDelay(this::runQuietly, intervalSeconds, intervalSeconds, TimeUnit.SECONDS);
+    }
+
+    public synchronized void stop() {
+        if (scheduler != null) {
+            scheduler.shutdownNow();
+            scheduler = null;
+        }
+    }
+
+    /** Deletes expired tokens until none are left or the per-run limit is reached. */
+    public long run() throws SQLException {
+        long started = System.currentTimeMillis();
+        Timestamp now = new Timestamp(started);
+        long deleted = 0;
+        while (deleted < maxRowsPerRun) {
+            int chunk = deleteChunk(now, (int) Math.min(chunkSize, maxRowsPerRun - deleted));
+            deleted += chunk;
+            purged.add(chunk);
+            if (chunk < chunkSize) {
+                break;
+            }
+            try {
+                Thread.sleep(pauseMillis);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                break;
+            }
+        }
+        runs.increment();
+        lastRunPurged.set(deleted);
+        lastRunMillis.set(System.currentTimeMillis() - started);
+        readTableSize();
+        return deleted;
+    }
+
+    public long getPurged() {
+        return purged.sum();
+    }
+
+    public long getTableRows() {
+        return tableRows.get();
+    }
+
+    private void runQuietly() {
+        try {
+            long deleted = run();
+            logger.info("Expired refresh tokens: {}", this);
+            if (deleted >= maxRowsPerRun) {
+                logger.warn("Token reaper hit its limit of {} rows per run; expired tokens remain", maxRowsPerRun);
+            }
+        } catch (SQLException e) {
+            logger.warn("Token reaper run failed: {}", e.getMessage());
+        } catch (RuntimeException e) {
+            logger.error("Token reaper run failed", e);
+        }
+    }
+
+    private int deleteChunk(Timestamp now, int limit) throws SQLException {
+        Connection connection = DatabaseConnection.getConnection();
+        if (connection == null) {
+            throw new SQLException("No database connection");
+        }
+        PreparedStatement statement = null;
+        try {
+            statement = connection.prepareStatement(DELETE_SQL);
+            statement.setTimestamp(1, now);
+            statement.setInt(2, limit);
+            return statement.executeUpdate();
+        } finally {
+            DatabaseConnection.closeResources(connection, statement, null);
+        }
+    }
+
+    // information_schema gives MySQL's estimate without scanning; other databases fall back to a count
+    private void readTableSize() {
+        Connection connection = DatabaseConnection.getConnection();
+        if (connection == null) {
+            return;
+        }
+        PreparedStatement statement = null;
+        ResultSet resultSet = null;
+        try {
+            try {
+                statement = connection.prepareStatement(TABLE_STATS_SQL);
+                resultSet = statement.executeQuery();
+                if (resultSet.next()) {
+                    tableRows.set(resultSet.getLong(1));
+                    tableBytes.set(resultSet.getLong(2));
+                    return;
+                }
+            } catch (SQLException e) {
+                // not MySQL
+            }
+            DatabaseConnection.closeResources(null, statement, resultSet);
+            statement = connection.prepareStatement(COUNT_SQL);
+            resultSet = statement.executeQuery();
+            if (resultSet.next()) {
+                tableRows.set(resultSet.getLong(1));
+                tableBytes.set(-1);
+            }
+        } catch (SQLException e) {
+            logger.debug("Could not read refresh_tokens size: {}", e.getMessage());
+        } finally {
+            DatabaseConnection.closeResources(connection, statement, resultSet);
+        }
+    }
+
+    @Override
+    public String toString() {
+        long bytes = tableBytes.get();
+        return "purged=" + purged.sum() + " lastRun=" + lastRunPurged.get() + " rows in " + lastRunMillis.get() + "ms runs="
+                + runs.sum() + " tableRows=" + tableRows.get() + (bytes >= 0 ? " tableSize=" + bytes / 1024 + "KB" : "");
+    }
+}
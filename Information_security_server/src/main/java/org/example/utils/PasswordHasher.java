@@ -0,0 +1,95 @@
+package org.example.utils;
+
+import org.bouncycastle.crypto.generators.SCrypt;
+import org.example.server.ServerConfig;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.SecureRandom;
+import java.util.Base64;
+
+/**
+ * Salted scrypt password hashes, stored as {@code $scrypt$ln=14,r=8,p=1$<salt>$<hash>} with
+ * unpadded Base64 fields. The cost comes from {@link ServerConfig#KDF_LOG_COST},
+ * {@link ServerConfig#KDF_BLOCK_SIZE} and {@link ServerConfig#KDF_PARALLELISM}; hashes made with
+ * other parameters still verify and report {@link #needsUpgrade}. Unsalted SHA-256 hex hashes
+ * from {@link SHA256Hasher} also verify, so they can be replaced on the user's next login.
+ */
+public class PasswordHasher {
+    private static final String PREFIX = "$scrypt$";
+    private static final int SALT_LENGTH = 16;
+    private static final int HASH_LENGTH = 32;
+    private static final SecureRandom RANDOM = new SecureRandom();
+    private static final Base64.Encoder ENCODER = Base64.getEncoder().withoutPadding();
+
+    public static String hash(String password) {
+        return hash(password, ServerConfig.KDF_LOG_COST, ServerConfig.KDF_BLOCK_SIZE, ServerConfig.KDF_PARALLELISM);
+    }
+
+    public static String hash(String password, int logCost, int blockSize, int parallelism) {
+        byte[] salt = new byte[SALT_LENGTH];
+        RANDOM.nextBytes(salt);
+        byte[] hash = SCrypt.generate(password.getBytes(StandardCharsets.UTF_8), salt, 1 << logCost, blockSize, parallelism, HASH_LENGTH);
+        return PREFIX + "ln=" + logCost + ",r=" + blockSize + ",p=" + parallelism + "$"
+                + ENCODER.encodeToString(salt) + "$" + ENCODER.encodeToString(hash);
+    }
+
+    /** Checks a password against a stored scrypt or legacy SHA-256 hash in constant time. */
+    public static boolean verify(String password, String stored) {
+        if (password == null || stored == null) {
+            return false;
+        }
+        if (!stored.startsWith(PREFIX)) {
+            byte[] expected = SHA256Hasher.hashStringSHA256(password).getBytes(StandardCharsets.US_ASCII);
+            return MessageDigest.isEqual(expected, stored.toLowerCase().getBytes(StandardCharsets.US_ASCII));
+        }
+        String[] fields = stored.split("\\$");
+        if (fields.length != 5) {
+            return false;
+        }
+        int[] cost = parseCost(fields[2]);
+        if (cost == null) {
+            return false;
+        }
+        try {
+            byte[] salt = Base64.getDecoder().decode(fields[3]);
+            byte[] expected = Base64.getDecoder().decode(fields[4]);
+            byte[] actual = SCrypt.generate(password.getBytes(StandardCharsets.UTF_8), salt, 1 << cost[0], cost[1], cost[2], expected.length);
+            return MessageDigest.isEqual(expected, actual);
+        } catch (IllegalArgumentException e) {
+            return false;
+        }
+    }
+
+    /** True for legacy SHA-256 hashes and for scrypt hashes made with a different cost. */
+    public static boolean needsUpgrade(String stored) {
+        if (stored == null || !stored.startsWith(PREFIX)) {
+            return true;
+        }
+        String[] fields = stored.split("\\$");
+        int[] cost = fields.length == 5 ? parseCost(fields[2]) : null;
+        return cost == null || cost[0] != ServerConfig.KDF_LOG_COST || cost[1] != ServerConfig.KDF_BLOCK_SIZE
+                || cost[2] != ServerConfig.KDF_PARALLELISM;
+    }
+
+    // "ln=14,r=8,p=1" -> {14, 8, 1}
+    private static int[] parseCost(String parameters) {
+        int[] cost = new int[3];
+        String[] names = {"ln=", "r=", "p="};
+        String[] parts = parameters.split(",");
+        if (parts.length != 3) {
+            return null;
+        }
+        try {
+            for (int i = 0; i < 3; i++) {
+                if (!parts[i].startsWith(names[i])) {
+                    return null;
+                }
+                cost[i] = Integer.parseInt(parts[i].substring(names[i].length()));
+            }
+        } catch (NumberFormatException e) {
+            return null;
+        }
+        return cost[0] > 0 && cost[0] < 31 && cost[1] > 0 && cost[2] > 0 ? cost : null;
+    }
+}
@@ -0,0 +1,64 @@
+package org.example.utils;
+
+import org.example.common.metrics.LatencyHistogram;
+
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Latency of each query {@link DatabaseConnection} runs, from preparing the statement until its
+ * results have been read, and the number that failed. Waiting for a pooled connection is not
+ * included; the pool reports that itself. Lookups served from the refresh token cache or the
+ * write-behind overlay never reach the database and are not counted.
+ */
+public class QueryStats {
+    public static final QueryStats SERVER = new QueryStats();
+
+    public enum Query {
+        USER_BY_EMAIL_AND_PASSWORD,
+        USER_BY_EMAIL,
+        UPDATE_PASSWORD_HASH,
+        USER_BY_REFRESH_TOKEN,
+        RESOLVE_REFRESH_TOKEN,
+        SAVE_REFRESH_TOKEN,
+        REFRESH_TOKEN_VALID
+    }
+
+    private final LatencyHistogram[] latency = new LatencyHistogram[Query.values().length];
+    private final LongAdder[] failed = new LongAdder[Query.values().length];
+
+    private QueryStats() {
+        for (int i = 0; i < latency.length; i++) {
+            latency[i] = new LatencyHistogram();
+            failed[i] = new LongAdder();
+        }
+    }
+
+    void record(Query query, long startedNanos) {
+        latency[query.ordinal()].recordSince(startedNanos);
+    }
+
+    void failed(Query query) {
+        failed[query.ordinal()].increment();
+    }
+
+    public LatencyHistogram getLatency(Query query) {
+        return latency[query.ordinal()];
+    }
+
+    public long getFailed(Query query) {
+        return failed[query.ordinal()].sum();
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder text = new StringBuilder();
+        for (Query query : Query.values()) {
+            LatencyHistogram histogram = latency[query.ordinal()];
+            if (histogram.getCount() > 0 || failed[query.ordinal()].sum() > 0) {
+                text.append(text.length() == 0 ? "" : " ").append(query.name().toLowerCase()).append('[').append(histogram)
+                        .append(" failed=").append(failed[query.ordinal()].sum()).append(']');
+            }
+        }
+        return text.length() == 0 ? "none" : text.toString();
+    }
+}
@@ -0,0 +1,96 @@
+package org.example.utils;
+
+import org.example.models.RefreshTokenRecord;
+
+import java.util.Iterator;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * In-memory cache of resolved refresh tokens, keyed by the token's SHA-256 so raw tokens are not
+ * kept on the heap. Entries live for at most the configured TTL and never past the token's own expiry.
+ * Issuing a token leaves the user's other tokens valid, so nothing here is dropped per user.
+ */
+public class RefreshTokenCache {
+    private final long ttlMillis;
+    private final int maxEntries;
+    private final Map<String, Entry> entries = new ConcurrentHashMap<>();
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+
+    public RefreshTokenCache(long ttlMillis, int maxEntries) {
+        this.ttlMillis = ttlMillis;
+        this.maxEntries = maxEntries;
+    }
+
+    public RefreshTokenRecord get(String refreshToken) {
+        String key = SHA256Hasher.hashStringSHA256(refreshToken);
+        Entry entry = entries.get(key);
+        if (entry == null) {
+            misses.increment();
+            return null;
+        }
+        if (System.currentTimeMillis() >= entry.evictAt) {
+            entries.remove(key, entry);
+            misses.increment();
+            return null;
+        }
+        hits.increment();
+        return entry.record;
+    }
+
+    public void put(String refreshToken, RefreshTokenRecord record) {
+        if (ttlMillis <= 0 || maxEntries <= 0) {
+            return;
+        }
+        long now = System.currentTimeMillis();
+        String key = SHA256Hasher.hashStringSHA256(refreshToken);
+        Entry entry = new Entry(record, Math.min(now + ttlMillis, record.getExpiresAtMillis()));
+        entries.put(key, entry);
+        if (entries.size() > maxEntries) {
+            evict(now);
+        }
+    }
+
+    public void invalidate(String refreshToken) {
+        entries.remove(SHA256Hasher.hashStringSHA256(refreshToken));
+    }
+
+    public int size() {
+        return entries.size();
+    }
+
+    public long getHits() {
+        return hits.sum();
+    }
+
+    public long getMisses() {
+        return misses.sum();
+    }
+
+    private void evict(long now) {
+        // Expired entries first; if that is not enough, drop arbitrary entries down to 90% of the cap.
+        entries.entrySet().removeIf(e -> now >= e.getValue().evictAt);
+        Iterator<Map.Entry<String, Entry>> it = entries.entrySet().iterator();
+        while (entries.size() > maxEntries * 9 / 10 && it.hasNext()) {
+            it.next();
+            it.remove();
+        }
+    }
+
+    @Override
+    public String toString() {
+        return "size=" + size() + "/" + maxEntries + " hits=" + getHits() + " misses=" + getMisses();
+    }
+
+    private static final class Entry {
+        private final RefreshTokenRecord record;
+        private final long evictAt;
+
+        private Entry(RefreshTokenRecord record, long evictAt) {
+            this.record = record;
+            this.evictAt = evictAt;
+        }
+    }
+}
@@ -0,0 +1,257 @@
+package org.example.utils;
+
+import org.example.common.metrics.LatencyHistogram;
+import org.example.models.RefreshTokenRecord;
+import org.example.models.User;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Supplier;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Write-behind persistence for refresh tokens. Tokens are queued and a single writer thread
+ * upserts them as JDBC batches, flushing once {@code batchSize} tokens are waiting or the oldest
+ * has waited {@code flushIntervalMs}. With {@code rewriteBatchedStatements=true} on the MySQL URL
+ * the driver sends each batch as one multi-row upsert.
+ *
+ * <p>Until its batch has committed, a token is served from an in-memory overlay, so lookups see
+ * it straight away. The future returned by {@link #enqueue} completes when the token is durable;
+ * callers that must not acknowledge a login before that wait for it. If the queue is full the
+ * token is written on its own on an executor the caller passes in, instead of being dropped or
+ * holding up the caller's thread on the database. {@link #close} flushes everything still queued.
+ */
+public class RefreshTokenWriter {
+    private static final Logger logger = LoggerFactory.getLogger(RefreshTokenWriter.class);
+    private static final String UPSERT_SQL = "INSERT INTO refresh_tokens (user_id, token, expires_at) VALUES (?, ?, ?) "
+            + "ON DUPLICATE KEY UPDATE token = VALUES(token), expires_at = VALUES(expires_at)";
+    private static final int MAX_ATTEMPTS = 3;
+    private static final long RETRY_DELAY_MS = 100;
+    private static final long IDLE_POLL_MS = 100;
+
+    private final Supplier<Connection> connections;
+    private final int batchSize;
+    private final long flushIntervalNanos;
+    private final BlockingQueue<Pending> queue;
+    private final Map<String, Pending> overlay = new ConcurrentHashMap<>();
+    private final Thread writer;
+    private volatile boolean closed;
+
+    private final LongAdder queued = new LongAdder();
+    private final LongAdder written = new LongAdder();
+    private final LongAdder batches = new LongAdder();
+    private final LongAdder overflowed = new LongAdder();
+    private final LongAdder failed = new LongAdder();
+    private final LatencyHistogram flushLatency = new LatencyHistogram();
+
+    /**
+     * @param connections borrows a connection; closing it returns it to the pool
+     */
+    public RefreshTokenWriter(Supplier<Connection> connections, int batchSize, long flushIntervalMs, int queueDepth) {
+        this.connections = connections;
+        this.batchSize = Math.max(1, batchSize);
+        this.flushIntervalNanos = TimeUnit.MILLISECONDS.toNanos(flushIntervalMs);
+        this.queue = new ArrayBlockingQueue<>(Math.max(1, queueDepth));
+        this.writer = Thread.ofPlatform().daemon().name("refresh-token-writer").unstarted(this::run);
+        writer.start();
+    }
+
+    /**
+     * Queues a new refresh token; it is visible to the lookups below at once.
+     *
+     * @param overflow writes the token if the queue is full; may block on the database
+     * @return completes when the token has been written, or exceptionally if it could not be
+     */
+    public CompletableFuture<Void> enqueue(User user, String token, long expiresAtMillis, Executor overflow) {
+        Pending pending = new Pending(user, token, expiresAtMillis);
+        overlay.put(token, pending);
+        queued.increment();
+        boolean offered = !closed && queue.offer(pending);
+        if (!offered && !closed) {
+            overflowed.increment();
+            try {
+                overflow.execute(() -> flush(List.of(pending)));
+            } catch (RejectedExecutionException e) {
+                overlay.remove(token, pending);
+                failed.increment();
+                pending.durable.completeExceptionally(e);
+            }
+        } else if (!offered || (closed && queue.remove(pending))) {
+            // The writer may already have stopped, and the server is shutting down anyway
+            flush(List.of(pending));
+        }
+        return pending.durable;
+    }
+
+    /** The user and expiry of a token that is still waiting to be written, or null. */
+    public RefreshTokenRecord resolvePending(String token) {
+        Pending pending = token == null ? null : overlay.get(token);
+        if (pending == null || pending.expiresAtMillis <= System.currentTimeMillis()) {
+            return null;
+        }
+        return new RefreshTokenRecord(pending.user, pending.expiresAtMillis);
+    }
+
+    public int getPendingCount() {
+        return overlay.size();
+    }
+
+    /**
+     * Waits up to {@code timeoutMillis} for the writer thread to flush what is queued. Tokens
+     * enqueued after this are written on the caller's thread.
+     */
+    public void close(long timeoutMillis) {
+        closed = true;
+        try {
+            writer.join(timeoutMillis);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        if (writer.isAlive()) {
+            logger.warn("Refresh token writer did not finish within {} ms, {} tokens unwritten", timeoutMillis, overlay.size());
+        } else {
+            logger.info("Refresh token writer flushed: {}", this);
+        }
+    }
+
+    private void run() {
+        List<Pending> batch = new ArrayList<>(batchSize);
+        while (!closed || !queue.isEmpty()) {
+            try {
+                Pending first = queue.poll(IDLE_POLL_MS, TimeUnit.MILLISECONDS);
+                if (first == null) {
+                    continue;
+                }
+                batch.add(first);
+                long deadline = System.nanoTime() + flushIntervalNanos;
+                while (batch.size() < batchSize) {
+                    queue.drainTo(batch, batchSize - batch.size());
+                    long remaining = deadline - System.nanoTime();
+                    if (batch.size() >= batchSize || remaining <= 0 || closed) {
+                        break;
+                    }
+                    Pending next = queue.poll(remaining, TimeUnit.NANOSECONDS);
+                    if (next == null) {
+                        break;
+                    }
+                    batch.add(next);
+                }
+            } catch (InterruptedException e) {
+                // Not expected; flush what we have and keep going until closed
+            }
+            if (!batch.isEmpty()) {
+                flush(batch);
+                batch.clear();
+            }
+        }
+    }
+
+    private void flush(List<Pending> batch) {
+        long started = System.nanoTime();
+        SQLException failure = null;
+        for (int attempt = 1; attempt <= MAX_ATTEMPTS; attempt++) {
+            try {
+                write(batch);
+                failure = null;
+                break;
+            } catch (SQLException e) {
+                failure = e;
+                logger.warn("Writing {} refresh tokens failed (attempt {}/{}): {}", batch.size(), attempt, MAX_ATTEMPTS, e.getMessage());
+                if (attempt < MAX_ATTEMPTS && !sleep(RETRY_DELAY_MS * attempt)) {
+                    break;
+                }
+            }
+        }
+        flushLatency.recordSince(started);
+        if (failure == null) {
+            batches.increment();
+            written.add(batch.size());
+        } else {
+            failed.add(batch.size());
+            logger.error("Dropped {} refresh tokens after {} attempts", batch.size(), MAX_ATTEMPTS, failure);
+        }
+        for (Pending pending : batch) {
+            overlay.remove(pending.token, pending);
+            if (failure == null) {
+                pending.durable.complete(null);
+            } else {
+                pending.durable.completeExceptionally(failure);
+            }
+        }
+    }
+
+    private void write(List<Pending> batch) throws SQLException {
+        Connection connection = connections.get();
+        if (connection == null) {
+            throw new SQLException("No database connection");
+        }
+        boolean autoCommit = connection.getAutoCommit();
+        try {
+            connection.setAutoCommit(false);
+            PreparedStatement statement = connection.prepareStatement(UPSERT_SQL);
+            try {
+                for (Pending pending : batch) {
+                    statement.setInt(1, pending.user.getId());
+                    statement.setString(2, pending.token);
+                    statement.setTimestamp(3, new Timestamp(pending.expiresAtMillis));
+                    statement.addBatch();
+                }
+                statement.executeBatch();
+                connection.commit();
+            } finally {
+                statement.clearBatch();
+                statement.close();
+            }
+        } catch (SQLException e) {
+            connection.rollback();
+            throw e;
+        } finally {
+            connection.setAutoCommit(autoCommit);
+            connection.close();
+        }
+    }
+
+    private static boolean sleep(long millis) {
+        try {
+            Thread.sleep(millis);
+            return true;
+        } catch (InterruptedException e) {
+            return false;
+        }
+    }
+
+    @Override
+    public String toString() {
+        long count = batches.sum();
+        return String.format("pending=%d queued=%d written=%d batches=%d rows/batch=%.1f overflowed=%d failed=%d flush[%s]",
+                overlay.size(), queued.sum(), written.sum(), count, count == 0 ? 0 : written.sum() / (double) count,
+                overflowed.sum(), failed.sum(), flushLatency);
+    }
+
+    private static final class Pending {
+        private final User user;
+        private final String token;
+        private final long expiresAtMillis;
+        private final CompletableFuture<Void> durable = new CompletableFuture<>();
+
+        private Pending(User user, String token, long expiresAtMillis) {
+            this.user = user;
+            this.token = token;
+            this.expiresAtMillis = expiresAtMillis;
+        }
+    }
+}
@@ -0,0 +1,105 @@
+package org.example.utils;
+
+import java.sql.Connection;
+import java.sql.DatabaseMetaData;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Brings the schema up to what the server's queries expect, at startup. Every step checks the
+ * catalog first, so running it against an up-to-date database changes nothing.
+ *
+ * <ul>
+ *   <li>{@code users} and {@code refresh_tokens}, if missing</li>
+ *   <li>{@code users.password}, on tables created before it was part of the definition</li>
+ *   <li>{@code idx_refresh_tokens_expires_at} on {@code refresh_tokens(expires_at)}: the
+ *       {@link ExpiredTokenReaper} deletes in expiry order without scanning the table</li>
+ * </ul>
+ * Logins look users up through the unique index on {@code users.email}, and token lookups through
+ * the one on {@code refresh_tokens.token}, which the tables already have. An
+ * {@code idx_users_email_password} left by earlier versions is dropped: the login query also reads
+ * {@code name}, so the index never covered it and only cost writes and space.
+ */
+public class SchemaBootstrap {
+    private static final Logger logger = LoggerFactory.getLogger(SchemaBootstrap.class);
+
+    /** @return false if the database could not be reached or a step failed */
+    public static boolean run() {
+        Connection connection = DatabaseConnection.getConnection();
+        if (connection == null) {
+            logger.error("Schema bootstrap skipped: no database connection");
+            return false;
+        }
+        try {
+            DatabaseConnection.createUsersTable(connection);
+            DatabaseConnection.createRefreshTokensTable(connection);
+            DatabaseMetaData metaData = connection.getMetaData();
+            if (!hasColumn(metaData, "users", "password")) {
+                execute(connection, "ALTER TABLE users ADD COLUMN password VARCHAR(255) NOT NULL DEFAULT ''");
+            }
+            dropIndex(connection, metaData, "users", "idx_users_email_password");
+            ensureIndex(connection, metaData, "refresh_tokens", "idx_refresh_tokens_expires_at", "expires_at");
+            return true;
+        } catch (SQLException e) {
+            logger.error("Schema bootstrap failed: {}", e.getMessage(), e);
+            return false;
+        } finally {
+            DatabaseConnection.closeResources(connection, null, null);
+        }
+    }
+
+    private static void ensureIndex(Connection connection, DatabaseMetaData metaData, String table, String index, String columns)
+            throws SQLException {
+        if (hasIndex(metaData, table, index)) {
+            return;
+        }
+        execute(connection, "CREATE INDEX " + index + " ON " + table + " (" + columns + ")");
+    }
+
+    private static void dropIndex(Connection connection, DatabaseMetaData metaData, String table, String index)
+            throws SQLException {
+        if (hasIndex(metaData, table, index)) {
+            execute(connection, "DROP INDEX " + index + " ON " + table);
+        }
+    }
+
+    private static void execute(Connection connection, String sql) throws SQLException {
+        try (Statement statement = connection.createStatement()) {
+            statement.execute(sql);
+        }
+        logger.info("Schema: {}", sql);
+    }
+
+    // Looked up in the connection's own database only; catalogs differ in identifier case (MySQL
+    // keeps it, H2 upper-cases), so names are compared case-insensitively
+    private static boolean hasIndex(DatabaseMetaData metaData, String table, String index) throws SQLException {
+        String catalog = metaData.getConnection().getCatalog();
+        for (String name : new String[] {table, table.toUpperCase()}) {
+            try (ResultSet indexes = metaData.getIndexInfo(catalog, null, name, false, true)) {
+                while (indexes.next()) {
+                    if (index.equalsIgnoreCase(indexes.getString("INDEX_NAME"))) {
+                        return true;
+                    }
+                }
+            }
+        }
+        return false;
+    }
+
+    private static boolean hasColumn(DatabaseMetaData metaData, String table, String column) throws SQLException {
+        String catalog = metaData.getConnection().getCatalog();
+        for (String name : new String[] {table, table.toUpperCase()}) {
+            try (ResultSet columns = metaData.getColumns(catalog, null, name, null)) {
+                while (columns.next()) {
+                    if (column.equalsIgnoreCase(columns.getString("COLUMN_NAME"))) {
+                        return true;
+                    }
+                }
+            }
+        }
+        return false;
+    }
+}
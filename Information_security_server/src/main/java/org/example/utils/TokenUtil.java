@@ -1,20 +1,27 @@
 package org.example.utils;
 
+import io.jsonwebtoken.Claims;
+import io.jsonwebtoken.JwtParser;
 import io.jsonwebtoken.Jwts;
 import io.jsonwebtoken.SignatureAlgorithm;
 import io.jsonwebtoken.security.Keys;
+import org.example.models.RefreshTokenRecord;
 import org.example.models.User;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import java.nio.charset.StandardCharsets;
 import java.security.Key;
+import java.security.MessageDigest;
 import java.util.Date;
 import java.util.UUID;
 
 public class TokenUtil {
     private static final Logger logger = LoggerFactory.getLogger(TokenUtil.class);
     private static final Key SECRET_KEY = Keys.hmacShaKeyFor("supersecretkeysupersecretkey123456".getBytes());
-    private static final long ACCESS_TOKEN_VALIDITY = 15 * 60 * 1000; // 15 minutes
+    public static final long ACCESS_TOKEN_VALIDITY = 15 * 60 * 1000; // 15 minutes
+    // JwtParser is immutable and thread-safe, so one instance serves every connection
+    private static final JwtParser PARSER = Jwts.parserBuilder().setSigningKey(SECRET_KEY).build();
 
     public static String generateAccessToken(User user) {
         return Jwts.builder()
@@ -33,51 +40,57 @@ public class TokenUtil {
 
     public static boolean validateAccessToken(String token) {
         try {
-            Jwts.parserBuilder().setSigningKey(SECRET_KEY).build().parseClaimsJws(token);
-            logger.info("\nAccess token is vaild");
-            logger.info("Access token validation successful");
+            PARSER.parseClaimsJws(token);
+            logger.debug("Access token validation successful");
             return true;
         } catch (Exception e) {
-            logger.warn("Access token validation failed: {}", e.getMessage());
+            logger.debug("Access token validation failed: {}", e.getMessage());
             return false;
         }
     }
 
+    /**
+     * Fully verifies a token and returns what a connection needs to re-accept it cheaply,
+     * or null if the token is invalid or expired.
+     *
+     * @param digest the token's {@link #digest} computed by the caller
+     */
+    public static VerifiedAccessToken verifyAccessToken(String token, byte[] digest) {
+        try {
+            Claims claims = PARSER.parseClaimsJws(token).getBody();
+            logger.debug("Access token validation successful");
+            return new VerifiedAccessToken(digest, claims.getSubject(), claims.getExpiration().getTime());
+        } catch (Exception e) {
+            // Counted by the caller; a client repeating a stale token would otherwise flood the log
+            logger.debug("Access token validation failed: {}", e.getMessage());
+            return null;
+        }
+    }
+
+    public static byte[] digest(MessageDigest sha256, String token) {
+        return sha256.digest(token.getBytes(StandardCharsets.UTF_8));
+    }
+
     public static boolean validateRefreshToken(String token) {
         logger.debug("Validating refresh token");
-        // Get user ID from refresh token in database
-        User user = DatabaseConnection.getUserByRefreshToken(token);
-        if (user == null) {
-            logger.warn("Refresh token validation failed: No user found for token");
+        RefreshTokenRecord record = DatabaseConnection.resolveRefreshToken(token);
+        if (record == null) {
+            logger.debug("Refresh token validation failed: No valid token found");
             return false;
         }
-        // Check if refresh token is valid for this user
-        boolean isValid = DatabaseConnection.isRefreshTokenValid(user.getId(), token);
-        if (isValid) {
-            logger.info("Refresh token validation successful for user: {}", user.getName());
-        } else {
-            logger.warn("Refresh token validation failed for user: {}", user.getName());
-        }
-        return isValid;
+        logger.debug("Refresh token validation successful for user: {}", record.getUser().getName());
+        return true;
     }
 
     public static String generateNewAccessTokenFromRefreshToken(String refreshToken) {
-        logger.info("Attempting to generate new access token from refresh token");
-        // Get user from refresh token
-        User user = DatabaseConnection.getUserByRefreshToken(refreshToken);
-        if (user == null) {
-            logger.error("Failed to generate new access token: No user found for refresh token");
-            return null;
-        }
-        
-        // Validate refresh token
-        if (!DatabaseConnection.isRefreshTokenValid(user.getId(), refreshToken)) {
-            logger.error("Failed to generate new access token: Refresh token is invalid for user {}", user.getName());
+        logger.debug("Attempting to generate new access token from refresh token");
+        RefreshTokenRecord record = DatabaseConnection.resolveRefreshToken(refreshToken);
+        if (record == null) {
+            logger.debug("Failed to generate new access token: No valid token found for refresh token");
             return null;
         }
-        
-        // Generate new access token
-        logger.info("Successfully generated new access token for user: {}", user.getName());
+        User user = record.getUser();
+        logger.debug("Successfully generated new access token for user: {}", user.getName());
         return generateAccessToken(user);
     }
 }
\ No newline at end of file
@@ -0,0 +1,35 @@
+package org.example.utils;
+
+import java.security.MessageDigest;
+
+/**
+ * An access token whose signature has already been checked, remembered by its SHA-256 digest so
+ * that the same token can be re-accepted with a constant-time compare and an expiry check.
+ */
+public class VerifiedAccessToken {
+    private final byte[] digest;
+    private final String subject;
+    private final long expiresAtMillis;
+
+    public VerifiedAccessToken(byte[] digest, String subject, long expiresAtMillis) {
+        this.digest = digest;
+        this.subject = subject;
+        this.expiresAtMillis = expiresAtMillis;
+    }
+
+    public boolean matches(byte[] otherDigest) {
+        return MessageDigest.isEqual(digest, otherDigest);
+    }
+
+    public boolean isExpired(long nowMillis) {
+        return nowMillis >= expiresAtMillis;
+    }
+
+    public String getSubject() {
+        return subject;
+    }
+
+    public long getExpiresAtMillis() {
+        return expiresAtMillis;
+    }
+}
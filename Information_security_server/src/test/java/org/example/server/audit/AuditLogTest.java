@@ -0,0 +1,166 @@
+package org.example.server.audit;
+
+import ch.qos.logback.classic.Logger;
+import ch.qos.logback.classic.spi.ILoggingEvent;
+import ch.qos.logback.core.AppenderBase;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.slf4j.LoggerFactory;
+
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class AuditLogTest {
+    private static final Pattern EVENT = Pattern.compile("LOGIN_SUCCEEDED at=\\S+ subject=(\\S+) detail=\"(\\d+)\"");
+
+    private final Capture capture = new Capture();
+    private final Logger audit = (Logger) LoggerFactory.getLogger("org.example.server.audit");
+
+    @BeforeEach
+    void attach() {
+        capture.start();
+        audit.addAppender(capture);
+    }
+
+    @AfterEach
+    void detach() {
+        capture.release();
+        audit.detachAppender(capture);
+    }
+
+    @Test
+    void writesEachThreadsEventsInTheOrderRecorded() throws Exception {
+        int threads = 8;
+        int perThread = 5_000;
+        AuditLog log = new AuditLog(1024, AuditLog.Overflow.BLOCK, 64, 50);
+        CountDownLatch start = new CountDownLatch(1);
+        Thread[] producers = new Thread[threads];
+        for (int t = 0; t < threads; t++) {
+            String subject = "producer-" + t;
+            producers[t] = new Thread(() -> {
+                awaitQuietly(start);
+                for (int i = 0; i < perThread; i++) {
+                    log.record(AuditEventType.LOGIN_SUCCEEDED, subject, i);
+                }
+            });
+            producers[t].start();
+        }
+        start.countDown();
+        for (Thread producer : producers) {
+            producer.join();
+        }
+        log.close(10_000);
+
+        assertEquals(threads * perThread, log.getWritten());
+        assertEquals(0, log.getLost());
+        int[] next = new int[threads];
+        for (String line : capture.lines) {
+            Matcher matcher = EVENT.matcher(line);
+            assertTrue(matcher.matches(), line);
+            int producer = Integer.parseInt(matcher.group(1).substring("producer-".length()));
+            assertEquals(next[producer]++, Integer.parseInt(matcher.group(2)), "order of " + matcher.group(1));
+        }
+        for (int count : next) {
+            assertEquals(perThread, count);
+        }
+    }
+
+    @Test
+    void dropCountsEventsRecordedIntoAFullRingAsLost() {
+        capture.blockWrites();
+        AuditLog log = new AuditLog(4, AuditLog.Overflow.DROP, 1, 50);
+        // The writer holds the first event until released, so the ring fills at four
+        for (int i = 0; i < 6; i++) {
+            log.record(AuditEventType.LOGIN_SUCCEEDED, "alice", i);
+        }
+        assertEquals(2, log.getLost());
+        assertEquals(4, log.getBacklog());
+
+        capture.release();
+        log.close(5_000);
+        assertEquals(4, log.getWritten());
+        assertEquals(2, log.getLost());
+        for (int i = 0; i < 4; i++) {
+            Matcher matcher = EVENT.matcher(capture.lines.get(i));
+            assertTrue(matcher.matches());
+            assertEquals(i, Integer.parseInt(matcher.group(2)));
+        }
+    }
+
+    @Test
+    void blockMakesRecordingWaitForAFreeSlot() throws Exception {
+        capture.blockWrites();
+        AuditLog log = new AuditLog(4, AuditLog.Overflow.BLOCK, 1, 50);
+        for (int i = 0; i < 4; i++) {
+            log.record(AuditEventType.LOGIN_SUCCEEDED, "alice", i);
+        }
+        Thread blocked = new Thread(() -> log.record(AuditEventType.LOGIN_SUCCEEDED, "alice", 4));
+        blocked.start();
+        blocked.join(300);
+        assertTrue(blocked.isAlive(), "recording into a full ring should wait");
+
+        capture.release();
+        blocked.join(5_000);
+        assertFalse(blocked.isAlive(), "recording should go ahead once a slot is free");
+        log.close(5_000);
+        assertEquals(5, log.getWritten());
+        assertEquals(0, log.getLost());
+    }
+
+    @Test
+    void closeWritesEverythingRecorded() {
+        AuditLog log = new AuditLog(8192, AuditLog.Overflow.DROP, 16, 1000);
+        for (int i = 0; i < 5_000; i++) {
+            log.record(AuditEventType.LOGIN_SUCCEEDED, "alice", i);
+        }
+        log.close(10_000);
+
+        assertEquals(5_000, log.getWritten());
+        assertEquals(0, log.getBacklog());
+        assertEquals(5_000, capture.lines.size());
+    }
+
+    private static void awaitQuietly(CountDownLatch latch) {
+        try {
+            latch.await();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    // Keeps each formatted line, and can hold the writer thread inside its first write
+    private static final class Capture extends AppenderBase<ILoggingEvent> {
+        private final List<String> lines = new CopyOnWriteArrayList<>();
+        private final CountDownLatch released = new CountDownLatch(1);
+        private volatile boolean blocking;
+
+        void blockWrites() {
+            blocking = true;
+        }
+
+        void release() {
+            released.countDown();
+        }
+
+        @Override
+        protected void append(ILoggingEvent event) {
+            if (blocking) {
+                try {
+                    released.await(10, TimeUnit.SECONDS);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+            lines.add(event.getFormattedMessage());
+        }
+    }
+}
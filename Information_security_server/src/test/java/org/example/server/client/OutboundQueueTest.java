@@ -0,0 +1,166 @@
+package org.example.server.client;
+
+import org.example.server.ServerConfig;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.Executor;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class OutboundQueueTest {
+    private static final int BATCH_BYTES = 16 * 1024;
+
+    private final ManualExecutor writer = new ManualExecutor();
+    private final ByteArrayOutputStream out = new ByteArrayOutputStream();
+    private final List<OutboundQueue> queues = new ArrayList<>();
+    private boolean connectionClosed;
+
+    // The budgets are server-wide, so every test leaves nothing queued behind
+    @AfterEach
+    void closeQueues() {
+        queues.forEach(OutboundQueue::close);
+    }
+
+    @Test
+    void dropNewRejectsFramesPastTheFrameBudget() {
+        OutboundQueue queue = queue(3, Long.MAX_VALUE, OutboundQueue.Overflow.DROP_NEW);
+        long dropped = OutboundStats.SERVER.getDropped();
+        for (int i = 1; i <= 3; i++) {
+            assertTrue(queue.offer(frame(i, 10)));
+        }
+        assertFalse(queue.offer(frame(4, 10)));
+        assertEquals(3, queue.size());
+        assertEquals(dropped + 1, OutboundStats.SERVER.getDropped());
+
+        writer.runAll();
+        assertArrayEquals(concat(frame(1, 10), frame(2, 10), frame(3, 10)), out.toByteArray());
+    }
+
+    @Test
+    void dropNewRejectsFramesPastTheByteBudget() {
+        OutboundQueue queue = queue(100, 250, OutboundQueue.Overflow.DROP_NEW);
+        assertTrue(queue.offer(frame(1, 100)));
+        assertTrue(queue.offer(frame(2, 100)));
+        assertFalse(queue.offer(frame(3, 100)));
+        assertEquals(200, queue.getQueuedBytes());
+        assertTrue(queue.offer(frame(4, 50)), "a frame that still fits is taken");
+    }
+
+    @Test
+    void anEmptyQueueTakesAFrameLargerThanItsBudget() {
+        OutboundQueue queue = queue(100, 10, OutboundQueue.Overflow.DROP_NEW);
+        assertTrue(queue.offer(frame(1, 100)));
+        assertFalse(queue.offer(frame(2, 1)));
+    }
+
+    @Test
+    void dropOldestEvictsQueuedFramesToMakeRoom() {
+        OutboundQueue queue = queue(3, Long.MAX_VALUE, OutboundQueue.Overflow.DROP_OLDEST);
+        long evicted = OutboundStats.SERVER.getEvicted();
+        for (int i = 1; i <= 5; i++) {
+            assertTrue(queue.offer(frame(i, 10)));
+        }
+        assertEquals(3, queue.size());
+        assertEquals(evicted + 2, OutboundStats.SERVER.getEvicted());
+
+        writer.runAll();
+        assertArrayEquals(concat(frame(3, 10), frame(4, 10), frame(5, 10)), out.toByteArray());
+    }
+
+    @Test
+    void dropOldestEvictsAsManyFramesAsTheNewOneNeeds() {
+        OutboundQueue queue = queue(100, 250, OutboundQueue.Overflow.DROP_OLDEST);
+        assertTrue(queue.offer(frame(1, 100)));
+        assertTrue(queue.offer(frame(2, 100)));
+        assertTrue(queue.offer(frame(3, 200)));
+        assertEquals(1, queue.size());
+        assertEquals(200, queue.getQueuedBytes());
+
+        writer.runAll();
+        assertArrayEquals(frame(3, 200), out.toByteArray());
+    }
+
+    @Test
+    void disconnectClosesTheConnectionOfAClientOverItsBudget() {
+        OutboundQueue queue = queue(2, Long.MAX_VALUE, OutboundQueue.Overflow.DISCONNECT);
+        long disconnected = OutboundStats.SERVER.getDisconnected();
+        assertTrue(queue.offer(frame(1, 10)));
+        assertTrue(queue.offer(frame(2, 10)));
+        assertFalse(queue.offer(frame(3, 10)));
+
+        assertTrue(connectionClosed);
+        assertEquals(0, queue.size());
+        assertEquals(disconnected + 1, OutboundStats.SERVER.getDisconnected());
+        assertFalse(queue.offer(frame(4, 10)), "a disconnected queue takes nothing");
+        writer.runAll();
+        assertEquals(0, out.size());
+    }
+
+    @Test
+    void theServerWideCapHoldsBackQueuesThatAlreadyHoldFrames() {
+        // One array queued many times costs its length each time, as a fanned-out frame does
+        byte[] megabyte = new byte[1024 * 1024];
+        long cap = ServerConfig.OUTBOUND_MAX_TOTAL_BYTES;
+        long before = OutboundStats.SERVER.getPendingBytes();
+        OutboundQueue full = queue(Integer.MAX_VALUE, Long.MAX_VALUE, OutboundQueue.Overflow.DROP_NEW);
+        int taken = 0;
+        while (full.offer(megabyte)) {
+            taken++;
+        }
+        assertEquals((cap - before) / megabyte.length, taken);
+        assertTrue(OutboundStats.SERVER.getPendingBytes() <= cap);
+
+        OutboundQueue other = queue(Integer.MAX_VALUE, Long.MAX_VALUE, OutboundQueue.Overflow.DROP_NEW);
+        assertTrue(other.offer(megabyte), "an empty queue is never held back by the others");
+        assertFalse(other.offer(megabyte));
+
+        full.close();
+        assertTrue(other.offer(megabyte), "room frees up as other queues empty");
+    }
+
+    private OutboundQueue queue(int capacity, long maxBytes, OutboundQueue.Overflow overflow) {
+        OutboundQueue queue = new OutboundQueue(out, writer, () -> connectionClosed = true, capacity, BATCH_BYTES, maxBytes, overflow);
+        queues.add(queue);
+        return queue;
+    }
+
+    private static byte[] frame(int id, int length) {
+        byte[] frame = new byte[length];
+        frame[0] = (byte) id;
+        return frame;
+    }
+
+    private static byte[] concat(byte[]... frames) {
+        ByteArrayOutputStream joined = new ByteArrayOutputStream();
+        for (byte[] frame : frames) {
+            joined.writeBytes(frame);
+        }
+        return joined.toByteArray();
+    }
+
+    // Runs the drain only when asked, so frames stay queued until then
+    private static final class ManualExecutor implements Executor {
+        private final Queue<Runnable> tasks = new ArrayDeque<>();
+
+        @Override
+        public void execute(Runnable task) {
+            tasks.add(task);
+        }
+
+        void runAll() {
+            Runnable task;
+            while ((task = tasks.poll()) != null) {
+                task.run();
+            }
+        }
+    }
+}
@@ -0,0 +1,65 @@
+package org.example.server.client;
+
+import org.example.server.protocol.Framing;
+import org.example.server.room.RoomRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class SlowConsumerMonitorTest {
+    private final ClientRegistry clients = new ClientRegistry(1);
+    private final List<OutboundQueue> queues = new ArrayList<>();
+
+    @AfterEach
+    void closeQueues() {
+        queues.forEach(OutboundQueue::close);
+    }
+
+    @Test
+    void listsSessionsWhoseOldestFrameIsPastTheLagThreshold() throws Exception {
+        SlowConsumerMonitor monitor = new SlowConsumerMonitor(clients, 1000, 0);
+        session("alice", new AtomicBoolean()).offer(new byte[10], System.nanoTime() - TimeUnit.SECONDS.toNanos(3));
+        session("bob", new AtomicBoolean()).offer(new byte[10], System.nanoTime());
+
+        monitor.check();
+        assertEquals(1, monitor.getLagging());
+        assertTrue(monitor.getMaxLagNanos() >= TimeUnit.SECONDS.toNanos(3));
+        assertTrue(monitor.toString().contains("alice("), monitor.toString());
+        assertFalse(monitor.toString().contains("bob("), monitor.toString());
+    }
+
+    @Test
+    void disconnectsSessionsPastTheStallTimeout() throws Exception {
+        SlowConsumerMonitor monitor = new SlowConsumerMonitor(clients, 1000, 5000);
+        AtomicBoolean stalledClosed = new AtomicBoolean();
+        AtomicBoolean laggingClosed = new AtomicBoolean();
+        OutboundQueue stalled = session("alice", stalledClosed);
+        stalled.offer(new byte[10], System.nanoTime() - TimeUnit.SECONDS.toNanos(10));
+        session("bob", laggingClosed).offer(new byte[10], System.nanoTime() - TimeUnit.SECONDS.toNanos(2));
+        long disconnected = OutboundStats.SERVER.getDisconnected();
+
+        monitor.check();
+        assertEquals(2, monitor.getLagging());
+        assertTrue(stalledClosed.get());
+        assertEquals(0, stalled.size());
+        assertFalse(laggingClosed.get(), "lagging alone is not a reason to disconnect");
+        assertEquals(disconnected + 1, OutboundStats.SERVER.getDisconnected());
+    }
+
+    // A logged-in session whose queue is never drained
+    private OutboundQueue session(String name, AtomicBoolean closed) {
+        OutboundQueue outbound = new OutboundQueue(OutputStream.nullOutputStream(), task -> { }, () -> closed.set(true));
+        queues.add(outbound);
+        clients.register(ClientHandler.loggedIn(name, () -> { }, outbound, clients, new RoomRegistry(), Framing.JSON));
+        return outbound;
+    }
+}
@@ -0,0 +1,83 @@
+package org.example.server.protocol;
+
+import org.example.common.protocol.BinaryFrame;
+import org.example.common.protocol.BinaryFrameWriter;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.util.Arrays;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class BinaryCodecTest {
+    private static final long TIME = 1_700_000_000_123L;
+
+    // Builds frames as the client does
+    private final BinaryFrameWriter client = new BinaryFrameWriter();
+    private final BinaryCodec codec = new BinaryCodec();
+
+    @Test
+    void anEmptyTokenResolvesToTheLastOneTheClientSent() throws IOException {
+        ClientMessage message = codec.decode(sent(client.encodeToUser(TIME, "token-1", "bob", "42", "hi")));
+        assertEquals("token-1", message.getAccessToken());
+        assertEquals(TIME, message.getSentAtMillis());
+
+        message = codec.decode(sent(client.encodeToUser(TIME, null, "bob", null, "again")));
+        assertEquals("token-1", message.getAccessToken());
+        assertEquals("bob", message.getTo());
+        assertNull(message.getId());
+        assertEquals("again", message.getMessage());
+
+        // Neither a refresh nor a pong changes the token later frames refer to
+        message = codec.decode(sent(client.encodeRefresh(TIME, "refresh-1")));
+        assertEquals("refresh-1", message.getRefreshToken());
+        assertFalse(message.hasAccessToken());
+        assertTrue(codec.decode(sent(client.encodePong(TIME))).isPong());
+
+        message = codec.decode(sent(client.encodeJoin(TIME, null, "general")));
+        assertEquals("token-1", message.getAccessToken());
+        assertEquals("general", message.getJoin());
+
+        message = codec.decode(sent(client.encodeToRoom(TIME, "token-2", "general", "hi all")));
+        assertEquals("token-2", message.getAccessToken());
+        assertEquals("general", message.getRoom());
+        assertEquals("hi all", message.getMessage());
+    }
+
+    @Test
+    void aDirectMessageIsForwardedWithItsId() throws IOException {
+        ClientMessage source = codec.decode(sent(client.encodeToUser(TIME, "token-1", "bob", "42", "hi bob")));
+        BinaryFrame frame = new BinaryFrame().readServerFrame(sent(codec.encodeDirectMessage(TIME, "alice", source)));
+        assertEquals(BinaryFrame.DIRECT, frame.getType());
+        assertEquals("alice", frame.getFrom());
+        assertEquals("42", frame.getId());
+        assertEquals("hi bob", frame.getBody());
+    }
+
+    @Test
+    void aDeliveryStatusReadsBackOnTheClient() throws IOException {
+        BinaryFrame frame = new BinaryFrame().readServerFrame(sent(codec.encodeDeliveryStatus(TIME, "bob", "delivered", 2, null)));
+        assertEquals(BinaryFrame.STATUS, frame.getType());
+        assertEquals(2, frame.getSessions());
+        assertEquals("bob", frame.getTo());
+        assertEquals("delivered", frame.getStatus());
+        assertNull(frame.getId());
+    }
+
+    @Test
+    void aFrameOfAnUnknownTypeDecodesToNoFields() throws IOException {
+        byte[] frame = sent(client.encodeMessage(TIME, "token-1", "hello"));
+        frame[0] = 42;
+        ClientMessage message = codec.decode(frame);
+        assertFalse(message.hasAccessToken());
+        assertFalse(message.hasMessage());
+    }
+
+    // The frame as the transport hands it over, without its length prefix
+    private static byte[] sent(byte[] frame) {
+        return Arrays.copyOfRange(frame, 4, frame.length);
+    }
+}
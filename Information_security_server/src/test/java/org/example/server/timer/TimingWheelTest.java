@@ -0,0 +1,172 @@
+package org.example.server.timer;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class TimingWheelTest {
+    // Four buckets of 100 ms, so one turn of the wheel is 400 ms
+    private static final long TICK_MS = 100;
+    private static final int WHEEL_SIZE = 4;
+    // How late a timeout may run on a loaded build machine before the test calls it lost. Only
+    // never running early is checked tightly; lateness within a tick is not worth a flaky test
+    private static final long LATE_SLACK_MS = 2_000;
+
+    private final List<TimingWheel> wheels = new ArrayList<>();
+
+    @AfterEach
+    void stopWheels() {
+        wheels.forEach(TimingWheel::stop);
+    }
+
+    @Test
+    void firesInTheTickItFallsDueIn() throws Exception {
+        TimingWheel wheel = wheel(TICK_MS, WHEEL_SIZE);
+        assertFiresOnTime(wheel, 0);
+        assertFiresOnTime(wheel, 150);
+        assertFiresOnTime(wheel, 250);
+    }
+
+    @Test
+    void waitsOutEveryTurnOfTheWheelForLongerDelays() throws Exception {
+        TimingWheel wheel = wheel(TICK_MS, WHEEL_SIZE);
+        // Exactly one turn lands in the bucket being expired when it is placed, and must not run
+        // on that tick
+        assertFiresOnTime(wheel, 400);
+        assertFiresOnTime(wheel, 1050);
+    }
+
+    @Test
+    void aCancelledTimeoutNeverRuns() throws Exception {
+        TimingWheel wheel = wheel(TICK_MS, WHEEL_SIZE);
+        AtomicBoolean ran = new AtomicBoolean();
+        CountDownLatch neighbourRan = new CountDownLatch(1);
+        TimingWheel.Timeout timeout = wheel.schedule(() -> ran.set(true), 200, TimeUnit.MILLISECONDS);
+        // Shares the bucket, so unlinking the cancelled one must leave it in place
+        wheel.schedule(neighbourRan::countDown, 200, TimeUnit.MILLISECONDS);
+
+        assertTrue(timeout.cancel());
+        assertFalse(timeout.cancel(), "a timeout is cancelled once");
+        assertTrue(neighbourRan.await(5, TimeUnit.SECONDS));
+        Thread.sleep(TICK_MS);
+        assertFalse(ran.get());
+        assertFalse(timeout.isExpired());
+        assertEquals(1, wheel.getCancelled());
+        assertEquals(1, wheel.getExpired());
+        assertEquals(0, wheel.getPending());
+    }
+
+    @Test
+    void aTimeoutCannotBeCancelledOnceItIsRunning() throws Exception {
+        TimingWheel wheel = wheel(TICK_MS, WHEEL_SIZE);
+        CountDownLatch running = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        TimingWheel.Timeout timeout = wheel.schedule(() -> {
+            running.countDown();
+            awaitQuietly(release);
+        }, 0, TimeUnit.MILLISECONDS);
+
+        assertTrue(running.await(5, TimeUnit.SECONDS));
+        assertFalse(timeout.cancel());
+        assertTrue(timeout.isExpired());
+        release.countDown();
+        assertEquals(0, wheel.getCancelled());
+    }
+
+    @Test
+    void aTaskCannotCancelItsOwnTimeout() throws Exception {
+        TimingWheel wheel = wheel(TICK_MS, WHEEL_SIZE);
+        AtomicReference<TimingWheel.Timeout> self = new AtomicReference<>();
+        CompletableFuture<Boolean> cancelledFromTask = new CompletableFuture<>();
+        CountDownLatch scheduled = new CountDownLatch(1);
+        self.set(wheel.schedule(() -> {
+            awaitQuietly(scheduled);
+            cancelledFromTask.complete(self.get().cancel());
+        }, 50, TimeUnit.MILLISECONDS));
+        scheduled.countDown();
+
+        assertFalse(cancelledFromTask.get(5, TimeUnit.SECONDS));
+        assertTrue(self.get().isExpired());
+        assertEquals(0, wheel.getCancelled());
+    }
+
+    @Test
+    void runsEveryTimeoutScheduledFromManyThreadsExactlyOnce() throws Exception {
+        TimingWheel wheel = wheel(10, 8);
+        int threads = 8;
+        int perThread = 10_000;
+        AtomicIntegerArray runs = new AtomicIntegerArray(threads * perThread);
+        boolean[] cancelled = new boolean[threads * perThread];
+        CountDownLatch start = new CountDownLatch(1);
+        Thread[] schedulers = new Thread[threads];
+        for (int t = 0; t < threads; t++) {
+            int first = t * perThread;
+            schedulers[t] = new Thread(() -> {
+                awaitQuietly(start);
+                ThreadLocalRandom random = ThreadLocalRandom.current();
+                for (int i = first; i < first + perThread; i++) {
+                    int id = i;
+                    // Up to four turns of the wheel ahead
+                    TimingWheel.Timeout timeout = wheel.schedule(() -> runs.incrementAndGet(id), random.nextInt(320), TimeUnit.MILLISECONDS);
+                    if (id % 3 == 0) {
+                        cancelled[id] = timeout.cancel();
+                    }
+                }
+            });
+            schedulers[t].start();
+        }
+        start.countDown();
+        for (Thread scheduler : schedulers) {
+            scheduler.join();
+        }
+
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(10);
+        while (wheel.getPending() > 0 && System.nanoTime() < deadline) {
+            Thread.sleep(10);
+        }
+        assertEquals(0, wheel.getPending());
+        assertEquals(threads * perThread, wheel.getScheduled());
+        assertEquals(wheel.getScheduled(), wheel.getExpired() + wheel.getCancelled());
+        for (int id = 0; id < runs.length(); id++) {
+            assertEquals(cancelled[id] ? 0 : 1, runs.get(id), "runs of timeout " + id);
+        }
+    }
+
+    private TimingWheel wheel(long tickMillis, int wheelSize) {
+        TimingWheel wheel = new TimingWheel("timing-wheel-test", tickMillis, wheelSize);
+        wheels.add(wheel);
+        return wheel;
+    }
+
+    // Runs no earlier than the delay, and not so late that it was lost
+    private static void assertFiresOnTime(TimingWheel wheel, long delayMillis) throws Exception {
+        CompletableFuture<Long> ranAt = new CompletableFuture<>();
+        long scheduledAt = System.nanoTime();
+        wheel.schedule(() -> ranAt.complete(System.nanoTime()), delayMillis, TimeUnit.MILLISECONDS);
+        long elapsedMillis = TimeUnit.NANOSECONDS.toMillis(ranAt.get(5, TimeUnit.SECONDS) - scheduledAt);
+        assertTrue(elapsedMillis >= delayMillis, "ran after " + elapsedMillis + " ms, " + delayMillis + " ms delay");
+        assertTrue(elapsedMillis < delayMillis + TICK_MS + LATE_SLACK_MS,
+                "ran after " + elapsedMillis + " ms, " + delayMillis + " ms delay");
+    }
+
+    private static void awaitQuietly(CountDownLatch latch) {
+        try {
+            latch.await();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
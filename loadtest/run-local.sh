@@ -0,0 +1,87 @@
+#!/usr/bin/env bash
+# Runs the load generator against a local server on an in-process H2 database, on one machine
+# with no other services. Builds both modules, creates a self-signed keystore and the test
+# accounts, starts the server, runs the profile and stops the server again.
+#
+#   loadtest/run-local.sh [ramp|steady|soak]
+#
+# Environment: SESSIONS (default 100), USERS (accounts load1..loadN@example.com, default 100),
+# PASSWORD (default loadtest), SERVER_OPTS and LOAD_OPTS for further -D settings of each side,
+# such as LOAD_OPTS="-Dclient.load.messagesPerSecond=5 -Dclient.load.durationSeconds=300".
+# Everything is written to loadtest/work: server.log, load.log and metrics.txt, the server's
+# Prometheus metrics at the end of the run.
+set -euo pipefail
+
+PROFILE="${1:-steady}"
+SESSIONS="${SESSIONS:-100}"
+USERS="${USERS:-100}"
+PASSWORD="${PASSWORD:-loadtest}"
+ROOT="$(cd "$(dirname "$0")/.." && pwd)"
+WORK="$ROOT/loadtest/work"
+SERVER="$ROOT/Information_security_server"
+CLIENT="$ROOT/Information_secuity_project_client"
+JAVA="${JAVA_HOME:+$JAVA_HOME/bin/}java"
+KEYTOOL="${JAVA_HOME:+$JAVA_HOME/bin/}keytool"
+
+mkdir -p "$WORK"
+cd "$WORK"
+
+echo "Building server and client..."
+(cd "$ROOT/Information_security_common" && mvn -B -q install)
+(cd "$SERVER" && mvn -B -q -Pembedded-db compile dependency:build-classpath -Dmdep.outputFile="$WORK/server.classpath")
+(cd "$CLIENT" && mvn -B -q compile dependency:build-classpath -Dmdep.outputFile="$WORK/client.classpath")
+
+if [ ! -f keystore.jks ]; then
+    "$KEYTOOL" -genkeypair -alias chatserver -keyalg RSA -keysize 2048 -validity 365 -dname "CN=localhost" \
+        -keystore keystore.jks -storepass changeit -keypass changeit >/dev/null
+fi
+
+# Legacy unsalted SHA-256 hashes; the server replaces each with scrypt on its first login
+HASH="$(printf '%s' "$PASSWORD" | sha256sum | cut -d' ' -f1)"
+cat > seed.sql <<SQL
+CREATE TABLE IF NOT EXISTS users (id INT AUTO_INCREMENT PRIMARY KEY, name VARCHAR(255) NOT NULL,
+    email VARCHAR(255) UNIQUE NOT NULL, password VARCHAR(255) NOT NULL);
+INSERT INTO users (name, email, password)
+    SELECT 'load' || X, 'load' || X || '@example.com', '$HASH' FROM SYSTEM_RANGE(1, $USERS)
+    WHERE NOT EXISTS (SELECT 1 FROM users u WHERE u.email = 'load' || X || '@example.com');
+SQL
+# INIT runs for every new connection; the seed only inserts accounts that are missing
+cat > embedded-db.properties <<PROPS
+db.url=jdbc:h2:mem:loadtest;MODE=MySQL;DB_CLOSE_DELAY=-1;INIT=RUNSCRIPT FROM '$WORK/seed.sql'
+db.username=sa
+db.password=
+db.pool.minSize=2
+db.pool.maxSize=20
+PROPS
+
+echo "Starting server..."
+# The server console reads stdin; a FIFO held open here keeps it from reaching end of file
+rm -f server.stdin
+mkfifo server.stdin
+exec 3<>server.stdin
+"$JAVA" ${SERVER_OPTS:-} -Dserver.db.config="$WORK/embedded-db.properties" \
+    -cp "$SERVER/target/classes:$(cat server.classpath)" org.example.server.Main < server.stdin > server.log 2>&1 &
+SERVER_PID=$!
+trap 'kill $SERVER_PID 2>/dev/null; wait $SERVER_PID 2>/dev/null || true' EXIT
+
+for _ in $(seq 1 60); do
+    if (exec 3<>/dev/tcp/127.0.0.1/8443) 2>/dev/null; then
+        break
+    fi
+    if ! kill -0 $SERVER_PID 2>/dev/null; then
+        echo "Server exited, see $WORK/server.log" >&2
+        exit 1
+    fi
+    sleep 1
+done
+
+echo "Running the $PROFILE profile with $SESSIONS sessions..."
+STATUS=0
+"$JAVA" ${LOAD_OPTS:-} -Dclient.load.profile="$PROFILE" -Dclient.load.sessions="$SESSIONS" \
+    -Dclient.load.users="$USERS" -Dclient.load.password="$PASSWORD" \
+    -cp "$CLIENT/target/classes:$(cat client.classpath)" org.example.load.LoadGenerator 2>&1 | tee load.log || STATUS=$?
+
+if command -v curl >/dev/null; then
+    curl -s http://127.0.0.1:9464/metrics > metrics.txt || true
+fi
+exit $STATUS